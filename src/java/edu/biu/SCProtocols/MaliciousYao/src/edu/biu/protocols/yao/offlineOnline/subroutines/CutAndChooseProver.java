@@ -18,6 +18,7 @@ import edu.biu.protocols.yao.offlineOnline.primitives.ExecutionParameters;
 import edu.biu.protocols.yao.primitives.CryptoPrimitives;
 import edu.biu.protocols.yao.primitives.CutAndChooseSelection;
 import edu.biu.scapi.comm.Channel;
+import edu.biu.scapi.comm.ChannelOutputStream;
 import edu.biu.scapi.exceptions.CheatAttemptException;
 import edu.biu.scapi.exceptions.CommitValueException;
 import edu.biu.scapi.exceptions.NoSuchPartyException;
@@ -250,7 +251,8 @@ public class CutAndChooseProver {
 //		}
 		
 		circuitBundles[j] = bundleBuilders[i].build(20);
-		channels[i].send(circuitBundles[j].getGarbledTables());
+		//The garbled tables are serialized directly into the channel in chunks, instead of into one big array.
+		ChannelOutputStream.sendObject(channels[i], circuitBundles[j].getGarbledTables());
 		channels[i].send(circuitBundles[j].getTranslationTable());
 	}
 	
@@ -8,9 +8,8 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutput;
-import java.io.ObjectOutputStream;
 import java.io.FileOutputStream;
+import java.io.OutputStream;
 import java.security.SecureRandom;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -37,6 +36,7 @@ import edu.biu.protocols.yao.primitives.KProbeResistantMatrix;
 import edu.biu.scapi.circuits.fastGarbledCircuit.FastGarbledBooleanCircuit;
 import edu.biu.scapi.circuits.garbledCircuit.GarbledTablesHolder;
 import edu.biu.scapi.comm.Channel;
+import edu.biu.scapi.comm.ChannelInputStream;
 import edu.biu.scapi.exceptions.CheatAttemptException;
 import edu.biu.scapi.exceptions.CommitValueException;
 import edu.biu.scapi.exceptions.NoSuchPartyException;
@@ -62,6 +62,7 @@ public class CutAndChooseVerifier {
 	
 	private static final int COMMIT_ID_CUT_AND_CHOOSE = 1;
 	private static final int COMMIT_ID_BUCKET_MAPPING = 2;
+	public static final long DEFAULT_MAX_GARBLED_TABLES_SIZE = 1L << 30;	//The default bound on the garbled tables of one circuit (1 GB).
 	
 	private final ExecutionParameters execution;		//Contains parameters regarding the execution. 
 	private final CryptoPrimitives primitives;			//Contains primitives to use in the protocol.
@@ -77,6 +78,7 @@ public class CutAndChooseVerifier {
 	private GarbledTablesHolder[] garbledTables;		//Will hold the garbled table of each circuit.
 	private byte[][] translationTables;					//Will hold the translation table of each circuit.
 	private String filePrefix;
+	private long maxGarbledTablesSize = DEFAULT_MAX_GARBLED_TABLES_SIZE;	//Bounds the files that the garbled tables are written to.
 	/*
 	 * wires' indices.
 	 */
@@ -171,6 +173,19 @@ public class CutAndChooseVerifier {
 		this.filePrefix = filePrefix;
 	}
 	
+	/**
+	 * Sets the maximal size of the garbled tables of one circuit, in bytes. The bound is used when the tables are written 
+	 * to files, since the prover chooses how many bytes to send. A prover that sends more bytes is caught cheating.<p>
+	 * The default is 1 GB.
+	 * @param maxGarbledTablesSize the maximal size of the serialized garbled tables of one circuit.
+	 */
+	public void setMaxGarbledTablesSize(long maxGarbledTablesSize){
+		if (maxGarbledTablesSize <= 0){
+			throw new IllegalArgumentException("the maximal size of the garbled tables should be positive");
+		}
+		this.maxGarbledTablesSize = maxGarbledTablesSize;
+	}
+	
 	/**
 	 * Run the verifier execution.
 	 * 
@@ -344,6 +359,15 @@ public class CutAndChooseVerifier {
 					throw new IllegalStateException();
 				}
 			}
+			//Report the failure of any thread, so a cheating prover is not ignored.
+			for (int j = 0; j < numOfThreads; j++) {
+				if (threads[j].error instanceof CheatAttemptException){
+					throw (CheatAttemptException) threads[j].error;
+				}
+				if (threads[j].error != null){
+					throw (IOException) threads[j].error;
+				}
+			}
 		//In case no thread should be created, build all the circuits directly.
 		} else {
 			for (int j = 0; j < numCircuits; j++) {
@@ -364,6 +388,7 @@ public class CutAndChooseVerifier {
 		private int from;	// The first circuit in the circuit list that should be created.
 		private int to;		// The last circuit in the circuit list that should be created.
 		private int i;		// The index of the thread.
+		private Exception error;	// The failure of the thread, if any. Thrown by the calling thread after the thread finished.
 		/**
 		 * Constructor that sets the parameters.
 		 * @param i The index of the thread.
@@ -380,30 +405,40 @@ public class CutAndChooseVerifier {
 		 * Builds the circuits from the start point to the end point in the circuit list.
 		 */
 		public void run(){
-			for (int j = from; j < to; j++) {
-				try {
+			try {
+				for (int j = from; j < to; j++) {
 					receiveCircuit(j, i);
-				} catch (IOException e) {
-					// TODO Auto-generated catch block
-					e.printStackTrace();
-				}	
+				}
+			} catch (IOException | CheatAttemptException e) {
+				error = e;
 			}
 		}
 	}
 	
-	private void receiveCircuit(int j, int i) throws IOException {
+	private void receiveCircuit(int j, int i) throws IOException, CheatAttemptException {
 		//Initialize the expectors objects to receive the tables. 
 		Expector garbledTablesExpector = new Expector(channels[i], GarbledTablesHolder.class);
 		Expector translationTableExpector = new Expector(channels[i], byte[].class);
 		
 		//Receive the garbled and translation tables of each circuit.
+		//The garbled tables are streamed by the prover, so they are deserialized while they arrive.
 		if (filePrefix == null){
-			garbledTables[j] = (GarbledTablesHolder) garbledTablesExpector.receive();
+			garbledTables[j] = (GarbledTablesHolder) garbledTablesExpector.receiveStreamed();
 			
 		} else{
-			ObjectOutput garbledTableFile = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(filePrefix + "GarbledTables."+j+".txt")));
-			garbledTableFile.writeObject((GarbledTablesHolder) garbledTablesExpector.receive());
-			garbledTableFile.close();		
+			//The streamed bytes are the serialization of the tables holder, which is the content of the file. 
+			//Thus, they are written to the file as they arrive, without holding the tables in memory.
+			OutputStream garbledTableFile = new BufferedOutputStream(new FileOutputStream(filePrefix + "GarbledTables."+j+".txt"));
+			ChannelInputStream in = new ChannelInputStream(channels[i]);
+			try {
+				//The prover chooses the number of sent bytes, so the file is bounded.
+				if (in.copyTo(garbledTableFile, maxGarbledTablesSize) < 0){
+					throw new CheatAttemptException("the garbled tables of circuit " + j + " are longer than " + maxGarbledTablesSize + " bytes");
+				}
+				in.close();
+			} finally {
+				garbledTableFile.close();
+			}
 		}
 		translationTables[j] = (byte[]) translationTableExpector.receive();
 		
@@ -492,11 +527,16 @@ public class CutAndChooseVerifier {
 				File file = new File(filePrefix + "GarbledTables."+j+".txt");
 				ObjectInput garbledTableFile = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)));
 				try {
-					garbledTable = (GarbledTablesHolder) garbledTableFile.readObject();
+					Object tables = garbledTableFile.readObject();
 					garbledTableFile.close();
 					file.delete();
+					//The file was written as received, so the type of its content was not checked yet.
+					if (!(tables instanceof GarbledTablesHolder)){
+						throw new CheatAttemptException("expected garbled tables, but got " + tables.getClass().getName());
+					}
+					garbledTable = (GarbledTablesHolder) tables;
 				} catch (ClassNotFoundException e) {
-					// Should not occur since the file contains GarbledTablesHolder.
+					throw new CheatAttemptException("the received garbled tables could not be deserialized");
 				}
 			}
 			if (!checkEquality(circuitBundle.getGarbledTables().toDoubleByteArray(), (garbledTable.toDoubleByteArray()))) {
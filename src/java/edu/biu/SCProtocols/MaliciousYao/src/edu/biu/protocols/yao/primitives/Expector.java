@@ -4,6 +4,7 @@ import java.io.IOException;
 import java.io.Serializable;
 
 import edu.biu.scapi.comm.Channel;
+import edu.biu.scapi.comm.ChannelInputStream;
 import edu.biu.scapi.exceptions.CheatAttemptException;
 
 /**
@@ -41,6 +42,31 @@ public class Expector {
 			throw new IOException(e);
 		}
 		
+		return cast(message);
+	}
+	
+	/**
+	 * Receives an object of the expected class that was sent as a stream, using {@link edu.biu.scapi.comm.ChannelOutputStream}.<p>
+	 * The object is deserialized while it arrives, without holding its serialized bytes in memory.
+	 * @return The received object.
+	 * @throws CheatAttemptException if the received object is not the expected.
+	 * @throws IOException In case of a problem during receiving the object.
+	 */
+	public Object receiveStreamed() throws CheatAttemptException, IOException {
+		Serializable message;
+		try {
+			message = ChannelInputStream.receiveObject(channel);
+		} catch (ClassNotFoundException e) {
+			throw new IOException(e);
+		}
+		
+		return cast(message);
+	}
+	
+	/**
+	 * Checks that the given message is of the expected type and casts it.
+	 */
+	private Object cast(Serializable message) throws CheatAttemptException {
 		//Check if the received message is the expected type.
 		if (!expectedType.isAssignableFrom(message.getClass())) {
 			throw new CheatAttemptException(String.format("Expected message of type %s, but got %s.", 
@@ -6,6 +6,7 @@ import java.util.Date;
 import edu.biu.scapi.circuits.fastGarbledCircuit.FastCircuitCreationValues;
 import edu.biu.scapi.circuits.fastGarbledCircuit.FastGarbledBooleanCircuit;
 import edu.biu.scapi.comm.Channel;
+import edu.biu.scapi.comm.ChannelOutputStream;
 import edu.biu.scapi.exceptions.CheatAttemptException;
 import edu.biu.scapi.exceptions.InvalidDlogGroupException;
 import edu.biu.scapi.exceptions.NoSuchPartyException;
@@ -62,7 +63,8 @@ public class PartyOne {
 			
 		start = new Date();
 		//Send garbled tables and the translation table to p2.
-		channel.send(circuit.getGarbledTables());
+		//The garbled tables are serialized directly into the channel in chunks, instead of into one big array.
+		ChannelOutputStream.sendObject(channel, circuit.getGarbledTables());
 		channel.send(circuit.getTranslationTable());
 		if(print_output)
 			System.out.println("Send garbled tables and translation tables took " + 
@@ -7,6 +7,7 @@ import java.util.Date;
 import edu.biu.scapi.circuits.fastGarbledCircuit.FastGarbledBooleanCircuit;
 import edu.biu.scapi.circuits.garbledCircuit.GarbledTablesHolder;
 import edu.biu.scapi.comm.Channel;
+import edu.biu.scapi.comm.ChannelInputStream;
 import edu.biu.scapi.exceptions.CheatAttemptException;
 import edu.biu.scapi.exceptions.InvalidDlogGroupException;
 import edu.biu.scapi.exceptions.NotAllInputsSetException;
@@ -104,7 +105,7 @@ public class PartyTwo {
 	 */
 	void receiveCircuit() throws CheatAttemptException, ClassNotFoundException, IOException {
 		//Receive garbled tables.
-		Serializable msg = channel.receive();
+		Serializable msg = ChannelInputStream.receiveObject(channel);
 		if (!(msg instanceof GarbledTablesHolder)){
 			throw new CheatAttemptException("the received message should be an instance of GarbledTablesHolder");
 		}
@@ -0,0 +1,366 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.circuits.circuit;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.BitSet;
+
+import edu.biu.scapi.exceptions.CircuitFileFormatException;
+import edu.biu.scapi.exceptions.NoSuchPartyException;
+
+/**
+ * A compact binary format of circuit files, which can be loaded much faster than the text format. <p>
+ * 
+ * The binary file holds the same data as the text file, described in {@link BooleanCircuit#BooleanCircuit(File)}, where all 
+ * the numbers are written as varints (7 bits per byte, the high bit indicates that more bytes follow):
+ * <ul>
+ * <li>The magic bytes "SCBC" and the format version.</li>
+ * <li>The number of gates and the number of parties.</li>
+ * <li>For each party, the number of input wires followed by their indices.</li>
+ * <li>The number of output wires followed by their indices.</li>
+ * <li>For each gate, a type code followed by the indices of its input and output wires. Codes 0-15 are gates with two inputs whose 
+ * 4-bit truth table is the code (for example 8 for AND and 6 for XOR), codes 16-19 are gates with one input whose 2-bit truth table 
+ * is the code minus 16 and code 31 is any other gate, followed by its number of inputs and its truth table. 
+ * The bit {@link #MULTIPLE_OUTPUTS} of the code indicates that the number of output wires follows; otherwise there is one output wire.</li>
+ * </ul>
+ * 
+ * The {@link #load(File)} function keeps a binary copy of a text circuit file next to it, so that the text file is parsed only once. 
+ * The main function converts a text circuit file to a binary file.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+public class BinaryCircuitFormat {
+
+	private static final byte[] MAGIC = {'S', 'C', 'B', 'C'};
+	private static final byte VERSION = 1;
+	
+	private static final int ONE_INPUT_GATE = 16;		//The code of a gate with one input is 16 plus its truth table.
+	private static final int GENERAL_GATE = 31;			//The code of a gate that has no shorter code.
+	private static final int MULTIPLE_OUTPUTS = 0x20;	//Indicates that the number of outputs of the gate is written.
+	private static final int TYPE_MASK = 0x1F;
+	
+	/**
+	 * Writes the given circuit to the given file in the binary format.
+	 * @param circuit the circuit to write.
+	 * @param binaryFile the file to write to.
+	 * @throws IOException in case of a problem writing the file.
+	 */
+	public static void write(BooleanCircuit circuit, File binaryFile) throws IOException {
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(binaryFile), 65536);
+		try {
+			write(circuit, out);
+		} finally {
+			out.close();
+		}
+	}
+	
+	/**
+	 * Writes the given circuit to the given stream in the binary format.
+	 * @param circuit the circuit to write.
+	 * @param out the stream to write to. The stream is not closed.
+	 * @throws IOException in case of a problem writing to the stream.
+	 */
+	public static void write(BooleanCircuit circuit, OutputStream out) throws IOException {
+		out.write(MAGIC);
+		out.write(VERSION);
+		
+		Gate[] gates = circuit.getGates();
+		int numberOfParties = circuit.getNumberOfParties();
+		writeVarint(out, gates.length);
+		writeVarint(out, numberOfParties);
+		try {
+			for (int party = 1; party <= numberOfParties; party++) {
+				ArrayList<Integer> inputs = circuit.getInputWireIndices(party);
+				writeVarint(out, inputs.size());
+				for (int wire : inputs) {
+					writeVarint(out, wire);
+				}
+			}
+		} catch (NoSuchPartyException e) {
+			// Should not occur since the parties numbers are between 1 to getNumberOfParties.
+		}
+		writeIndices(out, circuit.getOutputWireIndices());
+		
+		for (Gate gate : gates) {
+			int[] inputs = gate.getInputWireIndices();
+			int[] outputs = gate.getOutputWireIndices();
+			BitSet truthTable = gate.getTruthTable();
+			
+			int code;
+			if (inputs.length == 2 && truthTable.length() <= 4) {
+				code = toInt(truthTable);
+			} else if (inputs.length == 1 && truthTable.length() <= 2) {
+				code = ONE_INPUT_GATE + toInt(truthTable);
+			} else {
+				code = GENERAL_GATE;
+			}
+			if (outputs.length != 1) {
+				code |= MULTIPLE_OUTPUTS;
+			}
+			out.write(code);
+			
+			if (code == GENERAL_GATE || code == (GENERAL_GATE | MULTIPLE_OUTPUTS)) {
+				writeVarint(out, inputs.length);
+				byte[] table = truthTable.toByteArray();
+				writeVarint(out, table.length);
+				out.write(table);
+			}
+			if (outputs.length != 1) {
+				writeVarint(out, outputs.length);
+			}
+			for (int wire : inputs) {
+				writeVarint(out, wire);
+			}
+			for (int wire : outputs) {
+				writeVarint(out, wire);
+			}
+		}
+	}
+	
+	/**
+	 * Reads a circuit from the given file in the binary format. The file is mapped to memory.
+	 * @param binaryFile the file to read.
+	 * @return the read circuit.
+	 * @throws FileNotFoundException if the file is not found.
+	 * @throws CircuitFileFormatException if the file is not a valid binary circuit file or could not be read.
+	 */
+	public static BooleanCircuit read(File binaryFile) throws FileNotFoundException, CircuitFileFormatException {
+		return read(CircuitFileParser.map(binaryFile));
+	}
+	
+	/**
+	 * Reads a circuit in the binary format from the given buffer.
+	 * @param buffer holds the binary circuit, starting at its position.
+	 * @return the read circuit.
+	 * @throws CircuitFileFormatException if the buffer does not hold a valid binary circuit.
+	 */
+	public static BooleanCircuit read(ByteBuffer buffer) throws CircuitFileFormatException {
+		try {
+			for (byte b : MAGIC) {
+				if (buffer.get() != b) {
+					throw new CircuitFileFormatException("not a binary circuit file");
+				}
+			}
+			if (buffer.get() != VERSION) {
+				throw new CircuitFileFormatException("unsupported binary circuit version");
+			}
+			
+			int numberOfGates = readSize(buffer);
+			int numberOfParties = readSize(buffer);
+			ArrayList<ArrayList<Integer>> eachPartysInputWires = new ArrayList<ArrayList<Integer>>(numberOfParties);
+			for (int i = 0; i < numberOfParties; i++) {
+				int numberOfInputs = readSize(buffer);
+				ArrayList<Integer> inputs = new ArrayList<Integer>(numberOfInputs);
+				for (int j = 0; j < numberOfInputs; j++) {
+					inputs.add(readVarint(buffer));
+				}
+				eachPartysInputWires.add(inputs);
+			}
+			int[] outputWireIndices = readIndices(buffer, readSize(buffer));
+			
+			//The gates with the same short truth table share it, as in the text parser.
+			BitSet[] sharedTables = new BitSet[ONE_INPUT_GATE + 4];
+			Gate[] gates = new Gate[numberOfGates];
+			for (int i = 0; i < numberOfGates; i++) {
+				int code = buffer.get() & 0xFF;
+				int type = code & TYPE_MASK;
+				
+				int numberOfInputs;
+				BitSet truthTable;
+				if (type < ONE_INPUT_GATE + 4) {
+					numberOfInputs = type < ONE_INPUT_GATE ? 2 : 1;
+					if (sharedTables[type] == null) {
+						sharedTables[type] = toBitSet(type < ONE_INPUT_GATE ? type : type - ONE_INPUT_GATE);
+					}
+					truthTable = sharedTables[type];
+				} else if (type == GENERAL_GATE) {
+					numberOfInputs = readSize(buffer);
+					byte[] table = new byte[readSize(buffer)];
+					buffer.get(table);
+					truthTable = BitSet.valueOf(table);
+				} else {
+					throw new CircuitFileFormatException("unknown gate code " + code);
+				}
+				
+				int numberOfOutputs = (code & MULTIPLE_OUTPUTS) != 0 ? readSize(buffer) : 1;
+				int[] inputs = readIndices(buffer, numberOfInputs);
+				int[] outputs = readIndices(buffer, numberOfOutputs);
+				gates[i] = new Gate(i, truthTable, inputs, outputs);
+			}
+			return new BooleanCircuit(gates, outputWireIndices, eachPartysInputWires);
+			
+		} catch (BufferUnderflowException e) {
+			throw new CircuitFileFormatException("unexpected end of the binary circuit file");
+		}
+	}
+	
+	/**
+	 * Loads the given text circuit file using a binary copy of it, which is kept next to it. <p>
+	 * In case the binary copy does not exist or is older than the text file, the text file is parsed and the binary copy is 
+	 * (re)written. Failing to write the binary copy, for example in a read-only directory, does not fail the loading.
+	 * @param textFile a circuit file in the text format.
+	 * @return the loaded circuit.
+	 * @throws FileNotFoundException if the text file is not found and there is no binary copy.
+	 * @throws CircuitFileFormatException if there is a problem with the format of the text file.
+	 */
+	public static BooleanCircuit load(File textFile) throws FileNotFoundException, CircuitFileFormatException {
+		File binaryFile = getBinaryFile(textFile);
+		if (binaryFile.isFile() && binaryFile.lastModified() >= textFile.lastModified()) {
+			try {
+				return read(binaryFile);
+			} catch (CircuitFileFormatException e) {
+				// The binary copy is corrupted or was written by another version, so it is rewritten below.
+			} catch (FileNotFoundException e) {
+				// The binary copy was removed meanwhile.
+			}
+		}
+		
+		BooleanCircuit circuit = new BooleanCircuit(textFile);
+		try {
+			//Write to a temporary file first, so that another party that loads the same circuit never reads a partial file.
+			File temp = File.createTempFile(binaryFile.getName(), ".tmp", binaryFile.getAbsoluteFile().getParentFile());
+			write(circuit, temp);
+			if (!temp.renameTo(binaryFile)) {
+				temp.delete();
+			}
+		} catch (IOException e) {
+			// The binary copy only makes the next loading faster.
+		}
+		return circuit;
+	}
+	
+	/**
+	 * Returns the binary copy of the given text circuit file that {@link #load(File)} uses: the file in the same directory 
+	 * with the extension ".bin" instead of ".txt".
+	 */
+	public static File getBinaryFile(File textFile) {
+		String name = textFile.getName();
+		if (name.endsWith(".txt")) {
+			name = name.substring(0, name.length() - 4);
+		}
+		return new File(textFile.getAbsoluteFile().getParentFile(), name + ".bin");
+	}
+	
+	private static int toInt(BitSet truthTable) {
+		int bits = 0;
+		for (int i = truthTable.nextSetBit(0); i >= 0; i = truthTable.nextSetBit(i + 1)) {
+			bits |= 1 << i;
+		}
+		return bits;
+	}
+	
+	private static BitSet toBitSet(int bits) {
+		BitSet truthTable = new BitSet();
+		for (int i = 0; i < 4; i++) {
+			if ((bits & (1 << i)) != 0) {
+				truthTable.set(i);
+			}
+		}
+		return truthTable;
+	}
+	
+	private static void writeIndices(OutputStream out, int[] indices) throws IOException {
+		writeVarint(out, indices.length);
+		for (int index : indices) {
+			writeVarint(out, index);
+		}
+	}
+	
+	private static int[] readIndices(ByteBuffer buffer, int size) throws CircuitFileFormatException {
+		int[] indices = new int[size];
+		for (int i = 0; i < size; i++) {
+			indices[i] = readVarint(buffer);
+		}
+		return indices;
+	}
+	
+	/**
+	 * Writes the given value as an unsigned varint, 7 bits per byte starting from the low bits.
+	 */
+	private static void writeVarint(OutputStream out, int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			out.write((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.write(value);
+	}
+	
+	private static int readVarint(ByteBuffer buffer) throws CircuitFileFormatException {
+		int value = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			byte b = buffer.get();
+			value |= (b & 0x7F) << shift;
+			if (b >= 0) {
+				return value;
+			}
+		}
+		throw new CircuitFileFormatException("invalid varint in the binary circuit file");
+	}
+	
+	/**
+	 * Reads a varint that is the size of an array, which should not be negative.
+	 */
+	private static int readSize(ByteBuffer buffer) throws CircuitFileFormatException {
+		int size = readVarint(buffer);
+		if (size < 0) {
+			throw new CircuitFileFormatException("negative size in the binary circuit file");
+		}
+		return size;
+	}
+	
+	/**
+	 * Converts a text circuit file to the binary format. <p>
+	 * Usage: BinaryCircuitFormat textFile [binaryFile]. By default the binary file is the one that {@link #load(File)} uses.
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length < 1) {
+			System.out.println("usage: BinaryCircuitFormat textFile [binaryFile]");
+			return;
+		}
+		File textFile = new File(args[0]);
+		File binaryFile = args.length > 1 ? new File(args[1]) : getBinaryFile(textFile);
+		
+		long start = System.nanoTime();
+		BooleanCircuit circuit = new BooleanCircuit(textFile);
+		long parsed = System.nanoTime();
+		write(circuit, binaryFile);
+		long written = System.nanoTime();
+		read(binaryFile);
+		long read = System.nanoTime();
+		
+		System.out.println("converted " + circuit.getGates().length + " gates: " + textFile.length() + " bytes -> " + binaryFile.length() + " bytes");
+		System.out.println("parsing the text took " + (parsed - start) / 1000000 + " ms, writing took " + (written - parsed) / 1000000 
+				+ " ms, reading the binary took " + (read - written) / 1000000 + " ms");
+	}
+}
@@ -0,0 +1,249 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.circuits.circuit;
+
+import java.util.ArrayList;
+
+import edu.biu.scapi.exceptions.NoSuchPartyException;
+
+/**
+ * A bit-sliced evaluator that computes a {@link BooleanCircuit} on many independent inputs at once. <p>
+ * Each wire holds a long (or several longs, called lanes) instead of a single bit. Bit j of the long is the value of the wire 
+ * in the j-th evaluation, so every gate is computed for 64 evaluations per lane by one or two bitwise operations. 
+ * This is useful when the same plaintext circuit is computed on many inputs, for example in tests and when checking the 
+ * outputs of many circuits. <p>
+ * 
+ * The evaluator is built over the {@link CompiledBooleanCircuit}. The 4-bit truth table of each gate is mapped to the matching 
+ * bitwise expression, such as a AND b for an {@link ANDGate}, a XOR b for an {@link XORGate} and NOT a for a {@link NOTGate}. <p>
+ * 
+ * The wire vector has {@link #getLanes()} longs per wire: the value of wire w in evaluation e is bit (e % 64) of 
+ * wires[w * lanes + e / 64].
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+public class BitslicedBooleanCircuit {
+
+	private CompiledBooleanCircuit compiledCircuit;
+	
+	/**
+	 * The number of longs per wire. The number of evaluations is 64 times the number of lanes.
+	 */
+	private int lanes;
+	
+	/**
+	 * The input wire indices of all the parties, in the order of the parties.
+	 */
+	private int[] inputWireIndices;
+	
+	/**
+	 * Creates an evaluator that computes the given circuit on 64 inputs at once.
+	 * @param circuit the circuit to compute. Its gates should have one or two inputs.
+	 */
+	public BitslicedBooleanCircuit(BooleanCircuit circuit) {
+		this(circuit, 1);
+	}
+	
+	/**
+	 * Creates an evaluator that computes the given circuit on 64 * lanes inputs at once.
+	 * @param circuit the circuit to compute. Its gates should have one or two inputs.
+	 * @param lanes the number of longs per wire.
+	 * @throws IllegalArgumentException in case the number of lanes is not positive or the circuit cannot be compiled.
+	 */
+	public BitslicedBooleanCircuit(BooleanCircuit circuit, int lanes) {
+		if (lanes < 1) {
+			throw new IllegalArgumentException("the number of lanes should be positive");
+		}
+		this.compiledCircuit = circuit.getCompiledCircuit();
+		this.lanes = lanes;
+		
+		ArrayList<Integer> inputs = new ArrayList<Integer>();
+		try {
+			for (int party = 1; party <= circuit.getNumberOfParties(); party++) {
+				inputs.addAll(circuit.getInputWireIndices(party));
+			}
+		} catch (NoSuchPartyException e) {
+			// Should not occur since the parties numbers are between 1 to getNumberOfParties.
+		}
+		inputWireIndices = new int[inputs.size()];
+		for (int i = 0; i < inputWireIndices.length; i++) {
+			inputWireIndices[i] = inputs.get(i);
+		}
+	}
+	
+	/**
+	 * Evaluates the circuit over the given wire vector. <p>
+	 * Before calling this function, the entries of the input wires should hold the input values of all the evaluations. 
+	 * When the function returns, the entries of every wire in the circuit hold its computed values.
+	 * 
+	 * @param wires a wire vector of at least {@link #getNumberOfWires()} * {@link #getLanes()} longs.
+	 */
+	public void evaluate(long[] wires) {
+		int numberOfGates = compiledCircuit.getNumberOfGates();
+		for (int g = 0; g < numberOfGates; g++) {
+			evaluateGate(wires, g);
+		}
+	}
+	
+	/**
+	 * Evaluates the circuit over the given wire vector, where the independent gates are evaluated in parallel by the given scheduler. <p>
+	 * The work of each gate grows with the number of lanes, so a circuit with many lanes benefits from the parallelism more 
+	 * than the plaintext evaluation of a single input.
+	 * 
+	 * @param wires a wire vector of at least {@link #getNumberOfWires()} * {@link #getLanes()} longs whose input wires are set.
+	 * @param scheduler a scheduler of the circuit that this evaluator was created for.
+	 */
+	public void evaluate(final long[] wires, LevelScheduler scheduler) {
+		scheduler.run(new LevelScheduler.GateTask() {
+			@Override
+			public void compute(int gate) {
+				evaluateGate(wires, gate);
+			}
+		});
+	}
+	
+	private void evaluateGate(long[] wires, int g) {
+		int[] left = compiledCircuit.getLeftInputs();
+		int[] right = compiledCircuit.getRightInputs();
+		byte[] tables = compiledCircuit.getTruthTables();
+		int[] offsets = compiledCircuit.getOutputOffsets();
+		int[] out = compiledCircuit.getOutputs();
+		
+		int firstOutput = out[offsets[g]] * lanes;
+		if (lanes == 1) {
+			wires[firstOutput] = compute(tables[g], wires[left[g]], wires[right[g]]);
+		} else {
+			int a = left[g] * lanes;
+			int b = right[g] * lanes;
+			for (int l = 0; l < lanes; l++) {
+				wires[firstOutput + l] = compute(tables[g], wires[a + l], wires[b + l]);
+			}
+		}
+		
+		// Copy the value to the other output wires of the gate, in case of fan-out.
+		for (int i = offsets[g] + 1; i < offsets[g + 1]; i++) {
+			System.arraycopy(wires, firstOutput, wires, out[i] * lanes, lanes);
+		}
+	}
+	
+	/**
+	 * Computes the gate whose 4-bit truth table is given on 64 evaluations. <p>
+	 * Bit i of the truth table is the output for the index i = 2a + b, as in {@link Gate}, so each table has a matching bitwise 
+	 * expression. For example, 0110 (6) is XOR and 1000 (8) is AND. A NOT gate is compiled to table 1 with a = b, which is NOR(a, a).
+	 */
+	private static long compute(byte truthTable, long a, long b) {
+		switch (truthTable) {
+		case 6:  return a ^ b;
+		case 8:  return a & b;
+		case 14: return a | b;
+		case 1:  return ~(a | b);
+		case 7:  return ~(a & b);
+		case 9:  return ~(a ^ b);
+		case 2:  return ~a & b;
+		case 4:  return a & ~b;
+		case 11: return ~a | b;
+		case 13: return a | ~b;
+		case 3:  return ~a;
+		case 5:  return ~b;
+		case 10: return b;
+		case 12: return a;
+		case 15: return -1L;
+		default: return 0;
+		}
+	}
+	
+	/**
+	 * Computes the circuit on the given inputs. <p>
+	 * The inputs of each evaluation are transposed into the wire vector, the circuit is evaluated once and the outputs are 
+	 * transposed back.
+	 * @param inputs the inputs of each evaluation. inputs[e] holds the values (0 or 1) of the input wires of all the parties, 
+	 * in the order of the parties and then in the order of {@link BooleanCircuit#getInputWireIndices(int)}. 
+	 * There may be at most {@link #getBatchSize()} evaluations.
+	 * @return the outputs of each evaluation, in the order of the output wire indices of the circuit.
+	 * @throws IllegalArgumentException in case there are too many evaluations or the inputs have a wrong length.
+	 */
+	public byte[][] compute(byte[][] inputs) {
+		if (inputs.length > getBatchSize()) {
+			throw new IllegalArgumentException("there are more evaluations than the batch size " + getBatchSize());
+		}
+		
+		long[] wires = createWireVector();
+		int numberOfWires = compiledCircuit.getNumberOfWires();
+		for (int e = 0; e < inputs.length; e++) {
+			if (inputs[e].length != inputWireIndices.length) {
+				throw new IllegalArgumentException("each evaluation should have " + inputWireIndices.length + " inputs");
+			}
+			int lane = e >>> 6;
+			long bit = 1L << (e & 63);
+			for (int i = 0; i < inputWireIndices.length; i++) {
+				// An input wire that is not used by any gate does not have an entry in the wire vector.
+				if (inputs[e][i] != 0 && inputWireIndices[i] < numberOfWires) {
+					wires[inputWireIndices[i] * lanes + lane] |= bit;
+				}
+			}
+		}
+		
+		evaluate(wires);
+		
+		int[] outputWireIndices = compiledCircuit.getOutputWireIndices();
+		byte[][] outputs = new byte[inputs.length][outputWireIndices.length];
+		for (int e = 0; e < inputs.length; e++) {
+			int lane = e >>> 6;
+			int shift = e & 63;
+			for (int i = 0; i < outputWireIndices.length; i++) {
+				outputs[e][i] = (byte) ((wires[outputWireIndices[i] * lanes + lane] >>> shift) & 1);
+			}
+		}
+		return outputs;
+	}
+	
+	/**
+	 * Creates a new wire vector that can hold the values of all the wires of the circuit in all the evaluations.
+	 */
+	public long[] createWireVector() {
+		return new long[compiledCircuit.getNumberOfWires() * lanes];
+	}
+	
+	/**
+	 * Returns the number of wires in the wire vector, which is the biggest wire index in the circuit plus one.
+	 */
+	public int getNumberOfWires() {
+		return compiledCircuit.getNumberOfWires();
+	}
+	
+	/**
+	 * Returns the number of longs per wire.
+	 */
+	public int getLanes() {
+		return lanes;
+	}
+	
+	/**
+	 * Returns the number of evaluations that are computed at once, which is 64 times the number of lanes.
+	 */
+	public int getBatchSize() {
+		return 64 * lanes;
+	}
+}
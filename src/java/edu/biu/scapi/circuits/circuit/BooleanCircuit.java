@@ -80,6 +80,21 @@ public class BooleanCircuit {
 	 * An arrayList containing the indices of the input {@code Wire}s of this {@code BooleanCircuit} indexed by the party number.
 	 */
 	private ArrayList<ArrayList<Integer>> eachPartysInputWires = new ArrayList<ArrayList<Integer>>();
+	
+	/**
+	 * The compiled form of this circuit, used by the compute() function. Created on the first computation.
+	 */
+	private CompiledBooleanCircuit compiledCircuit;
+	
+	/**
+	 * The wire vector that the compiled circuit is evaluated over. Reused in all computations.
+	 */
+	private byte[] wireValues;
+	
+	/**
+	 * Computes the independent gates in parallel, or null to compute the gates one after the other.
+	 */
+	private LevelScheduler scheduler;
 
 	/**
 	 * Constructs a BooleanCircuit from a File. <p>
@@ -89,12 +104,19 @@ public class BooleanCircuit {
 	 * Then for each gate, we have the following: number of inputWires, number of OutputWires inputWireIndices OutputWireIndices and the gate's truth Table (as a 0-1 string).<P>
 	 * example file: 1 2 1 1 1 2 1 2 1 3 2 1 1 2 3 0001<p>
 	 *
+	 * The file is mapped to memory and parsed byte by byte, which is much faster than parsing it with a {@link Scanner}. 
+	 * In order to avoid parsing big circuits at all, see {@link BinaryCircuitFormat#load(File)}.<p>
+	 *
 	 * @param f The {@link File} from which the circuit is read.
 	 * @throws FileNotFoundException if f is not found in the specified directory.
 	 * @throws CircuitFileFormatException if there is a problem with the format of the file.
 	 */
 	public BooleanCircuit(File f) throws FileNotFoundException, CircuitFileFormatException {
-		this(new Scanner(f));
+		this(CircuitFileParser.parse(f));
+	}
+	
+	private BooleanCircuit(CircuitFileParser parser) {
+		this(parser.gates, parser.outputWireIndices, parser.eachPartysInputWires);
 	}
 
 	// Integer.parseInt(s.next()) is significantly faster than s.nextInt() so we use the former.
@@ -202,6 +224,11 @@ public class BooleanCircuit {
 		this.outputWireIndices = outputWireIndices;
 		this.eachPartysInputWires = eachPartysInputWires;
 		numberOfParties = eachPartysInputWires.size();
+		//The input of a party that has no input wires is considered as set.
+		isInputSet = new boolean[numberOfParties];
+		for (int i = 0; i < numberOfParties; i++) {
+			isInputSet[i] = eachPartysInputWires.get(i).isEmpty();
+		}
   	}
 
     /**
@@ -256,6 +283,14 @@ public class BooleanCircuit {
 				throw new NotAllInputsSetException();
 			}
 		}
+		// Circuits whose gates all have one or two inputs are evaluated by the compiled circuit, without allocating per gate.
+		if (compiledCircuit == null && CompiledBooleanCircuit.isCompilable(gates)) {
+			getCompiledCircuit();
+		}
+		if (compiledCircuit != null) {
+			return computeCompiled();
+		}
+		
 		/* Computes each Gate. 
 		 * Since the Gates are provided in topological order, by the time the compute function on a given Gate is called, 
 		 * its input Wires will have already been assigned values
@@ -276,6 +311,56 @@ public class BooleanCircuit {
 		return outputMap;
 	}
 
+	/**
+	 * Computes the circuit using the compiled circuit. <p>
+	 * The set input wires are copied to the wire vector, the compiled circuit is evaluated and a {@link Wire} is created 
+	 * only for each output of the circuit.
+	 */
+	private Map<Integer, Wire> computeCompiled() {
+		for (Map.Entry<Integer, Wire> input : computedWires.entrySet()) {
+			int index = input.getKey();
+			// An input wire that is not used by any gate does not have an entry in the wire vector.
+			if (index < wireValues.length) {
+				wireValues[index] = input.getValue().getValue();
+			}
+		}
+		
+		if (scheduler == null) {
+			compiledCircuit.evaluate(wireValues);
+		} else {
+			compiledCircuit.evaluate(wireValues, scheduler);
+		}
+		
+		Map<Integer, Wire> outputMap = new HashMap<Integer, Wire>();
+		for (int w : outputWireIndices) {
+			outputMap.put(w, new Wire(wireValues[w]));
+		}
+		return outputMap;
+	}
+	
+	/**
+	 * Sets a scheduler that computes the independent gates of this circuit in parallel in the following calls to {@link #compute()}. <p>
+	 * The scheduler is used only for circuits whose gates have one or two inputs, which are computed by the compiled circuit.
+	 * @param scheduler a scheduler that was created for this circuit, or null to compute the gates one after the other.
+	 */
+	public void setScheduler(LevelScheduler scheduler) {
+		this.scheduler = scheduler;
+	}
+	
+	/**
+	 * Returns the compiled form of this circuit, which evaluates the circuit over a byte array of wire values. 
+	 * The circuit is compiled on the first call.
+	 * @return the compiled circuit.
+	 * @throws IllegalArgumentException in case the circuit contains a gate that has more than two inputs or no inputs.
+	 */
+	public CompiledBooleanCircuit getCompiledCircuit() {
+		if (compiledCircuit == null) {
+			compiledCircuit = new CompiledBooleanCircuit(gates, outputWireIndices);
+			wireValues = compiledCircuit.createWireVector();
+		}
+		return compiledCircuit;
+	}
+
 	/**
 	 * The verify method tests the circuits for equality returning {@code true} if they are and {@code false}if they are not. <p>
 	 * In order to be considered equal, {@code Gate}s and {@code Wire}s must be indexed identically and {@code Gate}s must contain 
@@ -0,0 +1,257 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.circuits.circuit;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.BitSet;
+
+import edu.biu.scapi.exceptions.CircuitFileFormatException;
+
+/**
+ * A parser of the text format of circuit files, described in {@link BooleanCircuit#BooleanCircuit(File)}. <p>
+ * The file is mapped to memory and parsed byte by byte, without creating a String per token as {@link java.util.Scanner} does. 
+ * Tokens are separated by whitespace, and a token that begins with '#' starts a comment until the end of the line. <p>
+ * The gates of a circuit usually use a few truth tables, so gates with the same short truth table share one {@link BitSet}.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+class CircuitFileParser {
+
+	private static final int MAX_SHARED_TABLE_LENGTH = 4;	//Truth tables up to this length are shared between gates.
+	
+	private ByteBuffer buffer;
+	private BitSet[] sharedTables = new BitSet[2 << MAX_SHARED_TABLE_LENGTH];	//Indexed by (1 << length) | bits.
+	
+	//The parsed circuit.
+	Gate[] gates;
+	int[] outputWireIndices;
+	ArrayList<ArrayList<Integer>> eachPartysInputWires = new ArrayList<ArrayList<Integer>>();
+	
+	private CircuitFileParser(ByteBuffer buffer) {
+		this.buffer = buffer;
+	}
+	
+	/**
+	 * Parses the given circuit file.
+	 * @param f the circuit file, in the text format.
+	 * @return the parser, which holds the parsed gates, output wires and input wires.
+	 * @throws FileNotFoundException if f is not found.
+	 * @throws CircuitFileFormatException if there is a problem with the format of the file or the file could not be read.
+	 */
+	static CircuitFileParser parse(File f) throws FileNotFoundException, CircuitFileFormatException {
+		CircuitFileParser parser = new CircuitFileParser(map(f));
+		parser.parse();
+		return parser;
+	}
+	
+	/**
+	 * Maps the given file to memory, for reading.
+	 * @throws CircuitFileFormatException in case the file could not be read.
+	 */
+	static ByteBuffer map(File f) throws FileNotFoundException, CircuitFileFormatException {
+		RandomAccessFile file = new RandomAccessFile(f, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			//The mapping stays valid after the channel is closed.
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		} catch (IOException e) {
+			throw new CircuitFileFormatException("the circuit file could not be read: " + e.getMessage());
+		} finally {
+			try {
+				file.close();
+			} catch (IOException e) {
+				// The file was only read, so there is nothing to lose.
+			}
+		}
+	}
+	
+	/**
+	 * Parses the circuit, in the same order as {@link BooleanCircuit#BooleanCircuit(java.util.Scanner)}.
+	 */
+	private void parse() throws CircuitFileFormatException {
+		//Read the number of gates and the number of parties.
+		int numberOfGates = nextInt();
+		int numberOfParties = nextInt();
+		if (numberOfGates < 0 || numberOfParties < 0) {
+			throw error("negative number of gates or parties");
+		}
+		gates = new Gate[numberOfGates];
+		
+		//For each party, read the party's number, number of input wires and their indices.
+		for (int i = 0; i < numberOfParties; i++) {
+			if (nextInt() != i + 1) {//add 1 since parties are indexed from 1, not 0
+				throw error("wrong party number");
+			}
+			int numberOfInputs = nextInt();
+			if (numberOfInputs < 0) {
+				throw error("negative number of inputs");
+			}
+			ArrayList<Integer> inputs = new ArrayList<Integer>(numberOfInputs);
+			for (int j = 0; j < numberOfInputs; j++) {
+				inputs.add(nextInt());
+			}
+			eachPartysInputWires.add(inputs);
+		}
+		
+		//Read the output wires indices.
+		outputWireIndices = readIndices(nextInt());
+		
+		//For each gate, read the number of input and output wires, their indices and the truth table.
+		for (int i = 0; i < numberOfGates; i++) {
+			int numberOfGateInputs = nextInt();
+			int numberOfGateOutputs = nextInt();
+			int[] inputs = readIndices(numberOfGateInputs);
+			int[] outputs = readIndices(numberOfGateOutputs);
+			gates[i] = new Gate(i, nextTruthTable(), inputs, outputs);
+		}
+	}
+	
+	private int[] readIndices(int size) throws CircuitFileFormatException {
+		if (size < 0) {
+			throw error("negative number of wires");
+		}
+		int[] indices = new int[size];
+		for (int i = 0; i < size; i++) {
+			indices[i] = nextInt();
+		}
+		return indices;
+	}
+	
+	/**
+	 * Skips the whitespace and the comments before the next token.
+	 * @return true if there is a token; false in case the end of the file was reached.
+	 */
+	private boolean skipToToken() {
+		while (buffer.hasRemaining()) {
+			byte b = buffer.get(buffer.position());
+			if (b == '#') {
+				//A comment, skip until the end of the line.
+				while (buffer.hasRemaining() && buffer.get() != '\n');
+			} else if (isWhitespace(b)) {
+				buffer.get();
+			} else {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	private static boolean isWhitespace(byte b) {
+		return b == ' ' || b == '\n' || b == '\r' || b == '\t' || b == '\f' || b == 0x0B;
+	}
+	
+	/**
+	 * Reads the next token as a decimal integer.
+	 */
+	private int nextInt() throws CircuitFileFormatException {
+		if (!skipToToken()) {
+			throw error("unexpected end of file");
+		}
+		boolean negative = false;
+		byte b = buffer.get();
+		if (b == '-' || b == '+') {
+			negative = b == '-';
+			if (!buffer.hasRemaining()) {
+				throw error("a number was expected");
+			}
+			b = buffer.get();
+		}
+		
+		long value = 0;
+		while (true) {
+			if (b < '0' || b > '9') {
+				throw error("a number was expected");
+			}
+			value = value * 10 + (b - '0');
+			if (value > Integer.MAX_VALUE) {
+				throw error("the number is too big");
+			}
+			if (!buffer.hasRemaining()) {
+				break;
+			}
+			b = buffer.get(buffer.position());
+			if (isWhitespace(b)) {
+				break;
+			}
+			buffer.get();
+		}
+		return (int) (negative ? -value : value);
+	}
+	
+	/**
+	 * Reads the next token as a truth table. Each '1' character sets the matching bit of the table.
+	 */
+	private BitSet nextTruthTable() throws CircuitFileFormatException {
+		if (!skipToToken()) {
+			throw error("unexpected end of file");
+		}
+		int start = buffer.position();
+		int bits = 0;
+		while (buffer.hasRemaining() && !isWhitespace(buffer.get(buffer.position()))) {
+			if (buffer.get() == '1') {
+				int bit = buffer.position() - 1 - start;
+				bits |= bit < MAX_SHARED_TABLE_LENGTH ? 1 << bit : 0;
+			}
+		}
+		int length = buffer.position() - start;
+		
+		if (length <= MAX_SHARED_TABLE_LENGTH) {
+			int index = (1 << length) | bits;
+			if (sharedTables[index] == null) {
+				sharedTables[index] = toBitSet(bits, length);
+			}
+			return sharedTables[index];
+		}
+		
+		BitSet truthTable = new BitSet();
+		for (int i = 0; i < length; i++) {
+			if (buffer.get(start + i) == '1') {
+				truthTable.set(i);
+			}
+		}
+		return truthTable;
+	}
+	
+	private static BitSet toBitSet(int bits, int length) {
+		BitSet truthTable = new BitSet();
+		for (int i = 0; i < length; i++) {
+			if ((bits & (1 << i)) != 0) {
+				truthTable.set(i);
+			}
+		}
+		return truthTable;
+	}
+	
+	private CircuitFileFormatException error(String message) {
+		return new CircuitFileFormatException(message + " at byte " + buffer.position());
+	}
+}
@@ -0,0 +1,288 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.circuits.circuit;
+
+import java.util.Arrays;
+
+/**
+ * Groups the gates of a {@link BooleanCircuit} by their dependencies, in order to compute independent gates in parallel. <p>
+ * The level of a gate is the length of the longest path from the input wires of the circuit to the gate: a gate whose inputs 
+ * are all input wires of the circuit is in level 0, and any other gate is in the level that follows the highest level of the 
+ * gates that compute its inputs. The gates of the same level do not depend on each other, so they can be computed in parallel 
+ * once all the previous levels were computed. <p>
+ * 
+ * In addition, the gates are divided to components, where two gates are in the same component if one of them uses the output 
+ * of the other, directly or through other gates. For example, a circuit that compares many pairs of numbers has a component for 
+ * each pair. Different components can be computed in parallel without waiting between the levels. <p>
+ * 
+ * The width of each level (the number of gates in it) and the sizes of the components show how much parallelism the circuit has.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+public class CircuitLevels {
+
+	/**
+	 * The level of each gate.
+	 */
+	private int[] levels;
+	
+	/**
+	 * The gates of level l are levelGates[levelOffsets[l]] ... levelGates[levelOffsets[l+1]-1], in ascending order.
+	 */
+	private int[] levelOffsets;
+	private int[] levelGates;
+	
+	/**
+	 * The gates of component c are componentGates[componentOffsets[c]] ... componentGates[componentOffsets[c+1]-1], 
+	 * in ascending order. The components are ordered by their first gate.
+	 */
+	private int[] componentOffsets;
+	private int[] componentGates;
+	
+	/**
+	 * Computes the levels and the components of the given circuit.
+	 * @param circuit the circuit to analyze. Its gates should be ordered such that each gate comes after the gates that 
+	 * compute its inputs.
+	 */
+	public CircuitLevels(BooleanCircuit circuit) {
+		this(circuit.getGates());
+	}
+	
+	/**
+	 * Computes the levels and the components of the given gates.
+	 * @param gates the gates to analyze. The gates should be ordered such that each gate comes after the gates that 
+	 * compute its inputs.
+	 */
+	public CircuitLevels(Gate[] gates) {
+		int numberOfGates = gates.length;
+		int maxWire = -1;
+		for (Gate gate : gates) {
+			for (int wire : gate.getOutputWireIndices()) {
+				maxWire = Math.max(maxWire, wire);
+			}
+		}
+		//The gate that computes each wire, or -1 for the input wires of the circuit.
+		int[] producers = new int[maxWire + 1];
+		Arrays.fill(producers, -1);
+		
+		//The parent of each gate in the union-find structure that builds the components.
+		int[] parents = new int[numberOfGates];
+		
+		levels = new int[numberOfGates];
+		int numberOfLevels = 0;
+		for (int g = 0; g < numberOfGates; g++) {
+			parents[g] = g;
+			int level = 0;
+			for (int wire : gates[g].getInputWireIndices()) {
+				int producer = wire <= maxWire ? producers[wire] : -1;
+				if (producer >= 0) {
+					level = Math.max(level, levels[producer] + 1);
+					union(parents, g, producer);
+				}
+			}
+			levels[g] = level;
+			numberOfLevels = Math.max(numberOfLevels, level + 1);
+			for (int wire : gates[g].getOutputWireIndices()) {
+				producers[wire] = g;
+			}
+		}
+		
+		levelOffsets = new int[numberOfLevels + 1];
+		levelGates = group(levels, numberOfLevels, levelOffsets);
+		
+		//Number the components by their first gate.
+		int[] components = new int[numberOfGates];
+		int numberOfComponents = 0;
+		for (int g = 0; g < numberOfGates; g++) {
+			int root = find(parents, g);
+			components[g] = root == g ? numberOfComponents++ : components[root];
+		}
+		componentOffsets = new int[numberOfComponents + 1];
+		componentGates = group(components, numberOfComponents, componentOffsets);
+	}
+	
+	private static int find(int[] parents, int g) {
+		while (parents[g] != g) {
+			parents[g] = parents[parents[g]];
+			g = parents[g];
+		}
+		return g;
+	}
+	
+	/**
+	 * Joins the components of the given gates. The root of a component is its first gate.
+	 */
+	private static void union(int[] parents, int g, int h) {
+		int first = find(parents, g);
+		int second = find(parents, h);
+		if (first < second) {
+			parents[second] = first;
+		} else {
+			parents[first] = second;
+		}
+	}
+	
+	/**
+	 * Sorts the gates by their groups, keeping the order of the gates in each group.
+	 * @param groups the group of each gate.
+	 * @param numberOfGroups the number of groups.
+	 * @param offsets gets the offset of each group in the returned array, and the number of gates at the end.
+	 * @return the gates of all the groups.
+	 */
+	private static int[] group(int[] groups, int numberOfGroups, int[] offsets) {
+		for (int group : groups) {
+			offsets[group + 1]++;
+		}
+		for (int i = 0; i < numberOfGroups; i++) {
+			offsets[i + 1] += offsets[i];
+		}
+		int[] next = Arrays.copyOf(offsets, numberOfGroups);
+		int[] gates = new int[groups.length];
+		for (int g = 0; g < groups.length; g++) {
+			gates[next[groups[g]]++] = g;
+		}
+		return gates;
+	}
+	
+	/**
+	 * Returns the number of gates in the circuit.
+	 */
+	public int getNumberOfGates() {
+		return levels.length;
+	}
+	
+	/**
+	 * Returns the number of levels, which is the depth of the circuit.
+	 */
+	public int getNumberOfLevels() {
+		return levelOffsets.length - 1;
+	}
+	
+	/**
+	 * Returns the level of the given gate.
+	 * @param gate the index of the gate in the circuit.
+	 */
+	public int getLevel(int gate) {
+		return levels[gate];
+	}
+	
+	/**
+	 * Returns the number of gates in the given level.
+	 */
+	public int getWidth(int level) {
+		return levelOffsets[level + 1] - levelOffsets[level];
+	}
+	
+	/**
+	 * Returns the number of gates in each level.
+	 */
+	public int[] getWidths() {
+		int[] widths = new int[getNumberOfLevels()];
+		for (int level = 0; level < widths.length; level++) {
+			widths[level] = getWidth(level);
+		}
+		return widths;
+	}
+	
+	/**
+	 * Returns the number of gates in the widest level.
+	 */
+	public int getMaxWidth() {
+		int max = 0;
+		for (int level = 0; level < getNumberOfLevels(); level++) {
+			max = Math.max(max, getWidth(level));
+		}
+		return max;
+	}
+	
+	/**
+	 * Returns the average number of gates in a level.
+	 */
+	public double getAverageWidth() {
+		return getNumberOfLevels() == 0 ? 0 : (double) getNumberOfGates() / getNumberOfLevels();
+	}
+	
+	/**
+	 * Returns the indices of the gates in the given level, in ascending order.
+	 */
+	public int[] getGates(int level) {
+		return Arrays.copyOfRange(levelGates, levelOffsets[level], levelOffsets[level + 1]);
+	}
+	
+	/**
+	 * Returns the number of components, which are sets of gates that do not depend on each other.
+	 */
+	public int getNumberOfComponents() {
+		return componentOffsets.length - 1;
+	}
+	
+	/**
+	 * Returns the number of gates in the given component.
+	 */
+	public int getComponentSize(int component) {
+		return componentOffsets[component + 1] - componentOffsets[component];
+	}
+	
+	/**
+	 * Returns the number of gates in the biggest component.
+	 */
+	public int getMaxComponentSize() {
+		int max = 0;
+		for (int component = 0; component < getNumberOfComponents(); component++) {
+			max = Math.max(max, getComponentSize(component));
+		}
+		return max;
+	}
+	
+	/**
+	 * Returns the indices of the gates in the given component, in ascending order.
+	 */
+	public int[] getComponentGates(int component) {
+		return Arrays.copyOfRange(componentGates, componentOffsets[component], componentOffsets[component + 1]);
+	}
+	
+	int[] getLevelOffsets() {
+		return levelOffsets;
+	}
+	
+	int[] getLevelGates() {
+		return levelGates;
+	}
+	
+	int[] getComponentOffsets() {
+		return componentOffsets;
+	}
+	
+	int[] getComponentGates() {
+		return componentGates;
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("gates: %d, levels: %d, max width: %d, average width: %.1f, components: %d, max component: %d", 
+				getNumberOfGates(), getNumberOfLevels(), getMaxWidth(), getAverageWidth(), getNumberOfComponents(), getMaxComponentSize());
+	}
+}
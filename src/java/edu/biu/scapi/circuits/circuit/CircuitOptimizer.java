@@ -0,0 +1,666 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.circuits.circuit;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+
+import edu.biu.scapi.exceptions.NoSuchPartyException;
+
+/**
+ * Optimizes a {@link BooleanCircuit} in order to reduce the cost of garbling it. <p>
+ * In the Free XOR garbling, XOR and XNOR gates are free, while any other gate needs a garbled table that is computed by the 
+ * garbler and sent to the evaluator. The optimizer returns an equivalent circuit with less gates and, in particular, less 
+ * non-XOR gates:
+ * <ul>
+ * <li>Constants are propagated. A gate whose output is constant, for example x XOR x or x AND NOT x, is removed and the gates 
+ * that use its output are simplified.</li>
+ * <li>NOT gates and identity gates are removed. The gates that use their outputs are given an updated truth table instead.</li>
+ * <li>Gates that compute the same function of the same wires are merged.</li>
+ * <li>An AND-like gate whose result can be expressed by XOR is replaced by a XOR gate. 
+ * For example, (s AND a) OR (NOT s AND b) is computed with a XOR gate instead of an OR gate, since both sides never hold together.</li>
+ * <li>(c AND a) XOR (c AND b) is replaced by c AND (a XOR b), which saves one AND gate.</li>
+ * <li>Gates whose outputs do not reach the output wires of the circuit are removed.</li>
+ * </ul>
+ * 
+ * The optimized circuit has the same input wires and output wires as the given circuit, so the parties can use it instead 
+ * of the given circuit as is. The gates are renumbered, so both parties should use the optimized circuit. 
+ * The gates of the given circuit should be ordered such that each gate comes after the gates that compute its inputs, as 
+ * required by {@link BooleanCircuit#compute()}.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+public class CircuitOptimizer {
+	
+	//The value of a wire is kept as a literal, which is an earlier wire index shifted left by one, where the low bit 
+	//indicates that the value is negated. The constants are kept as the following negative values.
+	private static final int FALSE = -1;
+	private static final int TRUE = -2;
+	private static final int NONE = -3;
+	
+	private static final int MAX_INPUTS = 16;		//The maximal number of inputs of a gate that can be optimized.
+	private static final int EXPANSION_DEPTH = 3;	//The number of AND-like gates levels that are searched for contradictions.
+	
+	/**
+	 * A gate of the optimized circuit. 
+	 * The inputs are different wires in ascending order, and the truth table depends on all of them.
+	 */
+	private static class Node {
+		int[] inputs;
+		BitSet truthTable;
+		int[] outputs;
+		
+		Node(int[] inputs, BitSet truthTable) {
+			this.inputs = inputs;
+			this.truthTable = truthTable;
+		}
+	}
+	
+	private CircuitStatistics statisticsBefore;
+	private CircuitStatistics statisticsAfter;
+	
+	private int numberOfWires;
+	private int[] literals;						//The literal of each wire of the given circuit.
+	private int[] nodeOf;						//The index of the node whose first output is each wire, or -1.
+	private ArrayList<Node> nodes;				//The gates of the optimized circuit. Removed gates are null.
+	private HashMap<String, Integer> nodeKeys;	//Maps the inputs and truth table of each node to its index.
+	
+	/**
+	 * Returns an optimized circuit that is equivalent to the given circuit.
+	 * @param circuit the circuit to optimize. The circuit is not changed.
+	 * @return the optimized circuit.
+	 * @throws IllegalArgumentException in case the circuit contains a gate with more than 16 inputs.
+	 */
+	public BooleanCircuit optimize(BooleanCircuit circuit) {
+		statisticsBefore = new CircuitStatistics(circuit);
+		
+		ArrayList<ArrayList<Integer>> eachPartysInputWires = new ArrayList<ArrayList<Integer>>();
+		try {
+			for (int party = 1; party <= circuit.getNumberOfParties(); party++) {
+				eachPartysInputWires.add(new ArrayList<Integer>(circuit.getInputWireIndices(party)));
+			}
+		} catch (NoSuchPartyException e) {
+			// Should not occur since the parties numbers are between 1 to getNumberOfParties.
+		}
+		int[] outputWireIndices = circuit.getOutputWireIndices().clone();
+		
+		numberOfWires = countWires(circuit);
+		literals = new int[numberOfWires];
+		for (int wire = 0; wire < numberOfWires; wire++) {
+			literals[wire] = wire << 1;
+		}
+		nodeOf = new int[numberOfWires];
+		Arrays.fill(nodeOf, -1);
+		nodes = new ArrayList<Node>();
+		nodeKeys = new HashMap<String, Integer>();
+		
+		for (Gate gate : circuit.getGates()) {
+			int literal = simplify(gate);
+			for (int wire : gate.getOutputWireIndices()) {
+				literals[wire] = literal;
+			}
+		}
+		computeOutputs(outputWireIndices, eachPartysInputWires);
+		removeDeadGates(outputWireIndices);
+		while (factorANDGates(outputWireIndices)) {
+			removeDeadGates(outputWireIndices);
+		}
+		
+		BooleanCircuit optimized = new BooleanCircuit(createGates(), outputWireIndices, eachPartysInputWires);
+		statisticsAfter = new CircuitStatistics(optimized);
+		
+		literals = null;
+		nodeOf = null;
+		nodes = null;
+		nodeKeys = null;
+		return optimized;
+	}
+	
+	/**
+	 * Returns the statistics of the circuit that was given to the last call of {@link #optimize(BooleanCircuit)}.
+	 */
+	public CircuitStatistics getStatisticsBefore() {
+		return statisticsBefore;
+	}
+	
+	/**
+	 * Returns the statistics of the circuit that was returned by the last call of {@link #optimize(BooleanCircuit)}.
+	 */
+	public CircuitStatistics getStatisticsAfter() {
+		return statisticsAfter;
+	}
+	
+	private static int countWires(BooleanCircuit circuit) {
+		int max = -1;
+		for (Gate gate : circuit.getGates()) {
+			for (int wire : gate.getInputWireIndices()) {
+				max = Math.max(max, wire);
+			}
+			for (int wire : gate.getOutputWireIndices()) {
+				max = Math.max(max, wire);
+			}
+		}
+		for (int wire : circuit.getOutputWireIndices()) {
+			max = Math.max(max, wire);
+		}
+		return max + 1;
+	}
+	
+	/**
+	 * Adds a simplified version of the given gate to the optimized circuit.
+	 * @return the literal of the output of the gate.
+	 */
+	private int simplify(Gate gate) {
+		int[] inputs = gate.getInputWireIndices();
+		int[] inputLiterals = new int[inputs.length];
+		for (int i = 0; i < inputs.length; i++) {
+			inputLiterals[i] = literals[inputs[i]];
+		}
+		Node node = substitute(inputLiterals, gate.getTruthTable());
+		
+		int numberOfInputs = node.inputs.length;
+		if (numberOfInputs == 0) {
+			return node.truthTable.get(0) ? TRUE : FALSE;
+		}
+		if (numberOfInputs == 1) {
+			//Since the output depends on the input, this is either an identity gate or a NOT gate.
+			return node.inputs[0] << 1 | (node.truthTable.get(1) ? 0 : 1);
+		}
+		if (numberOfInputs == 2) {
+			int constant = rewrite(node);
+			if (constant != NONE) {
+				return constant;
+			}
+		}
+		
+		//Use an existing node that computes the same function or its negation.
+		Integer existing = nodeKeys.get(getKey(node.inputs, node.truthTable));
+		if (existing != null) {
+			return nodes.get(existing).outputs[0] << 1;
+		}
+		BitSet negation = (BitSet) node.truthTable.clone();
+		negation.flip(0, 1 << numberOfInputs);
+		existing = nodeKeys.get(getKey(node.inputs, negation));
+		if (existing != null) {
+			return nodes.get(existing).outputs[0] << 1 | 1;
+		}
+		
+		int[] outputs = gate.getOutputWireIndices();
+		if (outputs.length == 0) {
+			return FALSE;
+		}
+		node.outputs = outputs.clone();
+		nodeKeys.put(getKey(node.inputs, node.truthTable), nodes.size());
+		nodeOf[outputs[0]] = nodes.size();
+		nodes.add(node);
+		return outputs[0] << 1;
+	}
+	
+	private static String getKey(int[] inputs, BitSet truthTable) {
+		return Arrays.toString(inputs) + truthTable;
+	}
+	
+	/**
+	 * Computes the truth table of a gate over the wires of the given literals, when the gate's inputs are replaced by the literals. 
+	 * The constants and negations of the literals are merged into the truth table and inputs that the output does not depend on 
+	 * are removed.
+	 */
+	private static Node substitute(int[] inputLiterals, BitSet truthTable) {
+		int[] wires = new int[inputLiterals.length];
+		int numberOfWires = 0;
+		for (int literal : inputLiterals) {
+			if (literal >= 0) {
+				wires[numberOfWires++] = literal >> 1;
+			}
+		}
+		Arrays.sort(wires, 0, numberOfWires);
+		int distinct = 0;
+		for (int i = 0; i < numberOfWires; i++) {
+			if (distinct == 0 || wires[distinct - 1] != wires[i]) {
+				wires[distinct++] = wires[i];
+			}
+		}
+		wires = Arrays.copyOf(wires, distinct);
+		if (distinct > MAX_INPUTS) {
+			throw new IllegalArgumentException("a gate has more than " + MAX_INPUTS + " inputs");
+		}
+		
+		//Row i of the new truth table is the assignment of the wires whose first wire is the high bit of i, as in Gate.
+		BitSet newTable = new BitSet();
+		for (int row = 0; row < 1 << distinct; row++) {
+			int index = 0;
+			for (int literal : inputLiterals) {
+				int bit;
+				if (literal == FALSE) {
+					bit = 0;
+				} else if (literal == TRUE) {
+					bit = 1;
+				} else {
+					int position = Arrays.binarySearch(wires, literal >> 1);
+					bit = ((row >> (distinct - 1 - position)) & 1) ^ (literal & 1);
+				}
+				index = index << 1 | bit;
+			}
+			if (truthTable.get(index)) {
+				newTable.set(row);
+			}
+		}
+		
+		//Remove the wires that the output does not depend on.
+		int position = 0;
+		while (position < wires.length) {
+			int size = wires.length;
+			int weight = 1 << (size - 1 - position);
+			boolean isUsed = false;
+			for (int row = 0; row < 1 << size && !isUsed; row++) {
+				isUsed = (row & weight) == 0 && newTable.get(row) != newTable.get(row | weight);
+			}
+			if (isUsed) {
+				position++;
+				continue;
+			}
+			BitSet reduced = new BitSet();
+			for (int row = 0; row < 1 << (size - 1); row++) {
+				int oldRow = (row >> (size - 1 - position)) << (size - position) | (row & (weight - 1));
+				if (newTable.get(oldRow)) {
+					reduced.set(row);
+				}
+			}
+			newTable = reduced;
+			int[] remaining = new int[size - 1];
+			System.arraycopy(wires, 0, remaining, 0, position);
+			System.arraycopy(wires, position + 1, remaining, position, size - 1 - position);
+			wires = remaining;
+		}
+		return new Node(wires, newTable);
+	}
+	
+	/**
+	 * Rewrites an AND-like node with two inputs. Such a node computes k XOR ([u == a] AND [v == b]) for some constants k, a and b.
+	 * In case [u == a] and [v == b] never hold together, the node is constant. 
+	 * In case [u != a] and [v != b] never hold together, [u == a] AND [v == b] = [u == a] XOR [v == b] XOR 1, so the node is 
+	 * replaced by a XOR gate.
+	 * @return the constant value of the node, or NONE if it is not constant.
+	 */
+	private int rewrite(Node node) {
+		int[] form = getANDForm(node);
+		if (form == null) {
+			return NONE;
+		}
+		int k = form[0];
+		int u = form[1] >> 1;
+		int a = form[1] & 1;
+		int v = form[2] >> 1;
+		int b = form[2] & 1;
+		
+		if (isContradiction(u, a, v, b)) {
+			return k == 0 ? FALSE : TRUE;
+		}
+		if (isContradiction(u, 1 - a, v, 1 - b)) {
+			BitSet truthTable = new BitSet();
+			for (int row = 0; row < 4; row++) {
+				if ((k ^ isEqual(row >> 1, a) ^ isEqual(row & 1, b) ^ 1) == 1) {
+					truthTable.set(row);
+				}
+			}
+			node.truthTable = truthTable;
+		}
+		return NONE;
+	}
+	
+	private static int isEqual(int value, int expected) {
+		return value == expected ? 1 : 0;
+	}
+	
+	/**
+	 * Returns the form of an AND-like node, which has two inputs and a truth table with a single one or a single zero.
+	 * Such a node computes k XOR ([u == a] AND [v == b]).
+	 * @return {k, u << 1 | a, v << 1 | b}, or null in case the node is not AND-like.
+	 */
+	private static int[] getANDForm(Node node) {
+		if (node.inputs.length != 2 || node.truthTable.length() > 4) {
+			return null;
+		}
+		int ones = node.truthTable.cardinality();
+		int row;
+		if (ones == 1) {
+			row = node.truthTable.nextSetBit(0);
+		} else if (ones == 3) {
+			row = node.truthTable.nextClearBit(0);
+		} else {
+			return null;
+		}
+		return new int[]{ones == 1 ? 0 : 1, node.inputs[0] << 1 | row >> 1, node.inputs[1] << 1 | (row & 1)};
+	}
+	
+	/**
+	 * Checks whether [u == a] and [v == b] never hold together. 
+	 * This is the case when both imply opposite values of the same wire, where [w == c] implies [x == d] and [y == e] when w is 
+	 * computed by an AND-like node for which [w == c] is equivalent to [x == d] AND [y == e].
+	 */
+	private boolean isContradiction(int u, int a, int v, int b) {
+		int[] first = new int[1 << (EXPANSION_DEPTH + 1)];
+		int[] second = new int[1 << (EXPANSION_DEPTH + 1)];
+		int firstSize = getImplications(u, a, first, 0, EXPANSION_DEPTH);
+		int secondSize = getImplications(v, b, second, 0, EXPANSION_DEPTH);
+		for (int i = 0; i < firstSize; i++) {
+			for (int j = 0; j < secondSize; j++) {
+				if (first[i] == (second[j] ^ 1)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Adds to the given array the assignments (wire << 1 | value) that are implied by [wire == value].
+	 * @return the number of assignments in the array.
+	 */
+	private int getImplications(int wire, int value, int[] implications, int size, int depth) {
+		implications[size++] = wire << 1 | value;
+		if (depth == 0 || nodeOf[wire] < 0) {
+			return size;
+		}
+		int[] form = getANDForm(nodes.get(nodeOf[wire]));
+		if (form != null && (form[0] ^ value) == 1) {
+			size = getImplications(form[1] >> 1, form[1] & 1, implications, size, depth - 1);
+			size = getImplications(form[2] >> 1, form[2] & 1, implications, size, depth - 1);
+		}
+		return size;
+	}
+	
+	/**
+	 * Makes sure that each output wire of the circuit is computed by a gate of the optimized circuit, since the simplified 
+	 * gates may have been removed or merged with other gates.
+	 */
+	private void computeOutputs(int[] outputWireIndices, ArrayList<ArrayList<Integer>> eachPartysInputWires) {
+		int anyInputWire = -1;
+		for (ArrayList<Integer> inputs : eachPartysInputWires) {
+			if (!inputs.isEmpty()) {
+				anyInputWire = inputs.get(0);
+				break;
+			}
+		}
+		
+		for (int output : outputWireIndices) {
+			int literal = literals[output];
+			if (literal == output << 1) {
+				//The output is an input wire or the first output of a node.
+				continue;
+			}
+			if (literal >= 0 && (literal & 1) == 0 && nodeOf[literal >> 1] >= 0) {
+				//Another output is added to the node that computes the value.
+				Node node = nodes.get(nodeOf[literal >> 1]);
+				if (!contains(node.outputs, output)) {
+					node.outputs = Arrays.copyOf(node.outputs, node.outputs.length + 1);
+					node.outputs[node.outputs.length - 1] = output;
+				}
+				continue;
+			}
+			
+			//Otherwise, the value is computed by a gate with a single input.
+			BitSet truthTable = new BitSet();
+			Node node;
+			if (literal >= 0) {
+				truthTable.set((literal & 1) == 0 ? 1 : 0);
+				node = new Node(new int[]{literal >> 1}, truthTable);
+			} else if (anyInputWire >= 0) {
+				if (literal == TRUE) {
+					truthTable.set(0, 2);
+				}
+				node = new Node(new int[]{anyInputWire}, truthTable);
+			} else {
+				truthTable.set(0, literal == TRUE);
+				node = new Node(new int[0], truthTable);
+			}
+			node.outputs = new int[]{output};
+			nodeOf[output] = nodes.size();
+			nodes.add(node);
+			literals[output] = output << 1;
+		}
+	}
+	
+	private static boolean contains(int[] array, int value) {
+		for (int element : array) {
+			if (element == value) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Removes the nodes whose outputs are not used by other nodes and are not output wires of the circuit.
+	 */
+	private void removeDeadGates(int[] outputWireIndices) {
+		boolean[] isUsed = new boolean[numberOfWires];
+		for (int output : outputWireIndices) {
+			isUsed[output] = true;
+		}
+		for (int i = nodes.size() - 1; i >= 0; i--) {
+			Node node = nodes.get(i);
+			if (node == null) {
+				continue;
+			}
+			int used = 0;
+			for (int output : node.outputs) {
+				if (isUsed[output]) {
+					used++;
+				}
+			}
+			if (used == 0) {
+				nodes.set(i, null);
+				continue;
+			}
+			if (used < node.outputs.length) {
+				int[] outputs = new int[used];
+				int j = 0;
+				for (int output : node.outputs) {
+					if (isUsed[output]) {
+						outputs[j++] = output;
+					}
+				}
+				node.outputs = outputs;
+			}
+			for (int input : node.inputs) {
+				isUsed[input] = true;
+			}
+		}
+	}
+	
+	/**
+	 * Replaces each XOR node of two AND-like nodes that share an input, (c AND a) XOR (c AND b), by c AND (a XOR b).
+	 * The AND-like nodes should not be used by other nodes. The output wire of the first of them is used for a XOR b.
+	 * @return true if any node was replaced.
+	 */
+	private boolean factorANDGates(int[] outputWireIndices) {
+		int[] fanout = new int[numberOfWires];
+		for (Node node : nodes) {
+			if (node != null) {
+				for (int input : node.inputs) {
+					fanout[input]++;
+				}
+			}
+		}
+		for (int output : outputWireIndices) {
+			fanout[output]++;
+		}
+		
+		int[] producer = new int[numberOfWires];
+		Arrays.fill(producer, -1);
+		ArrayList<Node> result = new ArrayList<Node>(nodes.size());
+		boolean isChanged = false;
+		for (Node node : nodes) {
+			if (node == null) {
+				continue;
+			}
+			Node[] factored = null;
+			int u = -1;
+			int v = -1;
+			if (node.inputs.length == 2 && CircuitStatistics.isXOR(node.truthTable)) {
+				u = node.inputs[0];
+				v = node.inputs[1];
+				if (producer[u] >= 0 && producer[v] >= 0 && fanout[u] == 1 && fanout[v] == 1) {
+					factored = factor(node, result.get(producer[u]), result.get(producer[v]));
+				}
+			}
+			if (factored == null) {
+				for (int output : node.outputs) {
+					producer[output] = result.size();
+				}
+				result.add(node);
+				continue;
+			}
+			
+			result.set(producer[u], null);
+			result.set(producer[v], null);
+			for (Node newNode : factored) {
+				for (int output : newNode.outputs) {
+					producer[output] = result.size();
+				}
+				result.add(newNode);
+			}
+			isChanged = true;
+		}
+		nodes = result;
+		return isChanged;
+	}
+	
+	/**
+	 * Factors the given XOR node of two AND-like nodes, in case they share an input with the same expected value.
+	 * @return the node that computes a XOR b and the node that replaces the XOR node, or null if they cannot be factored.
+	 */
+	private static Node[] factor(Node xor, Node first, Node second) {
+		int[] firstForm = getANDForm(first);
+		int[] secondForm = getANDForm(second);
+		if (firstForm == null || secondForm == null || first.outputs.length != 1 || second.outputs.length != 1) {
+			return null;
+		}
+		
+		//Find the shared assignment c and the other assignments a and b.
+		int c = -1;
+		int a = -1;
+		int b = -1;
+		for (int i = 1; i <= 2 && c < 0; i++) {
+			for (int j = 1; j <= 2 && c < 0; j++) {
+				if (firstForm[i] == secondForm[j]) {
+					c = firstForm[i];
+					a = firstForm[3 - i];
+					b = secondForm[3 - j];
+				}
+			}
+		}
+		if (c < 0 || a >> 1 == b >> 1) {
+			return null;
+		}
+		
+		//xor = kx XOR (k1 XOR ([c] AND [a])) XOR (k2 XOR ([c] AND [b])) = k XOR ([c] AND ([a] XOR [b])).
+		int k = (xor.truthTable.get(0) ? 1 : 0) ^ firstForm[0] ^ secondForm[0];
+		int w = first.outputs[0];
+		
+		int[] inputs = sort(a >> 1, b >> 1);
+		BitSet truthTable = new BitSet();
+		for (int row = 0; row < 4; row++) {
+			if ((isAssigned(a, inputs, row) ^ isAssigned(b, inputs, row)) == 1) {
+				truthTable.set(row);
+			}
+		}
+		Node aXORb = new Node(inputs, truthTable);
+		aXORb.outputs = new int[]{w};
+		
+		inputs = sort(c >> 1, w);
+		truthTable = new BitSet();
+		for (int row = 0; row < 4; row++) {
+			if ((k ^ (isAssigned(c, inputs, row) & isAssigned(w << 1 | 1, inputs, row))) == 1) {
+				truthTable.set(row);
+			}
+		}
+		Node and = new Node(inputs, truthTable);
+		and.outputs = xor.outputs;
+		return new Node[]{aXORb, and};
+	}
+	
+	private static int[] sort(int x, int y) {
+		return x < y ? new int[]{x, y} : new int[]{y, x};
+	}
+	
+	/**
+	 * Returns 1 if the given assignment (wire << 1 | value) holds in the given row of a truth table over the given two inputs.
+	 */
+	private static int isAssigned(int assignment, int[] inputs, int row) {
+		int value = (assignment >> 1) == inputs[0] ? row >> 1 : row & 1;
+		return isEqual(value, assignment & 1);
+	}
+	
+	/**
+	 * Creates the gates of the optimized circuit. Gates with equal truth tables share the same BitSet.
+	 */
+	private Gate[] createGates() {
+		HashMap<BitSet, BitSet> truthTables = new HashMap<BitSet, BitSet>();
+		ArrayList<Gate> gates = new ArrayList<Gate>();
+		for (Node node : nodes) {
+			if (node == null) {
+				continue;
+			}
+			BitSet truthTable = truthTables.get(node.truthTable);
+			if (truthTable == null) {
+				truthTable = node.truthTable;
+				truthTables.put(truthTable, truthTable);
+			}
+			gates.add(new Gate(gates.size(), truthTable, node.inputs, node.outputs));
+		}
+		return gates.toArray(new Gate[gates.size()]);
+	}
+	
+	/**
+	 * Optimizes a circuit file and prints the gates counts before and after the optimization. <p>
+	 * Usage: CircuitOptimizer circuitFile [binaryFile]. In case a binary file is given, the optimized circuit is written to it 
+	 * in the format of {@link BinaryCircuitFormat}.
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length < 1) {
+			System.out.println("usage: CircuitOptimizer circuitFile [binaryFile]");
+			return;
+		}
+		BooleanCircuit circuit = new BooleanCircuit(new File(args[0]));
+		
+		CircuitOptimizer optimizer = new CircuitOptimizer();
+		long start = System.nanoTime();
+		BooleanCircuit optimized = optimizer.optimize(circuit);
+		long time = (System.nanoTime() - start) / 1000000;
+		
+		System.out.println("before: " + optimizer.getStatisticsBefore());
+		System.out.println("after:  " + optimizer.getStatisticsAfter());
+		System.out.println("the optimization took " + time + " ms");
+		if (args.length > 1) {
+			BinaryCircuitFormat.write(optimized, new File(args[1]));
+		}
+	}
+}
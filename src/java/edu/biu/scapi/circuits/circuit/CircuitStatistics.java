@@ -0,0 +1,118 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.circuits.circuit;
+
+import java.util.BitSet;
+
+/**
+ * Counts the gates of a {@link BooleanCircuit} by their garbling cost. <p>
+ * XOR and XNOR gates with two inputs are garbled for free by the Free XOR technique, while any other two-input gate 
+ * (AND, OR, NAND etc.) needs a garbled table that is sent to the other party. Gates with one input (NOT and identity gates)
+ * need a smaller garbled table.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+public class CircuitStatistics {
+
+	private int numberOfGates;
+	private int numberOfXORGates;
+	private int numberOfANDGates;
+	private int numberOfOneInputGates;
+	private int numberOfOtherGates;
+	
+	/**
+	 * Counts the gates of the given circuit.
+	 * @param circuit the circuit to count.
+	 */
+	public CircuitStatistics(BooleanCircuit circuit) {
+		Gate[] gates = circuit.getGates();
+		numberOfGates = gates.length;
+		for (Gate gate : gates) {
+			int numberOfInputs = gate.getInputWireIndices().length;
+			BitSet truthTable = gate.getTruthTable();
+			if (numberOfInputs == 2) {
+				if (isXOR(truthTable)) {
+					numberOfXORGates++;
+				} else {
+					numberOfANDGates++;
+				}
+			} else if (numberOfInputs == 1) {
+				numberOfOneInputGates++;
+			} else {
+				numberOfOtherGates++;
+			}
+		}
+	}
+	
+	/**
+	 * Returns true if the given truth table of a two-input gate is XOR (0110) or XNOR (1001).
+	 */
+	static boolean isXOR(BitSet truthTable) {
+		return truthTable.length() <= 4 && truthTable.get(0) == truthTable.get(3) && truthTable.get(1) == truthTable.get(2) 
+				&& truthTable.get(0) != truthTable.get(1);
+	}
+	
+	/**
+	 * Returns the number of gates in the circuit.
+	 */
+	public int getNumberOfGates() {
+		return numberOfGates;
+	}
+	
+	/**
+	 * Returns the number of two-input XOR and XNOR gates, which are free in the Free XOR garbling.
+	 */
+	public int getNumberOfXORGates() {
+		return numberOfXORGates;
+	}
+	
+	/**
+	 * Returns the number of two-input gates that are not XOR or XNOR, for example AND and OR gates.
+	 */
+	public int getNumberOfANDGates() {
+		return numberOfANDGates;
+	}
+	
+	/**
+	 * Returns the number of gates with a single input, for example NOT gates.
+	 */
+	public int getNumberOfOneInputGates() {
+		return numberOfOneInputGates;
+	}
+	
+	/**
+	 * Returns the number of gates with no inputs or with more than two inputs.
+	 */
+	public int getNumberOfOtherGates() {
+		return numberOfOtherGates;
+	}
+	
+	@Override
+	public String toString() {
+		return "gates: " + numberOfGates + ", XOR: " + numberOfXORGates + ", AND: " + numberOfANDGates + ", one input: " 
+				+ numberOfOneInputGates + (numberOfOtherGates == 0 ? "" : ", other: " + numberOfOtherGates);
+	}
+}
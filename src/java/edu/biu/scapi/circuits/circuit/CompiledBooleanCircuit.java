@@ -0,0 +1,265 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.circuits.circuit;
+
+import java.util.BitSet;
+
+/**
+ * A compiled form of a {@link BooleanCircuit} used for fast plaintext evaluation. <p>
+ * The {@code Gate}s are lowered once into flat arrays: the indices of the input and output {@code Wire}s of each gate and a 
+ * 4-bit truth table per gate. The evaluation is done over a byte array that holds the value of each wire, indexed by the 
+ * wire index, so evaluating the circuit does not allocate any object per gate and does not box any wire index. <p>
+ * 
+ * A gate with a single input is stored as a two-input gate whose inputs are the same wire. 
+ * Only gates with one or two inputs can be compiled, which covers all the circuits in the SCAPI file format. 
+ * Use {@link #isCompilable(Gate[])} to check a given circuit.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+public class CompiledBooleanCircuit {
+
+	/**
+	 * The index of the first input wire of each gate. The value of this wire is the high bit of the truth table index.
+	 */
+	private int[] leftInputs;
+	
+	/**
+	 * The index of the second input wire of each gate. For a gate with a single input this is the same as the first input.
+	 */
+	private int[] rightInputs;
+	
+	/**
+	 * The 4-bit truth table of each gate. Bit i is the output of the gate when the truth table index is i.
+	 */
+	private byte[] truthTables;
+	
+	/**
+	 * The output wires of gate g are outputs[outputOffsets[g]] ... outputs[outputOffsets[g+1]-1].
+	 */
+	private int[] outputOffsets;
+	private int[] outputs;
+	
+	/**
+	 * The indices of the output {@code Wire}s of the circuit.
+	 */
+	private int[] outputWireIndices;
+	
+	/**
+	 * The number of entries of the wire vector, which is the biggest wire index plus one.
+	 */
+	private int numberOfWires;
+	
+	/**
+	 * Compiles the given circuit.
+	 * @param circuit the circuit to compile.
+	 * @throws IllegalArgumentException in case the circuit contains a gate with more than two inputs or without inputs.
+	 */
+	public CompiledBooleanCircuit(BooleanCircuit circuit) {
+		this(circuit.getGates(), circuit.getOutputWireIndices());
+	}
+	
+	/**
+	 * Compiles the given gates.
+	 * @param gates The {@link Gate}s of the circuit, sorted topologically.
+	 * @param outputWireIndices The indices of the output {@code Wire}s of the circuit.
+	 * @throws IllegalArgumentException in case one of the gates has more than two inputs or no inputs.
+	 */
+	public CompiledBooleanCircuit(Gate[] gates, int[] outputWireIndices) {
+		int numberOfGates = gates.length;
+		leftInputs = new int[numberOfGates];
+		rightInputs = new int[numberOfGates];
+		truthTables = new byte[numberOfGates];
+		outputOffsets = new int[numberOfGates + 1];
+		this.outputWireIndices = outputWireIndices;
+		
+		int numberOfOutputs = 0;
+		for (Gate gate : gates) {
+			numberOfOutputs += gate.getOutputWireIndices().length;
+		}
+		outputs = new int[numberOfOutputs];
+		
+		int maxWire = -1;
+		int position = 0;
+		for (int g = 0; g < numberOfGates; g++) {
+			int[] inputWires = gates[g].getInputWireIndices();
+			BitSet truthTable = gates[g].getTruthTable();
+			
+			if (inputWires.length == 2) {
+				leftInputs[g] = inputWires[0];
+				rightInputs[g] = inputWires[1];
+				truthTables[g] = (byte) ((truthTable.get(0) ? 1 : 0) | (truthTable.get(1) ? 2 : 0) | (truthTable.get(2) ? 4 : 0) | (truthTable.get(3) ? 8 : 0));
+			} else if (inputWires.length == 1) {
+				// Both inputs are the same wire, so the truth table index is either 0 or 3.
+				leftInputs[g] = inputWires[0];
+				rightInputs[g] = inputWires[0];
+				truthTables[g] = (byte) ((truthTable.get(0) ? 1 : 0) | (truthTable.get(1) ? 8 : 0));
+			} else {
+				throw new IllegalArgumentException("only gates with one or two inputs can be compiled");
+			}
+			maxWire = Math.max(maxWire, Math.max(leftInputs[g], rightInputs[g]));
+			
+			outputOffsets[g] = position;
+			for (int w : gates[g].getOutputWireIndices()) {
+				outputs[position++] = w;
+				maxWire = Math.max(maxWire, w);
+			}
+		}
+		outputOffsets[numberOfGates] = position;
+		
+		for (int w : outputWireIndices) {
+			maxWire = Math.max(maxWire, w);
+		}
+		numberOfWires = maxWire + 1;
+	}
+	
+	/**
+	 * Checks whether the given gates can be compiled, i.e. whether all of them have one or two inputs.
+	 * @param gates The {@link Gate}s to check.
+	 * @return {@code true} if the gates can be compiled, {@code false} otherwise.
+	 */
+	public static boolean isCompilable(Gate[] gates) {
+		for (Gate gate : gates) {
+			int numberOfInputs = gate.getInputWireIndices().length;
+			if (numberOfInputs < 1 || numberOfInputs > 2) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Evaluates the circuit over the given wire vector. <p>
+	 * Before calling this function, the entries of the input wires should hold the input values (0 or 1). 
+	 * When the function returns, the entry of every wire in the circuit holds its computed value. 
+	 * The same vector can be reused for many evaluations.
+	 * 
+	 * @param wires a wire vector of at least {@link #getNumberOfWires()} entries, indexed by the wire index.
+	 */
+	public void evaluate(byte[] wires) {
+		int[] left = leftInputs;
+		int[] right = rightInputs;
+		byte[] tables = truthTables;
+		int[] offsets = outputOffsets;
+		int[] out = outputs;
+		
+		int numberOfGates = tables.length;
+		for (int g = 0; g < numberOfGates; g++) {
+			// The first input is the high bit of the truth table index, as in Gate.
+			byte value = (byte) ((tables[g] >> ((wires[left[g]] << 1) | wires[right[g]])) & 1);
+			for (int i = offsets[g]; i < offsets[g + 1]; i++) {
+				wires[out[i]] = value;
+			}
+		}
+	}
+	
+	/**
+	 * Evaluates the circuit over the given wire vector, where the independent gates are evaluated in parallel by the given scheduler. <p>
+	 * Since a plaintext gate is very cheap, this is faster than {@link #evaluate(byte[])} only for wide circuits and a scheduler 
+	 * with a big minimal task size, for example thousands of gates.
+	 * 
+	 * @param wires a wire vector of at least {@link #getNumberOfWires()} entries whose input wires are set.
+	 * @param scheduler a scheduler of the circuit that this circuit was compiled from.
+	 */
+	public void evaluate(final byte[] wires, LevelScheduler scheduler) {
+		scheduler.run(new LevelScheduler.GateTask() {
+			@Override
+			public void compute(int gate) {
+				evaluateGate(wires, gate);
+			}
+		});
+	}
+	
+	private void evaluateGate(byte[] wires, int g) {
+		byte value = (byte) ((truthTables[g] >> ((wires[leftInputs[g]] << 1) | wires[rightInputs[g]])) & 1);
+		for (int i = outputOffsets[g]; i < outputOffsets[g + 1]; i++) {
+			wires[outputs[i]] = value;
+		}
+	}
+	
+	/**
+	 * Evaluates the circuit over the given wire vector and copies the values of the output wires of the circuit to the given array.
+	 * @param wires a wire vector of at least {@link #getNumberOfWires()} entries whose input wires are set.
+	 * @param outputValues gets the value of each output wire, in the order of {@link #getOutputWireIndices()}.
+	 */
+	public void evaluate(byte[] wires, byte[] outputValues) {
+		evaluate(wires);
+		for (int i = 0; i < outputWireIndices.length; i++) {
+			outputValues[i] = wires[outputWireIndices[i]];
+		}
+	}
+	
+	/**
+	 * Creates a new wire vector that can hold the values of all the wires of this circuit.
+	 */
+	public byte[] createWireVector() {
+		return new byte[numberOfWires];
+	}
+	
+	/**
+	 * Returns the number of entries of the wire vector, which is the biggest wire index in the circuit plus one.
+	 */
+	public int getNumberOfWires() {
+		return numberOfWires;
+	}
+	
+	/**
+	 * Returns the number of compiled gates.
+	 */
+	public int getNumberOfGates() {
+		return truthTables.length;
+	}
+	
+	/*
+	 * The following functions give the other evaluators of this package access to the compiled arrays, without copying them.
+	 */
+	
+	int[] getLeftInputs() {
+		return leftInputs;
+	}
+	
+	int[] getRightInputs() {
+		return rightInputs;
+	}
+	
+	byte[] getTruthTables() {
+		return truthTables;
+	}
+	
+	int[] getOutputOffsets() {
+		return outputOffsets;
+	}
+	
+	int[] getOutputs() {
+		return outputs;
+	}
+	
+	/**
+	 * @return an array of the output {@code Wire} indices of this circuit.
+	 */
+	public int[] getOutputWireIndices() {
+		return outputWireIndices;
+	}
+}
@@ -0,0 +1,225 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.circuits.circuit;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Computes the gates of a circuit in parallel on a {@link ForkJoinPool}, according to the {@link CircuitLevels} of the circuit. <p>
+ * In case the circuit consists of many small components, such as many independent comparisons, the components are divided 
+ * between the threads and each thread computes its gates in order. Otherwise, the levels are computed one after the other 
+ * and the gates of each level are divided between the threads. A level that has less than twice the minimal task size gates 
+ * is computed by the calling thread, since its gates are not worth the cost of the synchronization. <p>
+ * 
+ * The computation of each gate is given as a {@link GateTask}. The tasks of different gates may run concurrently, so each task 
+ * should only write the outputs of its gate. The values that the tasks of one level write are visible to the tasks of the 
+ * following levels.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+public class LevelScheduler {
+
+	/**
+	 * The computation of a single gate.
+	 */
+	public interface GateTask {
+		
+		/**
+		 * Computes the given gate.
+		 * @param gate the index of the gate in the circuit.
+		 */
+		public void compute(int gate);
+	}
+	
+	/**
+	 * The default minimal number of gates that a thread computes at once.
+	 */
+	public static final int DEFAULT_MINIMUM_TASK_SIZE = 64;
+	
+	private CircuitLevels levels;
+	private ForkJoinPool pool;
+	private int minimumTaskSize;
+	private boolean useComponents;	//Indicates whether the components are computed in parallel instead of the levels.
+	
+	/**
+	 * Creates a scheduler for the given circuit that uses the default minimal task size.
+	 * @param circuit the circuit whose gates are computed.
+	 * @param pool the pool that computes the gates.
+	 */
+	public LevelScheduler(BooleanCircuit circuit, ForkJoinPool pool) {
+		this(new CircuitLevels(circuit), pool, DEFAULT_MINIMUM_TASK_SIZE);
+	}
+	
+	/**
+	 * Creates a scheduler for the circuit of the given levels.
+	 * @param levels the levels of the circuit whose gates are computed.
+	 * @param pool the pool that computes the gates.
+	 * @param minimumTaskSize the minimal number of gates that a thread computes at once. Cheap gates, such as plaintext gates, 
+	 * need a bigger size than expensive gates, such as garbled gates.
+	 */
+	public LevelScheduler(CircuitLevels levels, ForkJoinPool pool, int minimumTaskSize) {
+		if (minimumTaskSize < 1) {
+			throw new IllegalArgumentException("the minimal task size should be positive");
+		}
+		this.levels = levels;
+		this.pool = pool;
+		this.minimumTaskSize = minimumTaskSize;
+		
+		//The components are balanced enough when no component is bigger than the share of each thread.
+		useComponents = levels.getNumberOfComponents() > 1 
+				&& (long) levels.getMaxComponentSize() * pool.getParallelism() <= levels.getNumberOfGates();
+	}
+	
+	/**
+	 * Returns the levels of the circuit.
+	 */
+	public CircuitLevels getLevels() {
+		return levels;
+	}
+	
+	/**
+	 * Returns the pool that computes the gates.
+	 */
+	public ForkJoinPool getPool() {
+		return pool;
+	}
+	
+	/**
+	 * Computes all the gates of the circuit, such that each gate is computed after the gates that compute its inputs.
+	 * @param task the computation of each gate.
+	 */
+	public void run(GateTask task) {
+		if (useComponents) {
+			pool.invoke(new ComponentsAction(task, 0, levels.getNumberOfComponents()));
+			return;
+		}
+		int[] offsets = levels.getLevelOffsets();
+		int[] gates = levels.getLevelGates();
+		for (int level = 0; level < levels.getNumberOfLevels(); level++) {
+			int from = offsets[level];
+			int to = offsets[level + 1];
+			if (to - from < 2 * minimumTaskSize) {
+				for (int i = from; i < to; i++) {
+					task.compute(gates[i]);
+				}
+			} else {
+				pool.invoke(new GatesAction(task, gates, from, to, getSplitSize(to - from)));
+			}
+		}
+	}
+	
+	/**
+	 * Computes all the gates of the circuit in parallel, without considering their dependencies. <p>
+	 * This can be used when the gates do not depend on each other's outputs, for example when the garbled tables are created 
+	 * after the keys of all the wires were chosen.
+	 * @param task the computation of each gate.
+	 */
+	public void runIndependent(GateTask task) {
+		int numberOfGates = levels.getNumberOfGates();
+		if (numberOfGates < 2 * minimumTaskSize) {
+			for (int g = 0; g < numberOfGates; g++) {
+				task.compute(g);
+			}
+		} else {
+			pool.invoke(new GatesAction(task, null, 0, numberOfGates, getSplitSize(numberOfGates)));
+		}
+	}
+	
+	/**
+	 * Returns the number of gates under which a range of gates is not split anymore. 
+	 * The range is split to a few tasks per thread, so that a thread that finishes early can steal work from the others.
+	 */
+	private int getSplitSize(int numberOfGates) {
+		return Math.max(minimumTaskSize, numberOfGates / (4 * pool.getParallelism()));
+	}
+	
+	/**
+	 * Computes the gates in a range of a gates array, or the gates in a range of indices if the array is null.
+	 */
+	private static class GatesAction extends RecursiveAction {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private GateTask task;
+		private int[] gates;
+		private int from;
+		private int to;
+		private int splitSize;
+		
+		GatesAction(GateTask task, int[] gates, int from, int to, int splitSize) {
+			this.task = task;
+			this.gates = gates;
+			this.from = from;
+			this.to = to;
+			this.splitSize = splitSize;
+		}
+		
+		@Override
+		protected void compute() {
+			if (to - from <= splitSize) {
+				for (int i = from; i < to; i++) {
+					task.compute(gates == null ? i : gates[i]);
+				}
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new GatesAction(task, gates, from, middle, splitSize), new GatesAction(task, gates, middle, to, splitSize));
+		}
+	}
+	
+	/**
+	 * Computes the gates of a range of components. Each component is computed in order by a single thread.
+	 */
+	private class ComponentsAction extends RecursiveAction {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private GateTask task;
+		private int from;
+		private int to;
+		
+		ComponentsAction(GateTask task, int from, int to) {
+			this.task = task;
+			this.from = from;
+			this.to = to;
+		}
+		
+		@Override
+		protected void compute() {
+			int[] offsets = levels.getComponentOffsets();
+			int[] gates = levels.getComponentGates();
+			if (to - from == 1 || offsets[to] - offsets[from] <= getSplitSize(levels.getNumberOfGates())) {
+				for (int i = offsets[from]; i < offsets[to]; i++) {
+					task.compute(gates[i]);
+				}
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new ComponentsAction(task, from, middle), new ComponentsAction(task, middle, to));
+		}
+	}
+}
@@ -0,0 +1,156 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.circuits.encryption;
+
+import java.security.InvalidKeyException;
+import java.util.ArrayList;
+
+import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.SecretKey;
+
+import edu.biu.scapi.exceptions.CiphertextTooLongException;
+import edu.biu.scapi.exceptions.KeyNotSetException;
+import edu.biu.scapi.exceptions.PlaintextTooLongException;
+import edu.biu.scapi.exceptions.TweakNotSetException;
+
+/**
+ * A {@link MultiKeyEncryptionScheme} that can be used by many threads at once. <p>
+ * The encryption schemes keep the key and the tweak that were set until the next encryption, so an instance cannot be shared 
+ * between threads. This class creates a separate instance of the underlying scheme for each thread that uses it, and passes 
+ * each call to the instance of the calling thread. 
+ * This allows garbling and computing the gates of a garbled circuit in parallel, see 
+ * {@link edu.biu.scapi.circuits.garbledCircuit.GarbledBooleanCircuitImp#setScheduler}.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+public class ThreadLocalMultiKeyEncryption implements MultiKeyEncryptionScheme {
+
+	/**
+	 * Creates the instance of the underlying scheme of each thread.
+	 */
+	public interface Factory {
+		
+		public MultiKeyEncryptionScheme create();
+	}
+	
+	private Factory factory;
+	private boolean isFreeXor;
+	private ArrayList<MultiKeyEncryptionScheme> instances = new ArrayList<MultiKeyEncryptionScheme>();	//All the created instances.
+	
+	private ThreadLocal<MultiKeyEncryptionScheme> scheme = new ThreadLocal<MultiKeyEncryptionScheme>() {
+		@Override
+		protected MultiKeyEncryptionScheme initialValue() {
+			MultiKeyEncryptionScheme instance = factory.create();
+			synchronized (instances) {
+				setFreeXor(instance, isFreeXor);
+				instances.add(instance);
+			}
+			return instance;
+		}
+	};
+	
+	/**
+	 * Creates a scheme that uses an {@link AESFixedKeyMultiKeyEncryption} in each thread.
+	 */
+	public ThreadLocalMultiKeyEncryption() {
+		this(new Factory() {
+			@Override
+			public MultiKeyEncryptionScheme create() {
+				return new AESFixedKeyMultiKeyEncryption();
+			}
+		});
+	}
+	
+	/**
+	 * Creates a scheme that uses the schemes that the given factory creates.
+	 * @param factory creates a new instance of the underlying scheme. Called once by each thread that uses this scheme.
+	 */
+	public ThreadLocalMultiKeyEncryption(Factory factory) {
+		this.factory = factory;
+	}
+	
+	/**
+	 * Sets the free XOR mode of the underlying schemes that are {@link AESFixedKeyMultiKeyEncryption}, in all the threads.
+	 * @see AESFixedKeyMultiKeyEncryption#setFreeXor(boolean)
+	 */
+	public void setFreeXor(boolean isFreeXor) {
+		synchronized (instances) {
+			this.isFreeXor = isFreeXor;
+			for (MultiKeyEncryptionScheme instance : instances) {
+				setFreeXor(instance, isFreeXor);
+			}
+		}
+	}
+	
+	private static void setFreeXor(MultiKeyEncryptionScheme instance, boolean isFreeXor) {
+		if (instance instanceof AESFixedKeyMultiKeyEncryption) {
+			((AESFixedKeyMultiKeyEncryption) instance).setFreeXor(isFreeXor);
+		}
+	}
+	
+	@Override
+	public SecretKey generateKey() {
+		return scheme.get().generateKey();
+	}
+
+	@Override
+	public MultiSecretKey generateMultiKey(SecretKey... keys) {
+		return scheme.get().generateMultiKey(keys);
+	}
+
+	@Override
+	public void setKey(MultiSecretKey key) {
+		scheme.get().setKey(key);
+	}
+
+	@Override
+	public void setTweak(byte[] tweak) {
+		scheme.get().setTweak(tweak);
+	}
+
+	@Override
+	public byte[] encrypt(byte[] plaintext) throws KeyNotSetException, TweakNotSetException, IllegalBlockSizeException, PlaintextTooLongException, InvalidKeyException {
+		return scheme.get().encrypt(plaintext);
+	}
+
+	@Override
+	public byte[] decrypt(byte[] ciphertext) throws CiphertextTooLongException, KeyNotSetException, TweakNotSetException, InvalidKeyException, IllegalBlockSizeException {
+		return scheme.get().decrypt(ciphertext);
+	}
+
+	/**
+	 * Returns true if the key was set by the calling thread.
+	 */
+	@Override
+	public boolean isKeySet() {
+		return scheme.get().isKeySet();
+	}
+
+	@Override
+	public int getCipherSize() {
+		return scheme.get().getCipherSize();
+	}
+}
@@ -28,6 +28,7 @@ import java.security.InvalidKeyException;
 
 import edu.biu.scapi.circuits.circuit.BooleanCircuit;
 import edu.biu.scapi.circuits.circuit.Gate;
+import edu.biu.scapi.circuits.circuit.LevelScheduler;
 import edu.biu.scapi.primitives.prg.PseudorandomGenerator;
 
 /**
@@ -74,4 +75,10 @@ interface CircuitTypeUtil {
 	public CircuitCreationValues garble(BooleanCircuit ungarbledCircuit, GarbledTablesHolder garbledTablesHolder, 
 			GarbledGate[] gates, PseudorandomGenerator prg, byte[] seed) throws InvalidKeyException;
 	
+	/**
+	 * Sets a scheduler that creates the garbled tables of the gates in parallel, once the keys of all the wires were chosen.
+	 * @param scheduler a scheduler of the ungarbled circuit, or null to create the garbled tables one after the other.
+	 */
+	public void setScheduler(LevelScheduler scheduler);
+	
 }
@@ -29,6 +29,7 @@ import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.crypto.IllegalBlockSizeException;
 import javax.crypto.SecretKey;
@@ -36,8 +37,10 @@ import javax.crypto.spec.SecretKeySpec;
 
 import edu.biu.scapi.circuits.circuit.BooleanCircuit;
 import edu.biu.scapi.circuits.circuit.Gate;
+import edu.biu.scapi.circuits.circuit.LevelScheduler;
 import edu.biu.scapi.circuits.encryption.AESFixedKeyMultiKeyEncryption;
 import edu.biu.scapi.circuits.encryption.MultiKeyEncryptionScheme;
+import edu.biu.scapi.circuits.encryption.ThreadLocalMultiKeyEncryption;
 import edu.biu.scapi.exceptions.NoSuchPartyException;
 import edu.biu.scapi.exceptions.PlaintextTooLongException;
 import edu.biu.scapi.primitives.prg.PseudorandomGenerator;
@@ -62,6 +65,8 @@ class FreeXORGarbledBooleanCircuitUtil implements CircuitTypeUtil {
 	
 	protected MultiKeyEncryptionScheme mes;
 	
+	private LevelScheduler scheduler;	//Creates the garbled tables in parallel, or null.
+	
 	// We save the XOR and XORNOT truth tables because they will be used many times and we want to avoid repeated creations.
 	private BitSet XORNOTTruthTable;	
 	private BitSet XORTruthTable;
@@ -74,6 +79,8 @@ class FreeXORGarbledBooleanCircuitUtil implements CircuitTypeUtil {
 		this.mes = mes;
 		if (mes instanceof AESFixedKeyMultiKeyEncryption){
 			((AESFixedKeyMultiKeyEncryption) mes).setFreeXor(true);
+		} else if (mes instanceof ThreadLocalMultiKeyEncryption){
+			((ThreadLocalMultiKeyEncryption) mes).setFreeXor(true);
 		}
 	}
 	
@@ -257,11 +264,26 @@ class FreeXORGarbledBooleanCircuitUtil implements CircuitTypeUtil {
 	 * @param ungarbledGates The gates that should be garbled.
 	 * @param allWireValues A map that contains both keys for each wire.
 	 */
-	protected void createGarbledTables(GarbledGate[] gates, BasicGarbledTablesHolder garbledTablesHolder, Gate[] ungarbledGates, Map<Integer, SecretKey[]> allWireValues) throws InvalidKeyException, IllegalBlockSizeException, PlaintextTooLongException {
+	protected void createGarbledTables(final GarbledGate[] gates, BasicGarbledTablesHolder garbledTablesHolder, final Gate[] ungarbledGates, final Map<Integer, SecretKey[]> allWireValues) throws InvalidKeyException, IllegalBlockSizeException, PlaintextTooLongException {
 			
 		// Get the XOR and XORNOT truth table to be used to test against for equality.
-		BitSet XORTruthTable = getXORTruthTable();
-		BitSet XORNOTTruthTable = getXORNOTTruthTable();
+		final BitSet XORTruthTable = getXORTruthTable();
+		final BitSet XORNOTTruthTable = getXORNOTTruthTable();
+		
+		//The garbled tables do not depend on each other once all the keys were chosen, so they can be created in parallel.
+		if (scheduler != null) {
+			final AtomicReference<Exception> failure = new AtomicReference<Exception>();
+			scheduler.runIndependent(new LevelScheduler.GateTask() {
+				@Override
+				public void compute(int gate) {
+					if (!ungarbledGates[gate].getTruthTable().equals(XORTruthTable) && !(ungarbledGates[gate].getTruthTable().equals(XORNOTTruthTable))) {
+						createGarbledTable((StandardGarbledGate) gates[gate], ungarbledGates[gate], allWireValues, failure);
+					}
+				}
+			});
+			throwFailure(failure.get());
+			return;
+		}
 				
 		//For each Standard gate, create the suitable StandardGarbledGate object. 
 		//Free XOR gate and Free XOR NOT gates do not have a garbled tables, thus they should not be created.
@@ -273,6 +295,53 @@ class FreeXORGarbledBooleanCircuitUtil implements CircuitTypeUtil {
 		}
 	}
 	
+	/**
+	 * Creates the garbled table of the given gate, called by the tasks of the scheduler that cannot throw checked exceptions.
+	 * The first failure is kept in the given reference, and the tables of the remaining gates are not created.
+	 */
+	private void createGarbledTable(StandardGarbledGate gate, Gate ungarbledGate, Map<Integer, SecretKey[]> allWireValues, AtomicReference<Exception> failure) {
+		if (failure.get() != null) {
+			return;
+		}
+		try {
+			gate.createGarbledTable(ungarbledGate, allWireValues);
+		} catch (InvalidKeyException e) {
+			failure.compareAndSet(null, e);
+		} catch (IllegalBlockSizeException e) {
+			failure.compareAndSet(null, e);
+		} catch (PlaintextTooLongException e) {
+			failure.compareAndSet(null, e);
+		}
+	}
+	
+	/**
+	 * Throws the failure of the tasks that created the garbled tables, if there was one.
+	 */
+	private static void throwFailure(Exception failure) throws InvalidKeyException, IllegalBlockSizeException, PlaintextTooLongException {
+		if (failure instanceof InvalidKeyException) {
+			throw (InvalidKeyException) failure;
+		}
+		if (failure instanceof IllegalBlockSizeException) {
+			throw (IllegalBlockSizeException) failure;
+		}
+		if (failure instanceof PlaintextTooLongException) {
+			throw (PlaintextTooLongException) failure;
+		}
+	}
+	
+	/**
+	 * Sets a scheduler that creates the garbled tables in parallel.
+	 * @throws IllegalStateException in case the encryption scheme of this circuit is not a {@link ThreadLocalMultiKeyEncryption}, 
+	 * since the gates of different threads would share the key of the encryption scheme.
+	 */
+	@Override
+	public void setScheduler(LevelScheduler scheduler) {
+		if (scheduler != null && !(mes instanceof ThreadLocalMultiKeyEncryption)) {
+			throw new IllegalStateException("the garbled tables can be created in parallel only using a ThreadLocalMultiKeyEncryption");
+		}
+		this.scheduler = scheduler;
+	}
+	
 	/**
 	 * Creates the keys of the non-input wires.
 	 * @param ungarbledGates The gates that should be garbled.
@@ -31,6 +31,7 @@ import javax.crypto.SecretKey;
 import javax.crypto.spec.SecretKeySpec;
 
 import edu.biu.scapi.circuits.circuit.Gate;
+import edu.biu.scapi.circuits.circuit.LevelScheduler;
 import edu.biu.scapi.circuits.encryption.MultiKeyEncryptionScheme;
 import edu.biu.scapi.exceptions.FactoriesException;
 import edu.biu.scapi.primitives.kdf.KeyDerivationFunction;
@@ -159,5 +160,14 @@ class FreeXORRowReductionGarbledBooleanCircuitUtil extends FreeXORGarbledBoolean
 		 
 	}
 	
-	
+	/**
+	 * The gates of this circuit share one key derivation function, so they cannot be garbled in parallel.
+	 * @throws IllegalStateException in case a scheduler is given.
+	 */
+	@Override
+	public void setScheduler(LevelScheduler scheduler) {
+		if (scheduler != null) {
+			throw new IllegalStateException("the gates of this circuit type share a key derivation function, so they cannot be garbled in parallel");
+		}
+	}
 }
@@ -29,10 +29,13 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 import javax.crypto.IllegalBlockSizeException;
 import javax.crypto.SecretKey;
 
 import edu.biu.scapi.circuits.circuit.BooleanCircuit;
+import edu.biu.scapi.circuits.circuit.LevelScheduler;
 import edu.biu.scapi.circuits.encryption.AESFixedKeyMultiKeyEncryption;
 import edu.biu.scapi.exceptions.CiphertextTooLongException;
 import edu.biu.scapi.exceptions.NoSuchPartyException;
@@ -52,6 +55,7 @@ public class GarbledBooleanCircuitImp extends GarbledBooleanCircuitAbs implement
 	private CircuitTypeUtil util; 		//Executes all functionalities that specific to the circuit type.
 	private PseudorandomGenerator prg;  //used in case of generating the keys using a seed.
 	private GarbledGate[] gates; 		// The garbled gates of this garbled circuit.
+	private LevelScheduler scheduler;	// Garbles and computes the independent gates in parallel, or null.
 	
   	/**
 	 * Default constructor. Sets the given boolean circuit and creates a Free XOR circuit using a AESFixedKeyMultiKeyEncryption.
@@ -125,6 +129,23 @@ public class GarbledBooleanCircuitImp extends GarbledBooleanCircuitAbs implement
 		gates = util.createGates(bc.getGates(), garbledTablesHolder);
 	}
 	
+	/**
+	 * Sets a scheduler that garbles and computes the independent gates of this circuit in parallel. <p>
+	 * When garbling, the keys of the wires are chosen one after the other and then all the garbled tables are created in parallel. 
+	 * When computing, the gates of each level are computed in parallel. <p>
+	 * The gates of different threads share the encryption scheme of the circuit, so the circuit should be created with a 
+	 * {@link edu.biu.scapi.circuits.encryption.ThreadLocalMultiKeyEncryption}. 
+	 * The circuit types that minimize the AES set key operations share an AES object between the gates, and the row reduction 
+	 * circuit types share a key derivation function, so they cannot use a scheduler.
+	 * @param scheduler a scheduler of the ungarbled circuit, or null to garble and compute the gates one after the other.
+	 * @throws IllegalStateException in case the type or the encryption scheme of this circuit cannot be used in parallel.
+	 */
+	public void setScheduler(LevelScheduler scheduler) {
+		//The utility checks whether the circuit can be used in parallel, so it is set first.
+		util.setScheduler(scheduler);
+		this.scheduler = scheduler;
+	}
+	
 	@Override
   	public CircuitCreationValues garble() {
 		//Call the utility class to generate the keys and create the garbled tables.
@@ -162,6 +183,10 @@ public class GarbledBooleanCircuitImp extends GarbledBooleanCircuitAbs implement
 	  		}
   		}
   		
+  		if (scheduler != null) {
+  			return computeInParallel();
+  		}
+  		
   		/*
   		 * We use the interface GarbledGate and thus this works for all implementing classes. The compute method of the 
   		 * specific garbled gate being used will be called. This allows us to have circuits with different types of gates 
@@ -192,6 +217,35 @@ public class GarbledBooleanCircuitImp extends GarbledBooleanCircuitAbs implement
   		return garbledOutput;
   	}	
   	
+  	/**
+  	 * Computes the gates of each level in parallel using the scheduler. 
+  	 * The gates of the same level write to a concurrent map, which is copied back to the computed wires at the end.
+  	 */
+  	private HashMap<Integer, GarbledWire> computeInParallel() {
+  		final Map<Integer, GarbledWire> wires = new ConcurrentHashMap<Integer, GarbledWire>(computedWires);
+  		scheduler.run(new LevelScheduler.GateTask() {
+  			@Override
+  			public void compute(int gate) {
+  				try {
+  					gates[gate].compute(wires);
+  				} catch (InvalidKeyException e) {
+  					// Should not occur since the keys were generated through the encryption scheme that generates keys that match it.
+  				} catch (IllegalBlockSizeException e) {
+  					// Should not occur since the keys were generated through the encryption scheme that generates keys that match it.
+  				} catch (CiphertextTooLongException e) {
+  					// Should not occur since the keys were generated through the encryption scheme that generates keys that match it.
+  				}
+  			}
+  		});
+  		computedWires.putAll(wires);
+  		
+  		HashMap<Integer, GarbledWire> garbledOutput = new HashMap<Integer, GarbledWire>();
+  		for (int w : outputWireIndices) {
+  			garbledOutput.put(w, computedWires.get(w));
+  		}
+  		return garbledOutput;
+  	}
+  	
   	byte getKeySignalBit(SecretKey key){
   		return (byte) ((key.getEncoded()[key.getEncoded().length - 1] & 1) == 0 ? 0 : 1);
   	}
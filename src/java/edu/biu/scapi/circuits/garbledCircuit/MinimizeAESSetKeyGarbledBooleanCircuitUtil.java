@@ -27,6 +27,7 @@ package edu.biu.scapi.circuits.garbledCircuit;
 import java.security.SecureRandom;
 
 import edu.biu.scapi.circuits.circuit.Gate;
+import edu.biu.scapi.circuits.circuit.LevelScheduler;
 import edu.biu.scapi.circuits.encryption.AES128MultiKeyEncryption;
 import edu.biu.scapi.primitives.prf.AES;
 import edu.biu.scapi.primitives.prf.cryptopp.CryptoPpAES;
@@ -92,4 +93,15 @@ class MinimizeAESSetKeyGarbledBooleanCircuitUtil extends StandardGarbledBooleanC
 		return new MinimizeAESSetKeyGarbledGate(ungarbledGate, mes, aes, garbledTablesHolder);
 		
 	}
+	
+	/**
+	 * The gates of this circuit share one AES object, so they cannot be garbled in parallel.
+	 * @throws IllegalStateException in case a scheduler is given.
+	 */
+	@Override
+	public void setScheduler(LevelScheduler scheduler) {
+		if (scheduler != null) {
+			throw new IllegalStateException("the gates of this circuit type share an AES object, so they cannot be garbled in parallel");
+		}
+	}
 }
@@ -29,6 +29,7 @@ import java.security.SecureRandom;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.crypto.IllegalBlockSizeException;
 import javax.crypto.SecretKey;
@@ -36,8 +37,10 @@ import javax.crypto.spec.SecretKeySpec;
 
 import edu.biu.scapi.circuits.circuit.BooleanCircuit;
 import edu.biu.scapi.circuits.circuit.Gate;
+import edu.biu.scapi.circuits.circuit.LevelScheduler;
 import edu.biu.scapi.circuits.encryption.AESFixedKeyMultiKeyEncryption;
 import edu.biu.scapi.circuits.encryption.MultiKeyEncryptionScheme;
+import edu.biu.scapi.circuits.encryption.ThreadLocalMultiKeyEncryption;
 import edu.biu.scapi.exceptions.NoSuchPartyException;
 import edu.biu.scapi.exceptions.PlaintextTooLongException;
 import edu.biu.scapi.primitives.prg.PseudorandomGenerator;
@@ -55,6 +58,8 @@ class StandardGarbledBooleanCircuitUtil implements CircuitTypeUtil{
 	
 	protected SecureRandom random;
 	
+	private LevelScheduler scheduler;	//Creates the garbled tables in parallel, or null.
+	
 	/**
 	 * Sets the given MultiKeyEncryptionScheme and random.
 	 * @param mes
@@ -176,13 +181,73 @@ class StandardGarbledBooleanCircuitUtil implements CircuitTypeUtil{
 	 * @throws IllegalBlockSizeException
 	 * @throws PlaintextTooLongException
 	 */
-	private void createGarbledTables(GarbledGate[] gates, BasicGarbledTablesHolder garbledTablesHolder, Gate[] ungarbledGates, Map<Integer, SecretKey[]> allWireValues) throws InvalidKeyException, IllegalBlockSizeException, PlaintextTooLongException {
+	private void createGarbledTables(final GarbledGate[] gates, BasicGarbledTablesHolder garbledTablesHolder, final Gate[] ungarbledGates, final Map<Integer, SecretKey[]> allWireValues) throws InvalidKeyException, IllegalBlockSizeException, PlaintextTooLongException {
+		//The garbled tables do not depend on each other once all the keys were chosen, so they can be created in parallel.
+		if (scheduler != null) {
+			final AtomicReference<Exception> failure = new AtomicReference<Exception>();
+			scheduler.runIndependent(new LevelScheduler.GateTask() {
+				@Override
+				public void compute(int gate) {
+					createGarbledTable((StandardGarbledGate) gates[gate], ungarbledGates[gate], allWireValues, failure);
+				}
+			});
+			throwFailure(failure.get());
+			return;
+		}
+		
 		int length = ungarbledGates.length;
 		//After we have all keys, create the garbledTables according to them.
 		for (int gate = 0; gate < length; gate++) {
 			((StandardGarbledGate) gates[gate]).createGarbledTable(ungarbledGates[gate], allWireValues);
 		}
 	}
+	
+	/**
+	 * Creates the garbled table of the given gate, called by the tasks of the scheduler that cannot throw checked exceptions.
+	 * The first failure is kept in the given reference, and the tables of the remaining gates are not created.
+	 */
+	private void createGarbledTable(StandardGarbledGate gate, Gate ungarbledGate, Map<Integer, SecretKey[]> allWireValues, AtomicReference<Exception> failure) {
+		if (failure.get() != null) {
+			return;
+		}
+		try {
+			gate.createGarbledTable(ungarbledGate, allWireValues);
+		} catch (InvalidKeyException e) {
+			failure.compareAndSet(null, e);
+		} catch (IllegalBlockSizeException e) {
+			failure.compareAndSet(null, e);
+		} catch (PlaintextTooLongException e) {
+			failure.compareAndSet(null, e);
+		}
+	}
+	
+	/**
+	 * Throws the failure of the tasks that created the garbled tables, if there was one.
+	 */
+	private static void throwFailure(Exception failure) throws InvalidKeyException, IllegalBlockSizeException, PlaintextTooLongException {
+		if (failure instanceof InvalidKeyException) {
+			throw (InvalidKeyException) failure;
+		}
+		if (failure instanceof IllegalBlockSizeException) {
+			throw (IllegalBlockSizeException) failure;
+		}
+		if (failure instanceof PlaintextTooLongException) {
+			throw (PlaintextTooLongException) failure;
+		}
+	}
+	
+	/**
+	 * Sets a scheduler that creates the garbled tables in parallel.
+	 * @throws IllegalStateException in case the encryption scheme of this circuit is not a {@link ThreadLocalMultiKeyEncryption}, 
+	 * since the gates of different threads would share the key of the encryption scheme.
+	 */
+	@Override
+	public void setScheduler(LevelScheduler scheduler) {
+		if (scheduler != null && !(mes instanceof ThreadLocalMultiKeyEncryption)) {
+			throw new IllegalStateException("the garbled tables can be created in parallel only using a ThreadLocalMultiKeyEncryption");
+		}
+		this.scheduler = scheduler;
+	}
 
 	/**
 	 * Fills the maps containing the keys for the output wires and the translation table.
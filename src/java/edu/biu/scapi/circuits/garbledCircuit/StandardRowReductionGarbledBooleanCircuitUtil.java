@@ -32,6 +32,7 @@ import javax.crypto.SecretKey;
 import javax.crypto.spec.SecretKeySpec;
 
 import edu.biu.scapi.circuits.circuit.Gate;
+import edu.biu.scapi.circuits.circuit.LevelScheduler;
 import edu.biu.scapi.circuits.encryption.MultiKeyEncryptionScheme;
 import edu.biu.scapi.primitives.kdf.KeyDerivationFunction;
 import edu.biu.scapi.primitives.prg.PseudorandomGenerator;
@@ -188,4 +189,15 @@ class StandardRowReductionGarbledBooleanCircuitUtil extends StandardGarbledBoole
 		  	}
 		}
 	}
+	
+	/**
+	 * The gates of this circuit share one key derivation function, so they cannot be garbled in parallel.
+	 * @throws IllegalStateException in case a scheduler is given.
+	 */
+	@Override
+	public void setScheduler(LevelScheduler scheduler) {
+		if (scheduler != null) {
+			throw new IllegalStateException("the gates of this circuit type share a key derivation function, so they cannot be garbled in parallel");
+		}
+	}
 }
@@ -0,0 +1,415 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.comm;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.security.InvalidKeyException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+import javax.crypto.SecretKey;
+
+import org.bouncycastle.crypto.InvalidCipherTextException;
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.bouncycastle.crypto.engines.AESFastEngine;
+import org.bouncycastle.crypto.macs.HMac;
+import org.bouncycastle.crypto.modes.GCMBlockCipher;
+import org.bouncycastle.crypto.params.AEADParameters;
+import org.bouncycastle.crypto.params.KeyParameter;
+
+/** 
+ * This channel ensures both the secrecy and the authenticity of the sent messages, using AES in GCM mode as a record layer.<p>
+ * 
+ * Unlike the {@link EncryptedChannel} and the {@link AuthenticatedChannel}, which wrap every message in ciphertext or tagged objects
+ * and serialize them once more through the underlying channel, this channel seals the raw bytes of every message into one 
+ * record of the form [ciphertext][tag] and sends it using {@link Channel#sendBytes(byte[])}. 
+ * Objects are serialized once into a reusable buffer and the received records are decrypted in place.<p>
+ * 
+ * The records of each direction are not sealed with the given key itself, but with a key derived from it by HKDF-SHA256 
+ * together with a random salt that the sender chooses when the channel is created, and with the direction of the records. 
+ * The salt is sent in the clear at the beginning of the first record of the direction. Since the sequence numbers of every 
+ * channel start from zero, this is what prevents two channels that share a key (for example, the channels of one 
+ * communication setup) from sealing two records with the same key and nonce, which would break GCM completely.<p>
+ * 
+ * The nonce of every record is implicit: it is composed of the direction of the record and a sequence number that is 
+ * incremented with every record. As a result, a record that is replayed, reordered, dropped or reflected back to its sender 
+ * fails the authentication. The type of the record (object, bytes or arrays) is authenticated as additional data, 
+ * so a record cannot be received as a different type than the one it was sent as.<p>
+ * 
+ * Both parties should wrap their channels with the same key, where exactly one of them is the initiator. The key should be 
+ * a fresh key of the current session (for example, the output of a key exchange) and must never be reused in another session: 
+ * the salt is chosen by the sender alone, so a whole recorded session could be replayed to a channel that uses the same key.
+ * Once a record fails the authentication, the channel cannot be used anymore since the sequence numbers are no longer synchronized.<p>
+ * 
+ * Every record is sent as one array of exactly its size, and every received message is returned in an array of exactly its 
+ * size, since the underlying channel and the caller may keep these arrays. Apart from these, objects are serialized into a 
+ * reusable buffer and records are decrypted in place, without intermediate copies.
+ *    
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ */
+public class AeadChannel extends ChannelDecorator {
+
+	private static final int TAG_SIZE = 16;			//The size of the GCM tag, in bytes.
+	private static final int NONCE_SIZE = 12;
+	private static final int SALT_SIZE = 16;		//The size of the random salt sent in the first record of each direction.
+	private static final byte[] KDF_INFO = {'S', 'C', 'A', 'P', 'I', ' ', 'A', 'e', 'a', 'd', 'C', 'h', 'a', 'n', 'n', 'e', 'l', 0};
+	
+	//The types of the records, authenticated as additional data.
+	private static final byte OBJECT = 0;
+	private static final byte BYTES = 1;
+	private static final byte ARRAYS = 2;
+	//The additional data of every record type. GCM does not modify these arrays, so they are shared.
+	private static final byte[][] ADDITIONAL_DATA = {{OBJECT}, {BYTES}, {ARRAYS}};
+	
+	private GCMBlockCipher sealer = new GCMBlockCipher(new AESFastEngine());
+	private GCMBlockCipher opener = new GCMBlockCipher(new AESFastEngine());
+	private byte[] masterKey;						//The given key. The keys of the directions are derived from it.
+	private byte[] sealSalt = new byte[SALT_SIZE];	//The salt of the sent records, sent at the beginning of the first record.
+	private boolean sealStarted;					//Indicates whether the first record was sealed.
+	private boolean openStarted;					//Indicates whether the first record was opened.
+	private KeyParameter sealKey;					//The key of the sent records, derived when the first record is sealed.
+	private KeyParameter openKey;					//The key of the received records, derived when the first record is opened.
+	private int sealStart;							//The offset of the ciphertext in the record being sealed.
+	private byte[] sealNonce = new byte[NONCE_SIZE];
+	private byte[] openNonce = new byte[NONCE_SIZE];
+	private long sealSequence;
+	private long openSequence;
+	private boolean failed;							//Set after a record failed the authentication.
+	
+	private ExposedByteArrayOutputStream serialized = new ExposedByteArrayOutputStream();	//Reusable buffer for serialized objects.
+	private byte[] arraysHeader = new byte[64];												//Reusable buffer for the lengths of sent arrays.
+	
+	/**
+	 * A ByteArrayOutputStream that exposes its internal buffer in order to avoid the copy of toByteArray().
+	 */
+	private static class ExposedByteArrayOutputStream extends ByteArrayOutputStream {
+		
+		ExposedByteArrayOutputStream(){
+			super(1024);
+		}
+		
+		byte[] getBuffer(){
+			return buf;
+		}
+	}
+	
+	/**
+	 * Creates a new AeadChannel that wraps the given connected channel.
+	 * @param channel an already connected channel.
+	 * @param key an AES key of 128, 192 or 256 bits, shared by both parties.
+	 * @param initiator true for exactly one of the parties. Used to separate the nonces of the two directions.
+	 * @throws InvalidKeyException if the given key is not a valid AES key.
+	 */
+	public AeadChannel(PlainChannel channel, SecretKey key, boolean initiator) throws InvalidKeyException {
+		this(channel, key, initiator, new SecureRandom());
+	}
+	
+	/**
+	 * Creates a new AeadChannel that wraps the given connected channel and chooses the salt of the sent records using the 
+	 * given random object.
+	 * @param channel an already connected channel.
+	 * @param key an AES key of 128, 192 or 256 bits, shared by both parties.
+	 * @param initiator true for exactly one of the parties. Used to separate the nonces of the two directions.
+	 * @param random used to choose the salt of the sent records.
+	 * @throws InvalidKeyException if the given key is not a valid AES key.
+	 */
+	public AeadChannel(PlainChannel channel, SecretKey key, boolean initiator, SecureRandom random) throws InvalidKeyException {
+		super(channel);
+		masterKey = key.getEncoded();
+		if (masterKey.length != 16 && masterKey.length != 24 && masterKey.length != 32){
+			throw new InvalidKeyException("AES key size should be 128, 192 or 256 bits");
+		}
+		random.nextBytes(sealSalt);
+		
+		//The first byte of the nonce is the direction of the records.
+		sealNonce[0] = (byte) (initiator ? 1 : 2);
+		openNonce[0] = (byte) (initiator ? 2 : 1);
+	}
+	
+	/**
+	 * Derives the key of one direction from the given key, the salt chosen by the sender and the direction.<p>
+	 * The derivation is HKDF (RFC 5869) with HMAC-SHA256: the extract step computes a pseudorandom key from the salt and the 
+	 * given key, and the expand step computes the derived key from the pseudorandom key and the info, which holds the direction.
+	 */
+	private KeyParameter deriveKey(byte[] salt, byte direction){
+		byte[] info = KDF_INFO.clone();
+		info[info.length - 1] = direction;
+		HMac hmac = new HMac(new SHA256Digest());
+		int hashSize = hmac.getMacSize();
+		
+		//Extract.
+		byte[] prk = new byte[hashSize];
+		hmac.init(new KeyParameter(salt));
+		hmac.update(masterKey, 0, masterKey.length);
+		hmac.doFinal(prk, 0);
+		
+		//Expand. T(i) = HMAC(prk, T(i-1) | info | i), where T(0) is empty.
+		hmac.init(new KeyParameter(prk));
+		byte[] derived = new byte[masterKey.length];
+		byte[] block = new byte[hashSize];
+		int offset = 0;
+		for (int i = 1; offset < derived.length; i++){
+			if (i > 1){
+				hmac.update(block, 0, hashSize);
+			}
+			hmac.update(info, 0, info.length);
+			hmac.update((byte) i);
+			hmac.doFinal(block, 0);
+			int length = Math.min(hashSize, derived.length - offset);
+			System.arraycopy(block, 0, derived, offset, length);
+			offset += length;
+		}
+		Arrays.fill(prk, (byte) 0);
+		Arrays.fill(block, (byte) 0);
+		return new KeyParameter(derived);
+	}
+	
+	/**
+	 * Serializes the given object into a reusable buffer, seals it and sends the record to the other party.
+	 * @param msg the object to send.
+	 */
+	@Override
+	public void send(Serializable msg) throws IOException {
+		serialized.reset();
+		ObjectOutputStream oos = new ObjectOutputStream(serialized);
+		oos.writeObject(msg);
+		oos.close();
+		
+		byte[] record = initSeal(OBJECT, serialized.size());
+		int offset = sealStart + sealer.processBytes(serialized.getBuffer(), 0, serialized.size(), record, sealStart);
+		finishSeal(record, offset);
+	}
+	
+	/**
+	 * Receives a record sent by the other party using the {@link #send(Serializable)} function, opens it and deserializes the object.
+	 * @return the object sent by the other party.
+	 * @throws IOException in case the record failed the authentication or any of the usual Input/Output related exceptions.
+	 */
+	@Override
+	public Serializable receive() throws ClassNotFoundException, IOException {
+		byte[] record = channel.receiveBytes();
+		int size = openInPlace(OBJECT, record);
+		ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(record, 0, size));
+		return (Serializable) ois.readObject();
+	}
+
+	/**
+	 * Seals the given bytes and sends the record to the other party.
+	 * @param data the bytes to send.
+	 */
+	@Override
+	public void sendBytes(byte[] data) throws IOException {
+		byte[] record = initSeal(BYTES, data.length);
+		int offset = sealStart + sealer.processBytes(data, 0, data.length, record, sealStart);
+		finishSeal(record, offset);
+	}
+
+	/**
+	 * Receives a record sent by the other party using the {@link #sendBytes(byte[])} function and opens it.
+	 * @return the bytes sent by the other party.
+	 * @throws IOException in case the record failed the authentication or any of the usual Input/Output related exceptions.
+	 */
+	@Override
+	public byte[] receiveBytes() throws IOException {
+		byte[] record = channel.receiveBytes();
+		
+		//The opened bytes are written directly to the returned array.
+		int overhead = TAG_SIZE + (openStarted ? 0 : SALT_SIZE);
+		byte[] data = new byte[Math.max(record.length - overhead, 0)];
+		open(BYTES, record, data);
+		return data;
+	}
+
+	/**
+	 * Seals the given arrays as one record, preceded by their number and lengths, and sends it to the other party.
+	 * @param data the arrays to send.
+	 */
+	@Override
+	public void sendByteArrays(byte[][] data) throws IOException {
+		int headerSize = 4 * (data.length + 1);
+		if (arraysHeader.length < headerSize){
+			arraysHeader = new byte[Math.max(headerSize, 2 * arraysHeader.length)];
+		}
+		writeInt(arraysHeader, 0, data.length);
+		long size = headerSize;
+		for (int i = 0; i < data.length; i++){
+			writeInt(arraysHeader, 4 * (i + 1), data[i].length);
+			size += data[i].length;
+		}
+		if (size > Integer.MAX_VALUE - TAG_SIZE - SALT_SIZE){
+			throw new IOException("the arrays are too long to be sent in one record");
+		}
+		
+		byte[] record = initSeal(ARRAYS, (int) size);
+		int offset = sealStart + sealer.processBytes(arraysHeader, 0, headerSize, record, sealStart);
+		for (int i = 0; i < data.length; i++){
+			offset += sealer.processBytes(data[i], 0, data[i].length, record, offset);
+		}
+		finishSeal(record, offset);
+	}
+
+	/**
+	 * Receives a record sent by the other party using the {@link #sendByteArrays(byte[][])} function and opens it.
+	 * @return the arrays sent by the other party.
+	 * @throws IOException in case the record failed the authentication or any of the usual Input/Output related exceptions.
+	 */
+	@Override
+	public byte[][] receiveByteArrays() throws IOException {
+		byte[] record = channel.receiveBytes();
+		int size = openInPlace(ARRAYS, record);
+		
+		//The record was authenticated, so the lengths can be trusted.
+		int count = readInt(record, 0);
+		byte[][] data = new byte[count][];
+		int offset = 4 * (count + 1);
+		for (int i = 0; i < count; i++){
+			int length = readInt(record, 4 * (i + 1));
+			data[i] = new byte[length];
+			System.arraycopy(record, offset, data[i], 0, length);
+			offset += length;
+		}
+		if (offset != size){
+			throw new IOException("the received record is malformed");
+		}
+		return data;
+	}
+	
+	/**
+	 * Initializes the sealing cipher with the next nonce and the given record type, and allocates the record.<p>
+	 * The first record starts with the salt of the sent records, and the ciphertext is written after it. 
+	 * The offset of the ciphertext is kept in {@link #sealStart}.
+	 * @param type the type of the record.
+	 * @param size the size of the plaintext.
+	 * @return the array of the record.
+	 */
+	private byte[] initSeal(byte type, int size) throws IOException {
+		if (sealSequence == Long.MAX_VALUE){
+			throw new IOException("the sequence numbers are exhausted, a new key should be used");
+		}
+		sealStart = 0;
+		if (!sealStarted){
+			sealKey = deriveKey(sealSalt, sealNonce[0]);
+			sealStart = SALT_SIZE;
+		}
+		writeLong(sealNonce, 4, sealSequence++);
+		sealer.init(true, new AEADParameters(sealKey, 8 * TAG_SIZE, sealNonce, ADDITIONAL_DATA[type]));
+		
+		byte[] record = new byte[sealStart + size + TAG_SIZE];
+		if (!sealStarted){
+			System.arraycopy(sealSalt, 0, record, 0, SALT_SIZE);
+			sealStarted = true;
+		}
+		return record;
+	}
+	
+	/**
+	 * Appends the tag to the record and sends it.
+	 */
+	private void finishSeal(byte[] record, int offset) throws IOException {
+		try {
+			sealer.doFinal(record, offset);
+		} catch (InvalidCipherTextException e) {
+			//Can not happen when encrypting.
+			throw new IOException(e);
+		}
+		channel.sendBytes(record);
+	}
+	
+	/**
+	 * Opens the given record, writing the plaintext at the beginning of the record.
+	 * @return the size of the plaintext.
+	 */
+	private int openInPlace(byte type, byte[] record) throws IOException {
+		return open(type, record, record);
+	}
+	
+	/**
+	 * Authenticates and decrypts the given record using the next nonce.<p>
+	 * The key of the received records is derived from the salt at the beginning of the first record.
+	 * @param type the expected type of the record.
+	 * @param record the received record.
+	 * @param out the array to write the plaintext to. May be the record itself.
+	 * @return the size of the plaintext.
+	 * @throws IOException in case the record failed the authentication.
+	 */
+	private int open(byte type, byte[] record, byte[] out) throws IOException {
+		if (failed){
+			throw new IOException("a previous record failed the authentication");
+		}
+		int start = openStarted ? 0 : SALT_SIZE;
+		if (record.length < start + TAG_SIZE){
+			failed = true;
+			throw new IOException("the received record is too short");
+		}
+		if (!openStarted){
+			openKey = deriveKey(Arrays.copyOf(record, SALT_SIZE), openNonce[0]);
+			openStarted = true;
+		}
+		writeLong(openNonce, 4, openSequence++);
+		opener.init(false, new AEADParameters(openKey, 8 * TAG_SIZE, openNonce, ADDITIONAL_DATA[type]));
+		try {
+			//The plaintext is written behind the read position, so the record can be opened in place.
+			int size = opener.processBytes(record, start, record.length - start, out, 0);
+			return size + opener.doFinal(out, size);
+		} catch (InvalidCipherTextException e) {
+			failed = true;
+			throw new IOException("the received record failed the authentication", e);
+		}
+	}
+	
+	private static void writeInt(byte[] buffer, int offset, int value){
+		buffer[offset] = (byte) (value >>> 24);
+		buffer[offset + 1] = (byte) (value >>> 16);
+		buffer[offset + 2] = (byte) (value >>> 8);
+		buffer[offset + 3] = (byte) value;
+	}
+	
+	private static int readInt(byte[] buffer, int offset){
+		return ((buffer[offset] & 0xff) << 24) | ((buffer[offset + 1] & 0xff) << 16) | ((buffer[offset + 2] & 0xff) << 8) | (buffer[offset + 3] & 0xff);
+	}
+	
+	private static void writeLong(byte[] buffer, int offset, long value){
+		writeInt(buffer, offset, (int) (value >>> 32));
+		writeInt(buffer, offset + 4, (int) value);
+	}
+	
+	/**
+	 * Close the channel.
+	 */
+	@Override
+	public void close() {
+		channel.close();
+	}
+
+	@Override
+	public boolean isClosed() {
+		return channel.isClosed();
+	}
+}
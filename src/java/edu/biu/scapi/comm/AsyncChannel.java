@@ -0,0 +1,366 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.comm;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Serializable;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.logging.Level;
+
+import edu.biu.scapi.generals.Logging;
+
+/**
+ * This channel lets a protocol continue computing while its previous messages are being transmitted.<p>
+ * 
+ * Every outgoing message is put in a bounded queue that is drained by a dedicated writer thread, which sends the messages
+ * using the underlying channel in the order they were queued. The {@link #sendAsync(Serializable)} function returns 
+ * immediately with a Future that is done when the message has been written. In case the queue is full, the function blocks 
+ * until the writer thread frees a place, so a fast producer cannot consume unbounded memory.<p>
+ * 
+ * The regular {@link #send(Serializable)} function keeps the blocking semantics of the other channels: it queues the message 
+ * and waits until it (and all the messages that were queued before it) has been sent.
+ * The {@link #flush()} function is a barrier that waits until all the queued messages have been sent.<p>
+ * 
+ * Note that the message is serialized by the writer thread, so the caller should not modify a message that was given to 
+ * {@link #sendAsync(Serializable)} before the returned Future is done.<p>
+ * 
+ * Receiving is done directly by the calling thread, since the underlying channels use separate streams for sending and receiving.
+ * Once a message fails to be sent, the channel is considered broken and every following send throws the same exception.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+public class AsyncChannel extends ChannelDecorator {
+
+	public static final int DEFAULT_QUEUE_CAPACITY = 16;
+	
+	private BlockingQueue<SendTask> queue;			//Messages that wait to be sent.
+	private WriterThread writer;					//Sends the queued messages.
+	private volatile IOException failure;			//The first exception thrown by the underlying channel, if any.
+	private volatile boolean closed;
+	private final Object queueLock = new Object();	//Makes the check of the closed flag and the put to the queue atomic with respect to close.
+	
+	//Used to stop the writer thread.
+	private final SendTask stopTask = new SendTask(new Callable<Void>(){
+		public Void call() {
+			return null;
+		}
+	});
+	
+	/**
+	 * A queued sending, whose Future can also be failed without running it.
+	 */
+	private static class SendTask extends FutureTask<Void> {
+		
+		SendTask(Callable<Void> sending){
+			super(sending);
+		}
+		
+		void fail(IOException e){
+			setException(e);
+		}
+	}
+	
+	/**
+	 * Creates an AsyncChannel with the default queue capacity.
+	 * @param channel an already connected channel.
+	 */
+	public AsyncChannel(PlainChannel channel) {
+		this(channel, DEFAULT_QUEUE_CAPACITY);
+	}
+	
+	/**
+	 * Creates an AsyncChannel that wraps the given channel.
+	 * @param channel an already connected channel.
+	 * @param queueCapacity the maximum number of messages that can wait to be sent. 
+	 */
+	public AsyncChannel(PlainChannel channel, int queueCapacity) {
+		super(channel);
+		if (queueCapacity <= 0){
+			throw new IllegalArgumentException("queue capacity should be positive");
+		}
+		queue = new ArrayBlockingQueue<SendTask>(queueCapacity);
+		writer = new WriterThread();
+		writer.start();
+	}
+	
+	/**
+	 * Queues the given message to be sent by the writer thread and returns immediately.<p>
+	 * In case the queue is full, blocks until there is a place for the message.
+	 * @param data the message to send. Should not be modified until the returned Future is done.
+	 * @return a Future that is done when the message has been sent. In case the sending failed, the get function of the 
+	 * Future throws an ExecutionException that wraps the IOException.
+	 * @throws IOException In case the channel is closed, a previous message failed to be sent or the thread was interrupted.
+	 */
+	public Future<Void> sendAsync(final Serializable data) throws IOException {
+		return enqueue(new Callable<Void>(){
+			public Void call() throws IOException {
+				channel.send(data);
+				return null;
+			}
+		});
+	}
+	
+	/**
+	 * Queues the given bytes to be sent by the writer thread using the sendBytes function of the underlying channel.
+	 * @param data the bytes to send. Should not be modified until the returned Future is done.
+	 * @return a Future that is done when the bytes have been sent.
+	 * @throws IOException In case the channel is closed, a previous message failed to be sent or the thread was interrupted.
+	 */
+	public Future<Void> sendBytesAsync(final byte[] data) throws IOException {
+		return enqueue(new Callable<Void>(){
+			public Void call() throws IOException {
+				channel.sendBytes(data);
+				return null;
+			}
+		});
+	}
+	
+	/**
+	 * Queues the given arrays to be sent by the writer thread using the sendByteArrays function of the underlying channel.
+	 * @param data the arrays to send. Should not be modified until the returned Future is done.
+	 * @return a Future that is done when the arrays have been sent.
+	 * @throws IOException In case the channel is closed, a previous message failed to be sent or the thread was interrupted.
+	 */
+	public Future<Void> sendByteArraysAsync(final byte[][] data) throws IOException {
+		return enqueue(new Callable<Void>(){
+			public Void call() throws IOException {
+				channel.sendByteArrays(data);
+				return null;
+			}
+		});
+	}
+	
+	/**
+	 * Sends the given message and waits until it has been sent. 
+	 * All the messages that were queued before this message are sent before it.
+	 */
+	@Override
+	public void send(Serializable data) throws IOException {
+		waitFor(sendAsync(data));
+	}
+	
+	/**
+	 * Sends the given bytes and waits until they have been sent. 
+	 * All the messages that were queued before these bytes are sent before them.
+	 */
+	@Override
+	public void sendBytes(byte[] data) throws IOException {
+		waitFor(sendBytesAsync(data));
+	}
+
+	/**
+	 * Sends the given arrays and waits until they have been sent. 
+	 * All the messages that were queued before these arrays are sent before them.
+	 */
+	@Override
+	public void sendByteArrays(byte[][] data) throws IOException {
+		waitFor(sendByteArraysAsync(data));
+	}
+	
+	/**
+	 * Waits until all the messages that were queued before this call have been sent.
+	 * @throws IOException In case one of the messages failed to be sent or the thread was interrupted.
+	 */
+	public void flush() throws IOException {
+		waitFor(enqueue(new Callable<Void>(){
+			public Void call() {
+				return null;
+			}
+		}));
+	}
+	
+	/**
+	 * Returns the number of messages that wait to be sent.
+	 */
+	public int getPendingCount() {
+		return queue.size();
+	}
+	
+	@Override
+	public Serializable receive() throws ClassNotFoundException, IOException {
+		return channel.receive();
+	}
+
+	@Override
+	public byte[] receiveBytes() throws IOException {
+		return channel.receiveBytes();
+	}
+
+	@Override
+	public byte[][] receiveByteArrays() throws IOException {
+		return channel.receiveByteArrays();
+	}
+	
+	/**
+	 * Sends the queued messages, stops the writer thread and closes the underlying channel.<p>
+	 * Messages that are queued concurrently with this call are either sent before the channel is closed, or rejected with 
+	 * an IOException. In case the calling thread is interrupted while waiting, the messages that were not sent yet fail with 
+	 * an IOException.
+	 */
+	@Override
+	public void close() {
+		boolean stopping = false;
+		synchronized (queueLock){
+			if (!closed){
+				closed = true;
+				stopping = true;
+				try {
+					queue.put(stopTask);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					writer.interrupt();
+					stopping = false;
+				}
+			}
+		}
+		if (stopping){
+			try {
+				writer.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				writer.interrupt();
+			}
+		}
+		channel.close();
+	}
+
+	@Override
+	public boolean isClosed() {
+		return closed || channel.isClosed();
+	}
+	
+	/**
+	 * Puts the given sending in the queue.<p>
+	 * The check of the closed flag and the put are done under the same lock as the put of the stop task in {@link #close()}, 
+	 * so a sending is never queued after the stop task. In case the queue is full, the lock is held until the writer thread 
+	 * frees a place, which keeps the messages in the order of the calls.
+	 */
+	private Future<Void> enqueue(Callable<Void> sending) throws IOException {
+		//A message that was queued after a failed message is not sent.
+		final Callable<Void> checkedSending = sending;
+		SendTask task = new SendTask(new Callable<Void>(){
+			public Void call() throws Exception {
+				checkFailure();
+				return checkedSending.call();
+			}
+		});
+		
+		synchronized (queueLock){
+			if (closed){
+				throw new IOException("the channel is closed");
+			}
+			checkFailure();
+			try {
+				queue.put(task);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("interrupted while waiting for a place in the send queue");
+			}
+		}
+		return task;
+	}
+	
+	/**
+	 * Waits until the given task is done and throws its exception, if any.
+	 */
+	private void waitFor(Future<Void> task) throws IOException {
+		try {
+			task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted while waiting for the message to be sent");
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException){
+				throw (IOException) e.getCause();
+			}
+			throw new IOException(e.getCause());
+		}
+	}
+	
+	private void checkFailure() throws IOException {
+		if (failure != null){
+			throw new IOException("a previous message failed to be sent", failure);
+		}
+	}
+	
+	/**
+	 * The thread that sends the queued messages, one by one.
+	 * After a sending fails, the remaining messages are not sent and their Futures fail with the same exception.
+	 * In case the thread is interrupted, the messages that are still queued fail with an IOException, so no caller waits forever.
+	 */
+	private class WriterThread extends Thread {
+		
+		WriterThread(){
+			setName("AsyncChannel-" + getName());
+			setDaemon(true);
+		}
+		
+		public void run() {
+			try {
+				sendQueued();
+			} finally {
+				SendTask task;
+				while ((task = queue.poll()) != null){
+					task.fail(new IOException("the channel was closed before the message was sent"));
+				}
+			}
+		}
+		
+		private void sendQueued() {
+			while (true){
+				SendTask task;
+				try {
+					task = queue.take();
+				} catch (InterruptedException e) {
+					return;
+				}
+				if (task == stopTask){
+					return;
+				}
+				
+				task.run();
+				
+				try {
+					task.get();
+				} catch (ExecutionException e) {
+					if (failure != null){
+						continue;
+					}
+					failure = (e.getCause() instanceof IOException) ? (IOException) e.getCause() : new IOException(e.getCause());
+					Logging.getLogger().log(Level.WARNING, failure.toString());
+				} catch (InterruptedException e) {
+					//Can not happen since the task is already done.
+				}
+			}
+		}
+	}
+}
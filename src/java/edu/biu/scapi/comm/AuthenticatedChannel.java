@@ -35,7 +35,9 @@ import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
 import java.security.InvalidKeyException;
+import java.security.MessageDigest;
 
 import javax.crypto.SecretKey;
 
@@ -166,6 +168,89 @@ public class AuthenticatedChannel extends ChannelDecorator {
 		channel.send(taggedObj);
 	}
 
+	/**
+	 * Sends the given bytes together with their MAC tag on the channel. Since the bytes are not serialized, they are 
+	 * sent with the tag as two arrays of one message.
+	 * @param data the bytes to send to the other party.
+	 */
+	public void sendBytes(byte[] data) throws IOException {
+		byte[] tag = macAlg.mac(data, 0, data.length);
+		channel.sendByteArrays(new byte[][]{data, tag});
+	}
+	
+	/**
+	 * Receives authenticated bytes sent by the other party using the {@link #sendBytes(byte[])} function and verifies them.
+	 * @return <B> the received bytes </B>, if the bytes verify<p>
+	 * 		   <B>{@code null}</B> if the bytes do not verify	
+	 * @throws IOException In case the received message is not made of the bytes and their tag or any of the usual Input/Output related exceptions.
+	 */
+	public byte[] receiveBytes() throws IOException {
+		byte[][] taggedData = channel.receiveByteArrays();
+		if (taggedData.length != 2){
+			throw new IOException("the received message should contain the bytes and their tag");
+		}
+		if (!macAlg.verify(taggedData[0], 0, taggedData[0].length, taggedData[1])){
+			return null;
+		}
+		return taggedData[0];
+	}
+	
+	/**
+	 * Sends the given arrays together with one MAC tag computed over all of them. 
+	 * The tag is sent as the last array of the message.
+	 * @param data the arrays to send to the other party.
+	 */
+	public void sendByteArrays(byte[][] data) throws IOException {
+		byte[][] taggedData = new byte[data.length + 1][];
+		System.arraycopy(data, 0, taggedData, 0, data.length);
+		taggedData[data.length] = macArrays(data, data.length);
+		channel.sendByteArrays(taggedData);
+	}
+	
+	/**
+	 * Receives authenticated arrays sent by the other party using the {@link #sendByteArrays(byte[][])} function and verifies them.
+	 * @return <B> the received arrays </B>, if the arrays verify<p>
+	 * 		   <B>{@code null}</B> if the arrays do not verify	
+	 * @throws IOException In case the received message does not contain a tag or any of the usual Input/Output related exceptions.
+	 */
+	public byte[][] receiveByteArrays() throws IOException {
+		byte[][] taggedData = channel.receiveByteArrays();
+		if (taggedData.length == 0){
+			throw new IOException("the received message does not contain a tag");
+		}
+		int count = taggedData.length - 1;
+		byte[] tag = macArrays(taggedData, count);
+		if (!MessageDigest.isEqual(tag, taggedData[count])){
+			return null;
+		}
+		byte[][] data = new byte[count][];
+		System.arraycopy(taggedData, 0, data, 0, count);
+		return data;
+	}
+	
+	/**
+	 * Computes one tag over the first count arrays.<p>
+	 * Not all MAC algorithms support the update function without knowing the total length in advance, thus each array 
+	 * is tagged separately and the final tag is computed over the lengths and the tags of the arrays. That way, neither 
+	 * the content nor the order or the boundaries of the arrays can be changed, and the arrays need not be copied.
+	 */
+	private byte[] macArrays(byte[][] data, int count){
+		byte[][] tags = new byte[count][];
+		int size = 4;
+		for (int i=0; i<count; i++){
+			tags[i] = macAlg.mac(data[i], 0, data[i].length);
+			size += 4 + tags[i].length;
+		}
+		
+		ByteBuffer summary = ByteBuffer.allocate(size);
+		summary.putInt(count);
+		for (int i=0; i<count; i++){
+			summary.putInt(data[i].length);
+			summary.put(tags[i]);
+		}
+		return macAlg.mac(summary.array(), 0, size);
+	}
+	
 	/**
 	 * Close the channel.
 	 */
@@ -39,6 +39,36 @@ public interface Channel{
 	public void send(Serializable data) throws IOException;
 
 	public Serializable receive() throws ClassNotFoundException, IOException;
+
+	/**
+	 * Sends the given bytes to the other party as is, without serializing them.<p>
+	 * The other party should receive the bytes using the {@link #receiveBytes()} function.
+	 * @param data the bytes to send.
+	 * @throws IOException Any of the usual Input/Output related exceptions.
+	 */
+	public void sendBytes(byte[] data) throws IOException;
+	
+	/**
+	 * Receives bytes that were sent by the other party using the {@link #sendBytes(byte[])} function.
+	 * @return the received bytes.
+	 * @throws IOException Any of the usual Input/Output related exceptions.
+	 */
+	public byte[] receiveBytes() throws IOException;
+	
+	/**
+	 * Sends the given arrays to the other party as one message, without serializing them and without copying them to one big array.<p>
+	 * The other party should receive the arrays using the {@link #receiveByteArrays()} function.
+	 * @param data the arrays to send. The arrays may have different lengths.
+	 * @throws IOException Any of the usual Input/Output related exceptions.
+	 */
+	public void sendByteArrays(byte[][] data) throws IOException;
+	
+	/**
+	 * Receives arrays that were sent by the other party using the {@link #sendByteArrays(byte[][])} function.
+	 * @return the received arrays.
+	 * @throws IOException Any of the usual Input/Output related exceptions.
+	 */
+	public byte[][] receiveByteArrays() throws IOException;
 	
 	public void close();
 	
@@ -27,6 +27,9 @@
 
 package edu.biu.scapi.comm;
 
+import java.io.IOException;
+import java.io.Serializable;
+
 import edu.biu.scapi.exceptions.InvalidChannelException;
 
 
@@ -34,7 +37,7 @@ import edu.biu.scapi.exceptions.InvalidChannelException;
  * We use the Decorator Pattern in order to add features to the basic Channel. This class is the Decorator component of the pattern.
   * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University (Meital Levy)
  */
-public abstract class ChannelDecorator implements Channel {
+public abstract class ChannelDecorator implements PollableChannel {
 	protected PlainChannel channel;
 	
 
@@ -48,4 +51,24 @@ public abstract class ChannelDecorator implements Channel {
 		this.channel = channel;
 	}
 	
+	/**
+	 * Waits until the next message starts to arrive, without consuming it. 
+	 * Decorators that keep received messages of their own should override this function.
+	 * @see PollableChannel#waitForMessage(long)
+	 */
+	public boolean waitForMessage(long timeout) throws IOException {
+		return channel.waitForMessage(timeout);
+	}
+	
+	/**
+	 * Receives the next message of this decorator in case it arrives within the given timeout.
+	 */
+	public Serializable receive(long timeout) throws ClassNotFoundException, IOException {
+		return waitForMessage(timeout) ? receive() : null;
+	}
+	
+	public Serializable tryReceive() throws ClassNotFoundException, IOException {
+		return receive(0);
+	}
+	
 }
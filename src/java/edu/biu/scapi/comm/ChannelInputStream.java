@@ -0,0 +1,186 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.comm;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+
+/**
+ * An input stream that reads the bytes sent by a {@link ChannelOutputStream} of the other party.<p>
+ * 
+ * The stream receives one chunk at a time using {@link Channel#receiveBytes()}, so a large message can be processed, or 
+ * written to a file, while it arrives, without holding the whole message in memory. The stream ends when the empty chunk 
+ * that marks the end of the other party's stream is received.<p>
+ * 
+ * Closing the stream skips the chunks that were not read, so the channel can be used for the next messages.
+ * The channel itself is not closed.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+public class ChannelInputStream extends InputStream {
+
+	private Channel channel;
+	private byte[] chunk = new byte[0];		//The last received chunk.
+	private int pos;						//The position of the next byte to read in the chunk.
+	private boolean end;					//Indicates whether the end of the stream was received.
+	
+	/**
+	 * Creates a stream that reads the chunks sent on the given channel.
+	 * @param channel the channel to receive the bytes from.
+	 */
+	public ChannelInputStream(Channel channel) {
+		this.channel = channel;
+	}
+	
+	/**
+	 * Receives an object that was sent using {@link ChannelOutputStream#sendObject(Channel, Serializable)}.<p>
+	 * The object is deserialized while its chunks arrive, without collecting the serialized bytes first.
+	 * @param channel the channel to receive the object from.
+	 * @return the received object.
+	 * @throws ClassNotFoundException The Class of the serialized object cannot be found.
+	 * @throws IOException Any of the usual Input/Output related exceptions.
+	 */
+	public static Serializable receiveObject(Channel channel) throws ClassNotFoundException, IOException {
+		ChannelInputStream in = new ChannelInputStream(channel);
+		Serializable object;
+		try {
+			object = (Serializable) new ObjectInputStream(in).readObject();
+		} catch (ClassNotFoundException | IOException | RuntimeException e) {
+			//The channel is already in an unknown state, so a failure to skip the rest of the stream does not hide the original failure.
+			try {
+				in.close();
+			} catch (IOException closeFailure) {
+				e.addSuppressed(closeFailure);
+			}
+			throw e;
+		}
+		//Skip the end of the stream, which is not read by the object stream.
+		in.close();
+		return object;
+	}
+	
+	@Override
+	public int read() throws IOException {
+		if (!fill()){
+			return -1;
+		}
+		return chunk[pos++] & 0xff;
+	}
+	
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (off < 0 || len < 0 || off + len > b.length){
+			throw new IndexOutOfBoundsException();
+		}
+		if (len == 0){
+			return 0;
+		}
+		if (!fill()){
+			return -1;
+		}
+		int n = Math.min(len, chunk.length - pos);
+		System.arraycopy(chunk, pos, b, off, n);
+		pos += n;
+		return n;
+	}
+	
+	/**
+	 * Returns the number of bytes that are left in the last received chunk.
+	 */
+	@Override
+	public int available() {
+		return chunk.length - pos;
+	}
+	
+	/**
+	 * Writes the rest of the stream to the given output stream. 
+	 * Each chunk is written as it arrives, without copying it to an intermediate buffer.
+	 * @param out the stream to write the bytes to.
+	 * @return the number of written bytes.
+	 * @throws IOException Any of the usual Input/Output related exceptions.
+	 */
+	public long copyTo(OutputStream out) throws IOException {
+		return copyTo(out, Long.MAX_VALUE);
+	}
+	
+	/**
+	 * Writes the rest of the stream to the given output stream, unless the stream is longer than the given number of bytes.<p>
+	 * The length of the stream is chosen by the other party, so this function should be used when the stream is written to 
+	 * a file that must not grow without limit.
+	 * @param out the stream to write the bytes to.
+	 * @param maxBytes the maximal number of bytes to write.
+	 * @return the number of written bytes; -1 in case the stream is longer than maxBytes. In that case, maxBytes bytes were
+	 * written and the rest of the stream was not read.
+	 * @throws IOException Any of the usual Input/Output related exceptions.
+	 */
+	public long copyTo(OutputStream out, long maxBytes) throws IOException {
+		long total = 0;
+		while (fill()){
+			int n = chunk.length - pos;
+			if (n > maxBytes - total){
+				n = (int) (maxBytes - total);
+				out.write(chunk, pos, n);
+				pos += n;
+				return -1;
+			}
+			out.write(chunk, pos, n);
+			pos += n;
+			total += n;
+		}
+		return total;
+	}
+	
+	/**
+	 * Skips the rest of the stream, so the next message received on the channel is the one that was sent after the stream.
+	 */
+	@Override
+	public void close() throws IOException {
+		while (fill()){
+			pos = chunk.length;
+		}
+	}
+	
+	/**
+	 * Receives the next chunk in case all the bytes of the current one were read.
+	 * @return true if there are bytes to read; false if the end of the stream was received.
+	 */
+	private boolean fill() throws IOException {
+		while (pos == chunk.length){
+			if (end){
+				return false;
+			}
+			chunk = channel.receiveBytes();
+			pos = 0;
+			if (chunk.length == 0){
+				end = true;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,165 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.comm;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * An output stream that sends the written bytes over a {@link Channel} in chunks of bounded size.<p>
+ * 
+ * This class allows sending a large message, for example garbled tables of millions of gates, without building the whole 
+ * message in memory before the first byte is sent. The written bytes are collected in a chunk that is sent using 
+ * {@link Channel#sendBytes(byte[])} when it is full, so the memory used by the stream does not depend on the size of the 
+ * message. Since the chunks are sent as they are filled, the underlying channel also provides the backpressure: in case the 
+ * other party does not read, the writer blocks when the buffers of the channel are full.<p>
+ * 
+ * Closing the stream sends the remaining bytes followed by an empty chunk that marks the end of the stream. 
+ * The channel itself is not closed and can be used for other messages after the stream.<p>
+ * 
+ * The other party should read the stream using a {@link ChannelInputStream}. 
+ * While the stream is open, no other messages should be sent on the channel.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+public class ChannelOutputStream extends OutputStream {
+
+	public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+	
+	private Channel channel;
+	private int chunkSize;
+	private byte[] chunk;			//Holds the written bytes that were not sent yet.
+	private int count;				//The number of bytes in the chunk.
+	private boolean closed;
+	
+	/**
+	 * Creates a stream that sends chunks of the default size.
+	 * @param channel the channel to send the bytes on.
+	 */
+	public ChannelOutputStream(Channel channel) {
+		this(channel, DEFAULT_CHUNK_SIZE);
+	}
+	
+	/**
+	 * Creates a stream that sends chunks of the given size.
+	 * @param channel the channel to send the bytes on.
+	 * @param chunkSize the maximal number of bytes sent in one chunk.
+	 */
+	public ChannelOutputStream(Channel channel, int chunkSize) {
+		if (chunkSize <= 0){
+			throw new IllegalArgumentException("the chunk size should be positive");
+		}
+		this.channel = channel;
+		this.chunkSize = chunkSize;
+		chunk = new byte[chunkSize];
+	}
+	
+	/**
+	 * Sends the given object over the given channel by serializing it directly into a stream, instead of serializing it 
+	 * into one byte array first.<p>
+	 * The other party should receive the object using {@link ChannelInputStream#receiveObject(Channel)}.
+	 * @param channel the channel to send the object on.
+	 * @param data the object to send.
+	 * @throws IOException Any of the usual Input/Output related exceptions.
+	 */
+	public static void sendObject(Channel channel, Serializable data) throws IOException {
+		ObjectOutputStream out = new ObjectOutputStream(new ChannelOutputStream(channel));
+		out.writeObject(data);
+		//Closing the object stream also ends the channel stream.
+		out.close();
+	}
+	
+	@Override
+	public void write(int b) throws IOException {
+		checkOpen();
+		if (count == chunk.length){
+			sendChunk();
+		}
+		chunk[count++] = (byte) b;
+	}
+	
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		checkOpen();
+		if (off < 0 || len < 0 || off + len > b.length){
+			throw new IndexOutOfBoundsException();
+		}
+		while (len > 0){
+			if (count == chunk.length){
+				sendChunk();
+			}
+			int n = Math.min(len, chunk.length - count);
+			System.arraycopy(b, off, chunk, count, n);
+			count += n;
+			off += n;
+			len -= n;
+		}
+	}
+	
+	/**
+	 * Sends the bytes that were written so far, even if the chunk is not full.
+	 */
+	@Override
+	public void flush() throws IOException {
+		checkOpen();
+		if (count > 0){
+			sendChunk();
+		}
+	}
+	
+	/**
+	 * Sends the remaining bytes and marks the end of the stream. The channel is not closed.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed){
+			return;
+		}
+		flush();
+		closed = true;
+		channel.sendBytes(new byte[0]);
+		chunk = null;
+	}
+	
+	/**
+	 * Sends the current chunk and starts a new one.<p>
+	 * A new array is used for every chunk, since some channels keep the sent array instead of copying it.
+	 */
+	private void sendChunk() throws IOException {
+		channel.sendBytes((count == chunk.length) ? chunk : Arrays.copyOf(chunk, count));
+		chunk = new byte[chunkSize];
+		count = 0;
+	}
+	
+	private void checkOpen() throws IOException {
+		if (closed){
+			throw new IOException("the stream is closed");
+		}
+	}
+}
@@ -0,0 +1,311 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.comm;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.logging.Level;
+
+import edu.biu.scapi.generals.Logging;
+
+/**
+ * This channel collects many small messages and sends them together as one batch.<p>
+ * 
+ * Protocols such as sigma protocols, coin tossing and commitments send a few tiny messages per instance. When thousands of 
+ * instances are executed, sending every message separately costs a system call and a serialization header per message. 
+ * This channel writes the sent messages into a buffer, and sends the buffer using the sendBytes function of the underlying 
+ * channel when one of the following happens:
+ * <ul>
+ * <li>The buffer size reached the maximal batch size.</li>
+ * <li>The receive functions are called, since the other party may need the buffered messages in order to answer.</li>
+ * <li>The {@link #flush()} or {@link #close()} functions are called.</li>
+ * <li>In case a maximal delay was given, the first buffered message has waited for this delay.</li>
+ * </ul>
+ * All the messages of a batch are written to one ObjectOutputStream, which is reset after every message. That way, a message 
+ * is serialized when it is sent (later changes to the object are not sent) but the stream header is sent once per batch.<p>
+ * 
+ * Both parties should wrap their channels with a CoalescingChannel, since the received batches are split into the original 
+ * messages by the receiving CoalescingChannel. A party that sends its last messages without receiving should call 
+ * {@link #flush()}.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+public class CoalescingChannel extends ChannelDecorator {
+
+	public static final int DEFAULT_MAX_BATCH_SIZE = 64 * 1024;
+	
+	//The types of the records in a batch.
+	private static final byte OBJECT = 0;
+	private static final byte BYTES = 1;
+	private static final byte ARRAYS = 2;
+	private static final byte END = 3;
+	
+	private int maxBatchSize;					//The buffer is sent when its size reaches this size.
+	private long maxDelay;						//The maximal time a message waits in the buffer, in milliseconds. 0 means no limit.
+	private Timer timer;						//Sends the buffer after the maximal delay. Null in case there is no maximal delay.
+	
+	private ByteArrayOutputStream batchBytes = new ByteArrayOutputStream();
+	private ObjectOutputStream batch;			//Writes the messages of the current batch. Null in case the batch is empty.
+	private long batchStart;					//The time the first message of the current batch was sent.
+	private IOException timerFailure;			//An exception thrown while the timer sent a batch.
+	
+	private ObjectInputStream receivedBatch;	//Reads the messages of the last received batch. Null in case all its messages were read.
+	private byte nextType = END;				//The type of the next message of the received batch, in case it was already read.
+	
+	/**
+	 * Creates a CoalescingChannel with the default maximal batch size and without maximal delay.
+	 * @param channel an already connected channel.
+	 */
+	public CoalescingChannel(PlainChannel channel) {
+		this(channel, DEFAULT_MAX_BATCH_SIZE, 0);
+	}
+	
+	/**
+	 * Creates a CoalescingChannel that wraps the given channel.
+	 * @param channel an already connected channel.
+	 * @param maxBatchSize the buffer is sent when its size reaches this number of bytes.
+	 * @param maxDelay the maximal time a message may wait in the buffer, in milliseconds. 0 means that the buffer is sent 
+	 * only when it is full, when receiving or when flushing.
+	 */
+	public CoalescingChannel(PlainChannel channel, int maxBatchSize, long maxDelay) {
+		super(channel);
+		if (maxBatchSize <= 0 || maxDelay < 0){
+			throw new IllegalArgumentException("the maximal batch size should be positive and the maximal delay should not be negative");
+		}
+		this.maxBatchSize = maxBatchSize;
+		this.maxDelay = maxDelay;
+		
+		if (maxDelay > 0){
+			timer = new Timer("CoalescingChannel", true);
+			timer.schedule(new TimerTask(){
+				public void run() {
+					flushExpired();
+				}
+			}, maxDelay, maxDelay);
+		}
+	}
+	
+	/**
+	 * Writes the given message to the buffer. The buffer is sent in case it is full.
+	 */
+	@Override
+	public synchronized void send(Serializable data) throws IOException {
+		startRecord(OBJECT);
+		batch.writeObject(data);
+		batch.reset();
+		endRecord();
+	}
+	
+	/**
+	 * Writes the given bytes to the buffer. The buffer is sent in case it is full.
+	 */
+	@Override
+	public synchronized void sendBytes(byte[] data) throws IOException {
+		startRecord(BYTES);
+		batch.writeInt(data.length);
+		batch.write(data);
+		endRecord();
+	}
+
+	/**
+	 * Writes the given arrays to the buffer. The buffer is sent in case it is full.
+	 */
+	@Override
+	public synchronized void sendByteArrays(byte[][] data) throws IOException {
+		startRecord(ARRAYS);
+		batch.writeInt(data.length);
+		for (int i = 0; i < data.length; i++){
+			batch.writeInt(data[i].length);
+		}
+		for (int i = 0; i < data.length; i++){
+			batch.write(data[i]);
+		}
+		endRecord();
+	}
+	
+	private void startRecord(byte type) throws IOException {
+		if (timerFailure != null){
+			throw new IOException("failed to send a previous batch", timerFailure);
+		}
+		if (batch == null){
+			batchBytes.reset();
+			batch = new ObjectOutputStream(batchBytes);
+			batchStart = System.currentTimeMillis();
+		}
+		batch.writeByte(type);
+	}
+	
+	private void endRecord() throws IOException {
+		//The size of the output stream is updated only after flushing the object stream.
+		batch.flush();
+		if (batchBytes.size() >= maxBatchSize){
+			flushBatch();
+		}
+	}
+	
+	/**
+	 * Sends the buffered messages.
+	 * @throws IOException Any of the usual Input/Output related exceptions.
+	 */
+	public synchronized void flush() throws IOException {
+		if (timerFailure != null){
+			throw new IOException("failed to send a previous batch", timerFailure);
+		}
+		flushBatch();
+	}
+	
+	private void flushBatch() throws IOException {
+		if (batch == null){
+			return;
+		}
+		batch.writeByte(END);
+		batch.close();
+		batch = null;
+		channel.sendBytes(batchBytes.toByteArray());
+	}
+	
+	/**
+	 * Called by the timer. Sends the buffer in case its first message has waited for the maximal delay.
+	 */
+	private synchronized void flushExpired(){
+		if (batch != null && timerFailure == null && System.currentTimeMillis() - batchStart >= maxDelay){
+			try {
+				flushBatch();
+			} catch (IOException e) {
+				Logging.getLogger().log(Level.WARNING, e.toString());
+				timerFailure = e;
+			}
+		}
+	}
+	
+	/**
+	 * Sends the buffered messages and receives the next message.
+	 */
+	@Override
+	public Serializable receive() throws ClassNotFoundException, IOException {
+		ObjectInputStream in = nextRecord(OBJECT);
+		return (Serializable) in.readObject();
+	}
+
+	/**
+	 * Sends the buffered messages and receives the next bytes.
+	 */
+	@Override
+	public byte[] receiveBytes() throws IOException {
+		ObjectInputStream in = nextRecord(BYTES);
+		byte[] data = new byte[in.readInt()];
+		in.readFully(data);
+		return data;
+	}
+
+	/**
+	 * Sends the buffered messages and receives the next arrays.
+	 */
+	@Override
+	public byte[][] receiveByteArrays() throws IOException {
+		ObjectInputStream in = nextRecord(ARRAYS);
+		byte[][] data = new byte[in.readInt()][];
+		for (int i = 0; i < data.length; i++){
+			data[i] = new byte[in.readInt()];
+		}
+		for (int i = 0; i < data.length; i++){
+			in.readFully(data[i]);
+		}
+		return data;
+	}
+	
+	/**
+	 * Flushes the buffer and returns a stream positioned at the next received message, after checking that its type is 
+	 * the expected one. In case all the messages of the last batch were read, a new batch is received.
+	 */
+	private ObjectInputStream nextRecord(byte expectedType) throws IOException {
+		flush();
+		
+		while (nextType == END){
+			if (receivedBatch == null){
+				receivedBatch = new ObjectInputStream(new ByteArrayInputStream(channel.receiveBytes()));
+			}
+			readNextType();
+		}
+		byte type = nextType;
+		nextType = END;
+		
+		if (type != expectedType){
+			throw new IOException("the received message type " + type + " does not match the expected type " + expectedType);
+		}
+		return receivedBatch;
+	}
+	
+	/**
+	 * Reads the type of the next message of the received batch. In case the batch has no more messages, it is released.
+	 */
+	private void readNextType() throws IOException {
+		nextType = receivedBatch.readByte();
+		if (nextType == END){
+			receivedBatch = null;
+		}
+	}
+	
+	/**
+	 * Sends the buffered messages and waits until there is a message to receive. In case the last received batch has 
+	 * more messages there is no need to wait.
+	 */
+	@Override
+	public boolean waitForMessage(long timeout) throws IOException {
+		flush();
+		if (nextType == END && receivedBatch != null){
+			readNextType();
+		}
+		return nextType != END || channel.waitForMessage(timeout);
+	}
+	
+	/**
+	 * Sends the buffered messages and closes the underlying channel.
+	 */
+	@Override
+	public void close() {
+		if (timer != null){
+			timer.cancel();
+		}
+		try {
+			flush();
+		} catch (IOException e) {
+			Logging.getLogger().log(Level.WARNING, e.toString());
+		}
+		channel.close();
+	}
+
+	@Override
+	public boolean isClosed() {
+		return channel.isClosed();
+	}
+}
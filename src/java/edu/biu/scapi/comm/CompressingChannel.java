@@ -0,0 +1,356 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.comm;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+
+import edu.biu.scapi.comm.compression.Compressor;
+import edu.biu.scapi.comm.compression.DeflateCompressor;
+
+/**
+ * This channel compresses the sent messages, in order to reduce the transfer time over slow links.<p>
+ * 
+ * Some messages of cryptographic protocols (garbled tables, commitments, ciphertexts) look random and can not be compressed, 
+ * while others (translation tables, arrays of indices and bits) compress well. Therefore, the compression is adaptive and 
+ * done per message: 
+ * <ul>
+ * <li>Messages that are smaller than a minimal size are not compressed.</li>
+ * <li>The entropy of the bytes of a sample of the message is computed. In case it is close to 8 bits per byte, the message 
+ * is not compressed.</li>
+ * <li>In case the compressed message is not smaller than the original one, the original one is sent.</li>
+ * </ul>
+ * Every message is sent using the sendByteArrays function of the underlying channel, as a small header that tells the other 
+ * party whether the message was compressed followed by the (compressed or original) payload. Messages that are not compressed 
+ * are therefore passed to the underlying channel as is, without being copied. Both parties should wrap their channels with a 
+ * CompressingChannel that uses the same {@link Compressor}.<p>
+ * 
+ * The length of a compressed message before the compression is read from the wire, so it is bounded by a maximal message 
+ * size (see {@link #setMaxMessageSize(int)}) before memory is allocated for it.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+public class CompressingChannel extends ChannelDecorator {
+
+	public static final int DEFAULT_MIN_SIZE = 256;			//Smaller messages are not compressed.
+	public static final double DEFAULT_MAX_ENTROPY = 7.5;	//Messages with higher entropy (in bits per byte) are not compressed.
+	public static final int DEFAULT_MAX_MESSAGE_SIZE = 1 << 28;	//The default bound on the decompressed length of a received message (256 MB).
+	private static final int SAMPLE_SIZE = 4096;			//The number of bytes used to estimate the entropy.
+	
+	//The types of the messages, written in the first byte of the header.
+	private static final byte RAW = 0;					//Header: [RAW]. Followed by the bytes.
+	private static final byte COMPRESSED = 1;			//Header: [COMPRESSED][original length]. Followed by the compressed bytes.
+	private static final byte RAW_ARRAYS = 2;			//Header: [RAW_ARRAYS]. Followed by the arrays.
+	private static final byte COMPRESSED_ARRAYS = 3;	//Header: [COMPRESSED_ARRAYS][original length]. Followed by the compressed encoding of the arrays.
+	
+	private static final byte[] RAW_HEADER = {RAW};
+	private static final byte[] RAW_ARRAYS_HEADER = {RAW_ARRAYS};
+	
+	private Compressor compressor;
+	private int minSize;
+	private double maxEntropy;
+	private int maxMessageSize = DEFAULT_MAX_MESSAGE_SIZE;
+	
+	private long originalBytes;		//The number of bytes given to the send functions.
+	private long sentBytes;			//The number of bytes sent after the compression.
+	
+	/**
+	 * Creates a CompressingChannel that uses the Deflate algorithm and the default thresholds.
+	 * @param channel an already connected channel.
+	 */
+	public CompressingChannel(PlainChannel channel) {
+		this(channel, new DeflateCompressor(), DEFAULT_MIN_SIZE, DEFAULT_MAX_ENTROPY);
+	}
+	
+	/**
+	 * Creates a CompressingChannel that wraps the given channel.
+	 * @param channel an already connected channel.
+	 * @param compressor the compression algorithm to use.
+	 * @param minSize messages that are smaller than this number of bytes are not compressed.
+	 * @param maxEntropy messages whose estimated entropy is higher than this number of bits per byte are not compressed.
+	 */
+	public CompressingChannel(PlainChannel channel, Compressor compressor, int minSize, double maxEntropy) {
+		super(channel);
+		this.compressor = compressor;
+		this.minSize = minSize;
+		this.maxEntropy = maxEntropy;
+	}
+	
+	/**
+	 * Sets the maximal length of a received message after decompression. A compressed message that declares a larger 
+	 * length is rejected with an IOException. The default is 256 MB.
+	 * @param maxMessageSize the maximal length of a received message, in bytes.
+	 */
+	public void setMaxMessageSize(int maxMessageSize){
+		if (maxMessageSize < 0){
+			throw new IllegalArgumentException("the maximal message size should be non-negative");
+		}
+		this.maxMessageSize = maxMessageSize;
+	}
+	
+	/**
+	 * Serializes the given message and sends it, compressed if worthwhile.
+	 */
+	@Override
+	public void send(Serializable data) throws IOException {
+		ByteArrayOutputStream bOut = new ByteArrayOutputStream();
+		ObjectOutputStream oOut = new ObjectOutputStream(bOut);
+		oOut.writeObject(data);
+		oOut.close();
+		sendMessage(bOut.toByteArray());
+	}
+
+	@Override
+	public Serializable receive() throws ClassNotFoundException, IOException {
+		ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(receiveMessage()));
+		return (Serializable) ois.readObject();
+	}
+	
+	@Override
+	public void sendBytes(byte[] data) throws IOException {
+		sendMessage(data);
+	}
+
+	@Override
+	public byte[] receiveBytes() throws IOException {
+		return receiveMessage();
+	}
+
+	/**
+	 * Sends the given arrays, compressed if worthwhile.<p>
+	 * In case the arrays are compressed, the number of arrays, their lengths and the arrays are compressed together. 
+	 * Otherwise, the arrays are passed to the underlying channel as is.
+	 */
+	@Override
+	public void sendByteArrays(byte[][] data) throws IOException {
+		long size = 0;
+		for (int i = 0; i < data.length; i++){
+			size += data[i].length;
+		}
+		
+		if (size >= minSize && estimateEntropy(data, size) <= maxEntropy){
+			long encodedSize = size + 4 * (data.length + 1);
+			if (encodedSize > Integer.MAX_VALUE){
+				throw new IOException("the total size of the arrays is too big to be sent in one message");
+			}
+			ByteBuffer encoded = ByteBuffer.allocate((int) encodedSize);
+			encoded.putInt(data.length);
+			for (int i = 0; i < data.length; i++){
+				encoded.putInt(data[i].length);
+			}
+			for (int i = 0; i < data.length; i++){
+				encoded.put(data[i]);
+			}
+			byte[] compressed = compressor.compress(encoded.array(), 0, encoded.capacity());
+			if (compressed.length + 4 < size){
+				send(compressedHeader(COMPRESSED_ARRAYS, encoded.capacity()), compressed, size);
+				return;
+			}
+		}
+		
+		byte[][] message = new byte[data.length + 1][];
+		message[0] = RAW_ARRAYS_HEADER;
+		System.arraycopy(data, 0, message, 1, data.length);
+		synchronized (this){
+			originalBytes += size;
+			sentBytes += size + 1;
+		}
+		channel.sendByteArrays(message);
+	}
+
+	@Override
+	public byte[][] receiveByteArrays() throws IOException {
+		byte[][] message = channel.receiveByteArrays();
+		byte type = readType(message);
+		if (type == RAW_ARRAYS && message[0].length == 1){
+			byte[][] data = new byte[message.length - 1][];
+			System.arraycopy(message, 1, data, 0, data.length);
+			return data;
+		}
+		if (type != COMPRESSED_ARRAYS){
+			throw new IOException("the received message is not a byte arrays message");
+		}
+		return decodeArrays(ByteBuffer.wrap(decompress(message)));
+	}
+	
+	/**
+	 * Decodes arrays that were encoded by {@link #sendByteArrays(byte[][])} before the compression. 
+	 * The number of arrays and their lengths are checked against the size of the decompressed message.
+	 */
+	private static byte[][] decodeArrays(ByteBuffer encoded) throws IOException {
+		if (encoded.remaining() < 4){
+			throw new IOException("the received arrays message is too short");
+		}
+		int count = encoded.getInt();
+		if (count < 0 || count > encoded.remaining() / 4){
+			throw new IOException("illegal number of arrays " + count);
+		}
+		int remaining = encoded.remaining() - 4 * count;
+		byte[][] data = new byte[count][];
+		for (int i = 0; i < count; i++){
+			int length = encoded.getInt();
+			if (length < 0 || length > remaining){
+				throw new IOException("illegal array length " + length);
+			}
+			remaining -= length;
+			data[i] = new byte[length];
+		}
+		if (remaining != 0){
+			throw new IOException("the lengths of the arrays do not match the length of the message");
+		}
+		for (int i = 0; i < count; i++){
+			encoded.get(data[i]);
+		}
+		return data;
+	}
+	
+	/**
+	 * Sends the given message, compressed in case it is worthwhile.<p>
+	 * A compressed message is sent as the arrays [COMPRESSED][original length (4 bytes)] and [compressed bytes], and an 
+	 * uncompressed message is sent as the arrays [RAW] and [bytes], so the bytes are not copied.
+	 */
+	private void sendMessage(byte[] data) throws IOException {
+		if (data.length >= minSize && estimateEntropy(new byte[][]{data}, data.length) <= maxEntropy){
+			byte[] compressed = compressor.compress(data, 0, data.length);
+			if (compressed.length + 4 < data.length){
+				send(compressedHeader(COMPRESSED, data.length), compressed, data.length);
+				return;
+			}
+		}
+		send(RAW_HEADER, data, data.length);
+	}
+	
+	private static byte[] compressedHeader(byte type, int originalLength){
+		return ByteBuffer.allocate(5).put(type).putInt(originalLength).array();
+	}
+	
+	/**
+	 * Sends the given header and payload as one message of the underlying channel.
+	 */
+	private void send(byte[] header, byte[] payload, long originalLength) throws IOException {
+		synchronized (this){
+			originalBytes += originalLength;
+			sentBytes += header.length + payload.length;
+		}
+		channel.sendByteArrays(new byte[][]{header, payload});
+	}
+	
+	private byte[] receiveMessage() throws IOException {
+		byte[][] message = channel.receiveByteArrays();
+		byte type = readType(message);
+		if (type == RAW && message[0].length == 1 && message.length == 2){
+			return message[1];
+		}
+		if (type != COMPRESSED){
+			throw new IOException("the received message is not a byte message");
+		}
+		return decompress(message);
+	}
+	
+	/**
+	 * Returns the type written in the header of the given message.
+	 */
+	private static byte readType(byte[][] message) throws IOException {
+		if (message.length == 0 || message[0].length == 0){
+			throw new IOException("the received message has no header");
+		}
+		return message[0][0];
+	}
+	
+	/**
+	 * Decompresses the payload of the given compressed message. The original length is checked before it is used.
+	 */
+	private byte[] decompress(byte[][] message) throws IOException {
+		if (message.length != 2 || message[0].length != 5){
+			throw new IOException("the received message is not a valid compressed message");
+		}
+		int originalLength = ByteBuffer.wrap(message[0], 1, 4).getInt();
+		if (originalLength < 0 || originalLength > maxMessageSize){
+			throw new IOException("illegal original length " + originalLength + ". the maximal message length is " + maxMessageSize);
+		}
+		return compressor.decompress(message[1], 0, message[1].length, originalLength);
+	}
+	
+	/**
+	 * Estimates the Shannon entropy of the given arrays, as if they were concatenated, in bits per byte, using bytes sampled 
+	 * along all the arrays.
+	 * @param data the arrays.
+	 * @param size the total size of the arrays.
+	 */
+	static double estimateEntropy(byte[][] data, long size){
+		int[] counts = new int[256];
+		long step = Math.max(1, size / SAMPLE_SIZE);
+		int samples = 0;
+		long arrayStart = 0;		//The position of the current array in the concatenation.
+		long position = 0;			//The position of the next sample in the concatenation.
+		for (int i = 0; i < data.length; i++){
+			while (position < arrayStart + data[i].length){
+				counts[data[i][(int) (position - arrayStart)] & 0xff]++;
+				samples++;
+				position += step;
+			}
+			arrayStart += data[i].length;
+		}
+		
+		double entropy = 0;
+		for (int i = 0; i < counts.length; i++){
+			if (counts[i] > 0){
+				double p = (double) counts[i] / samples;
+				entropy -= p * Math.log(p);
+			}
+		}
+		return entropy / Math.log(2);
+	}
+	
+	/**
+	 * Returns the number of bytes that were given to the send functions of this channel.
+	 */
+	public synchronized long getOriginalBytes(){
+		return originalBytes;
+	}
+	
+	/**
+	 * Returns the number of bytes that were actually sent, after the compression.
+	 */
+	public synchronized long getSentBytes(){
+		return sentBytes;
+	}
+
+	@Override
+	public void close() {
+		channel.close();
+	}
+
+	@Override
+	public boolean isClosed() {
+		return channel.isClosed();
+	}
+}
@@ -171,6 +171,70 @@ public class EncryptedChannel extends ChannelDecorator {
 		channel.send((Serializable)cipher);
 	}
 
+	/**
+	 * Encrypts the given bytes and sends the ciphertext on the channel. The bytes are encrypted as is, without serializing them first.
+	 * @param data the bytes to send to the other party.
+	 */
+	public void sendBytes(byte[] data) throws IOException {
+		SymmetricCiphertext cipher = encScheme.encrypt(new ByteArrayPlaintext(data));
+		channel.send((Serializable)cipher);
+	}
+	
+	/**
+	 * Receives a ciphertext sent by the other party using the {@link #sendBytes(byte[])} function and decrypts it.
+	 * @return the decrypted bytes sent by the other party.
+	 */
+	public byte[] receiveBytes() throws IOException {
+		return ((ByteArrayPlaintext) encScheme.decrypt(receiveCiphertext())).getText();
+	}
+	
+	/**
+	 * Encrypts the given arrays and sends the ciphertexts on the channel as one message.
+	 * @param data the arrays to send to the other party.
+	 */
+	public void sendByteArrays(byte[][] data) throws IOException {
+		SymmetricCiphertext[] ciphers = new SymmetricCiphertext[data.length];
+		for (int i=0; i<data.length; i++){
+			ciphers[i] = encScheme.encrypt(new ByteArrayPlaintext(data[i]));
+		}
+		channel.send(ciphers);
+	}
+	
+	/**
+	 * Receives the ciphertexts sent by the other party using the {@link #sendByteArrays(byte[][])} function and decrypts them.
+	 * @return the decrypted arrays sent by the other party.
+	 */
+	public byte[][] receiveByteArrays() throws IOException {
+		Serializable rcvMsg;
+		try {
+			rcvMsg = channel.receive();
+		} catch (ClassNotFoundException e) {
+			throw new IOException(e);
+		}
+		if (!(rcvMsg instanceof SymmetricCiphertext[])){
+			throw new IOException("the received message is not an array of ciphertexts");
+		}
+		SymmetricCiphertext[] ciphers = (SymmetricCiphertext[]) rcvMsg;
+		byte[][] data = new byte[ciphers.length][];
+		for (int i=0; i<ciphers.length; i++){
+			data[i] = ((ByteArrayPlaintext) encScheme.decrypt(ciphers[i])).getText();
+		}
+		return data;
+	}
+	
+	private SymmetricCiphertext receiveCiphertext() throws IOException {
+		Serializable rcvMsg;
+		try {
+			rcvMsg = channel.receive();
+		} catch (ClassNotFoundException e) {
+			throw new IOException(e);
+		}
+		if (!(rcvMsg instanceof SymmetricCiphertext)){
+			throw new IOException("the received message is not a ciphertext");
+		}
+		return (SymmetricCiphertext) rcvMsg;
+	}
+	
 	/**
 	 * Close the channel.
 	 */
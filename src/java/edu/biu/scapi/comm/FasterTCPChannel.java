@@ -1,5 +1,6 @@
 package edu.biu.scapi.comm;
 
+import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
@@ -39,6 +40,7 @@ public class FasterTCPChannel extends PlainChannel {
 	private InetSocketAddress socketAddress;
 	private DataOutputStream outStream;
 	private DataInputStream inStream;
+	private BufferedInputStream bufferedIn;		//The buffer under the input stream, used to peek the next message.
 	
 	/**
 	 * Creates a channel given the IP address and the port to connect to. 
@@ -93,13 +95,10 @@ public class FasterTCPChannel extends PlainChannel {
 	@Override
 	public Serializable receive() throws ClassNotFoundException, IOException {
 		boolean isFaster = inStream.readBoolean();
-		int msgSize = inStream.readInt();
+		int msgSize = checkMessageLength(inStream.readInt());
 		byte[] msg = new byte[msgSize];
-		int bytesRead = inStream.read(msg, 0, msgSize);
-		
-		if (bytesRead < msgSize) {
-			throw new IOException("did not read all bytes...");
-		}
+		//A single read may return only a part of a large message.
+		inStream.readFully(msg, 0, msgSize);
 		
 		if (isFaster) {
 			return new FasterMessage(msg);
@@ -110,6 +109,72 @@ public class FasterTCPChannel extends PlainChannel {
 		return (Serializable) ois.readObject();
 	}
 	
+	/**
+	 * Sends the given bytes as is. The bytes are sent exactly like the data of a {@link FasterMessage}.
+	 */
+	@Override
+	public void sendBytes(byte[] data) throws IOException {
+		outStream.writeBoolean(true); // is faster
+		outStream.writeInt(data.length);
+		outStream.write(data);
+	}
+	
+	/**
+	 * Receives bytes that were sent using the {@link #sendBytes(byte[])} function or as the data of a {@link FasterMessage}.
+	 */
+	@Override
+	public byte[] receiveBytes() throws IOException {
+		if (!inStream.readBoolean()) {
+			throw new IOException("the received message is not a byte message");
+		}
+		return readBytes(inStream);
+	}
+	
+	/**
+	 * Sends the given arrays as one faster message. The data of the message contains the number of arrays and their 
+	 * lengths, followed by the arrays themselves.
+	 */
+	@Override
+	public void sendByteArrays(byte[][] data) throws IOException {
+		int size = 4 * (data.length + 1);
+		for (int i=0; i<data.length; i++){
+			size += data[i].length;
+		}
+		outStream.writeBoolean(true); // is faster
+		outStream.writeInt(size);
+		outStream.writeInt(data.length);
+		for (int i=0; i<data.length; i++){
+			outStream.writeInt(data[i].length);
+		}
+		for (int i=0; i<data.length; i++){
+			outStream.write(data[i]);
+		}
+	}
+	
+	/**
+	 * Receives arrays that were sent using the {@link #sendByteArrays(byte[][])} function.
+	 */
+	@Override
+	public byte[][] receiveByteArrays() throws IOException {
+		if (!inStream.readBoolean()) {
+			throw new IOException("the received message is not a byte message");
+		}
+		//The total size is not needed since every array is read directly and the lengths of the arrays are checked by readByteArrays.
+		inStream.readInt();
+		return readByteArrays(inStream);
+	}
+	
+	/**
+	 * Waits until the next message starts to arrive, without consuming it.
+	 */
+	@Override
+	public boolean waitForMessage(long timeout) throws IOException {
+		if (bufferedIn == null){
+			throw new IOException("the channel is not connected");
+		}
+		return waitForInput(socket, bufferedIn, timeout);
+	}
+	
 	/**
 	 * Closes the socket and all other used resources.
 	 */
@@ -155,7 +220,7 @@ public class FasterTCPChannel extends PlainChannel {
 			try {
 				Logging.getLogger().log(Level.INFO, "Socket connected");
 				outStream = new DataOutputStream(socket.getOutputStream());
-				inStream = new DataInputStream(socket.getInputStream());
+				setInputStream();
 			} catch (IOException e) {
 				Logging.getLogger().log(Level.FINEST, e.toString());
 			}
@@ -188,13 +253,21 @@ public class FasterTCPChannel extends PlainChannel {
 		try {
 			//set t he input and output streams
 			outStream = new DataOutputStream(socket.getOutputStream());
-			inStream = new DataInputStream(socket.getInputStream());
+			setInputStream();
 		} catch (IOException e) {
 
 			Logging.getLogger().log(Level.WARNING, e.toString());
 		}
 	}
 	
+	/**
+	 * Creates the input stream over a buffer that allows peeking the next message.
+	 */
+	private void setInputStream() throws IOException {
+		bufferedIn = new BufferedInputStream(socket.getInputStream());
+		inStream = new DataInputStream(bufferedIn);
+	}
+	
 	/**
 	 * Return the underlying socket. Used only internally.
 	 * @return the underlying socket
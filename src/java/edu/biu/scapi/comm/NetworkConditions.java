@@ -0,0 +1,131 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.comm;
+
+import java.util.Random;
+
+/**
+ * This class describes the conditions of an emulated network link, used by the {@link NetworkEmulationChannel}.<p>
+ * The conditions are the round trip time, the bandwidth, the size of the bursts that may be sent without delay, and the 
+ * jitter that is added to the latency of each message.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+public class NetworkConditions {
+
+	/**
+	 * The distributions of the jitter added to the latency of each message.
+	 */
+	public static enum JitterDistribution {
+		UNIFORM,		//Uniform between 0 and the jitter.
+		NORMAL,			//The absolute value of a normal variable whose standard deviation is the jitter.
+		EXPONENTIAL		//Exponential with mean equal to the jitter.
+	}
+	
+	public static final long UNLIMITED_BANDWIDTH = 0;
+	
+	private long rttMillis;
+	private long bandwidth;
+	private long burstBytes;
+	private double jitterMillis;
+	private JitterDistribution distribution;
+	
+	/**
+	 * Creates network conditions without a bandwidth limit and without jitter.
+	 * @param rttMillis the round trip time, in milliseconds.
+	 */
+	public NetworkConditions(long rttMillis){
+		this(rttMillis, UNLIMITED_BANDWIDTH, 0, 0, JitterDistribution.UNIFORM);
+	}
+	
+	/**
+	 * Creates network conditions.
+	 * @param rttMillis the round trip time, in milliseconds. Each direction adds half of it to every message.
+	 * @param bandwidth the bandwidth of each direction, in bytes per second. {@link #UNLIMITED_BANDWIDTH} means no limit.
+	 * @param burstBytes the number of bytes that may be sent at once, after the link was idle.
+	 * @param jitterMillis the parameter of the jitter distribution, in milliseconds.
+	 * @param distribution the distribution of the jitter.
+	 */
+	public NetworkConditions(long rttMillis, long bandwidth, long burstBytes, double jitterMillis, JitterDistribution distribution){
+		if (rttMillis < 0 || bandwidth < 0 || burstBytes < 0 || jitterMillis < 0){
+			throw new IllegalArgumentException("the network conditions should not be negative");
+		}
+		this.rttMillis = rttMillis;
+		this.bandwidth = bandwidth;
+		this.burstBytes = burstBytes;
+		this.jitterMillis = jitterMillis;
+		this.distribution = distribution;
+	}
+	
+	public long getRttMillis(){
+		return rttMillis;
+	}
+	
+	public long getBandwidth(){
+		return bandwidth;
+	}
+	
+	public long getBurstBytes(){
+		return burstBytes;
+	}
+	
+	public double getJitterMillis(){
+		return jitterMillis;
+	}
+	
+	public JitterDistribution getJitterDistribution(){
+		return distribution;
+	}
+	
+	/**
+	 * Samples the latency of one direction of the link: half of the round trip time plus a jitter.
+	 * @param random the source of randomness.
+	 * @return the sampled latency, in nanoseconds.
+	 */
+	long sampleOneWayLatencyNanos(Random random){
+		double jitter = 0;
+		if (jitterMillis > 0){
+			switch (distribution){
+			case UNIFORM:
+				jitter = random.nextDouble() * jitterMillis;
+				break;
+			case NORMAL:
+				jitter = Math.abs(random.nextGaussian()) * jitterMillis;
+				break;
+			case EXPONENTIAL:
+				jitter = -Math.log(1 - random.nextDouble()) * jitterMillis;
+				break;
+			}
+		}
+		return (long) ((rttMillis / 2.0 + jitter) * 1000000);
+	}
+	
+	@Override
+	public String toString(){
+		return "rtt=" + rttMillis + "ms bandwidth=" + (bandwidth == UNLIMITED_BANDWIDTH ? "unlimited" : bandwidth + "B/s") + 
+				" burst=" + burstBytes + "B jitter=" + jitterMillis + "ms " + distribution;
+	}
+}
@@ -0,0 +1,315 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.comm;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+
+import edu.biu.scapi.generals.Logging;
+
+/**
+ * This channel emulates a wide area network link on top of a fast channel (a loopback or a local TCP channel), in order 
+ * to measure how protocols behave under WAN conditions on one machine.<p>
+ * 
+ * The emulation is done on the sending side, according to the given {@link NetworkConditions}:
+ * <ul>
+ * <li>Bandwidth - a token bucket limits the sending rate. The sending thread waits until the message could be transmitted 
+ * over the emulated link, as it would wait for a full socket buffer.</li>
+ * <li>Latency and jitter - after the message was "transmitted", a delivery thread passes it to the underlying channel 
+ * after half of the round trip time plus a sampled jitter. Messages are never reordered, as in TCP.</li>
+ * </ul>
+ * Both parties should wrap their channels with a NetworkEmulationChannel, since each party emulates the direction in which 
+ * it sends. Objects are serialized by this channel in order to know their size, and are sent as bytes.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+public class NetworkEmulationChannel extends ChannelDecorator {
+
+	private static final long NANOS_PER_SECOND = 1000000000L;
+	
+	//The types of the delayed messages.
+	private static final int BYTES = 0;
+	private static final int ARRAYS = 1;
+	
+	private NetworkConditions conditions;
+	private Random random;
+	
+	private double tokens;						//The number of bytes that can be sent without waiting. May be negative.
+	private long lastRefill = System.nanoTime();	//The last time the tokens were updated.
+	private long lastDelivery;					//The delivery time of the last message. Used to keep the messages in order.
+	
+	private BlockingQueue<DelayedMessage> queue = new LinkedBlockingQueue<DelayedMessage>();
+	private DeliveryThread delivery;
+	private volatile IOException failure;		//The first exception thrown by the underlying channel, if any.
+	private int pending;						//The number of messages that were not delivered yet.
+	private boolean closed;
+	
+	/**
+	 * A message that waits for its delivery time.
+	 */
+	private static class DelayedMessage {
+		long deliveryTime;
+		int type;
+		Object data;
+		
+		DelayedMessage(long deliveryTime, int type, Object data){
+			this.deliveryTime = deliveryTime;
+			this.type = type;
+			this.data = data;
+		}
+	}
+	
+	/**
+	 * Creates a NetworkEmulationChannel that wraps the given channel.
+	 * @param channel an already connected channel.
+	 * @param conditions the conditions of the emulated link.
+	 */
+	public NetworkEmulationChannel(PlainChannel channel, NetworkConditions conditions) {
+		this(channel, conditions, new Random());
+	}
+	
+	/**
+	 * Creates a NetworkEmulationChannel that wraps the given channel and samples the jitter using the given random object.
+	 * @param channel an already connected channel.
+	 * @param conditions the conditions of the emulated link.
+	 * @param random used to sample the jitter. A seeded random makes the experiments repeatable.
+	 */
+	public NetworkEmulationChannel(PlainChannel channel, NetworkConditions conditions, Random random) {
+		super(channel);
+		this.conditions = conditions;
+		this.random = random;
+		tokens = conditions.getBurstBytes();
+		delivery = new DeliveryThread();
+		delivery.start();
+	}
+	
+	/**
+	 * Returns the conditions of the emulated link.
+	 */
+	public NetworkConditions getConditions(){
+		return conditions;
+	}
+	
+	/**
+	 * Serializes the given message and sends it over the emulated link.
+	 */
+	@Override
+	public void send(Serializable data) throws IOException {
+		ByteArrayOutputStream bOut = new ByteArrayOutputStream();
+		ObjectOutputStream oOut = new ObjectOutputStream(bOut);
+		oOut.writeObject(data);
+		oOut.close();
+		byte[] serialized = bOut.toByteArray();
+		transmit(BYTES, serialized, serialized.length);
+	}
+	
+	@Override
+	public Serializable receive() throws ClassNotFoundException, IOException {
+		ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(channel.receiveBytes()));
+		return (Serializable) ois.readObject();
+	}
+
+	/**
+	 * Sends the given bytes over the emulated link. The bytes are copied, since they are delivered after this function returns.
+	 */
+	@Override
+	public void sendBytes(byte[] data) throws IOException {
+		transmit(BYTES, data.clone(), data.length);
+	}
+
+	@Override
+	public byte[] receiveBytes() throws IOException {
+		return channel.receiveBytes();
+	}
+
+	/**
+	 * Sends the given arrays over the emulated link. The arrays are copied, since they are delivered after this function returns.
+	 */
+	@Override
+	public void sendByteArrays(byte[][] data) throws IOException {
+		byte[][] copy = new byte[data.length][];
+		long size = 0;
+		for (int i = 0; i < data.length; i++){
+			copy[i] = data[i].clone();
+			size += data[i].length;
+		}
+		transmit(ARRAYS, copy, size);
+	}
+
+	@Override
+	public byte[][] receiveByteArrays() throws IOException {
+		return channel.receiveByteArrays();
+	}
+	
+	/**
+	 * Waits for the transmission time of the message according to the bandwidth, and queues the message for delivery 
+	 * after the latency.
+	 */
+	private synchronized void transmit(int type, Object data, long size) throws IOException {
+		if (closed){
+			throw new IOException("the channel is closed");
+		}
+		if (failure != null){
+			throw new IOException("a previous message failed to be sent", failure);
+		}
+		
+		long bandwidth = conditions.getBandwidth();
+		if (bandwidth != NetworkConditions.UNLIMITED_BANDWIDTH){
+			//Refill the bucket according to the time passed since the last refill.
+			long now = System.nanoTime();
+			tokens = Math.min(conditions.getBurstBytes(), tokens + (double) (now - lastRefill) * bandwidth / NANOS_PER_SECOND);
+			lastRefill = now;
+			
+			//Take the tokens of the message, and wait in case there were not enough of them.
+			tokens -= size;
+			if (tokens < 0){
+				sleepUntil(now + (long) (-tokens * NANOS_PER_SECOND / bandwidth));
+			}
+		}
+		
+		long deliveryTime = Math.max(lastDelivery, System.nanoTime() + conditions.sampleOneWayLatencyNanos(random));
+		lastDelivery = deliveryTime;
+		pending++;
+		queue.add(new DelayedMessage(deliveryTime, type, data));
+	}
+	
+	private static void sleepUntil(long time) throws InterruptedIOException {
+		long remaining;
+		while ((remaining = time - System.nanoTime()) > 0){
+			LockSupport.parkNanos(remaining);
+			if (Thread.interrupted()){
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException();
+			}
+		}
+	}
+	
+	/**
+	 * Waits until all the sent messages were delivered to the underlying channel.
+	 * @throws IOException in case one of the messages failed to be sent or the thread was interrupted.
+	 */
+	public synchronized void flush() throws IOException {
+		while (pending > 0 && failure == null){
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException();
+			}
+		}
+		if (failure != null){
+			throw new IOException("a previous message failed to be sent", failure);
+		}
+	}
+	
+	private synchronized void delivered(IOException e){
+		pending--;
+		if (e != null && failure == null){
+			failure = e;
+		}
+		notifyAll();
+	}
+	
+	/**
+	 * Delivers the queued messages, after the delivery time is reached, to the underlying channel.
+	 */
+	private class DeliveryThread extends Thread {
+		
+		DeliveryThread(){
+			setName("NetworkEmulation-" + getName());
+			setDaemon(true);
+		}
+		
+		public void run(){
+			while (true){
+				DelayedMessage message;
+				try {
+					message = queue.take();
+					sleepUntil(message.deliveryTime);
+				} catch (InterruptedException e) {
+					return;
+				} catch (InterruptedIOException e) {
+					return;
+				}
+				if (message.data == null){
+					//The channel was closed.
+					return;
+				}
+				
+				IOException error = null;
+				if (failure == null){
+					try {
+						if (message.type == BYTES){
+							channel.sendBytes((byte[]) message.data);
+						} else {
+							channel.sendByteArrays((byte[][]) message.data);
+						}
+					} catch (IOException e) {
+						Logging.getLogger().log(Level.WARNING, e.toString());
+						error = e;
+					}
+				}
+				delivered(error);
+			}
+		}
+	}
+	
+	/**
+	 * Delivers the messages that were already sent, and closes the underlying channel.
+	 */
+	@Override
+	public void close() {
+		synchronized (this){
+			if (closed){
+				return;
+			}
+			closed = true;
+		}
+		try {
+			flush();
+		} catch (IOException e) {
+			Logging.getLogger().log(Level.WARNING, e.toString());
+		}
+		queue.add(new DelayedMessage(0, BYTES, null));
+		channel.close();
+	}
+
+	@Override
+	public boolean isClosed() {
+		return channel.isClosed();
+	}
+}
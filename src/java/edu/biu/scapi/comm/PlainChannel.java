@@ -37,14 +37,20 @@
  */
 package edu.biu.scapi.comm;
 
+import java.io.BufferedInputStream;
+import java.io.DataInput;
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.Serializable;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
 
 /*
  * Abstract class that holds data and functionality common to different types of concrete channels.
  * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University (Meital Ley)
  *
  */
-public abstract class PlainChannel implements Channel {
+public abstract class PlainChannel implements PollableChannel {
 
 	public static enum State {
 		
@@ -55,13 +61,91 @@ public abstract class PlainChannel implements Channel {
 
 	}
 	
-	private State state;
+	public static final int DEFAULT_MAX_MESSAGE_SIZE = 1 << 28;	//The default bound on the length of a received message (256 MB).
 	
+	private State state;
+	private int maxMessageSize = DEFAULT_MAX_MESSAGE_SIZE;		//Received messages longer than this are rejected before allocating memory for them.
 	
 	
 	protected PlainChannel(){
 		state = State.NOT_INIT;
 	}
+	
+	/**
+	 * Sets the maximal length of a received message. The lengths of received messages are read from the wire, so a message 
+	 * that declares a larger length is rejected with an IOException instead of allocating memory for it.<p>
+	 * The default is 256 MB.
+	 * @param maxMessageSize the maximal length of a received message, in bytes.
+	 */
+	public void setMaxMessageSize(int maxMessageSize){
+		if (maxMessageSize < 0){
+			throw new IllegalArgumentException("the maximal message size should be non-negative");
+		}
+		this.maxMessageSize = maxMessageSize;
+	}
+	
+	/**
+	 * Returns the maximal length of a received message.
+	 */
+	public int getMaxMessageSize(){
+		return maxMessageSize;
+	}
+	
+	/**
+	 * Checks the length of a received message, that was read from the wire, before memory is allocated according to it.
+	 * @param length the read length.
+	 * @return the given length.
+	 * @throws IOException in case the length is negative or larger than the maximal message size.
+	 */
+	protected int checkMessageLength(int length) throws IOException {
+		if (length < 0 || length > maxMessageSize){
+			throw new IOException("illegal message length " + length + ". the maximal message length is " + maxMessageSize);
+		}
+		return length;
+	}
+	
+	/**
+	 * Reads a message that was written by a sendBytes function of a stream channel: the length of the message followed by its bytes.
+	 * @param in the stream to read from.
+	 * @return the read bytes.
+	 * @throws IOException in case the length is illegal or any of the usual Input/Output related exceptions.
+	 */
+	protected byte[] readBytes(DataInput in) throws IOException {
+		byte[] data = new byte[checkMessageLength(in.readInt())];
+		in.readFully(data);
+		return data;
+	}
+	
+	/**
+	 * Reads a message that was written by a sendByteArrays function of a stream channel: the number of arrays, their 
+	 * lengths and the arrays themselves. The lengths of the arrays, including the integers that hold them, are bounded 
+	 * together by the maximal message size.
+	 * @param in the stream to read from.
+	 * @return the read arrays.
+	 * @throws IOException in case the number of arrays or one of the lengths is illegal or any of the usual Input/Output related exceptions.
+	 */
+	protected byte[][] readByteArrays(DataInput in) throws IOException {
+		int count = in.readInt();
+		int remaining = maxMessageSize;
+		if (count < 0 || count > remaining / 4){
+			throw new IOException("illegal number of arrays " + count);
+		}
+		remaining -= 4 * count;
+		
+		byte[][] data = new byte[count][];
+		for (int i=0; i<count; i++){
+			int length = in.readInt();
+			if (length < 0 || length > remaining){
+				throw new IOException("illegal array length " + length);
+			}
+			remaining -= length;
+			data[i] = new byte[length];
+		}
+		for (int i=0; i<data.length; i++){
+			in.readFully(data[i]);
+		}
+		return data;
+	}
 
 	/**
 	 * returns the state of the channel. This class that implements the channel interface has a private attribute state. Other classes
@@ -79,6 +163,49 @@ public abstract class PlainChannel implements Channel {
 		this.state = state; 
 	}
 	
+	/**
+	 * @see PollableChannel#waitForMessage(long)
+	 */
+	public abstract boolean waitForMessage(long timeout) throws IOException;
+
+	public Serializable receive(long timeout) throws ClassNotFoundException, IOException {
+		return waitForMessage(timeout) ? receive() : null;
+	}
+
+	public Serializable tryReceive() throws ClassNotFoundException, IOException {
+		return receive(0);
+	}
+
+	/**
+	 * Waits until at least one byte can be read from the given stream of the given socket, without consuming it.<p>
+	 * The bytes are peeked using the mark of the buffered stream, and the timeout is set as the timeout of the socket
+	 * only for the duration of the wait.
+	 * @return true if there is a byte to read; false if no byte arrived within the timeout.
+	 * @throws EOFException in case the other party closed the socket.
+	 */
+	protected static boolean waitForInput(Socket socket, BufferedInputStream in, long timeout) throws IOException {
+		if (in.available() > 0){
+			return true;
+		}
+		if (timeout <= 0){
+			return false;
+		}
+
+		socket.setSoTimeout((int) Math.min(timeout, Integer.MAX_VALUE));
+		try {
+			in.mark(1);
+			if (in.read() < 0){
+				throw new EOFException("the other party closed the channel");
+			}
+			in.reset();
+			return true;
+		} catch (SocketTimeoutException e) {
+			return false;
+		} finally {
+			socket.setSoTimeout(0);
+		}
+	}
+
 	protected abstract boolean connect() throws IOException;
 	
 	protected abstract boolean isConnected();
@@ -27,6 +27,7 @@
 
 package edu.biu.scapi.comm;
 
+import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -75,6 +76,7 @@ public class PlainTCPChannel extends PlainChannel{
 	private Socket socket = new Socket();
 	private ObjectOutputStream outStream;
 	private ObjectInputStream inStream;
+	private BufferedInputStream bufferedIn;	//The buffer under the input stream, used to peek the next message.
 	private InetSocketAddress socketAddress;
 	private Message intermediate;
 	private Message msgObj;
@@ -151,6 +153,74 @@ public class PlainTCPChannel extends PlainChannel{
 		
 		//return (Serializable) inStream.readObject();
 	}
+	
+	/** 
+	 * Sends the given bytes to the other end-user of the channel as primitive data of the object stream, without serializing them.
+	 *  
+	 * @param data the bytes to send
+	 * @throws IOException Any of the usual Input/Output related exceptions.  
+	 */
+	public void sendBytes(byte[] data) throws IOException {
+		outStream.writeInt(data.length);
+		outStream.write(data);
+		outStream.flush();
+	}
+	
+	/** 
+	 * Receives bytes that were sent by the other end-user of the channel using the {@link #sendBytes(byte[])} function.
+	 * 
+	 * @throws IOException Any of the usual Input/Output related exceptions
+	 */
+	public byte[] receiveBytes() throws IOException {
+		return readBytes(inStream);
+	}
+	
+	/** 
+	 * Sends the given arrays to the other end-user of the channel as primitive data of the object stream, without serializing them.
+	 *  
+	 * @param data the arrays to send
+	 * @throws IOException Any of the usual Input/Output related exceptions.  
+	 */
+	public void sendByteArrays(byte[][] data) throws IOException {
+		outStream.writeInt(data.length);
+		for (int i=0; i<data.length; i++){
+			outStream.writeInt(data[i].length);
+		}
+		for (int i=0; i<data.length; i++){
+			outStream.write(data[i]);
+		}
+		outStream.flush();
+	}
+	
+	/** 
+	 * Receives arrays that were sent by the other end-user of the channel using the {@link #sendByteArrays(byte[][])} function.
+	 * 
+	 * @throws IOException Any of the usual Input/Output related exceptions
+	 */
+	public byte[][] receiveByteArrays() throws IOException {
+		return readByteArrays(inStream);
+	}
+
+	/**
+	 * Waits until the next message starts to arrive, without consuming it.
+	 * @param timeout the maximal time to wait, in milliseconds. Zero or a negative value means not to wait at all.
+	 * @return true if a message can be received; false if no message arrived within the timeout.
+	 * @throws IOException Any of the usual Input/Output related exceptions.
+	 */
+	public boolean waitForMessage(long timeout) throws IOException {
+		if (inStream == null){
+			throw new IOException("the channel is not connected");
+		}
+		long deadline = System.currentTimeMillis() + timeout;
+		
+		//Checking the object stream first consumes the reset marks that follow the sent objects.
+		while (inStream.available() == 0 && bufferedIn.available() == 0){
+			if (!waitForInput(socket, bufferedIn, deadline - System.currentTimeMillis())){
+				return false;
+			}
+		}
+		return true;
+	}
 
 	/**
 	 * Closes the socket and all other used resources.
@@ -198,7 +268,7 @@ public class PlainTCPChannel extends PlainChannel{
 			try {
 				Logging.getLogger().log(Level.INFO, "Socket connected");
 				outStream = new ObjectOutputStream(socket.getOutputStream());
-				inStream = new ObjectInputStream(socket.getInputStream());
+				setInputStream();
 			} catch (IOException e) {
 				
 				Logging.getLogger().log(Level.FINEST, e.toString());
@@ -235,13 +305,21 @@ public class PlainTCPChannel extends PlainChannel{
 		try {
 			//set t he input and output streams
 			outStream = new ObjectOutputStream(socket.getOutputStream());
-			inStream = new ObjectInputStream(socket.getInputStream());
+			setInputStream();
 		} catch (IOException e) {
 
 			Logging.getLogger().log(Level.WARNING, e.toString());
 		}
 	}
 	
+	/**
+	 * Creates the input stream over a buffer that allows peeking the next message.
+	 */
+	private void setInputStream() throws IOException {
+		bufferedIn = new BufferedInputStream(socket.getInputStream());
+		inStream = new ObjectInputStream(bufferedIn);
+	}
+	
 	/**
 	 * Return the underlying socket. Used only internally.
 	 * @return the underlying socket
@@ -0,0 +1,73 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+
+package edu.biu.scapi.comm;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+/**
+ * This interface represents a channel that can wait for the next message with a timeout, in addition to the blocking receive 
+ * functions of {@link Channel}.<p>
+ * 
+ * This allows a protocol to poll several channels, or to interleave local computation while waiting for the other party.
+ * The timeout applies to the beginning of a message. Once a message has started to arrive, it is received completely,
+ * so a timeout never leaves a partially read message in the channel.<p>
+ * 
+ * All the channels and decorators of this package, as well as the socket, loopback, multiplexed and queue channels, are pollable.
+ * The {@link edu.biu.scapi.comm.twoPartyComm.NativeChannel} is not, since its native sockets can only block.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ */
+public interface PollableChannel extends Channel {
+
+	/**
+	 * Waits until the next message starts to arrive, without consuming it.<p>
+	 * After this function returns true, the message can be received by any of the receive functions, so this function can
+	 * also be used to poll for messages that are sent using {@link #sendBytes(byte[])} or {@link #sendByteArrays(byte[][])}.
+	 * @param timeout the maximal time to wait, in milliseconds. Zero or a negative value means not to wait at all.
+	 * @return true if a message can be received; false if no message arrived within the timeout.
+	 * @throws IOException Any of the usual Input/Output related exceptions.
+	 */
+	public boolean waitForMessage(long timeout) throws IOException;
+	
+	/**
+	 * Receives the next message in case it arrives within the given timeout.
+	 * @param timeout the maximal time to wait, in milliseconds. Zero or a negative value means not to wait at all.
+	 * @return the received message, or null in case no message arrived within the timeout.
+	 * @throws ClassNotFoundException The Class of the serialized object cannot be found.
+	 * @throws IOException Any of the usual Input/Output related exceptions.
+	 */
+	public Serializable receive(long timeout) throws ClassNotFoundException, IOException;
+
+	/**
+	 * Receives the next message in case it has already started to arrive, without waiting.<p>
+	 * This is equivalent to calling {@link #receive(long)} with a zero timeout.
+	 * @return the received message, or null in case there is no message to receive.
+	 * @throws ClassNotFoundException The Class of the serialized object cannot be found.
+	 * @throws IOException Any of the usual Input/Output related exceptions.
+	 */
+	public Serializable tryReceive() throws ClassNotFoundException, IOException;
+}
@@ -0,0 +1,109 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+
+package edu.biu.scapi.comm.codec;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+import edu.biu.scapi.comm.ChannelDecorator;
+import edu.biu.scapi.comm.PlainChannel;
+
+/**
+ * This channel encodes every sent message using a {@link MessageCodecRegistry} and sends the encoding as raw bytes.
+ * Received messages are decoded by the same registry.<p>
+ * 
+ * That way, protocols that send group elements and BigIntegers can use compact binary messages without any change, 
+ * by wrapping their channel with this channel. Both parties should wrap their channels with a CodecChannel that has 
+ * the same codecs registered.<p>
+ * 
+ * The raw bytes functions of the channel are passed as is to the underlying channel.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+public class CodecChannel extends ChannelDecorator {
+
+	private MessageCodecRegistry registry;
+	
+	/**
+	 * Creates a CodecChannel that wraps the given channel.
+	 * @param channel an already connected channel.
+	 * @param registry the registry that holds the codecs of the sent messages.
+	 */
+	public CodecChannel(PlainChannel channel, MessageCodecRegistry registry) {
+		super(channel);
+		this.registry = registry;
+	}
+
+	/**
+	 * Encodes the given message using the registry and sends the encoding.
+	 */
+	@Override
+	public void send(Serializable data) throws IOException {
+		channel.sendBytes(registry.encode(data));
+	}
+
+	/**
+	 * Receives an encoded message and decodes it using the registry.
+	 */
+	@Override
+	public Serializable receive() throws ClassNotFoundException, IOException {
+		return registry.decode(channel.receiveBytes());
+	}
+
+	@Override
+	public void sendBytes(byte[] data) throws IOException {
+		channel.sendBytes(data);
+	}
+
+	@Override
+	public byte[] receiveBytes() throws IOException {
+		return channel.receiveBytes();
+	}
+
+	@Override
+	public void sendByteArrays(byte[][] data) throws IOException {
+		channel.sendByteArrays(data);
+	}
+
+	@Override
+	public byte[][] receiveByteArrays() throws IOException {
+		return channel.receiveByteArrays();
+	}
+
+	/**
+	 * Closes the underlying channel.
+	 */
+	@Override
+	public void close() {
+		channel.close();
+	}
+
+	@Override
+	public boolean isClosed() {
+		return channel.isClosed();
+	}
+}
@@ -0,0 +1,166 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+
+package edu.biu.scapi.comm.codec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.Arrays;
+
+
+/**
+ * This class contains static functions that write and read the basic types used by the {@link MessageCodec}s.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+public final class Codecs {
+
+	private static final int MAX_INITIAL_CAPACITY = 4096;	//Bounds the memory allocated according to a length read from the input.
+
+	private Codecs(){}
+	
+	/**
+	 * Writes the given non negative int using as few bytes as possible. Each byte holds 7 bits of the number and the most 
+	 * significant bit of the byte indicates whether there are more bytes.
+	 * @param out the output to write to.
+	 * @param value the number to write. Should be non negative.
+	 */
+	public static void writeVarInt(DataOutput out, int value) throws IOException {
+		if (value < 0){
+			throw new IllegalArgumentException("the given value should be non negative");
+		}
+		while ((value & ~0x7F) != 0){
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+	
+	/**
+	 * Reads a number that was written by the {@link #writeVarInt(DataOutput, int)} function.
+	 * @param in the input to read from.
+	 * @return the read number.
+	 * @throws IOException In case the number is malformed or negative or any of the usual Input/Output related exceptions.
+	 */
+	public static int readVarInt(DataInput in) throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7){
+			int b = in.readUnsignedByte();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0){
+				if (value < 0){
+					throw new IOException("malformed variable length int");
+				}
+				return value;
+			}
+		}
+		throw new IOException("malformed variable length int");
+	}
+	
+	/**
+	 * Returns the initial capacity to use for a collection whose size was read from the input.<p>
+	 * The size is not trusted, so the capacity is bounded and the collection grows as its elements are actually read.
+	 * @param size the size that was read from the input.
+	 * @return the initial capacity of the collection.
+	 */
+	public static int initialCapacity(int size){
+		return Math.min(size, MAX_INITIAL_CAPACITY);
+	}
+	
+	/**
+	 * Reads the given number of bytes.<p>
+	 * The length is usually read from the input and thus is not trusted. Large arrays are allocated in steps as their
+	 * bytes are actually read, so a wrong length causes an EOFException rather than a large allocation.
+	 * @param in the input to read from.
+	 * @param length the number of bytes to read.
+	 * @return the read bytes.
+	 */
+	public static byte[] readBytes(DataInput in, int length) throws IOException {
+		byte[] bytes = new byte[initialCapacity(length)];
+		int read = 0;
+		while (true){
+			in.readFully(bytes, read, bytes.length - read);
+			read = bytes.length;
+			if (read == length){
+				return bytes;
+			}
+			bytes = Arrays.copyOf(bytes, (int) Math.min((long) read * 2, length));
+		}
+	}
+	
+	/**
+	 * Writes the given BigInteger as its two's complement representation, prefixed by its length.
+	 * @param out the output to write to.
+	 * @param value the number to write.
+	 */
+	public static void writeBigInteger(DataOutput out, BigInteger value) throws IOException {
+		byte[] bytes = value.toByteArray();
+		writeVarInt(out, bytes.length);
+		out.write(bytes);
+	}
+	
+	/**
+	 * Reads a BigInteger that was written by the {@link #writeBigInteger(DataOutput, BigInteger)} function.
+	 * @param in the input to read from.
+	 * @return the read number.
+	 */
+	public static BigInteger readBigInteger(DataInput in) throws IOException {
+		return new BigInteger(readBytes(in, readVarInt(in)));
+	}
+	
+	/**
+	 * Writes the given non negative BigInteger as an unsigned number of exactly the given number of bytes.<p>
+	 * This should be used for numbers with a known bound, like elements of Zp, since there is no need to write the length.
+	 * @param out the output to write to.
+	 * @param value the number to write.
+	 * @param width the number of bytes to write.
+	 */
+	public static void writeFixedBigInteger(DataOutput out, BigInteger value, int width) throws IOException {
+		if (value.signum() < 0 || value.bitLength() > width * 8){
+			throw new IllegalArgumentException("the number does not fit in " + width + " bytes");
+		}
+		byte[] bytes = value.toByteArray();
+		//toByteArray may add a leading zero byte for the sign, or return less bytes than the width.
+		int start = (bytes.length > width) ? bytes.length - width : 0;
+		byte[] fixed = new byte[width];
+		System.arraycopy(bytes, start, fixed, width - (bytes.length - start), bytes.length - start);
+		out.write(fixed);
+	}
+	
+	/**
+	 * Reads a BigInteger that was written by the {@link #writeFixedBigInteger(DataOutput, BigInteger, int)} function.
+	 * @param in the input to read from.
+	 * @param width the number of bytes to read.
+	 * @return the read number.
+	 */
+	public static BigInteger readFixedBigInteger(DataInput in, int width) throws IOException {
+		byte[] bytes = new byte[width];
+		in.readFully(bytes);
+		return new BigInteger(1, bytes);
+	}
+}
@@ -0,0 +1,167 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+
+package edu.biu.scapi.comm.codec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigInteger;
+
+import org.bouncycastle.math.ec.ECCurve;
+import org.bouncycastle.math.ec.ECPoint;
+
+import edu.biu.scapi.primitives.dlog.DlogGroup;
+import edu.biu.scapi.primitives.dlog.ECElementSendableData;
+import edu.biu.scapi.primitives.dlog.GroupElementSendableData;
+import edu.biu.scapi.primitives.dlog.ZpElementSendableData;
+import edu.biu.scapi.primitives.dlog.groupParams.ECF2mKoblitz;
+import edu.biu.scapi.primitives.dlog.groupParams.ECF2mPentanomialBasis;
+import edu.biu.scapi.primitives.dlog.groupParams.ECF2mTrinomialBasis;
+import edu.biu.scapi.primitives.dlog.groupParams.ECFpGroupParams;
+import edu.biu.scapi.primitives.dlog.groupParams.GroupParams;
+import edu.biu.scapi.primitives.dlog.groupParams.ZpGroupParams;
+
+/**
+ * A codec for the sendable data of the elements of a specific Dlog group.<p>
+ * 
+ * <ul>
+ * <li>Elements of Zp groups are written as unsigned numbers with the byte length of p.</li>
+ * <li>Points of elliptic curves (both over Fp and over F2m) are written in the compressed form of SEC 1, meaning one byte 
+ * that holds the parity of y followed by x, with the byte length of the field. The point at infinity is written as one zero byte. 
+ * For example, a point of P-256 is written in 33 bytes.</li>
+ * </ul>
+ * The codec does not depend on the implementation of the Dlog group (BC, Miracl, OpenSSL, etc.), only on its parameters.
+ * Decompression of points is done using Bouncy Castle. 
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+public class GroupElementCodec implements MessageCodec<GroupElementSendableData> {
+
+	private ECCurve curve;			//The underlying curve in case of elliptic curve group. Null in case of Zp group.
+	private int fieldSize;			//Number of bytes of an element of the underlying field.
+	
+	/**
+	 * Creates a codec for the elements of the given Dlog group.
+	 * @param dlog the group of the encoded elements.
+	 * @throws IllegalArgumentException in case the group is not Zp or elliptic curve over Fp or F2m.
+	 */
+	public GroupElementCodec(DlogGroup dlog){
+		GroupParams params = dlog.getGroupParams();
+		if (params instanceof ECF2mKoblitz){
+			params = ((ECF2mKoblitz) params).getCurve();
+		}
+		
+		if (params instanceof ZpGroupParams){
+			fieldSize = (((ZpGroupParams) params).getP().bitLength() + 7) / 8;
+			
+		} else if (params instanceof ECFpGroupParams){
+			ECFpGroupParams fpParams = (ECFpGroupParams) params;
+			//The parameters files may contain a negative a (for example, a = -3), which should be reduced modulo p.
+			curve = new ECCurve.Fp(fpParams.getP(), fpParams.getA().mod(fpParams.getP()), fpParams.getB());
+			
+		} else if (params instanceof ECF2mTrinomialBasis){
+			ECF2mTrinomialBasis triParams = (ECF2mTrinomialBasis) params;
+			curve = new ECCurve.F2m(triParams.getM(), triParams.getK1(), triParams.getA(), triParams.getB());
+			
+		} else if (params instanceof ECF2mPentanomialBasis){
+			ECF2mPentanomialBasis pentaParams = (ECF2mPentanomialBasis) params;
+			curve = new ECCurve.F2m(pentaParams.getM(), pentaParams.getK1(), pentaParams.getK2(), pentaParams.getK3(), pentaParams.getA(), pentaParams.getB());
+			
+		} else {
+			throw new IllegalArgumentException("the given group is not supported");
+		}
+		
+		if (curve != null){
+			fieldSize = (curve.getFieldSize() + 7) / 8;
+		}
+	}
+	
+	@Override
+	public Class<? extends GroupElementSendableData> getMessageClass() {
+		if (curve == null){
+			return ZpElementSendableData.class;
+		}
+		return ECElementSendableData.class;
+	}
+	
+	/**
+	 * Returns the maximal number of bytes written for an element.
+	 */
+	public int getEncodedSize(){
+		if (curve == null){
+			return fieldSize;
+		}
+		return fieldSize + 1;
+	}
+	
+	@Override
+	public void encode(GroupElementSendableData msg, DataOutput out) throws IOException {
+		if (curve == null){
+			Codecs.writeFixedBigInteger(out, ((ZpElementSendableData) msg).getX(), fieldSize);
+			return;
+		}
+		
+		ECElementSendableData point = (ECElementSendableData) msg;
+		//The point at infinity has no coordinates.
+		if (point.getX() == null){
+			out.writeByte(0);
+			return;
+		}
+		//A point that is created with compression is encoded in the compressed form.
+		out.write(curve.createPoint(point.getX(), point.getY(), true).getEncoded());
+	}
+
+	@Override
+	public GroupElementSendableData decode(DataInput in) throws IOException {
+		if (curve == null){
+			return new ZpElementSendableData(Codecs.readFixedBigInteger(in, fieldSize));
+		}
+		
+		int type = in.readUnsignedByte();
+		if (type == 0){
+			return new ECElementSendableData(null, null);
+		}
+		if (type != 2 && type != 3){
+			throw new IOException("the encoded point is not compressed");
+		}
+		
+		byte[] encoded = new byte[fieldSize + 1];
+		encoded[0] = (byte) type;
+		in.readFully(encoded, 1, fieldSize);
+		
+		ECPoint point;
+		try {
+			point = curve.decodePoint(encoded);
+		} catch (RuntimeException e){
+			throw new IOException("the encoded point is not on the curve", e);
+		}
+		//Decoded points are in affine coordinates.
+		BigInteger x = point.getX().toBigInteger();
+		BigInteger y = point.getY().toBigInteger();
+		return new ECElementSendableData(x, y);
+	}
+}
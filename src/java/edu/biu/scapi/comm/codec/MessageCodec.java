@@ -0,0 +1,69 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+
+package edu.biu.scapi.comm.codec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
+
+/**
+ * A MessageCodec translates a specific type of message to a compact binary representation and back.<p>
+ * The binary representation is used instead of the Java serialization of the message, which contains class descriptors 
+ * and the internal representation of BigIntegers and is therefore much larger than the actual content of the message.<p>
+ * 
+ * Codecs are registered in a {@link MessageCodecRegistry}, which selects the codec to use according to the type of the message.
+ * 
+ * @param <T> the type of the messages encoded by this codec.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+public interface MessageCodec<T extends Serializable> {
+
+	/**
+	 * Returns the class of the messages encoded by this codec. 
+	 * The registry uses this class in order to choose the codec of a given message.
+	 * @return the class of the messages encoded by this codec.
+	 */
+	public Class<? extends T> getMessageClass();
+	
+	/**
+	 * Writes the binary representation of the given message to the given output.
+	 * @param msg the message to encode.
+	 * @param out the output to write the encoded message to.
+	 * @throws IOException Any of the usual Input/Output related exceptions.
+	 */
+	public void encode(T msg, DataOutput out) throws IOException;
+	
+	/**
+	 * Reads a binary representation written by the {@link #encode(Serializable, DataOutput)} function and recreates the message.
+	 * @param in the input to read the encoded message from.
+	 * @return the decoded message.
+	 * @throws IOException Any of the usual Input/Output related exceptions.
+	 */
+	public T decode(DataInput in) throws IOException;
+}
@@ -0,0 +1,187 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+
+package edu.biu.scapi.comm.codec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class holds the {@link MessageCodec}s used to encode messages, keyed by the type of the messages.<p>
+ * 
+ * Each codec is registered with a type id between 1 and 255. The encoding of a message is the type id of its codec 
+ * (one byte) followed by the output of the codec. Messages that have no registered codec are encoded by Java serialization, 
+ * with the reserved type id {@value #JAVA_SERIALIZATION_TYPE}. Thus, any message can be encoded by the registry and codecs 
+ * can be added only for the messages that are worth it.<p>
+ * 
+ * Both parties should register the same codecs with the same type ids. For example, for batched OT over an elliptic curve:
+ * <pre>
+ * GroupElementCodec elementCodec = new GroupElementCodec(dlog);
+ * MessageCodecRegistry registry = new MessageCodecRegistry();
+ * registry.register(1, elementCodec);
+ * registry.register(2, new OTRGroupElementPairMsgCodec(elementCodec));
+ * Channel codecChannel = new CodecChannel(channel, registry);
+ * </pre>
+ * 
+ * The registry can be used by several threads simultaneously, as long as all the codecs are registered before it is used.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+public class MessageCodecRegistry {
+	
+	/**
+	 * The type id of messages that are encoded by Java serialization.
+	 */
+	public static final int JAVA_SERIALIZATION_TYPE = 0;
+	
+	private static final int MAX_TYPE_ID = 255;
+	
+	private MessageCodec<?>[] codecsById = new MessageCodec<?>[MAX_TYPE_ID + 1];
+	private ConcurrentHashMap<Class<?>, Integer> idsByClass = new ConcurrentHashMap<Class<?>, Integer>();
+	
+	/**
+	 * Registers the given codec with the given type id. 
+	 * @param typeId the id written before each message that is encoded with this codec. Should be between 1 and 255.
+	 * @param codec the codec to register.
+	 * @throws IllegalArgumentException in case the id is out of range, or another codec is already registered with the given id or message class.
+	 */
+	public void register(int typeId, MessageCodec<?> codec){
+		if (typeId <= JAVA_SERIALIZATION_TYPE || typeId > MAX_TYPE_ID){
+			throw new IllegalArgumentException("type id should be between 1 and " + MAX_TYPE_ID);
+		}
+		if (codecsById[typeId] != null){
+			throw new IllegalArgumentException("there is already a codec with type id " + typeId);
+		}
+		if (idsByClass.containsKey(codec.getMessageClass())){
+			throw new IllegalArgumentException("there is already a codec for " + codec.getMessageClass().getName());
+		}
+		codecsById[typeId] = codec;
+		idsByClass.put(codec.getMessageClass(), typeId);
+	}
+	
+	/**
+	 * Encodes the given message using the codec registered for its type, or using Java serialization in case there is no such codec.
+	 * @param msg the message to encode.
+	 * @return the encoded message.
+	 * @throws IOException Any of the usual Input/Output related exceptions.
+	 */
+	public byte[] encode(Serializable msg) throws IOException {
+		ByteArrayOutputStream bOut = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bOut);
+		write(msg, out);
+		out.flush();
+		return bOut.toByteArray();
+	}
+	
+	/**
+	 * Decodes a message that was encoded by the {@link #encode(Serializable)} function.
+	 * @param data the encoded message.
+	 * @return the decoded message.
+	 * @throws IOException In case the message was encoded with an unknown type id or any of the usual Input/Output related exceptions.
+	 * @throws ClassNotFoundException In case the message was encoded using Java serialization and its class cannot be found.
+	 */
+	public Serializable decode(byte[] data) throws IOException, ClassNotFoundException {
+		return read(new DataInputStream(new ByteArrayInputStream(data)));
+	}
+	
+	/**
+	 * Writes the type id of the given message and its encoding to the given output.<p>
+	 * This function can be used by codecs of messages that contain other messages.
+	 * @param msg the message to encode.
+	 * @param out the output to write to.
+	 * @throws IOException Any of the usual Input/Output related exceptions.
+	 */
+	@SuppressWarnings("unchecked")
+	public void write(Serializable msg, DataOutput out) throws IOException {
+		int typeId = getTypeId(msg.getClass());
+		out.writeByte(typeId);
+		
+		if (typeId == JAVA_SERIALIZATION_TYPE){
+			ByteArrayOutputStream bOut = new ByteArrayOutputStream();
+			ObjectOutputStream oOut = new ObjectOutputStream(bOut);
+			oOut.writeObject(msg);
+			oOut.close();
+			Codecs.writeVarInt(out, bOut.size());
+			out.write(bOut.toByteArray());
+		} else{
+			//The codec was chosen according to the class of the message, so it accepts the message.
+			((MessageCodec<Serializable>) codecsById[typeId]).encode(msg, out);
+		}
+	}
+	
+	/**
+	 * Reads a message that was written by the {@link #write(Serializable, DataOutput)} function.
+	 * @param in the input to read from.
+	 * @return the decoded message.
+	 * @throws IOException In case the message was encoded with an unknown type id or any of the usual Input/Output related exceptions.
+	 * @throws ClassNotFoundException In case the message was encoded using Java serialization and its class cannot be found.
+	 */
+	public Serializable read(DataInput in) throws IOException, ClassNotFoundException {
+		int typeId = in.readUnsignedByte();
+		
+		if (typeId == JAVA_SERIALIZATION_TYPE){
+			byte[] serialized = Codecs.readBytes(in, Codecs.readVarInt(in));
+			ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(serialized));
+			return (Serializable) ois.readObject();
+		}
+		
+		if (codecsById[typeId] == null){
+			throw new IOException("there is no codec with type id " + typeId);
+		}
+		return codecsById[typeId].decode(in);
+	}
+	
+	/**
+	 * Returns the type id to use for the given class. 
+	 * In case there is no codec registered for the exact class, a codec of a super class or interface is used.
+	 * The result is cached, so the search is done only once per class.
+	 */
+	private int getTypeId(Class<?> msgClass){
+		Integer typeId = idsByClass.get(msgClass);
+		if (typeId != null){
+			return typeId;
+		}
+		
+		typeId = JAVA_SERIALIZATION_TYPE;
+		for (int i = 1; i <= MAX_TYPE_ID; i++){
+			if (codecsById[i] != null && codecsById[i].getMessageClass().isAssignableFrom(msgClass)){
+				typeId = i;
+				break;
+			}
+		}
+		idsByClass.put(msgClass, typeId);
+		return typeId;
+	}
+}
@@ -0,0 +1,57 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.comm.compression;
+
+import java.io.IOException;
+
+/**
+ * General interface for compression algorithms used by the {@link edu.biu.scapi.comm.CompressingChannel}.<p>
+ * Both parties should use the same compression algorithm.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+public interface Compressor {
+
+	/**
+	 * Compresses the given bytes.
+	 * @param data the array that holds the bytes to compress.
+	 * @param offset the offset of the bytes to compress in the array.
+	 * @param length the number of bytes to compress.
+	 * @return the compressed bytes.
+	 */
+	public byte[] compress(byte[] data, int offset, int length);
+	
+	/**
+	 * Decompresses the given bytes.
+	 * @param data the array that holds the compressed bytes.
+	 * @param offset the offset of the compressed bytes in the array.
+	 * @param length the number of compressed bytes.
+	 * @param originalLength the number of bytes before the compression.
+	 * @return the decompressed bytes.
+	 * @throws IOException in case the given bytes are not a valid compression.
+	 */
+	public byte[] decompress(byte[] data, int offset, int length, int originalLength) throws IOException;
+}
@@ -0,0 +1,99 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.comm.compression;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A compressor that uses the Deflate algorithm of the JDK.<p>
+ * The Deflater and Inflater objects are reused between calls, so the functions of this class are synchronized.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+public class DeflateCompressor implements Compressor {
+
+	private Deflater deflater;
+	private Inflater inflater;
+	private byte[] buffer = new byte[8192];
+	
+	/**
+	 * Creates a compressor that uses the fastest compression level, which fits data that is sent over a network.
+	 */
+	public DeflateCompressor(){
+		this(Deflater.BEST_SPEED);
+	}
+	
+	/**
+	 * Creates a compressor with the given compression level.
+	 * @param level the compression level, between 0 and 9 (see {@link Deflater}).
+	 */
+	public DeflateCompressor(int level){
+		deflater = new Deflater(level);
+		inflater = new Inflater();
+	}
+	
+	@Override
+	public synchronized byte[] compress(byte[] data, int offset, int length) {
+		deflater.reset();
+		deflater.setInput(data, offset, length);
+		deflater.finish();
+		
+		ByteArrayOutputStream out = new ByteArrayOutputStream(length / 2 + 64);
+		while (!deflater.finished()){
+			int size = deflater.deflate(buffer);
+			out.write(buffer, 0, size);
+		}
+		return out.toByteArray();
+	}
+
+	@Override
+	public synchronized byte[] decompress(byte[] data, int offset, int length, int originalLength) throws IOException {
+		inflater.reset();
+		inflater.setInput(data, offset, length);
+		
+		byte[] result = new byte[originalLength];
+		try {
+			int size = 0;
+			while (size < originalLength){
+				int read = inflater.inflate(result, size, originalLength - size);
+				if (read == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())){
+					break;
+				}
+				size += read;
+			}
+			if (size != originalLength){
+				throw new IOException("the decompressed size does not match the original size");
+			}
+		} catch (DataFormatException e) {
+			throw new IOException(e);
+		}
+		return result;
+	}
+}
@@ -0,0 +1,153 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.comm.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class holds the traffic and time counters of one named channel. The counters are updated by an 
+ * {@link InstrumentedChannel} and may be read at any time, also via JMX.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+public class ChannelMetrics implements ChannelMetricsMBean {
+
+	private static final double NANOS_PER_MILLI = 1000000.0;
+	
+	private String name;
+	private AtomicLong messagesSent = new AtomicLong();
+	private AtomicLong bytesSent = new AtomicLong();
+	private AtomicLong messagesReceived = new AtomicLong();
+	private AtomicLong bytesReceived = new AtomicLong();
+	private AtomicLong roundTrips = new AtomicLong();
+	private AtomicLong serializationNanos = new AtomicLong();
+	private AtomicLong deserializationNanos = new AtomicLong();
+	private AtomicLong sendBlockedNanos = new AtomicLong();
+	private AtomicLong receiveBlockedNanos = new AtomicLong();
+	private volatile boolean sentSinceReceive;	//Indicates whether a message was sent after the last receive.
+	
+	/**
+	 * Creates the metrics of the channel with the given name.
+	 */
+	ChannelMetrics(String name){
+		this.name = name;
+	}
+	
+	/**
+	 * Records a sent message.
+	 * @param bytes the size of the message.
+	 * @param serializationNanos the time spent on serializing the message.
+	 * @param blockedNanos the time spent in the send function of the underlying channel.
+	 */
+	void recordSend(long bytes, long serializationNanos, long blockedNanos){
+		messagesSent.incrementAndGet();
+		bytesSent.addAndGet(bytes);
+		this.serializationNanos.addAndGet(serializationNanos);
+		sendBlockedNanos.addAndGet(blockedNanos);
+		sentSinceReceive = true;
+	}
+	
+	/**
+	 * Records a received message. A receive that follows a send is counted as a round trip.
+	 * @param bytes the size of the message.
+	 * @param deserializationNanos the time spent on deserializing the message.
+	 * @param blockedNanos the time spent in the receive function of the underlying channel.
+	 */
+	void recordReceive(long bytes, long deserializationNanos, long blockedNanos){
+		messagesReceived.incrementAndGet();
+		bytesReceived.addAndGet(bytes);
+		this.deserializationNanos.addAndGet(deserializationNanos);
+		receiveBlockedNanos.addAndGet(blockedNanos);
+		if (sentSinceReceive){
+			sentSinceReceive = false;
+			roundTrips.incrementAndGet();
+		}
+	}
+	
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public long getMessagesSent() {
+		return messagesSent.get();
+	}
+
+	@Override
+	public long getBytesSent() {
+		return bytesSent.get();
+	}
+
+	@Override
+	public long getMessagesReceived() {
+		return messagesReceived.get();
+	}
+
+	@Override
+	public long getBytesReceived() {
+		return bytesReceived.get();
+	}
+
+	@Override
+	public long getRoundTrips() {
+		return roundTrips.get();
+	}
+
+	@Override
+	public double getSerializationMillis() {
+		return serializationNanos.get() / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public double getDeserializationMillis() {
+		return deserializationNanos.get() / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public double getSendBlockedMillis() {
+		return sendBlockedNanos.get() / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public double getReceiveBlockedMillis() {
+		return receiveBlockedNanos.get() / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public void reset() {
+		messagesSent.set(0);
+		bytesSent.set(0);
+		messagesReceived.set(0);
+		bytesReceived.set(0);
+		roundTrips.set(0);
+		serializationNanos.set(0);
+		deserializationNanos.set(0);
+		sendBlockedNanos.set(0);
+		receiveBlockedNanos.set(0);
+		sentSinceReceive = false;
+	}
+}
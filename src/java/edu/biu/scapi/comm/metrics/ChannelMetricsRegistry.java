@@ -0,0 +1,151 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.comm.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Level;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import edu.biu.scapi.generals.Logging;
+
+/**
+ * This class holds the {@link ChannelMetrics} of named channels.<p>
+ * 
+ * The metrics can be exposed via JMX, under the name "edu.biu.scapi.comm:type=ChannelMetrics,name=&lt;channel name&gt;", 
+ * and can be written as CSV, one line per channel, in order to compare the costs of the phases of a protocol.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+public class ChannelMetricsRegistry {
+
+	private static final String CSV_HEADER = "channel,messagesSent,bytesSent,messagesReceived,bytesReceived,roundTrips," +
+			"serializationMillis,deserializationMillis,sendBlockedMillis,receiveBlockedMillis";
+	
+	private Map<String, ChannelMetrics> metrics = new TreeMap<String, ChannelMetrics>();
+	private boolean registerMBeans;		//Indicates whether to register the metrics in the platform MBean server.
+	
+	/**
+	 * Creates a registry that does not expose the metrics via JMX.
+	 */
+	public ChannelMetricsRegistry(){
+		this(false);
+	}
+	
+	/**
+	 * Creates a registry.
+	 * @param registerMBeans true in order to register the metrics of each channel in the platform MBean server.
+	 */
+	public ChannelMetricsRegistry(boolean registerMBeans){
+		this.registerMBeans = registerMBeans;
+	}
+	
+	/**
+	 * Returns the metrics of the channel with the given name. Creates them in case they do not exist yet.
+	 * @param name the name of the channel.
+	 */
+	public synchronized ChannelMetrics getMetrics(String name){
+		ChannelMetrics channelMetrics = metrics.get(name);
+		if (channelMetrics == null){
+			channelMetrics = new ChannelMetrics(name);
+			metrics.put(name, channelMetrics);
+			if (registerMBeans){
+				try {
+					getMBeanServer().registerMBean(channelMetrics, createObjectName(name));
+				} catch (JMException e) {
+					Logging.getLogger().log(Level.WARNING, e.toString());
+				}
+			}
+		}
+		return channelMetrics;
+	}
+	
+	/**
+	 * Resets the counters of all channels.
+	 */
+	public synchronized void reset(){
+		for (ChannelMetrics channelMetrics : metrics.values()){
+			channelMetrics.reset();
+		}
+	}
+	
+	/**
+	 * Writes the metrics of all channels as CSV, with a header line and one line per channel, ordered by the channel names.
+	 * @param out the writer to write to. It is not closed by this function.
+	 * @throws IOException in case of a writing error.
+	 */
+	public synchronized void writeCsv(Writer out) throws IOException {
+		out.write(CSV_HEADER);
+		out.write('\n');
+		for (ChannelMetrics m : metrics.values()){
+			out.write(String.format(Locale.US, "%s,%d,%d,%d,%d,%d,%.3f,%.3f,%.3f,%.3f\n", escape(m.getName()), 
+					m.getMessagesSent(), m.getBytesSent(), m.getMessagesReceived(), m.getBytesReceived(), m.getRoundTrips(),
+					m.getSerializationMillis(), m.getDeserializationMillis(), m.getSendBlockedMillis(), m.getReceiveBlockedMillis()));
+		}
+		out.flush();
+	}
+	
+	/**
+	 * Quotes the given CSV field in case it contains special characters.
+	 */
+	private static String escape(String field){
+		if (field.indexOf(',') < 0 && field.indexOf('"') < 0 && field.indexOf('\n') < 0){
+			return field;
+		}
+		return '"' + field.replace("\"", "\"\"") + '"';
+	}
+	
+	/**
+	 * Removes the metrics of all channels from the platform MBean server, in case they were registered.
+	 */
+	public synchronized void close(){
+		if (!registerMBeans){
+			return;
+		}
+		for (String name : metrics.keySet()){
+			try {
+				getMBeanServer().unregisterMBean(createObjectName(name));
+			} catch (JMException e) {
+				Logging.getLogger().log(Level.WARNING, e.toString());
+			}
+		}
+	}
+	
+	private static MBeanServer getMBeanServer(){
+		return ManagementFactory.getPlatformMBeanServer();
+	}
+	
+	private static ObjectName createObjectName(String name) throws JMException {
+		return new ObjectName("edu.biu.scapi.comm:type=ChannelMetrics,name=" + ObjectName.quote(name));
+	}
+}
@@ -0,0 +1,177 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.comm.metrics;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+
+import edu.biu.scapi.comm.ChannelDecorator;
+import edu.biu.scapi.comm.PlainChannel;
+
+/**
+ * This channel records the traffic of the channel it wraps in a {@link ChannelMetrics} object: the number of sent and 
+ * received messages and bytes, the number of round trips, the serialization time and the time spent blocking in the 
+ * underlying channel.<p>
+ * 
+ * The instrumentation is transparent: every message is passed to the same function of the underlying channel, so the wire 
+ * format does not change and the other party does not need to wrap its channel. The counted bytes are the byte arrays as 
+ * given, and the serialized size of objects, without the framing of the underlying channel.<p>
+ * 
+ * Since objects are serialized by the underlying channel, their size is measured by serializing them once more into a 
+ * stream that only counts the bytes. The time of this serialization is recorded as the serialization time of sent objects, 
+ * which estimates the serialization cost paid by the underlying channel. The blocked times include the (de)serialization 
+ * done inside the underlying channel, so no deserialization time is recorded separately. Counting the size of objects costs 
+ * an additional serialization per object; byte arrays are counted for free.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+public class InstrumentedChannel extends ChannelDecorator {
+
+	private ChannelMetrics metrics;
+	
+	/**
+	 * Creates an InstrumentedChannel that records its traffic under the given name.
+	 * @param channel an already connected channel.
+	 * @param name the name of the channel in the registry.
+	 * @param registry the registry that holds the metrics.
+	 */
+	public InstrumentedChannel(PlainChannel channel, String name, ChannelMetricsRegistry registry) {
+		super(channel);
+		metrics = registry.getMetrics(name);
+	}
+	
+	/**
+	 * Returns the metrics of this channel.
+	 */
+	public ChannelMetrics getMetrics(){
+		return metrics;
+	}
+
+	/**
+	 * An output stream that discards the written bytes and only counts them.
+	 */
+	private static class CountingOutputStream extends OutputStream {
+		
+		private long count;
+		
+		@Override
+		public void write(int b) {
+			count++;
+		}
+		
+		@Override
+		public void write(byte[] b, int off, int len) {
+			count += len;
+		}
+	}
+	
+	/**
+	 * Returns the size of the given object when serialized.
+	 */
+	private static long serializedSize(Serializable data) throws IOException {
+		CountingOutputStream counter = new CountingOutputStream();
+		ObjectOutputStream oOut = new ObjectOutputStream(counter);
+		oOut.writeObject(data);
+		oOut.close();
+		return counter.count;
+	}
+	
+	/**
+	 * Sends the given object using the send function of the underlying channel.
+	 */
+	@Override
+	public void send(Serializable data) throws IOException {
+		long start = System.nanoTime();
+		long size = serializedSize(data);
+		long sendStart = System.nanoTime();
+		
+		channel.send(data);
+		metrics.recordSend(size, sendStart - start, System.nanoTime() - sendStart);
+	}
+
+	/**
+	 * Receives an object using the receive function of the underlying channel.
+	 */
+	@Override
+	public Serializable receive() throws ClassNotFoundException, IOException {
+		long start = System.nanoTime();
+		Serializable data = channel.receive();
+		long blocked = System.nanoTime() - start;
+		
+		metrics.recordReceive(serializedSize(data), 0, blocked);
+		return data;
+	}
+
+	@Override
+	public void sendBytes(byte[] data) throws IOException {
+		long start = System.nanoTime();
+		channel.sendBytes(data);
+		metrics.recordSend(data.length, 0, System.nanoTime() - start);
+	}
+
+	@Override
+	public byte[] receiveBytes() throws IOException {
+		long start = System.nanoTime();
+		byte[] data = channel.receiveBytes();
+		metrics.recordReceive(data.length, 0, System.nanoTime() - start);
+		return data;
+	}
+
+	@Override
+	public void sendByteArrays(byte[][] data) throws IOException {
+		long start = System.nanoTime();
+		channel.sendByteArrays(data);
+		metrics.recordSend(totalLength(data), 0, System.nanoTime() - start);
+	}
+
+	@Override
+	public byte[][] receiveByteArrays() throws IOException {
+		long start = System.nanoTime();
+		byte[][] data = channel.receiveByteArrays();
+		metrics.recordReceive(totalLength(data), 0, System.nanoTime() - start);
+		return data;
+	}
+	
+	private static long totalLength(byte[][] data){
+		long length = 0;
+		for (int i = 0; i < data.length; i++){
+			length += data[i].length;
+		}
+		return length;
+	}
+
+	@Override
+	public void close() {
+		channel.close();
+	}
+
+	@Override
+	public boolean isClosed() {
+		return channel.isClosed();
+	}
+}
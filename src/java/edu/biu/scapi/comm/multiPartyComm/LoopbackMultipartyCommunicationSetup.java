@@ -0,0 +1,158 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.comm.multiPartyComm;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+
+import edu.biu.scapi.comm.Channel;
+import edu.biu.scapi.comm.twoPartyComm.LoopbackCommunicationSetup;
+import edu.biu.scapi.comm.twoPartyComm.PartyData;
+import edu.biu.scapi.exceptions.DuplicatePartyException;
+
+/**
+ * This class implements a communication between multiple parties that run in the same JVM, in different threads.<p>
+ * 
+ * The channels between the current party and each other party are created by a {@link LoopbackCommunicationSetup}, so 
+ * they pass the messages through memory, without sockets. The channels to the different parties are opened concurrently, 
+ * so the parties do not need to agree on the order in which they connect to each other.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+public class LoopbackMultipartyCommunicationSetup implements MultipartyCommunicationSetup {
+
+	private Map<PartyData, LoopbackCommunicationSetup> setups;	//The setup between me and each other party.
+	
+	/**
+	 * A constructor that set the given list of parties. The created channels copy the sent messages, like network channels.
+	 * @param parties List of parties to communicate with. The first party is the current application.
+	 * @throws DuplicatePartyException in case the current party appears twice in the list.
+	 */
+	public LoopbackMultipartyCommunicationSetup(List<PartyData> parties) throws DuplicatePartyException {
+		this(parties, LoopbackCommunicationSetup.DEFAULT_CAPACITY, true);
+	}
+	
+	/**
+	 * A constructor that set the given list of parties and the channels parameters.
+	 * @param parties List of parties to communicate with. The first party is the current application.
+	 * @param capacity The maximal number of messages that wait in each direction of a channel.
+	 * @param copyMessages true in order to serialize or copy the sent messages; false in order to pass their references.
+	 * @throws DuplicatePartyException in case the current party appears twice in the list.
+	 */
+	public LoopbackMultipartyCommunicationSetup(List<PartyData> parties, int capacity, boolean copyMessages) throws DuplicatePartyException {
+		setups = new HashMap<PartyData, LoopbackCommunicationSetup>();
+		PartyData me = parties.get(0);
+		for (int i = 1; i < parties.size(); i++){
+			setups.put(parties.get(i), new LoopbackCommunicationSetup(me, parties.get(i), capacity, copyMessages));
+		}
+	}
+	
+	@Override
+	public Map<PartyData, Map<String, Channel>> prepareForCommunication(Map<PartyData, Object> connectionsPerParty, final long timeOut) 
+			throws TimeoutException {
+		
+		//Open the channels to each party in a different thread, since each party waits until the other party opens the same channels.
+		Map<PartyData, ConnectingThread> threads = new HashMap<PartyData, ConnectingThread>();
+		Iterator<PartyData> parties = connectionsPerParty.keySet().iterator();
+		while (parties.hasNext()){
+			PartyData key = parties.next();
+			LoopbackCommunicationSetup setup = setups.get(key);
+			if (setup == null){
+				throw new IllegalArgumentException("the given party was not given in the constructor");
+			}
+			ConnectingThread thread = new ConnectingThread(setup, connectionsPerParty.get(key), timeOut);
+			threads.put(key, thread);
+			thread.start();
+		}
+		
+		//Collect the created channels.
+		Map<PartyData, Map<String, Channel>> returnedChannels = new HashMap<PartyData, Map<String, Channel>>();
+		TimeoutException failure = null;
+		for (Map.Entry<PartyData, ConnectingThread> entry : threads.entrySet()){
+			ConnectingThread thread = entry.getValue();
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new TimeoutException("interrupted");
+			}
+			if (thread.failure != null){
+				failure = thread.failure;
+			} else {
+				returnedChannels.put(entry.getKey(), thread.channels);
+			}
+		}
+		if (failure != null){
+			throw failure;
+		}
+		return returnedChannels;
+	}
+
+	/**
+	 * There is no Nagle algorithm in memory channels, so this function does nothing.
+	 */
+	@Override
+	public void enableNagle() {}
+
+	/**
+	 * This implementation has nothing to close besides the channels (which are being closed by the channel instances).
+	 */
+	@Override
+	public void close() {}
+	
+	/**
+	 * Opens the channels to one party.
+	 */
+	private static class ConnectingThread extends Thread {
+		
+		private LoopbackCommunicationSetup setup;
+		private Object requested;			//The number of requested channels or their names.
+		private long timeOut;
+		Map<String, Channel> channels;		//The created channels.
+		TimeoutException failure;			//Set in case the channels were not opened.
+		
+		ConnectingThread(LoopbackCommunicationSetup setup, Object requested, long timeOut){
+			this.setup = setup;
+			this.requested = requested;
+			this.timeOut = timeOut;
+		}
+		
+		public void run(){
+			try {
+				if (requested instanceof Integer){
+					channels = setup.prepareForCommunication((Integer) requested, timeOut);
+				} else {
+					channels = setup.prepareForCommunication((String[]) requested, timeOut);
+				}
+			} catch (TimeoutException e) {
+				failure = e;
+			}
+		}
+	}
+}
@@ -0,0 +1,296 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.comm.multiPartyComm;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import edu.biu.scapi.comm.Channel;
+import edu.biu.scapi.comm.twoPartyComm.PartyData;
+
+/**
+ * This class provides broadcast and all-to-all exchange primitives over the channels returned by a 
+ * {@link MultipartyCommunicationSetup}, using one channel to each other party.<p>
+ * 
+ * Instead of looping over the parties and sending and receiving from each one in turn, a message is serialized once and the 
+ * resulting bytes are written to all the parties concurrently. In the same way, the messages of all the parties are received 
+ * concurrently, so the time of a round is the time of the slowest party rather than the sum of all the parties' times.<p>
+ * 
+ * The messages are sent as bytes, so all the parties should use this class (or receive the messages using {@link #receiveAll()}).
+ * The channels should not be used by other threads during a call to one of the functions of this class.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+public class MultipartyExchange {
+
+	private Map<PartyData, Channel> channels;
+	private ExecutorService executor;
+	
+	/**
+	 * Creates an exchange over the given channels.
+	 * @param channels a connected channel to each other party.
+	 */
+	public MultipartyExchange(Map<PartyData, Channel> channels) {
+		this.channels = new HashMap<PartyData, Channel>(channels);
+		
+		//Each party may need a sending thread and a receiving thread at the same time.
+		executor = Executors.newFixedThreadPool(2 * Math.max(channels.size(), 1), new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "MultipartyExchange");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+	
+	/**
+	 * Creates an exchange over the channels with the given name.
+	 * @param connections the channels returned by {@link MultipartyCommunicationSetup#prepareForCommunication(Map, long)}.
+	 * @param connectionName the name of the channel to use with each party.
+	 */
+	public MultipartyExchange(Map<PartyData, Map<String, Channel>> connections, String connectionName) {
+		this(selectChannels(connections, connectionName));
+	}
+	
+	private static Map<PartyData, Channel> selectChannels(Map<PartyData, Map<String, Channel>> connections, String connectionName){
+		Map<PartyData, Channel> channels = new HashMap<PartyData, Channel>();
+		for (Map.Entry<PartyData, Map<String, Channel>> entry : connections.entrySet()){
+			Channel channel = entry.getValue().get(connectionName);
+			if (channel == null){
+				throw new IllegalArgumentException("there is no channel named " + connectionName + " to one of the parties");
+			}
+			channels.put(entry.getKey(), channel);
+		}
+		return channels;
+	}
+	
+	/**
+	 * Sends the given message to all the other parties. The message is serialized once and sent to all the parties concurrently.
+	 * @param msg the message to send.
+	 * @throws IOException in case sending to one of the parties failed.
+	 */
+	public void broadcast(Serializable msg) throws IOException {
+		broadcastBytes(serialize(msg));
+	}
+	
+	/**
+	 * Sends the given bytes to all the other parties concurrently.
+	 * @param data the bytes to send.
+	 * @throws IOException in case sending to one of the parties failed.
+	 */
+	public void broadcastBytes(byte[] data) throws IOException {
+		List<Future<Object>> sends = new ArrayList<Future<Object>>();
+		for (Channel channel : channels.values()){
+			sends.add(executor.submit(sendTask(channel, data)));
+		}
+		waitFor(sends);
+	}
+	
+	/**
+	 * Receives a message sent by the given party using {@link #broadcast(Serializable)}.
+	 * @param party the sending party.
+	 * @return the received message.
+	 * @throws IOException in case receiving from the party failed.
+	 * @throws ClassNotFoundException in case the class of the message cannot be found.
+	 */
+	public Serializable receiveFrom(PartyData party) throws IOException, ClassNotFoundException {
+		Channel channel = channels.get(party);
+		if (channel == null){
+			throw new IllegalArgumentException("the given party is not one of the parties of this exchange");
+		}
+		ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(channel.receiveBytes()));
+		return (Serializable) ois.readObject();
+	}
+	
+	/**
+	 * Receives one message from each of the other parties, concurrently.
+	 * @return the message received from each party.
+	 * @throws IOException in case receiving from one of the parties failed.
+	 * @throws ClassNotFoundException in case the class of one of the messages cannot be found.
+	 */
+	public Map<PartyData, Serializable> receiveAll() throws IOException, ClassNotFoundException {
+		return deserialize(receiveAllBytes());
+	}
+	
+	/**
+	 * Receives bytes from each of the other parties, concurrently.
+	 * @return the bytes received from each party.
+	 * @throws IOException in case receiving from one of the parties failed.
+	 */
+	public Map<PartyData, byte[]> receiveAllBytes() throws IOException {
+		Map<PartyData, Future<byte[]>> receives = new HashMap<PartyData, Future<byte[]>>();
+		for (Map.Entry<PartyData, Channel> entry : channels.entrySet()){
+			receives.put(entry.getKey(), executor.submit(receiveTask(entry.getValue())));
+		}
+		return collect(receives);
+	}
+	
+	/**
+	 * Sends the given message to all the other parties and receives one message from each of them.<p>
+	 * The message is serialized once, and all the sends and receives are done in parallel. The function returns after 
+	 * the messages of all the parties were received and the given message was sent to all of them.
+	 * @param msg the message to send.
+	 * @return the message received from each party.
+	 * @throws IOException in case sending to or receiving from one of the parties failed.
+	 * @throws ClassNotFoundException in case the class of one of the received messages cannot be found.
+	 */
+	public Map<PartyData, Serializable> exchangeAll(Serializable msg) throws IOException, ClassNotFoundException {
+		return deserialize(exchangeAllBytes(serialize(msg)));
+	}
+	
+	/**
+	 * Sends the given bytes to all the other parties and receives bytes from each of them, in parallel.
+	 * @param data the bytes to send.
+	 * @return the bytes received from each party.
+	 * @throws IOException in case sending to or receiving from one of the parties failed.
+	 */
+	public Map<PartyData, byte[]> exchangeAllBytes(byte[] data) throws IOException {
+		//Start receiving before sending, so no party is blocked on a full socket buffer.
+		Map<PartyData, Future<byte[]>> receives = new HashMap<PartyData, Future<byte[]>>();
+		for (Map.Entry<PartyData, Channel> entry : channels.entrySet()){
+			receives.put(entry.getKey(), executor.submit(receiveTask(entry.getValue())));
+		}
+		List<Future<Object>> sends = new ArrayList<Future<Object>>();
+		for (Channel channel : channels.values()){
+			sends.add(executor.submit(sendTask(channel, data)));
+		}
+		
+		waitFor(sends);
+		return collect(receives);
+	}
+	
+	/**
+	 * Stops the threads of this exchange. The channels are not closed.
+	 */
+	public void close(){
+		executor.shutdownNow();
+	}
+	
+	private static Callable<Object> sendTask(final Channel channel, final byte[] data){
+		return new Callable<Object>() {
+			public Object call() throws IOException {
+				channel.sendBytes(data);
+				return null;
+			}
+		};
+	}
+	
+	private static Callable<byte[]> receiveTask(final Channel channel){
+		return new Callable<byte[]>() {
+			public byte[] call() throws IOException {
+				return channel.receiveBytes();
+			}
+		};
+	}
+	
+	/**
+	 * Waits until all the given tasks are done.
+	 * @throws IOException the first failure of the tasks.
+	 */
+	private static void waitFor(List<Future<Object>> tasks) throws IOException {
+		IOException failure = null;
+		for (Future<Object> task : tasks){
+			try {
+				get(task);
+			} catch (IOException e) {
+				if (failure == null){
+					failure = e;
+				}
+			}
+		}
+		if (failure != null){
+			throw failure;
+		}
+	}
+	
+	/**
+	 * Waits until all the given receive tasks are done and returns their results.
+	 * @throws IOException the first failure of the tasks.
+	 */
+	private static Map<PartyData, byte[]> collect(Map<PartyData, Future<byte[]>> tasks) throws IOException {
+		Map<PartyData, byte[]> results = new HashMap<PartyData, byte[]>();
+		IOException failure = null;
+		for (Map.Entry<PartyData, Future<byte[]>> entry : tasks.entrySet()){
+			try {
+				results.put(entry.getKey(), get(entry.getValue()));
+			} catch (IOException e) {
+				if (failure == null){
+					failure = e;
+				}
+			}
+		}
+		if (failure != null){
+			throw failure;
+		}
+		return results;
+	}
+	
+	private static <T> T get(Future<T> task) throws IOException {
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException){
+				throw (IOException) e.getCause();
+			}
+			throw new IOException(e.getCause());
+		}
+	}
+	
+	private static byte[] serialize(Serializable msg) throws IOException {
+		ByteArrayOutputStream bOut = new ByteArrayOutputStream();
+		ObjectOutputStream oOut = new ObjectOutputStream(bOut);
+		oOut.writeObject(msg);
+		oOut.close();
+		return bOut.toByteArray();
+	}
+	
+	private static Map<PartyData, Serializable> deserialize(Map<PartyData, byte[]> received) throws IOException, ClassNotFoundException {
+		Map<PartyData, Serializable> messages = new HashMap<PartyData, Serializable>();
+		for (Map.Entry<PartyData, byte[]> entry : received.entrySet()){
+			ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(entry.getValue()));
+			messages.put(entry.getKey(), (Serializable) ois.readObject());
+		}
+		return messages;
+	}
+}
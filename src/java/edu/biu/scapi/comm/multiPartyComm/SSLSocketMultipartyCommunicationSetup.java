@@ -1,20 +1,18 @@
 package edu.biu.scapi.comm.multiPartyComm;
 
-import java.io.FileInputStream;
-import java.security.KeyStore;
-import java.security.SecureRandom;
+import java.io.IOException;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
 
-import javax.net.ssl.KeyManagerFactory;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLException;
-import javax.net.ssl.TrustManagerFactory;
 
 import edu.biu.scapi.comm.multiPartyComm.SocketMultipartyCommunicationSetup;
 import edu.biu.scapi.comm.twoPartyComm.PartyData;
 import edu.biu.scapi.comm.twoPartyComm.PlainTCPSocketChannel;
+import edu.biu.scapi.comm.twoPartyComm.SSLContextCache;
 import edu.biu.scapi.comm.twoPartyComm.SSLSocketChannel;
 import edu.biu.scapi.comm.twoPartyComm.SocketPartyData;
 import edu.biu.scapi.comm.twoPartyComm.TwoPartySocketConnector;
@@ -28,7 +26,8 @@ import edu.biu.scapi.generals.Logging;
  * In order to create an sslSocket you should have an {@link SSLContext} which should be loaded with the key store and trust store. 
  * The keyStore contains the certificate that should be sent to the other party, in SCAPI the default name is "scapiKeystore".
  * The trustStore contains the certificate that should be received from the other party, in SCAPI the default name as "scapiCacerts".
- * This loading is done once in the constructor of this class and is passed to the {@link SSLSocketMultipartyListenerThread} and to each {@link SSLSocketChannel}. 
+ * The context is taken from the {@link SSLContextCache}, so it is loaded once and shared by all the setups and channels, which lets the handshakes resume cached sessions.
+ * It is passed to the {@link SSLSocketMultipartyListenerThread} and to each {@link SSLSocketChannel}. 
  * This factory is used to send the certificate of this application.
  * 
  * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University (Moriya Farbstein)
@@ -36,7 +35,9 @@ import edu.biu.scapi.generals.Logging;
  */
 public class SSLSocketMultipartyCommunicationSetup extends SocketMultipartyCommunicationSetup{
 
-	private SSLContext sc;	//Loaded with the keyStore and trustStore and used to get the SSLSocketFactory and SSLServerSocketFactory from.
+	private SSLContext sc;	//Loaded with the keyStore and trustStore and used to get the SSLSocketFactory from.
+	private String[] cipherSuites = SSLSocketChannel.CBC_CIPHER_SUITES;	//The enabled cipher suites.
+	private Map<PartyData, TwoPartySocketConnector> sslConnectors = new HashMap<PartyData, TwoPartySocketConnector>();	//The connector to each other party.
 	
 	/**
 	 * Constructor that gets the data of all parties and the password to the keyStore and trustStore.
@@ -59,31 +60,42 @@ public class SSLSocketMultipartyCommunicationSetup extends SocketMultipartyCommu
 	 */
 	public SSLSocketMultipartyCommunicationSetup(List<PartyData> parties, String keyStoreName, String trustStoreName, String storePass) throws SSLException{
 		
-		//Creating the SSL Context to get the socket factories from.
+		//Get the shared SSL Context to get the socket factories from.
 		try {
-			
-			//Loading the trust store containing the certificate that should be received from the other party.
-			KeyStore trustStore = KeyStore.getInstance("JKS");
-			trustStore.load(new FileInputStream(trustStoreName), storePass.toCharArray());
-	        TrustManagerFactory tmf = TrustManagerFactory.getInstance("SunX509");
-	        tmf.init(trustStore);
-	         
-	        //Loading the key store containing the certificate that should be sent to the other party.
-	        KeyStore keyStore = KeyStore.getInstance("JKS");
-	        keyStore.load(new FileInputStream(keyStoreName), storePass.toCharArray());
-	        KeyManagerFactory kmf = KeyManagerFactory.getInstance("SunX509");
-	        kmf.init(keyStore, storePass.toCharArray());
-	         
-	        //Create the SSL context and initialize it with the created key store and trust store.
-	        sc = SSLContext.getInstance("TLSv1.2");
-	        sc.init(kmf.getKeyManagers(), tmf.getTrustManagers(), new SecureRandom());
-		
-	        //construct the other parameters of the class.
-	        doConstruct(parties);
-		} catch (Exception e) {
+			sc = SSLContextCache.getContext(keyStoreName, trustStoreName, storePass);
+		} catch (IOException e) {
 			Logging.getLogger().log(Level.SEVERE, e.toString());
-			throw new SSLException(e.getCause());
-		} 
+			throw new SSLException(e);
+		}
+		
+		//construct the other parameters of the class.
+		doConstruct(parties);
+	}
+	
+	/**
+	 * Sets the cipher suites that the channels enable, for example {@link SSLSocketChannel#GCM_CIPHER_SUITES}.
+	 * All parties should enable at least one common suite.<p>
+	 * This function should be called before calling prepareForCommunication.
+	 * @param cipherSuites the names of the cipher suites.
+	 */
+	public void setCipherSuites(String[] cipherSuites){
+		this.cipherSuites = cipherSuites;
+		for (TwoPartySocketConnector connector : sslConnectors.values()){
+			connector.setCipherSuites(cipherSuites);
+		}
+	}
+	
+	/**
+	 * Returns the time it took to perform the SSL handshake of each channel between this party and the given party, in milliseconds.
+	 * @param party one of the other parties.
+	 * @return a map from the name of each channel to its handshake time.
+	 */
+	public Map<String, Long> getHandshakeTimes(PartyData party){
+		TwoPartySocketConnector connector = sslConnectors.get(party);
+		if (connector == null){
+			throw new IllegalArgumentException("the given party is not one of the parties of this setup");
+		}
+		return connector.getHandshakeTimes();
 	}
 	
 	@Override
@@ -93,6 +105,8 @@ public class SSLSocketMultipartyCommunicationSetup extends SocketMultipartyCommu
 	 */
 	protected TwoPartySocketConnector createConnector(PartyData party) {
 		TwoPartySocketConnector connector = new TwoPartySocketConnector(me, party, sc.getSocketFactory());
+		connector.setCipherSuites(cipherSuites);
+		sslConnectors.put(party, connector);
 		return connector;
 	}
 
@@ -101,6 +115,6 @@ public class SSLSocketMultipartyCommunicationSetup extends SocketMultipartyCommu
 	 * Creates a listener that listens for incoming calls from SSL sockets.
 	 */
 	protected SSLSocketMultipartyListenerThread createListener(Map<SocketPartyData, PlainTCPSocketChannel[]> channelsPerParty) {
-		return new SSLSocketMultipartyListenerThread(channelsPerParty, me, sc.getServerSocketFactory());
+		return new SSLSocketMultipartyListenerThread(channelsPerParty, me, sc.getSocketFactory(), cipherSuites);
 	}
 }
@@ -14,6 +14,7 @@ import edu.biu.scapi.comm.Channel;
 import edu.biu.scapi.comm.twoPartyComm.PartyData;
 import edu.biu.scapi.comm.twoPartyComm.PlainTCPSocketChannel;
 import edu.biu.scapi.comm.twoPartyComm.SocketPartyData;
+import edu.biu.scapi.comm.twoPartyComm.TransportOptions;
 import edu.biu.scapi.comm.twoPartyComm.TwoPartySocketConnector;
 import edu.biu.scapi.generals.Logging;
 
@@ -46,6 +47,7 @@ public class SocketMultipartyCommunicationSetup implements MultipartyCommunicati
 	private Map<PartyData, Integer> connectionsNumber;				//Holds the number of created connections for each party. 
 	private SocketMultipartyListenerThread listeningThread ;		//Listen to calls from the other parties.
 	protected SocketPartyData me;									//The data of the current application.
+	private TransportOptions options = new TransportOptions();		//The TCP options of the created channels.
 	
 	protected SocketMultipartyCommunicationSetup(){}
 	
@@ -197,6 +199,7 @@ public class SocketMultipartyCommunicationSetup implements MultipartyCommunicati
 			//Create a listening thread with the created channels.
 			//The listening thread receives calls from the other parties and set the created sockets as the receiveSocket of the channels.
 			listeningThread = createListener(channelsPerParty);
+			listeningThread.setTransportOptions(options);
 			listeningThread.start();
 		
 			//Create a connection thread for each other party that does the actual connecting. 
@@ -263,6 +266,34 @@ public class SocketMultipartyCommunicationSetup implements MultipartyCommunicati
 		this.enableNagle  = true;
 	}
 	
+	/**
+	 * Sets the TCP options of the channels to all the other parties, such as the sizes of the socket buffers.<p>
+	 * The options are set on both sockets of each channel, before they are connected. The receive buffer size is also 
+	 * set on the listening socket of this application.<p>
+	 * This function should be called before calling prepareForCommunication.
+	 * @param options the options to set.
+	 */
+	public void setTransportOptions(TransportOptions options){
+		this.options = options;
+		for (TwoPartySocketConnector connector : connectors.values()){
+			connector.setTransportOptions(options);
+		}
+	}
+	
+	/**
+	 * Returns the actual TCP options of each channel between this party and the given party that was created by the 
+	 * last call to prepareForCommunication, as reported by the operating system.
+	 * @param party one of the other parties.
+	 * @return a map from the name of each channel to its effective options.
+	 */
+	public Map<String, TransportOptions> getEffectiveOptions(PartyData party){
+		TwoPartySocketConnector connector = connectors.get(party);
+		if (connector == null){
+			throw new IllegalArgumentException("the given party is not one of the parties of this setup");
+		}
+		return connector.getEffectiveOptions();
+	}
+	
 	/**
 	 * This function is called by the infrastructure of the Watchdog if the previously set timeout has passed. (Do not call this function).
 	 */
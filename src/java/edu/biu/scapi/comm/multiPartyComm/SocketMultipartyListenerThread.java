@@ -1,45 +1,55 @@
 package edu.biu.scapi.comm.multiPartyComm;
 
+import java.io.DataInputStream;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
-import java.net.ServerSocket;
 import java.net.Socket;
-import java.nio.ByteBuffer;
-import java.nio.channels.ClosedChannelException;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
 
 import edu.biu.scapi.comm.twoPartyComm.PartyData;
 import edu.biu.scapi.comm.twoPartyComm.PlainTCPSocketChannel;
+import edu.biu.scapi.comm.twoPartyComm.SocketAcceptor;
 import edu.biu.scapi.comm.twoPartyComm.SocketPartyData;
+import edu.biu.scapi.comm.twoPartyComm.TransportOptions;
 import edu.biu.scapi.generals.Logging;
 
 /**
  * This class listens to incoming connection to the current party. <p>
- * When an incoming connection is received, the listener checks which party is calling and set the received socket to this party.
+ * When an incoming connection is received, the listener checks which party is calling and set the received socket to this party.<p>
  * 
+ * The listener does not have a thread of its own. It registers its address to the shared {@link SocketAcceptor}, which 
+ * passes each incoming connection to it as soon as it is accepted. The reads of a handshake, of the port of the calling 
+ * party and of the stream header of the channel are bounded by a read timeout, which the channel removes once its streams 
+ * are created.
  * 
  * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University (Moriya Farbstein)
  *
  */
-class SocketMultipartyListenerThread extends Thread{
+class SocketMultipartyListenerThread implements SocketAcceptor.AcceptHandler{
+	
+	protected static final int READ_TIMEOUT = 5000;						//The maximal time to wait for each read of an accepted socket, until it is set to its channel, in milliseconds.
 	
-	List<PartyData> parties;											//List of parties that should connect.
 	protected Map<SocketPartyData, PlainTCPSocketChannel[]> channels;	//All channels between me and the other party. The received socket of each channel should be set when accepted. 
 	
-	protected boolean bStopped = false;									//A flag that indicates if to keep on listening or stop.
-	protected ServerSocket listener;									//Channel to listen on.
+	protected volatile boolean bStopped = false;						//A flag that indicates if to keep on listening or stop.
+	protected InetSocketAddress address;								//The address to listen on.
+	protected ServerSocketChannel listener;								//Channel to listen on. Registered to the SocketAcceptor.
+	
+	private Map<PartyData, Integer> partiesChannelsCount = new HashMap<PartyData, Integer>();	//The number of connected channels for each party.
+	private int count;													//The number of channels that should be connected.
+	private int connected;												//The number of connected channels of all parties.
+	protected TransportOptions options = new TransportOptions();		//The TCP options of the listening socket.
 
 	SocketMultipartyListenerThread(){}
 	
 	/**
-	* A constructor that open the server socket.
+	* A constructor that sets the channels and the address to listen on.
 	* @param channelsPerParty The channels that should be set with receive socket for each other party in the protocol.
 	* @param me The data of the current application.
 	*/
@@ -49,102 +59,105 @@ class SocketMultipartyListenerThread extends Thread{
 	}
 
 	/**
-	 * sets the given channels and creates the server socket.
+	 * sets the given channels and the address to listen on.
 	 * @param channelsPerParty The channels that should be set with receive socket for each other party in the protocol.
 	* @param me The data of the current application.
 	 */
 	protected void doConstruct(Map<SocketPartyData, PlainTCPSocketChannel[]> channelsPerParty, SocketPartyData me) {
 		
 		this.channels = channelsPerParty;
-		createServerSocket(me);
+		this.address = new InetSocketAddress(me.getIpAddress(), me.getPort());
 	}
 
+	/**
+	 * Sets the TCP options of the listening socket. Should be called before the listener is started.
+	 * @param options the options to set.
+	 */
+	void setTransportOptions(TransportOptions options){
+		this.options = options;
+	}
 
 	/**
-	 * Created the {@link ServerSocketChannel}. <p>
-	 * We use the ServerSocketChannel rather than the regular ServerSocket since we want the accept to be non-blocking. 
-	*  If the accept function is blocking the flag bStopped will not be checked until the thread is unblocked. 
-	 * @param me The data of the current application.
+	 * Sets the state of all channels to connecting and starts listening on the address of the current application.
 	 */
-	protected void createServerSocket(SocketPartyData me) {
-		//Open the ServerSocket using the ip and port in the given SocketPartyData object.
+	void start(){
+		synchronized (this){
+			count = setConnectingState(partiesChannelsCount);
+		}
+		
 		try {
-			ServerSocketChannel channel = ServerSocketChannel.open();
-			channel.configureBlocking (false);
-			listener = channel.socket();
-			listener.bind (new InetSocketAddress (((SocketPartyData) me).getIpAddress(), ((SocketPartyData) me).getPort()));
+			Logging.getLogger().log(Level.INFO, "Trying to listen "+ address.getPort());
+			ServerSocketChannel server = SocketAcceptor.getInstance().register(address, this, options);
+			synchronized (this){
+				listener = server;
+			}
+			//The listener may have been stopped while registering.
+			if (bStopped || connected == count){
+				close();
+			}
 		} catch (IOException e) {
-		
 			Logging.getLogger().log(Level.WARNING, e.toString());
-	
 		}
 	}
 
-
 	/**
-	* Sets the flag bStopped to false. In the run function of this thread this flag is checked - 
-	* if the flag is true the run functions returns, otherwise continues.
+	* Sets the flag bStopped to true and stops listening.
 	*/
 	void stopConnecting(){
 		//Set the flag to true.
 		bStopped = true;
+		close();
 	}
 
-
-
 	/**
-	* This function is the main function of the SocketMultipartyListenerThread. Mainly, we listen and accept valid connections 
-	* as long as the flag bStopped is false or until we have got as much connections as we should.<p>
+	* Called by the {@link SocketAcceptor} for each incoming connection. Sets the accepted socket as the receive socket of 
+	* the next channel of the calling party. After all channels were set, stops listening.
 	*/
-	public void run() {
-		//Prepare a map to hold the number of connected channels for each party.
-		Map<PartyData, Integer> partiesChannelsCount = new HashMap<PartyData, Integer>();
-		
-		//Set the state of all channels to connecting.
-		int count = setConnectingState(partiesChannelsCount);
-		int i=0;
-		
-		//Loop for listening to incoming connections and make sure that this thread should not stopped.
-		while (i < count && !bStopped) {
+	public synchronized void accepted(SocketChannel socketChannel) {
+		Socket socket = socketChannel.socket();
+		if (bStopped || connected == count){
+			closeSocket(socket);
+			return;
+		}
 		
-			SocketChannel socketChannel = null;
-			try {
-			
-				Logging.getLogger().log(Level.INFO, "Trying to listen "+ listener.getLocalPort());
-				
-				//Use the server socket to listen to incoming connections.
-				socketChannel = listener.getChannel().accept();
-			
-			}	catch (ClosedChannelException e) {
-				Logging.getLogger().log(Level.WARNING, e.toString());
-			} 	catch (IOException e) {
-			
-				Logging.getLogger().log(Level.WARNING, e.toString());
-			}
+		try {
+			//The read timeout also bounds the handshake and the stream header, and is removed by the channel.
+			socket.setSoTimeout(READ_TIMEOUT);
+			connected = setSocket(partiesChannelsCount, connected, prepareSocket(socket));
+		} catch (IOException e) {
+			Logging.getLogger().log(Level.WARNING, e.toString());
+			closeSocket(socket);
+			return;
+		}
 		
-			//If there was no connection request wait a second and try again.
-			if(socketChannel==null){
-				try {
-					Thread.sleep (1000);
-				} catch (InterruptedException e) {
-				
-					Logging.getLogger().log(Level.INFO, e.toString());
-				}
-			//If there was an incoming request, check that it valid and set the accepted socket to the right channel.
-			} else{
-				Socket socket = socketChannel.socket();
-				i = setSocket(partiesChannelsCount, i, socket);
-			}
+		//After accepting all connections, stop listening.
+		if (connected == count){
+			Logging.getLogger().log(Level.INFO, "End of listening");
+			close();
 		}
+	}
 	
-		Logging.getLogger().log(Level.INFO, "End of listening thread run");
-		
-		//After accepting all connections, close the thread.
-		try {
-			listener.close();
-			} catch (IOException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+	/**
+	 * Prepares the accepted socket before its party is read. This implementation returns the socket as is.
+	 * @param socket the accepted socket.
+	 * @return the socket that should be set to the channel.
+	 */
+	protected Socket prepareSocket(Socket socket) throws IOException {
+		return socket;
+	}
+	
+	/**
+	 * Stops listening, in case the listener is still registered.
+	 */
+	protected void close(){
+		ServerSocketChannel server;
+		synchronized (this){
+			server = listener;
+			listener = null;
+		}
+		//Unregister outside the lock, since the acceptor thread may be waiting for it.
+		if (server != null){
+			SocketAcceptor.getInstance().unregister(server);
 		}
 	}
 
@@ -161,14 +174,10 @@ class SocketMultipartyListenerThread extends Thread{
 		SocketPartyData acceptedParty = createIncomingParty(socket);
 		
 		//If the accepted party is not a valid party close the connection. I.e. it is not in the parties list of the channels. 
-		if(!channels.containsKey(acceptedParty)){//an unauthorized party tried to connect
+		if(acceptedParty == null || !channels.containsKey(acceptedParty) || 
+				partiesChannelsCount.get(acceptedParty) == channels.get(acceptedParty).length){//an unauthorized party tried to connect
 			//Close the socket.
-			try {
-				socket.close();
-			} catch (IOException e) {
-			
-				Logging.getLogger().log(Level.WARNING, e.toString());
-			}
+			closeSocket(socket);
 		//If the accepted party is a valid party, set the received socket as the receive socket of the channel.
 		//The send socket is set in the SocketMultipartyCommunicationSetup.connect() function. 
 		} else{ 
@@ -186,20 +195,19 @@ class SocketMultipartyListenerThread extends Thread{
 	/**
 	 * Receives the port of the calling party in order to determine which party is calling.
 	 * @param socket The received socket.
-	 * @return The data of the calling party.
+	 * @return The data of the calling party, or null in case the port could not be read.
 	 */
 	protected SocketPartyData createIncomingParty(Socket socket) {
 		//Get the ip of the client socket.
 		InetAddress inetAddr = socket.getInetAddress();
 		//Receive the port of the client socket.
-		byte[] output = new byte[4];
+		int port;
 		try {
-			socket.getInputStream().read(output);
-		} catch (IOException e1) {
-			// TODO Auto-generated catch block
-			e1.printStackTrace();
+			port = new DataInputStream(socket.getInputStream()).readInt();
+		} catch (IOException e) {
+			Logging.getLogger().log(Level.WARNING, e.toString());
+			return null;
 		}
-		int port = ByteBuffer.wrap(output).getInt();
 		
 		//Create and returns a SocketPartyData object with the received ip and port.
 		SocketPartyData acceptedParty = new SocketPartyData(inetAddr, port);
@@ -230,4 +238,12 @@ class SocketMultipartyListenerThread extends Thread{
 		}
 		return count;
 	}
+	
+	protected static void closeSocket(Socket socket){
+		try {
+			socket.close();
+		} catch (IOException e) {
+			Logging.getLogger().log(Level.WARNING, e.toString());
+		}
+	}
 }
@@ -0,0 +1,191 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.comm.twoPartyComm;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeoutException;
+
+import edu.biu.scapi.comm.Channel;
+
+/**
+ * This class keeps established channels alive between executions of protocols, so that repeated executions do not pay 
+ * the connection (and SSL handshake) cost every time.<p>
+ * 
+ * The pool holds a communication setup for each other party. A protocol leases the channels it needs using the 
+ * {@link #lease(PartyData, int)} function and returns them using the {@link #release(PartyData, Channel[])} function 
+ * when it is done. In case there are not enough idle channels, the missing channels are created by the setup of the party. 
+ * Channels that were closed are removed from the pool instead of being leased.<p>
+ * 
+ * The two ends of a channel must be used by the same protocol instance in both parties. Therefore, the idle channels are 
+ * leased in a deterministic order (by their names), and both parties should lease and release the same number of channels 
+ * in the same order.<p>
+ * 
+ * The channels are closed when the pool is closed.<p>
+ * 
+ * The pool is meant for applications that create a communication setup for every execution. Applications that connect 
+ * once and run all their executions over the same channels, like the Yao applications (App1 and App2 of the YaoProtocol 
+ * and the MaliciousYao applications), already pay the connection cost only once and do not need the pool.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+public class ChannelPool {
+
+	private long timeOut;													//The timeout for creating new channels, in milliseconds.
+	private Map<PartyData, TwoPartyCommunicationSetup> setups;				//Creates the channels to each party.
+	private Map<PartyData, TreeMap<String, Channel>> idleChannels;			//The channels that can be leased, by their names.
+	private Map<PartyData, Map<Channel, String>> leasedChannels;			//The names of the leased channels.
+	
+	/**
+	 * Creates an empty pool.
+	 * @param timeOut the maximum amount of time to wait for the creation of new channels.
+	 */
+	public ChannelPool(long timeOut){
+		this.timeOut = timeOut;
+		setups = new HashMap<PartyData, TwoPartyCommunicationSetup>();
+		idleChannels = new HashMap<PartyData, TreeMap<String, Channel>>();
+		leasedChannels = new HashMap<PartyData, Map<Channel, String>>();
+	}
+	
+	/**
+	 * Adds a party to the pool.
+	 * @param party the data of the other party.
+	 * @param setup a communication setup between the current application and the given party. Used to create the channels.
+	 */
+	public synchronized void addParty(PartyData party, TwoPartyCommunicationSetup setup){
+		if (setups.containsKey(party)){
+			throw new IllegalArgumentException("the given party was already added");
+		}
+		setups.put(party, setup);
+		idleChannels.put(party, new TreeMap<String, Channel>());
+		leasedChannels.put(party, new HashMap<Channel, String>());
+	}
+	
+	/**
+	 * Leases the given number of channels to the given party.<p>
+	 * Idle channels that are still open are leased first, ordered by their names. In case there are not enough open idle 
+	 * channels, new channels are created.
+	 * @param party the data of the other party. Should be added using {@link #addParty(PartyData, TwoPartyCommunicationSetup)}.
+	 * @param channelsNum the number of requested channels.
+	 * @return the leased channels.
+	 * @throws TimeoutException in case a timeout has occurred before the new channels have been connected.
+	 */
+	public synchronized Channel[] lease(PartyData party, int channelsNum) throws TimeoutException {
+		TreeMap<String, Channel> idle = getIdle(party);
+		Map<Channel, String> leased = leasedChannels.get(party);
+		
+		//Remove the closed channels.
+		Iterator<Channel> itr = idle.values().iterator();
+		while (itr.hasNext()){
+			if (itr.next().isClosed()){
+				itr.remove();
+			}
+		}
+		
+		//Create the missing channels.
+		if (idle.size() < channelsNum){
+			Map<String, Channel> created = setups.get(party).prepareForCommunication(channelsNum - idle.size(), timeOut);
+			idle.putAll(created);
+		}
+		
+		//Lease the first channels.
+		Channel[] channels = new Channel[channelsNum];
+		for (int i = 0; i < channelsNum; i++){
+			Map.Entry<String, Channel> entry = idle.pollFirstEntry();
+			channels[i] = entry.getValue();
+			leased.put(entry.getValue(), entry.getKey());
+		}
+		return channels;
+	}
+	
+	/**
+	 * Returns the given channels to the pool. Closed channels are removed from the pool.
+	 * @param party the data of the other party.
+	 * @param channels channels that were leased to the given party.
+	 */
+	public synchronized void release(PartyData party, Channel[] channels){
+		TreeMap<String, Channel> idle = getIdle(party);
+		Map<Channel, String> leased = leasedChannels.get(party);
+		
+		for (int i = 0; i < channels.length; i++){
+			String name = leased.remove(channels[i]);
+			if (name == null){
+				throw new IllegalArgumentException("the given channel was not leased from this pool");
+			}
+			if (!channels[i].isClosed()){
+				idle.put(name, channels[i]);
+			}
+		}
+	}
+	
+	/**
+	 * Returns the number of idle channels to the given party, including channels that were closed but not removed yet.
+	 */
+	public synchronized int getIdleCount(PartyData party){
+		return getIdle(party).size();
+	}
+	
+	/**
+	 * Returns the number of channels to the given party that are currently leased.
+	 */
+	public synchronized int getLeasedCount(PartyData party){
+		getIdle(party);
+		return leasedChannels.get(party).size();
+	}
+	
+	private TreeMap<String, Channel> getIdle(PartyData party){
+		TreeMap<String, Channel> idle = idleChannels.get(party);
+		if (idle == null){
+			throw new IllegalArgumentException("the given party was not added to the pool");
+		}
+		return idle;
+	}
+	
+	/**
+	 * Closes all the channels of the pool, including the leased ones, and the communication setups.
+	 */
+	public synchronized void close(){
+		List<Channel> all = new ArrayList<Channel>();
+		for (TreeMap<String, Channel> idle : idleChannels.values()){
+			all.addAll(idle.values());
+			idle.clear();
+		}
+		for (Map<Channel, String> leased : leasedChannels.values()){
+			all.addAll(leased.keySet());
+			leased.clear();
+		}
+		for (Channel channel : all){
+			channel.close();
+		}
+		for (TwoPartyCommunicationSetup setup : setups.values()){
+			setup.close();
+		}
+	}
+}
@@ -0,0 +1,190 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.comm.twoPartyComm;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import edu.biu.scapi.comm.PlainChannel;
+
+/**
+ * This class represents a channel between two parties that run in the same JVM, created by the {@link LoopbackCommunicationSetup}.<p>
+ * 
+ * The messages are passed through lock-free single producer single consumer queues, without any kernel networking. 
+ * Therefore, each direction of the channel should be used by one thread at a time.<p>
+ * 
+ * By default, the channel keeps the semantics of a network channel: objects are serialized, and byte arrays are copied, when 
+ * they are sent, so later changes in the sent message do not affect the received message. In case the protocol does not 
+ * change its messages after sending them, the channel can pass the references of the messages instead, which removes the 
+ * serialization and copying costs.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+public class LoopbackChannel extends PlainChannel {
+
+	private SpscRingBuffer out;			//Holds the messages sent by this party.
+	private SpscRingBuffer in;			//Holds the messages sent by the other party.
+	private boolean copyMessages;		//Indicates whether to serialize or copy the messages, or to pass their references.
+	private CountDownLatch connected;	//Released when the other party opens its end of the channel.
+	
+	/**
+	 * Holds a sent object, either serialized or as is.
+	 */
+	private static class ObjectMessage {
+		byte[] serialized;
+		Object object;
+	}
+	
+	/**
+	 * Creates one end of a channel.
+	 */
+	LoopbackChannel(SpscRingBuffer out, SpscRingBuffer in, boolean copyMessages, CountDownLatch connected){
+		this.out = out;
+		this.in = in;
+		this.copyMessages = copyMessages;
+		this.connected = connected;
+	}
+	
+	/**
+	 * Creates the end of the other party, which uses the same queues in the opposite directions.
+	 */
+	LoopbackChannel createPeer(boolean copyMessages){
+		LoopbackChannel peer = new LoopbackChannel(in, out, copyMessages, connected);
+		connected.countDown();
+		peer.setState(State.READY);
+		setState(State.READY);
+		return peer;
+	}
+	
+	/**
+	 * Waits until the other party opens its end of the channel.
+	 * @return true if the other party opened its end, false if the given timeout has passed.
+	 */
+	boolean awaitConnected(long timeOut) throws InterruptedException {
+		return connected.await(timeOut, TimeUnit.MILLISECONDS);
+	}
+	
+	@Override
+	public void send(Serializable data) throws IOException {
+		ObjectMessage message = new ObjectMessage();
+		if (copyMessages){
+			ByteArrayOutputStream bOut = new ByteArrayOutputStream();
+			ObjectOutputStream oOut = new ObjectOutputStream(bOut);
+			oOut.writeObject(data);
+			oOut.close();
+			message.serialized = bOut.toByteArray();
+		} else {
+			message.object = data;
+		}
+		out.put(message);
+	}
+
+	@Override
+	public Serializable receive() throws ClassNotFoundException, IOException {
+		ObjectMessage message = take(ObjectMessage.class);
+		if (message.serialized == null){
+			return (Serializable) message.object;
+		}
+		ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(message.serialized));
+		return (Serializable) ois.readObject();
+	}
+
+	@Override
+	public void sendBytes(byte[] data) throws IOException {
+		out.put(copyMessages ? data.clone() : data);
+	}
+
+	@Override
+	public byte[] receiveBytes() throws IOException {
+		return take(byte[].class);
+	}
+
+	@Override
+	public void sendByteArrays(byte[][] data) throws IOException {
+		if (copyMessages){
+			byte[][] copy = new byte[data.length][];
+			for (int i = 0; i < data.length; i++){
+				copy[i] = data[i].clone();
+			}
+			data = copy;
+		}
+		out.put(data);
+	}
+
+	@Override
+	public byte[][] receiveByteArrays() throws IOException {
+		return take(byte[][].class);
+	}
+	
+	/**
+	 * Waits until the other party puts the next message in the queue.
+	 */
+	@Override
+	public boolean waitForMessage(long timeout) throws IOException {
+		return in.await(timeout);
+	}
+	
+	/**
+	 * Takes the next message and checks that it has the expected type.
+	 */
+	private <T> T take(Class<T> type) throws IOException {
+		Object message = in.take();
+		if (!type.isInstance(message)){
+			throw new IOException("the received message is not of the expected type " + type.getSimpleName());
+		}
+		return type.cast(message);
+	}
+
+	/**
+	 * Closes both directions of the channel. The other party can still receive the messages that were already sent.
+	 */
+	@Override
+	public void close() {
+		out.close();
+		in.close();
+	}
+
+	@Override
+	public boolean isClosed() {
+		return out.isClosed();
+	}
+
+	@Override
+	protected boolean connect() throws IOException {
+		return isConnected();
+	}
+
+	@Override
+	protected boolean isConnected() {
+		return connected.getCount() == 0;
+	}
+}
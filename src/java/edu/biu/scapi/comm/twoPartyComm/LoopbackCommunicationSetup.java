@@ -0,0 +1,147 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.comm.twoPartyComm;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+
+import edu.biu.scapi.comm.Channel;
+import edu.biu.scapi.exceptions.DuplicatePartyException;
+
+/**
+ * This class implements a communication between two parties that run in the same JVM, in different threads.<p>
+ * 
+ * The created {@link LoopbackChannel}s pass the messages through memory, without sockets. This makes it possible to measure 
+ * the computation cost of a protocol without the noise of the network, and to run benchmarks of two party protocols in one 
+ * process. Each party should create its own LoopbackCommunicationSetup with the parties in the opposite roles, and request 
+ * the channels with the same names. The parties may be any {@link PartyData} objects that implement equals and hashCode, 
+ * for example the {@link SocketPartyData} objects read from the parties files.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+public class LoopbackCommunicationSetup implements TwoPartyCommunicationSetup {
+
+	public static final int DEFAULT_CAPACITY = 1024;
+	
+	private PartyData me;				//The data of the current application.
+	private PartyData other;			//The data of the other application to communicate with.
+	private int capacity;				//The maximal number of messages that wait in each direction of a channel.
+	private boolean copyMessages;		//Indicates whether the channels copy the sent messages.
+	private int connectionsNumber;		//Holds the number of created connections. 
+	
+	/**
+	 * A constructor that set the given parties. The created channels copy the sent messages, like network channels.
+	 * @param me The data of the current application.
+	 * @param party The data of the other application to communicate with.
+	 * @throws DuplicatePartyException in case the given parties are equal.
+	 */
+	public LoopbackCommunicationSetup(PartyData me, PartyData party) throws DuplicatePartyException {
+		this(me, party, DEFAULT_CAPACITY, true);
+	}
+	
+	/**
+	 * A constructor that set the given parties and the channels parameters.
+	 * @param me The data of the current application.
+	 * @param party The data of the other application to communicate with.
+	 * @param capacity The maximal number of messages that wait in each direction of a channel.
+	 * @param copyMessages true in order to serialize or copy the sent messages; false in order to pass their references, 
+	 * which is correct only if the protocol does not change its messages after sending them.
+	 * @throws DuplicatePartyException in case the given parties are equal.
+	 */
+	public LoopbackCommunicationSetup(PartyData me, PartyData party, int capacity, boolean copyMessages) throws DuplicatePartyException {
+		if (me.equals(party)){
+			throw new DuplicatePartyException("Another party with the same data");
+		}
+		if (capacity <= 0){
+			throw new IllegalArgumentException("capacity should be positive");
+		}
+		this.me = me;
+		this.other = party;
+		this.capacity = capacity;
+		this.copyMessages = copyMessages;
+	}
+	
+	/**
+	 * Opens the channels and waits until the other party opens them too.
+	 * @throws TimeoutException in case the other party did not open all channels before the timeout.
+	 */
+	@Override
+	public Map<String, Channel> prepareForCommunication(String[] connectionsIds, long timeOut) throws TimeoutException {
+		long deadline = System.currentTimeMillis() + timeOut;
+		
+		LoopbackChannel[] channels = new LoopbackChannel[connectionsIds.length];
+		for (int i = 0; i < connectionsIds.length; i++){
+			channels[i] = LoopbackNetwork.open(me, other, connectionsIds[i], capacity, copyMessages);
+		}
+		
+		Map<String, Channel> connections = new HashMap<String, Channel>();
+		for (int i = 0; i < channels.length; i++){
+			boolean connected = false;
+			try {
+				connected = channels[i].awaitConnected(Math.max(0, deadline - System.currentTimeMillis()));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			if (!connected){
+				//Remove the channels that the other party did not open.
+				for (int j = i; j < channels.length; j++){
+					LoopbackNetwork.cancel(me, other, connectionsIds[j], channels[j]);
+				}
+				throw new TimeoutException("timeout has occurred");
+			}
+			connections.put(connectionsIds[i], channels[i]);
+		}
+		
+		connectionsNumber += connectionsIds.length;
+		return connections;
+	}
+
+	@Override
+	public Map<String, Channel> prepareForCommunication(int connectionsNum, long timeOut) throws TimeoutException {
+		//Prepare the connections Ids using the default implementation, meaning the connections are numbered 
+		//according to their index. i.e the first connection's name is "1", the second is "2" and so on.
+		String[] names = new String[connectionsNum];
+		for (int i=0; i<connectionsNum; i++){
+			names[i] = Integer.toString(connectionsNumber + i);
+		}
+		
+		//Call the other prepareForCommunication function with the created ids.
+		return prepareForCommunication(names, timeOut);
+	}
+
+	/**
+	 * There is no Nagle algorithm in memory channels, so this function does nothing.
+	 */
+	@Override
+	public void enableNagle() {}
+
+	/**
+	 * This implementation has nothing to close besides the channels (which are being closed by the channel instances).
+	 */
+	@Override
+	public void close() {}
+}
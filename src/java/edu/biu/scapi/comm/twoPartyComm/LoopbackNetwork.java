@@ -0,0 +1,105 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.comm.twoPartyComm;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * The meeting point of the parties that use {@link LoopbackCommunicationSetup}s in the same JVM.<p>
+ * The first party that opens a channel creates it and waits; the other party opens the same channel (the same name, with 
+ * the parties in the opposite roles) and gets the other end.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+final class LoopbackNetwork {
+
+	//Channels that were opened by one party and wait for the other party.
+	private static final Map<Key, LoopbackChannel> pending = new HashMap<Key, LoopbackChannel>();
+	
+	/**
+	 * Identifies a channel opened by one party to another party.
+	 */
+	private static class Key {
+		PartyData from;
+		PartyData to;
+		String id;
+		
+		Key(PartyData from, PartyData to, String id){
+			this.from = from;
+			this.to = to;
+			this.id = id;
+		}
+		
+		@Override
+		public boolean equals(Object o){
+			if (!(o instanceof Key)){
+				return false;
+			}
+			Key other = (Key) o;
+			return from.equals(other.from) && to.equals(other.to) && id.equals(other.id);
+		}
+		
+		@Override
+		public int hashCode(){
+			return (31 * from.hashCode() + to.hashCode()) * 31 + id.hashCode();
+		}
+	}
+	
+	private LoopbackNetwork(){}
+	
+	/**
+	 * Opens the channel with the given id between the given parties. 
+	 * In case the other party already opened this channel, returns the other end of its channel. Otherwise, creates the channel.
+	 * @param capacity the maximal number of messages that wait in each direction of the channel.
+	 * @param copyMessages indicates whether the channel should copy the sent messages.
+	 */
+	static synchronized LoopbackChannel open(PartyData me, PartyData other, String id, int capacity, boolean copyMessages){
+		LoopbackChannel opened = pending.remove(new Key(other, me, id));
+		if (opened != null){
+			return opened.createPeer(copyMessages);
+		}
+		
+		Key key = new Key(me, other, id);
+		if (pending.containsKey(key)){
+			throw new IllegalArgumentException("channel " + id + " was already opened");
+		}
+		LoopbackChannel channel = new LoopbackChannel(new SpscRingBuffer(capacity), new SpscRingBuffer(capacity), copyMessages, new CountDownLatch(1));
+		pending.put(key, channel);
+		return channel;
+	}
+	
+	/**
+	 * Removes the given channel in case the other party did not open it yet.
+	 */
+	static synchronized void cancel(PartyData me, PartyData other, String id, LoopbackChannel channel){
+		Key key = new Key(me, other, id);
+		if (pending.get(key) == channel){
+			pending.remove(key);
+		}
+	}
+}
@@ -0,0 +1,375 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.comm.twoPartyComm;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import edu.biu.scapi.comm.PlainChannel;
+import edu.biu.scapi.generals.Logging;
+
+/**
+ * This class represents a logical channel created by the {@link MultiplexedSocketCommunicationSetup}.<p>
+ * 
+ * Many logical channels share the same TCP connection. Each channel has its own stream of messages and its own flow 
+ * control, so a channel whose messages are not received does not block the other channels.<p>
+ * 
+ * Since this class is a concrete channel, it can be decorated by the other channels (for example, by the encrypted and 
+ * authenticated channels).
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+public class MultiplexedChannel extends PlainChannel {
+
+	//Marks the end of the received messages.
+	private static final Chunk EOF = new Chunk(null, true);
+	
+	private String name;							//The id of the channel, as given to prepareForCommunication.
+	private MultiplexedSocketCommunicationSetup setup;
+	
+	private MultiplexedConnection outConnection;	//Used to send messages.
+	private int outId;								//The id of the stream that carries the sent messages.
+	private int credit = MultiplexedConnection.WINDOW_SIZE;	//The number of bytes that can be sent before the other party consumes them.
+	
+	private MultiplexedConnection inConnection;		//Used to receive messages.
+	private int inId;								//The id of the stream that carries the received messages.
+	private int consumed;							//The number of received bytes that were not reported to the other party yet.
+	private BlockingQueue<Chunk> chunks = new LinkedBlockingQueue<Chunk>();	//Received chunks that were not consumed yet.
+	private Chunk waiting;							//The first chunk of the next message, taken by waitForMessage.
+	
+	private volatile IOException failure;
+	private boolean closed;
+	
+	/**
+	 * Holds a part of a received message.
+	 */
+	private static class Chunk {
+		byte[] data;
+		boolean end;		//Indicates whether this is the last chunk of the message.
+		
+		Chunk(byte[] data, boolean end){
+			this.data = data;
+			this.end = end;
+		}
+	}
+	
+	/**
+	 * Creates a channel with the given name. The channel is ready after it was opened by both parties.
+	 */
+	MultiplexedChannel(String name, MultiplexedSocketCommunicationSetup setup){
+		this.name = name;
+		this.setup = setup;
+	}
+	
+	/**
+	 * Returns the id of this channel.
+	 */
+	public String getName(){
+		return name;
+	}
+	
+	synchronized void setOutgoing(MultiplexedConnection connection, int id){
+		outConnection = connection;
+		outId = id;
+		setReady();
+	}
+	
+	synchronized void setIncoming(MultiplexedConnection connection, int id){
+		inConnection = connection;
+		inId = id;
+		setReady();
+	}
+	
+	synchronized boolean isOpenedLocally(){
+		return outConnection != null;
+	}
+	
+	/**
+	 * Sets the state of the channel to READY if both streams are open.
+	 */
+	private void setReady(){
+		if (outConnection != null && inConnection != null){
+			setState(State.READY);
+		}
+	}
+	
+	/**
+	 * Waits until the given number of bytes can be sent and decreases the credit.
+	 */
+	synchronized void acquireCredit(int size) throws IOException {
+		while (credit < size){
+			checkFailure();
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("interrupted while waiting for the other party to receive");
+			}
+		}
+		credit -= size;
+	}
+	
+	synchronized void addCredit(int size){
+		credit += size;
+		notifyAll();
+	}
+	
+	/**
+	 * Called by the reader thread of the connection with a received chunk.
+	 */
+	void addChunk(byte[] data, boolean end){
+		chunks.add(new Chunk(data, end));
+	}
+	
+	/**
+	 * Called by the reader thread of the connection when the other party closed the channel.
+	 */
+	void closedByOther(){
+		chunks.add(EOF);
+	}
+	
+	/**
+	 * Called by the reader thread of the connection when the connection cannot be used anymore.
+	 */
+	synchronized void connectionFailed(IOException e){
+		if (failure == null){
+			failure = e;
+		}
+		chunks.add(EOF);
+		notifyAll();
+	}
+	
+	private void checkFailure() throws IOException {
+		if (failure != null){
+			throw new IOException("the connection failed", failure);
+		}
+	}
+	
+	/**
+	 * Sends the given object to the other party. 
+	 */
+	@Override
+	public void send(Serializable data) throws IOException {
+		ByteArrayOutputStream bOut = new ByteArrayOutputStream();
+		ObjectOutputStream oOut = new ObjectOutputStream(bOut);
+		oOut.writeObject(data);
+		oOut.close();
+		sendMessage(new byte[][]{bOut.toByteArray()});
+	}
+
+	/**
+	 * Receives an object that was sent by the other party using the {@link #send(Serializable)} function.
+	 */
+	@Override
+	public Serializable receive() throws ClassNotFoundException, IOException {
+		ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(receiveMessage()));
+		return (Serializable) ois.readObject();
+	}
+	
+	@Override
+	public void sendBytes(byte[] data) throws IOException {
+		sendMessage(new byte[][]{data});
+	}
+
+	@Override
+	public byte[] receiveBytes() throws IOException {
+		return receiveMessage();
+	}
+
+	/**
+	 * Sends the number of arrays, their lengths and the arrays as one message. 
+	 * The arrays are not copied into one big array.
+	 */
+	@Override
+	public void sendByteArrays(byte[][] data) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(4 * (data.length + 1));
+		header.putInt(data.length);
+		for (int i = 0; i < data.length; i++){
+			header.putInt(data[i].length);
+		}
+		
+		byte[][] parts = new byte[data.length + 1][];
+		parts[0] = header.array();
+		System.arraycopy(data, 0, parts, 1, data.length);
+		sendMessage(parts);
+	}
+
+	@Override
+	public byte[][] receiveByteArrays() throws IOException {
+		ByteBuffer message = ByteBuffer.wrap(receiveMessage());
+		//The number of arrays and their lengths are read from the wire, so they are checked to fit in the message.
+		int count = message.remaining() < 4 ? -1 : message.getInt();
+		if (count < 0 || count > message.remaining() / 4){
+			throw new IOException("illegal number of arrays " + count);
+		}
+		int remaining = message.remaining() - 4 * count;
+		byte[][] data = new byte[count][];
+		for (int i = 0; i < count; i++){
+			int length = message.getInt();
+			if (length < 0 || length > remaining){
+				throw new IOException("illegal array length " + length);
+			}
+			remaining -= length;
+			data[i] = new byte[length];
+		}
+		for (int i = 0; i < count; i++){
+			message.get(data[i]);
+		}
+		return data;
+	}
+	
+	private void sendMessage(byte[][] parts) throws IOException {
+		if (getState() != State.READY){
+			throw new IOException("the channel is not ready");
+		}
+		checkFailure();
+		outConnection.sendMessage(this, outId, parts);
+	}
+	
+	/**
+	 * Takes the chunks of the next message and returns the message.
+	 */
+	private byte[] receiveMessage() throws IOException {
+		Chunk chunk = takeChunk();
+		if (chunk.end){
+			checkMessageLength(chunk.data.length);
+			return chunk.data;
+		}
+		
+		//The message has more than one chunk.
+		ByteArrayOutputStream message = new ByteArrayOutputStream(2 * chunk.data.length);
+		message.write(chunk.data);
+		long size = chunk.data.length;
+		do {
+			chunk = takeChunk();
+			size += chunk.data.length;
+			//The chunks of a too long message are dropped, but still taken, so the next message starts at its first chunk.
+			if (size <= getMaxMessageSize()){
+				message.write(chunk.data);
+			}
+		} while (!chunk.end);
+		checkMessageLength((int) Math.min(size, Integer.MAX_VALUE));
+		return message.toByteArray();
+	}
+	
+	/**
+	 * Waits until the first chunk of the next message is received. The chunk is kept for the next receive function.
+	 */
+	@Override
+	public boolean waitForMessage(long timeout) throws IOException {
+		if (waiting == null){
+			try {
+				waiting = chunks.poll(timeout, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("interrupted while waiting for a message");
+			}
+		}
+		return waiting != null;
+	}
+	
+	/**
+	 * Takes the next received chunk and gives the other party the credit to send its bytes again.
+	 */
+	private Chunk takeChunk() throws IOException {
+		Chunk chunk = waiting;
+		waiting = null;
+		if (chunk == null){
+			try {
+				chunk = chunks.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("interrupted while waiting for a message");
+			}
+		}
+		
+		if (chunk == EOF){
+			//Keep the mark for the next calls.
+			chunks.add(EOF);
+			checkFailure();
+			throw new EOFException("the other party closed the channel");
+		}
+		
+		//Report the consumed bytes in batches, in order to reduce the number of sent frames.
+		//Since the maximal chunk size is smaller than the rest of the window, the other party never waits for the batch.
+		consumed += chunk.data.length;
+		if (consumed >= MultiplexedConnection.WINDOW_SIZE / 4){
+			inConnection.sendCredit(inId, consumed);
+			consumed = 0;
+		}
+		return chunk;
+	}
+	
+	/**
+	 * Closes this channel. The underlying connection is closed after all the channels that use it were closed.
+	 */
+	@Override
+	public void close() {
+		synchronized (this){
+			if (closed){
+				return;
+			}
+			closed = true;
+		}
+		if (outConnection != null && failure == null){
+			try {
+				outConnection.closeStream(outId);
+			} catch (IOException e) {
+				Logging.getLogger().log(Level.FINE, e.toString());
+			}
+		}
+		setup.channelClosed(this);
+	}
+
+	@Override
+	public synchronized boolean isClosed() {
+		return closed;
+	}
+
+	/**
+	 * The channel is connected by the {@link MultiplexedSocketCommunicationSetup}.
+	 */
+	@Override
+	protected boolean connect() throws IOException {
+		return isConnected();
+	}
+
+	@Override
+	protected synchronized boolean isConnected() {
+		return getState() == State.READY && failure == null;
+	}
+}
@@ -0,0 +1,332 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.comm.twoPartyComm;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+
+import edu.biu.scapi.generals.Logging;
+
+/**
+ * This class represents one TCP connection that carries many logical channels, used by the {@link MultiplexedSocketCommunicationSetup}.<p>
+ * 
+ * Every message of a logical channel is split into chunks, and every chunk is written as a frame of the form 
+ * [type (1 byte)][stream id (4 bytes)][length (4 bytes)][payload]. Chunks of different channels may be interleaved, so a big 
+ * message of one channel does not hold the messages of the other channels for long. The frame types are:
+ * <ul>
+ * <li>OPEN - the sender opened a stream with the given id. The payload is the name of the logical channel.</li>
+ * <li>DATA - a chunk of a message, which is not the last one.</li>
+ * <li>END - the last chunk of a message.</li>
+ * <li>CREDIT - the receiver consumed the number of bytes written in the payload, so the sender can send them again.</li>
+ * <li>CLOSE - the sender closed the stream.</li>
+ * </ul>
+ * The stream id in every frame is the id given by the party that opened the stream. The DATA, END and CLOSE frames are sent 
+ * by the party that opened the stream, while the CREDIT frames are sent back by the other party.<p>
+ * 
+ * A reader thread reads the frames and passes them to the logical channels. Since each channel may not have more than 
+ * {@link #WINDOW_SIZE} unconsumed bytes, the reader thread never blocks on a slow channel.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+class MultiplexedConnection {
+	
+	static final int MAGIC = 0x53434d58;		//Sent by the connecting party, followed by the index of the connection.
+	
+	static final byte OPEN = 0;
+	static final byte DATA = 1;
+	static final byte END = 2;
+	static final byte CREDIT = 3;
+	static final byte CLOSE = 4;
+	
+	static final int MAX_CHUNK_SIZE = 64 * 1024;	//The maximal payload of a DATA or END frame.
+	static final int WINDOW_SIZE = 1024 * 1024;		//The maximal number of bytes a channel may send before the other party consumes them.
+	
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	
+	private MultiplexedSocketCommunicationSetup setup;	//Resolves the names of the streams that the other party opens.
+	private Socket socket;
+	private DataOutputStream out;
+	private DataInputStream in;
+	private ReaderThread reader;
+	
+	//Streams opened by this party, by their id.
+	private Map<Integer, MultiplexedChannel> outgoing = new ConcurrentHashMap<Integer, MultiplexedChannel>();
+	//Streams opened by the other party, by their id.
+	private Map<Integer, MultiplexedChannel> incoming = new ConcurrentHashMap<Integer, MultiplexedChannel>();
+	
+	private boolean outputClosed;
+	
+	/**
+	 * Creates a connection over the given connected socket.
+	 * @param setup the setup that created this connection.
+	 * @param socket a connected socket.
+	 * @throws IOException in case the streams of the socket cannot be created.
+	 */
+	MultiplexedConnection(MultiplexedSocketCommunicationSetup setup, Socket socket) throws IOException {
+		this.setup = setup;
+		this.socket = socket;
+		out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), MAX_CHUNK_SIZE + 9));
+		in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), MAX_CHUNK_SIZE + 9));
+	}
+	
+	/**
+	 * Starts reading frames from the other party.
+	 */
+	void start(){
+		reader = new ReaderThread();
+		reader.start();
+	}
+	
+	/**
+	 * Sets the tcpNoDelay option of the underlying socket.
+	 */
+	void setTcpNoDelay(boolean on){
+		try {
+			socket.setTcpNoDelay(on);
+		} catch (IOException e) {
+			Logging.getLogger().log(Level.WARNING, e.toString());
+		}
+	}
+	
+	/**
+	 * Opens a new stream for the given channel and notifies the other party.
+	 * @param channel the channel to send through this connection.
+	 * @param id the id of the new stream.
+	 */
+	void openStream(MultiplexedChannel channel, int id) throws IOException {
+		outgoing.put(id, channel);
+		channel.setOutgoing(this, id);
+		writeFrame(OPEN, id, channel.getName().getBytes(UTF8), 0);
+	}
+	
+	/**
+	 * Sends the given parts as one message of the given channel.<p>
+	 * The parts are split into chunks of at most {@link #MAX_CHUNK_SIZE} bytes. Before each chunk is written, the credit of 
+	 * the channel is decreased, which blocks in case the other party did not consume enough previous chunks.
+	 */
+	void sendMessage(MultiplexedChannel channel, int id, byte[][] parts) throws IOException {
+		//Find the last non empty part, which holds the END frame.
+		int last = parts.length - 1;
+		while (last > 0 && parts[last].length == 0){
+			last--;
+		}
+		
+		for (int i = 0; i <= last; i++){
+			if (parts[i].length == 0 && i < last){
+				continue;
+			}
+			int offset = 0;
+			do {
+				int size = Math.min(MAX_CHUNK_SIZE, parts[i].length - offset);
+				channel.acquireCredit(size);
+				boolean end = (i == last) && (offset + size == parts[i].length);
+				writeFrame(end ? END : DATA, id, parts[i], offset, size);
+				offset += size;
+			} while (offset < parts[i].length);
+		}
+	}
+	
+	/**
+	 * Tells the other party that the given number of bytes of the stream with the given id were consumed.
+	 */
+	void sendCredit(int id, int credit) throws IOException {
+		byte[] payload = new byte[4];
+		payload[0] = (byte) (credit >>> 24);
+		payload[1] = (byte) (credit >>> 16);
+		payload[2] = (byte) (credit >>> 8);
+		payload[3] = (byte) credit;
+		writeFrame(CREDIT, id, payload, 0);
+	}
+	
+	/**
+	 * Closes the stream with the given id and notifies the other party.
+	 */
+	void closeStream(int id) throws IOException {
+		outgoing.remove(id);
+		writeFrame(CLOSE, id, new byte[0], 0);
+	}
+	
+	private void writeFrame(byte type, int id, byte[] payload, int offset) throws IOException {
+		writeFrame(type, id, payload, offset, payload.length - offset);
+	}
+	
+	/**
+	 * Writes one frame. Frames of different threads are never interleaved.
+	 */
+	private void writeFrame(byte type, int id, byte[] payload, int offset, int length) throws IOException {
+		synchronized (out){
+			if (outputClosed){
+				throw new IOException("the connection is closed");
+			}
+			out.writeByte(type);
+			out.writeInt(id);
+			out.writeInt(length);
+			out.write(payload, offset, length);
+			out.flush();
+		}
+	}
+	
+	/**
+	 * Stops sending on this connection, but keeps reading until the other party stops sending as well. 
+	 * This way, data that was sent by the other party does not cause a reset of the connection before the other party 
+	 * read all of our data.
+	 */
+	void shutdown(){
+		synchronized (out){
+			if (outputClosed){
+				return;
+			}
+			outputClosed = true;
+			try {
+				out.flush();
+				socket.shutdownOutput();
+			} catch (IOException e) {
+				Logging.getLogger().log(Level.WARNING, e.toString());
+				close();
+			}
+		}
+	}
+	
+	/**
+	 * Closes the socket immediately.
+	 */
+	void close(){
+		synchronized (out){
+			outputClosed = true;
+		}
+		try {
+			socket.close();
+		} catch (IOException e) {
+			Logging.getLogger().log(Level.WARNING, e.toString());
+		}
+	}
+	
+	/**
+	 * Marks all streams that use this connection as failed.
+	 */
+	private void fail(IOException e){
+		for (MultiplexedChannel channel : outgoing.values()){
+			channel.connectionFailed(e);
+		}
+		for (MultiplexedChannel channel : incoming.values()){
+			channel.connectionFailed(e);
+		}
+	}
+	
+	/**
+	 * Reads the frames sent by the other party and passes them to the logical channels.
+	 */
+	private class ReaderThread extends Thread {
+		
+		ReaderThread(){
+			setName("Multiplexed-" + getName());
+			setDaemon(true);
+		}
+		
+		public void run(){
+			try {
+				while (true){
+					byte type;
+					try {
+						type = in.readByte();
+					} catch (EOFException e){
+						//The other party stopped sending.
+						break;
+					}
+					int id = in.readInt();
+					int length = in.readInt();
+					if (length < 0 || length > MAX_CHUNK_SIZE){
+						throw new IOException("illegal frame length " + length);
+					}
+					byte[] payload = new byte[length];
+					in.readFully(payload);
+					
+					handleFrame(type, id, payload);
+				}
+				fail(new EOFException("the other party closed the connection"));
+			} catch (IOException e) {
+				Logging.getLogger().log(Level.FINE, e.toString());
+				fail(e);
+			} catch (RuntimeException e) {
+				//Otherwise the thread would die silently and the channels would wait for their messages forever.
+				Logging.getLogger().log(Level.WARNING, e.toString());
+				fail(new IOException("failed to handle a received frame", e));
+			}
+			close();
+		}
+		
+		private void handleFrame(byte type, int id, byte[] payload) throws IOException {
+			MultiplexedChannel channel;
+			switch (type){
+			case OPEN:
+				channel = setup.streamOpenedByOther(new String(payload, UTF8), MultiplexedConnection.this, id);
+				incoming.put(id, channel);
+				break;
+			case DATA:
+			case END:
+				getIncoming(id).addChunk(payload, type == END);
+				break;
+			case CREDIT:
+				if (payload.length != 4){
+					throw new IOException("illegal credit frame length " + payload.length);
+				}
+				int credit = ((payload[0] & 0xff) << 24) | ((payload[1] & 0xff) << 16) | ((payload[2] & 0xff) << 8) | (payload[3] & 0xff);
+				if (credit <= 0){
+					throw new IOException("illegal credit " + credit);
+				}
+				channel = outgoing.get(id);
+				//Credits of closed streams are ignored.
+				if (channel != null){
+					channel.addCredit(credit);
+				}
+				break;
+			case CLOSE:
+				getIncoming(id).closedByOther();
+				incoming.remove(id);
+				break;
+			default:
+				throw new IOException("unknown frame type " + type);
+			}
+		}
+		
+		private MultiplexedChannel getIncoming(int id) throws IOException {
+			MultiplexedChannel channel = incoming.get(id);
+			if (channel == null){
+				throw new IOException("unknown stream id " + id);
+			}
+			return channel;
+		}
+	}
+}
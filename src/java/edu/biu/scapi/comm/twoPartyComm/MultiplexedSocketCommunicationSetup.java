@@ -0,0 +1,417 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.comm.twoPartyComm;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+
+import edu.biu.scapi.comm.Channel;
+import edu.biu.scapi.exceptions.DuplicatePartyException;
+import edu.biu.scapi.generals.Logging;
+
+/**
+ * This class implements a communication between two parties in which all the channels share a small number of TCP connections.<p>
+ * 
+ * The {@link SocketCommunicationSetup} creates two sockets for each channel. Protocols that use a channel per thread 
+ * therefore need many sockets and many connection handshakes. This class creates the TCP connections once (one connection 
+ * by default) and carries all the requested channels over them, as logical {@link MultiplexedChannel}s. 
+ * The channels are assigned to the connections in a round robin manner.<p>
+ * 
+ * Each channel has its own flow control: a channel may not have more than a fixed amount of bytes that were sent but not 
+ * received yet. That way, a channel whose messages are not received does not block the other channels that share its connection.<p>
+ * 
+ * Only one party listens for the connections; the party whose {@link SocketPartyData} is smaller connects to the port of the 
+ * other party. Both parties should use this class, and should request the channels with the same names.<p>
+ * 
+ * The TCP connections are closed after all the channels were closed, or when the {@link #close()} function is called. 
+ * A later call to prepareForCommunication creates new connections, and the names of the closed channels can be used again.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+public class MultiplexedSocketCommunicationSetup implements TwoPartyCommunicationSetup {
+
+	private static final long RETRY_INTERVAL = 100;		//Time to wait between two attempts to connect, in milliseconds.
+	
+	private SocketPartyData me;						//The data of the current application.
+	private SocketPartyData other;					//The data of the other application to communicate with.
+	private MultiplexedConnection[] connections;	//The shared TCP connections. Created in the first call to prepareForCommunication.
+	private boolean enableNagle = false;			//Indicated whether or not to use Nagle optimization algorithm.
+	
+	private Map<String, MultiplexedChannel> channels = new HashMap<String, MultiplexedChannel>();	//All channels, by their names.
+	private int nextStreamId;						//The id of the next stream opened by this party.
+	private int nextConnection;						//The index of the connection of the next channel.
+	private int connectionsNumber;					//The number of channels requested so far.
+	private int openChannels;						//The number of channels that were not closed yet.
+	
+	/**
+	 * A constructor that set the given parties and uses one TCP connection.
+	 * @param me The data of the current application.
+	 * @param party The data of the other application to communicate with.
+	 * @throws DuplicatePartyException 
+	 */
+	public MultiplexedSocketCommunicationSetup(PartyData me, PartyData party) throws DuplicatePartyException {
+		this(me, party, 1);
+	}
+	
+	/**
+	 * A constructor that set the given parties.
+	 * @param me The data of the current application.
+	 * @param party The data of the other application to communicate with.
+	 * @param numOfConnections The number of TCP connections to share between the channels. Both parties should use the same number.
+	 * @throws DuplicatePartyException 
+	 */
+	public MultiplexedSocketCommunicationSetup(PartyData me, PartyData party, int numOfConnections) throws DuplicatePartyException {
+		//Both parties should be instances of SocketPArty.
+		if (!(me instanceof SocketPartyData) || !(party instanceof SocketPartyData)){
+			throw new IllegalArgumentException("both parties should be instances of SocketParty");
+		}
+		if (numOfConnections <= 0){
+			throw new IllegalArgumentException("the number of connections should be positive");
+		}
+		this.me = (SocketPartyData) me;
+		this.other = (SocketPartyData) party;
+		
+		//Compare the two given parties. If they are the same, throw exception.
+		if(this.me.compareTo(other) == 0){
+			throw new DuplicatePartyException("Another party with the same ip address and port");
+		}
+		connections = new MultiplexedConnection[numOfConnections];
+	}
+	
+	/**  
+	 * Creates the TCP connections in the first call, and opens a logical channel for each given id. 
+	 * The function returns after the other party opened channels with the same ids.
+	 * @throws TimeoutException in case a timeout has occurred before all channels have been connected.
+	 */
+	@Override
+	public Map<String, Channel> prepareForCommunication(String[] connectionsIds, long timeOut) throws TimeoutException {
+		long deadline = System.currentTimeMillis() + timeOut;
+		
+		//Create the channels and choose the stream of each one of them.
+		MultiplexedChannel[] created = new MultiplexedChannel[connectionsIds.length];
+		MultiplexedConnection[] chosen = new MultiplexedConnection[connectionsIds.length];
+		int firstStreamId;
+		synchronized (this){
+			if (connections[0] == null){
+				connect(deadline);
+			}
+			
+			for (int i = 0; i < connectionsIds.length; i++){
+				created[i] = getChannel(connectionsIds[i]);
+				if (created[i].isOpenedLocally() || contains(created, i, created[i])){
+					throw new IllegalArgumentException("channel " + connectionsIds[i] + " was already created");
+				}
+				chosen[i] = connections[nextConnection];
+				nextConnection = (nextConnection + 1) % connections.length;
+			}
+			firstStreamId = nextStreamId;
+			nextStreamId += connectionsIds.length;
+			openChannels += connectionsIds.length;
+			connectionsNumber += connectionsIds.length;
+		}
+		
+		//Open the streams. This is done without holding the lock, since writing may block.
+		for (int i = 0; i < created.length; i++){
+			try {
+				chosen[i].openStream(created[i], firstStreamId + i);
+			} catch (IOException e) {
+				Logging.getLogger().log(Level.WARNING, e.toString());
+				throw new TimeoutException("failed to open channel " + connectionsIds[i] + ": " + e);
+			}
+		}
+		
+		//Wait until the other party opens the same channels.
+		Map<String, Channel> ready = new HashMap<String, Channel>();
+		synchronized (this){
+			for (int i = 0; i < created.length; i++){
+				while (!created[i].isConnected()){
+					long remaining = deadline - System.currentTimeMillis();
+					if (remaining <= 0){
+						throw new TimeoutException("timeout has occurred");
+					}
+					try {
+						wait(remaining);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new TimeoutException("interrupted");
+					}
+				}
+				ready.put(connectionsIds[i], created[i]);
+			}
+		}
+		return ready;
+	}
+	
+	/**
+	 * Checks if the given channel appears in the first given number of places of the given array.
+	 */
+	private static boolean contains(MultiplexedChannel[] channels, int size, MultiplexedChannel channel){
+		for (int i = 0; i < size; i++){
+			if (channels[i] == channel){
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public Map<String, Channel> prepareForCommunication(int connectionsNum, long timeOut) throws TimeoutException {
+		//Prepare the connections Ids using the default implementation, meaning the connections are numbered 
+		//according to their index. i.e the first connection's name is "1", the second is "2" and so on.
+		String[] names = new String[connectionsNum];
+		synchronized (this){
+			for (int i=0; i<connectionsNum; i++){
+				names[i] = Integer.toString(connectionsNumber + i);
+			}
+		}
+		
+		//Call the other prepareForCommunication function with the created ids.
+		return prepareForCommunication(names, timeOut);
+	}
+	
+	/**
+	 * Creates the TCP connections. The smaller party connects and the other party accepts.
+	 */
+	private void connect(long deadline) throws TimeoutException {
+		Socket[] sockets;
+		if (me.compareTo(other) < 0){
+			sockets = connectToOther(deadline);
+		} else {
+			sockets = acceptFromOther(deadline);
+		}
+		
+		try {
+			for (int i = 0; i < sockets.length; i++){
+				sockets[i].setTcpNoDelay(!enableNagle);
+				connections[i] = new MultiplexedConnection(this, sockets[i]);
+			}
+		} catch (IOException e) {
+			for (int i = 0; i < sockets.length; i++){
+				closeSocket(sockets[i]);
+			}
+			throw new TimeoutException("failed to create the connections: " + e);
+		}
+		for (int i = 0; i < connections.length; i++){
+			connections[i].start();
+		}
+	}
+	
+	/**
+	 * Connects to the other party. In case the other party does not listen yet, tries again until the deadline.
+	 */
+	private Socket[] connectToOther(long deadline) throws TimeoutException {
+		Socket[] sockets = new Socket[connections.length];
+		InetSocketAddress address = new InetSocketAddress(other.getIpAddress(), other.getPort());
+		int i = 0;
+		while (i < sockets.length){
+			Logging.getLogger().log(Level.INFO, "Trying to connect to " + address.getAddress() + " on port " + address.getPort());
+			try {
+				Socket socket = new Socket(address.getAddress(), address.getPort());
+				DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+				out.writeInt(MultiplexedConnection.MAGIC);
+				out.writeInt(i);
+				out.flush();
+				sockets[i++] = socket;
+				continue;
+			} catch (IOException e) {
+				Logging.getLogger().log(Level.FINEST, e.toString());
+			}
+			
+			if (System.currentTimeMillis() + RETRY_INTERVAL > deadline){
+				for (int j = 0; j < i; j++){
+					closeSocket(sockets[j]);
+				}
+				throw new TimeoutException("timeout has occurred");
+			}
+			try {
+				Thread.sleep(RETRY_INTERVAL);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new TimeoutException("interrupted");
+			}
+		}
+		return sockets;
+	}
+	
+	/**
+	 * Accepts the connections of the other party. Connections from other addresses are closed.
+	 */
+	private Socket[] acceptFromOther(long deadline) throws TimeoutException {
+		Socket[] sockets = new Socket[connections.length];
+		ServerSocket listener = null;
+		int accepted = 0;
+		try {
+			listener = new ServerSocket();
+			listener.setReuseAddress(true);
+			listener.bind(new InetSocketAddress(me.getIpAddress(), me.getPort()));
+			
+			while (accepted < sockets.length){
+				long remaining = deadline - System.currentTimeMillis();
+				if (remaining <= 0){
+					throw new SocketTimeoutException();
+				}
+				listener.setSoTimeout((int) Math.min(remaining, Integer.MAX_VALUE));
+				Logging.getLogger().log(Level.INFO, "Trying to listen "+ listener.getLocalPort());
+				Socket socket = listener.accept();
+				
+				//An unauthorized ip tried to connect.
+				if (!socket.getInetAddress().equals(other.getIpAddress())){
+					closeSocket(socket);
+					continue;
+				}
+				
+				//Read the index of the connection.
+				socket.setSoTimeout((int) Math.max(1, deadline - System.currentTimeMillis()));
+				DataInputStream in = new DataInputStream(socket.getInputStream());
+				int index = -1;
+				try {
+					if (in.readInt() == MultiplexedConnection.MAGIC){
+						index = in.readInt();
+					}
+				} catch (IOException e) {
+					Logging.getLogger().log(Level.FINEST, e.toString());
+				}
+				if (index < 0 || index >= sockets.length || sockets[index] != null){
+					closeSocket(socket);
+					continue;
+				}
+				socket.setSoTimeout(0);
+				sockets[index] = socket;
+				accepted++;
+			}
+		} catch (IOException e) {
+			Logging.getLogger().log(Level.WARNING, e.toString());
+			for (int i = 0; i < sockets.length; i++){
+				closeSocket(sockets[i]);
+			}
+			throw new TimeoutException("timeout has occurred");
+		} finally {
+			closeSocket(listener);
+		}
+		return sockets;
+	}
+	
+	private static void closeSocket(java.io.Closeable socket){
+		if (socket != null){
+			try {
+				socket.close();
+			} catch (IOException e) {
+				Logging.getLogger().log(Level.WARNING, e.toString());
+			}
+		}
+	}
+	
+	/**
+	 * Returns the channel with the given name. Creates it if it does not exist yet.
+	 */
+	private MultiplexedChannel getChannel(String name){
+		MultiplexedChannel channel = channels.get(name);
+		if (channel == null){
+			channel = new MultiplexedChannel(name, this);
+			channels.put(name, channel);
+		}
+		return channel;
+	}
+	
+	/**
+	 * Called by the reader thread of a connection when the other party opened the channel with the given name.
+	 * The other party may open a channel before this party requested it.
+	 * @param name the name of the opened channel.
+	 * @param connection the connection that carries the messages of the other party.
+	 * @param id the id of the stream, as given by the other party.
+	 */
+	synchronized MultiplexedChannel streamOpenedByOther(String name, MultiplexedConnection connection, int id){
+		MultiplexedChannel channel = getChannel(name);
+		channel.setIncoming(connection, id);
+		notifyAll();
+		return channel;
+	}
+	
+	/**
+	 * Called by a channel when it is closed. After all the channels were closed, the connections are shut down.
+	 */
+	synchronized void channelClosed(MultiplexedChannel channel){
+		//A channel of connections that were already forgotten does not count.
+		if (channels.get(channel.getName()) != channel){
+			return;
+		}
+		openChannels--;
+		if (openChannels == 0){
+			for (int i = 0; i < connections.length; i++){
+				if (connections[i] != null){
+					connections[i].shutdown();
+				}
+			}
+			forgetConnections();
+		}
+	}
+	
+	/**
+	 * Forgets the connections that were shut down or closed and the channels that used them, so the next call to 
+	 * prepareForCommunication creates new connections instead of using the dead ones.
+	 */
+	private void forgetConnections(){
+		connections = new MultiplexedConnection[connections.length];
+		channels.clear();
+		nextStreamId = 0;
+		nextConnection = 0;
+		openChannels = 0;
+	}
+
+	@Override
+	public synchronized void enableNagle(){
+		//Set to true the boolean indicates whether or not to use the Nagle optimization algorithm. 
+		//For Cryptographic algorithms is better to have it disabled.
+		this.enableNagle  = true;
+		for (int i = 0; i < connections.length; i++){
+			if (connections[i] != null){
+				connections[i].setTcpNoDelay(false);
+			}
+		}
+	}
+
+	/**
+	 * Closes the TCP connections. All the channels can not be used after this call.
+	 */
+	@Override
+	public synchronized void close() {
+		for (int i = 0; i < connections.length; i++){
+			if (connections[i] != null){
+				connections[i].close();
+			}
+		}
+		forgetConnections();
+	}
+}
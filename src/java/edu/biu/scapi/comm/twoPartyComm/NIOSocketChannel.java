@@ -0,0 +1,517 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+
+package edu.biu.scapi.comm.twoPartyComm;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.logging.Level;
+
+import edu.biu.scapi.generals.Logging;
+
+/**
+ * This class represents a concrete channel in the Decorator Pattern used to create Channels. This channel ensures TCP
+ * type of communication, and is built directly on top of {@link SocketChannel} and {@link ByteBuffer}s.<p>
+ *
+ * The difference between this implementation to the {@link PlainTCPSocketChannel} is in the way the messages are written
+ * to the wire. The {@link PlainTCPSocketChannel} serializes every message twice - once into a byte array and once more
+ * when the byte array is wrapped in a {@link PlainTCPSocketChannel.Message} and written to an ObjectOutputStream.
+ * This channel writes each message as a frame of the form [type (1 byte)][length (4 bytes)][payload]:
+ * <ul>
+ * <li>byte[] messages and ByteBuffers are written as is, without any serialization.</li>
+ * <li>byte[][] messages sent by {@link #sendByteArrays(byte[][])} are written as the number of arrays and their lengths, 
+ * followed by the arrays themselves.</li>
+ * <li>Any other Serializable object is serialized exactly once into a reusable buffer.</li>
+ * </ul>
+ * Both parties should use this type of channel, since the wire format differs from the {@link PlainTCPSocketChannel} one.<p>
+ *
+ * Like the other socket channels, there are two sockets: one used to receive messages and one used to send messages.
+ * The receive socket is expected to be accepted by a {@link java.nio.channels.ServerSocketChannel}, which is the
+ * case in the {@link SocketListenerThread}.
+ *
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+public class NIOSocketChannel extends PlainTCPSocketChannel{
+
+	static final byte OBJECT_FRAME = 0;			//The payload is a serialized object.
+	static final byte BYTES_FRAME = 1;			//The payload is a raw byte array.
+	static final byte ARRAYS_FRAME = 2;			//The payload is a number of raw byte arrays.
+	static final int HEADER_SIZE = 5;			//Type byte followed by an int length.
+
+	private SocketChannel sendChannel;			//Used to send messages.
+	private SocketChannel receiveChannel;		//Used to receive messages.
+	private ByteBuffer sendHeader = ByteBuffer.allocateDirect(HEADER_SIZE);
+	private ByteBuffer receiveHeader = ByteBuffer.allocateDirect(HEADER_SIZE);
+	private boolean headerStarted;				//Indicates whether a part of the next header was already read by waitForMessage.
+	private Selector receiveSelector;			//Used to wait for a message with a timeout. Created on the first use.
+	private ByteBuffer[] frame = new ByteBuffer[2];	//Used to write the header and the payload in one gathering write.
+	private ByteBuffer sizes = ByteBuffer.allocate(1024);	//Reusable buffer for the number and the lengths of sent and received arrays.
+	private ExposedByteArrayOutputStream serialized = new ExposedByteArrayOutputStream();	//Reusable buffer for serialized objects.
+
+	/**
+	 * A ByteArrayOutputStream that exposes its internal buffer in order to avoid the copy of toByteArray().
+	 */
+	static class ExposedByteArrayOutputStream extends ByteArrayOutputStream{
+
+		ExposedByteArrayOutputStream(){
+			super(1024);
+		}
+
+		byte[] getBuffer(){
+			return buf;
+		}
+	}
+
+	/**
+	 * A constructor that create the socket address according to the given ip and port and set the state of this channel to not ready.
+	 * @param ipAddress other party's IP address.
+	 * @param port other party's port.
+	 */
+	public NIOSocketChannel(InetAddress ipAddress, int port, boolean checkIdentity, SocketPartyData me) {
+		this(new InetSocketAddress(ipAddress, port), checkIdentity, me);
+	}
+
+	/**
+	 * A constructor that set the given socket address and set the state of this channel to not ready.
+	 * @param socketAddress other end's InetSocketAddress
+	 */
+	public NIOSocketChannel(InetSocketAddress socketAddress, boolean checkIdentity, SocketPartyData me) {
+		super(socketAddress, checkIdentity, me);
+	}
+
+	/**
+	 * Sends the message to the other user of the channel.<p>
+	 * In case the message is a byte array it is written as is. Otherwise, the message is serialized once and the serialized
+	 * bytes are written.
+	 *
+	 * @param msg the object to send.
+	 * @throws IOException Any of the usual Input/Output related exceptions.
+	 */
+	@Override
+	public void send(Serializable msg) throws IOException {
+		if (msg instanceof byte[]){
+			byte[] data = (byte[]) msg;
+			writeFrame(BYTES_FRAME, ByteBuffer.wrap(data));
+			return;
+		}
+
+		//Serialize the object into the reusable buffer.
+		serialized.reset();
+		ObjectOutputStream oOut = new ObjectOutputStream(serialized);
+		oOut.writeObject(msg);
+		oOut.close();
+
+		writeFrame(OBJECT_FRAME, ByteBuffer.wrap(serialized.getBuffer(), 0, serialized.size()));
+	}
+
+	/**
+	 * Sends the remaining bytes of the given buffer to the other party without any serialization.<p>
+	 * The other party can receive the bytes either by {@link #receive()}, which returns them as a byte array, or by
+	 * {@link #receive(ByteBuffer)}.
+	 * @param buffer the bytes to send. Can be a direct buffer.
+	 * @throws IOException Any of the usual Input/Output related exceptions.
+	 */
+	public void send(ByteBuffer buffer) throws IOException {
+		writeFrame(BYTES_FRAME, buffer);
+	}
+
+	/**
+	 * Sends the given bytes to the other party as is.
+	 * @param data the bytes to send.
+	 * @throws IOException Any of the usual Input/Output related exceptions.
+	 */
+	@Override
+	public void sendBytes(byte[] data) throws IOException {
+		writeFrame(BYTES_FRAME, ByteBuffer.wrap(data));
+	}
+	
+	/**
+	 * Sends the given arrays to the other party using one gathering write, without copying them to one buffer.
+	 * @param data the arrays to send.
+	 * @throws IOException Any of the usual Input/Output related exceptions.
+	 */
+	@Override
+	public void sendByteArrays(byte[][] data) throws IOException {
+		int sizesLength = 4 * (data.length + 1);
+		if (sizes.capacity() < sizesLength){
+			sizes = ByteBuffer.allocate(sizesLength);
+		}
+		sizes.clear();
+		
+		//The payload contains the number of arrays, the length of each array and then the arrays themselves.
+		long payloadSize = sizesLength;
+		sizes.putInt(data.length);
+		for (int i=0; i<data.length; i++){
+			sizes.putInt(data[i].length);
+			payloadSize += data[i].length;
+		}
+		sizes.flip();
+		if (payloadSize > Integer.MAX_VALUE){
+			throw new IOException("the total size of the arrays is too big to be sent in one message");
+		}
+		
+		sendHeader.clear();
+		sendHeader.put(ARRAYS_FRAME).putInt((int) payloadSize);
+		sendHeader.flip();
+		
+		ByteBuffer[] buffers = new ByteBuffer[data.length + 2];
+		buffers[0] = sendHeader;
+		buffers[1] = sizes;
+		for (int i=0; i<data.length; i++){
+			buffers[i+2] = ByteBuffer.wrap(data[i]);
+		}
+		
+		long remaining = HEADER_SIZE + payloadSize;
+		while (remaining > 0){
+			remaining -= sendChannel.write(buffers);
+		}
+	}
+
+	/**
+	 * Writes the header and the payload using one gathering write.
+	 */
+	private void writeFrame(byte type, ByteBuffer payload) throws IOException {
+		sendHeader.clear();
+		sendHeader.put(type).putInt(payload.remaining());
+		sendHeader.flip();
+
+		frame[0] = sendHeader;
+		frame[1] = payload;
+		long remaining = sendHeader.remaining() + payload.remaining();
+		while (remaining > 0){
+			remaining -= sendChannel.write(frame);
+		}
+		frame[1] = null;
+	}
+
+	/**
+	 * Receives the message sent by the other user of the channel.<p>
+	 * In case the other party sent a byte array or a ByteBuffer, the returned object is a byte array.
+	 *
+	 * @throws ClassNotFoundException  The Class of the serialized object cannot be found.
+	 * @throws IOException Any of the usual Input/Output related exceptions.
+	 */
+	@Override
+	public Serializable receive() throws ClassNotFoundException, IOException {
+		byte type = readHeader();
+		if (type == ARRAYS_FRAME){
+			return readArrays();
+		}
+		
+		byte[] data = new byte[receiveHeader.getInt(1)];
+		readFully(ByteBuffer.wrap(data));
+
+		if (type == BYTES_FRAME){
+			return data;
+		}
+
+		ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(data));
+		return (Serializable) ois.readObject();
+	}
+
+	/**
+	 * Receives bytes that were sent by the other party using the {@link #sendBytes(byte[])} function, or by sending
+	 * a byte array or a ByteBuffer.
+	 * @return the received bytes.
+	 * @throws IOException In case the other party did not send bytes or any of the usual Input/Output related exceptions.
+	 */
+	@Override
+	public byte[] receiveBytes() throws IOException {
+		if (readHeader() != BYTES_FRAME){
+			throw new IOException("the received message is not a byte message");
+		}
+		byte[] data = new byte[receiveHeader.getInt(1)];
+		readFully(ByteBuffer.wrap(data));
+		return data;
+	}
+	
+	/**
+	 * Receives arrays that were sent by the other party using the {@link #sendByteArrays(byte[][])} function.<p>
+	 * Each array is read directly from the socket, without an intermediate buffer.
+	 * @return the received arrays.
+	 * @throws IOException In case the other party did not send arrays or any of the usual Input/Output related exceptions.
+	 */
+	@Override
+	public byte[][] receiveByteArrays() throws IOException {
+		if (readHeader() != ARRAYS_FRAME){
+			throw new IOException("the received message is not a byte arrays message");
+		}
+		return readArrays();
+	}
+	
+	/**
+	 * Reads the payload of an arrays message.
+	 */
+	private byte[][] readArrays() throws IOException {
+		int payloadSize = receiveHeader.getInt(1);
+		if (payloadSize < 4){
+			throw new IOException("illegal arrays message of length " + payloadSize);
+		}
+		
+		//Read the number of arrays.
+		sizes.clear();
+		sizes.limit(4);
+		readFully(sizes);
+		int count = sizes.getInt(0);
+		
+		//The lengths of the arrays should fit in the payload.
+		int remaining = payloadSize - 4;
+		if (count < 0 || count > remaining / 4){
+			throw new IOException("illegal number of arrays " + count);
+		}
+		remaining -= 4 * count;
+		
+		//Read the lengths of the arrays.
+		if (sizes.capacity() < 4 * count){
+			sizes = ByteBuffer.allocate(4 * count);
+		}
+		sizes.clear();
+		sizes.limit(4 * count);
+		readFully(sizes);
+		sizes.flip();
+		
+		byte[][] data = new byte[count][];
+		for (int i=0; i<count; i++){
+			int length = sizes.getInt();
+			if (length < 0 || length > remaining){
+				throw new IOException("illegal array length " + length);
+			}
+			remaining -= length;
+			data[i] = new byte[length];
+		}
+		if (remaining != 0){
+			throw new IOException("the lengths of the arrays do not match the length of the message");
+		}
+		
+		//Read the arrays.
+		for (int i=0; i<count; i++){
+			readFully(ByteBuffer.wrap(data[i]));
+		}
+		return data;
+	}
+
+	/**
+	 * Receives bytes sent by the other party (using {@link #send(ByteBuffer)} or by sending a byte array) directly into
+	 * the given buffer, without allocating an intermediate array.<p>
+	 * The bytes are written starting at the current position of the buffer.
+	 * @param buffer the buffer to read the bytes into. Should have enough space for the whole message.
+	 * @return the number of bytes received.
+	 * @throws IOException In case the other party did not send bytes, the given buffer is too small or any of the usual
+	 * Input/Output related exceptions.
+	 */
+	public int receive(ByteBuffer buffer) throws IOException {
+		byte type = readHeader();
+		int size = receiveHeader.getInt(1);
+		if (type != BYTES_FRAME){
+			throw new IOException("the received message is not a byte message");
+		}
+		if (buffer.remaining() < size){
+			throw new IOException("the given buffer is too small. required size is " + size);
+		}
+
+		int limit = buffer.limit();
+		buffer.limit(buffer.position() + size);
+		readFully(buffer);
+		buffer.limit(limit);
+		return size;
+	}
+
+	/**
+	 * Reads the header of the next message and validates it.
+	 * @return the type of the message.
+	 * @throws IOException In case the type is unknown or the length is negative or larger than the maximal message size.
+	 */
+	private byte readHeader() throws IOException {
+		if (!headerStarted){
+			receiveHeader.clear();
+		}
+		headerStarted = false;
+		readFully(receiveHeader);
+		
+		//The length is read from the wire, so it is checked before any memory is allocated according to it.
+		byte type = receiveHeader.get(0);
+		int size = receiveHeader.getInt(1);
+		if (type != OBJECT_FRAME && type != BYTES_FRAME && type != ARRAYS_FRAME){
+			throw new IOException("unknown message type " + type);
+		}
+		checkMessageLength(size);
+		return type;
+	}
+
+	/**
+	 * Waits until the next message starts to arrive, without waiting for the whole message.<p>
+	 * The receive socket is switched to non-blocking mode for the duration of the wait. The bytes of the header that were 
+	 * read are kept, and the rest of the header is read by the next receive function.
+	 * @param timeout the maximal time to wait, in milliseconds. Zero or a negative value means not to wait at all.
+	 * @return true if a message can be received; false if no message arrived within the timeout.
+	 * @throws IOException Any of the usual Input/Output related exceptions.
+	 */
+	@Override
+	public boolean waitForMessage(long timeout) throws IOException {
+		if (headerStarted){
+			return true;
+		}
+		if (receiveChannel == null){
+			throw new IOException("the channel is not connected");
+		}
+		
+		receiveHeader.clear();
+		receiveChannel.configureBlocking(false);
+		try {
+			int read = receiveChannel.read(receiveHeader);
+			if (read == 0 && timeout > 0){
+				if (receiveSelector == null){
+					receiveSelector = Selector.open();
+				}
+				SelectionKey key = receiveChannel.register(receiveSelector, SelectionKey.OP_READ);
+				try {
+					receiveSelector.select(timeout);
+				} finally {
+					//The channel can be set back to blocking mode only after the key is removed from the selector.
+					key.cancel();
+					receiveSelector.selectNow();
+				}
+				read = receiveChannel.read(receiveHeader);
+			}
+			if (read < 0){
+				throw new EOFException("the other party closed the channel");
+			}
+			headerStarted = read > 0;
+			return headerStarted;
+		} finally {
+			receiveChannel.configureBlocking(true);
+		}
+	}
+
+	/**
+	 * Reads from the receive socket until the given buffer is full.
+	 */
+	private void readFully(ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()){
+			if (receiveChannel.read(buffer) < 0){
+				throw new EOFException("the other party closed the channel");
+			}
+		}
+	}
+
+	/**
+	 * Closes the sockets and all other used resources.
+	 */
+	@Override
+	public void close() {
+		try {
+			if (sendChannel != null){
+				sendChannel.close();
+			}
+			if (receiveChannel != null){
+				receiveChannel.close();
+			}
+			if (receiveSelector != null){
+				receiveSelector.close();
+			}
+		} catch (IOException e) {
+			Logging.getLogger().log(Level.WARNING, e.toString());
+		}
+	}
+
+	/**
+	 * Connects the socket channel to the InetSocketAddress of this object. If the server we are trying to connect to
+	 * is not up yet then we return false and the {@link SocketCommunicationSetup} tries again until it succeeds or a timeout has
+	 * been reached.
+	 */
+	@Override
+	public boolean connect(){
+
+		//try to connect
+		Logging.getLogger().log(Level.INFO, "Trying to connect to " + socketAddress.getAddress() + " on port " + socketAddress.getPort());
+		try {
+			//The options are set before connecting, since the TCP window is negotiated while connecting.
+			SocketChannel channel = SocketChannel.open();
+			try {
+				options.applyTo(channel.socket());
+				channel.connect(socketAddress);
+			} catch (IOException e) {
+				channel.close();
+				throw e;
+			}
+			sendChannel = channel;
+			sendSocket = sendChannel.socket();
+
+			if (checkIdentity){
+				sendIdentity();
+			}
+			sendIndex();
+
+			Logging.getLogger().log(Level.INFO, "Socket connected");
+
+			//After the send socket is connected, need to check if the receive socket is also connected.
+			//If so, set the channel state to READY.
+			setReady();
+		} catch (IOException e) {
+			Logging.getLogger().log(Level.FINEST, e.toString());
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Sets the receive socket. The given socket should have an associated {@link SocketChannel}, i.e. should be accepted
+	 * by a {@link java.nio.channels.ServerSocketChannel}.
+	 * @param socket the receive socket to set.
+	 */
+	@Override
+	public void setReceiveSocket(Socket socket) {
+		if (socket.getChannel() == null){
+			throw new IllegalArgumentException("the receive socket should be created by a ServerSocketChannel");
+		}
+		applyOptions(socket);
+		try {
+			//The listener bounds the reads of the preamble. The messages may take any time.
+			socket.setSoTimeout(0);
+		} catch (SocketException e) {
+			Logging.getLogger().log(Level.WARNING, e.toString());
+		}
+		receiveSocket = socket;
+		receiveChannel = socket.getChannel();
+
+		//After the receive socket is connected, need to check if the send socket is also connected.
+		//If so, set the channel state to READY.
+		setReady();
+	}
+}
@@ -6,11 +6,20 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.util.logging.Level;
 
 import edu.biu.scapi.comm.Channel;
 import edu.biu.scapi.generals.Logging;
 
+/**
+ * This class represents a channel that sends and receives the messages using the sockets of the native OT extension library.<p>
+ * 
+ * The native library can only block until a whole message arrives, so this channel is not a {@link edu.biu.scapi.comm.PollableChannel}.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
 public class NativeChannel implements Channel{
 
 	/**
@@ -71,6 +80,70 @@ public class NativeChannel implements Channel{
 		return (Serializable) ois.readObject();
 	}
 
+	/**
+	 * Sends the given bytes as is, using the native socket.
+	 */
+	@Override
+	public void sendBytes(byte[] data) throws IOException {
+		send(sendSocketPtr, data);
+	}
+
+	/**
+	 * Receives bytes that were sent using the {@link #sendBytes(byte[])} function.
+	 */
+	@Override
+	public byte[] receiveBytes() throws IOException {
+		return receive(receiveSocketPtr);
+	}
+
+	/**
+	 * Sends the given arrays. Since the native socket sends one array at a time, the arrays are written to one 
+	 * array that contains the number of arrays and their lengths, followed by the arrays themselves.
+	 */
+	@Override
+	public void sendByteArrays(byte[][] data) throws IOException {
+		int size = 4 * (data.length + 1);
+		for (int i=0; i<data.length; i++){
+			size += data[i].length;
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(size);
+		buffer.putInt(data.length);
+		for (int i=0; i<data.length; i++){
+			buffer.putInt(data[i].length);
+		}
+		for (int i=0; i<data.length; i++){
+			buffer.put(data[i]);
+		}
+		send(sendSocketPtr, buffer.array());
+	}
+
+	/**
+	 * Receives arrays that were sent using the {@link #sendByteArrays(byte[][])} function.
+	 */
+	@Override
+	public byte[][] receiveByteArrays() throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(receive(receiveSocketPtr));
+		//The number of arrays and their lengths are read from the wire, so they are checked to fit in the message.
+		int count = buffer.remaining() < 4 ? -1 : buffer.getInt();
+		if (count < 0 || count > buffer.remaining() / 4){
+			throw new IOException("illegal number of arrays " + count);
+		}
+		int remaining = buffer.remaining() - 4 * count;
+		byte[][] data = new byte[count][];
+		for (int i=0; i<count; i++){
+			int length = buffer.getInt();
+			if (length < 0 || length > remaining){
+				throw new IOException("illegal array length " + length);
+			}
+			remaining -= length;
+			data[i] = new byte[length];
+		}
+		for (int i=0; i<count; i++){
+			buffer.get(data[i]);
+		}
+		return data;
+	}
+
 	@Override
 	public void close() {
 		isClosed = closeSockets(sendSocketPtr, receiveSocketPtr);
@@ -25,11 +25,14 @@
 
 package edu.biu.scapi.comm.twoPartyComm;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
@@ -78,17 +81,22 @@ public class PlainTCPSocketChannel extends PlainChannel{
 			
 	}
 	
+	static final int STREAM_BUFFER_SIZE = 65536;	//The default size of the buffers between the object streams and the sockets.
+	
 //	private State state;						// The state of the channel.
 	protected Socket sendSocket;				//A socket used to send messages.
-	private Socket receiveSocket;				//A socket used to receive messages.
+	protected Socket receiveSocket;			//A socket used to receive messages.
 	protected ObjectOutputStream outStream;		//Used to send a message
 	private ObjectInputStream inStream;			//Used to receive a message.
+	private BufferedInputStream bufferedIn;		//The buffer under the input stream, used to peek the next message.
 	protected InetSocketAddress socketAddress;	//The address of the other party.
 	private Message intermediate;
 	private Message msgObj;
 	private byte[] msgBytes;
 	private SocketPartyData me;					//Used to send the identity if needed.
 	protected boolean checkIdentity;			//Indicated if there is a need to verify identity.
+	private int index = -1;						//The index of this channel, sent to the other party after connecting. -1 means that the index is not sent.
+	protected TransportOptions options = new TransportOptions();	//The TCP options of the sockets.
 
 	/**
 	 * A constructor that set the state of this channel to not ready.
@@ -138,8 +146,41 @@ public class PlainTCPSocketChannel extends PlainChannel{
 		msgObj.setData(msgBytes);
 		outStream.writeObject(msgObj);
 		outStream.reset();
+		outStream.flush();
 		
 	}
+	
+	/** 
+	 * Sends the given bytes to the other user of the channel without serializing them.<p>
+	 * The bytes are written as primitive data of the object stream, thus there is no need to wrap them in a 
+	 * {@link Message} object.
+	 *  
+	 * @param data the bytes to send.
+	 * @throws IOException Any of the usual Input/Output related exceptions.  
+	 */
+	public void sendBytes(byte[] data) throws IOException {
+		outStream.writeInt(data.length);
+		outStream.write(data);
+		outStream.flush();
+	}
+	
+	/** 
+	 * Sends the given arrays to the other user of the channel without serializing them.<p>
+	 * The number of arrays and their lengths are written first, followed by the arrays themselves.
+	 *  
+	 * @param data the arrays to send.
+	 * @throws IOException Any of the usual Input/Output related exceptions.  
+	 */
+	public void sendByteArrays(byte[][] data) throws IOException {
+		outStream.writeInt(data.length);
+		for (int i=0; i<data.length; i++){
+			outStream.writeInt(data[i].length);
+		}
+		for (int i=0; i<data.length; i++){
+			outStream.write(data[i]);
+		}
+		outStream.flush();
+	}
 
 	/** 
 	 * Receives the message sent by the other user of the channel. 
@@ -157,6 +198,47 @@ public class PlainTCPSocketChannel extends PlainChannel{
 		return (Serializable) ois.readObject();
 		
 	}
+	
+	/** 
+	 * Receives bytes that were sent by the other user of the channel using the {@link #sendBytes(byte[])} function.
+	 * 
+	 * @throws IOException Any of the usual Input/Output related exceptions.
+	 */
+	public byte[] receiveBytes() throws IOException {
+		return readBytes(inStream);
+	}
+	
+	/** 
+	 * Receives arrays that were sent by the other user of the channel using the {@link #sendByteArrays(byte[][])} function.
+	 * 
+	 * @throws IOException Any of the usual Input/Output related exceptions.
+	 */
+	public byte[][] receiveByteArrays() throws IOException {
+		return readByteArrays(inStream);
+	}
+
+	/**
+	 * Waits until the next message starts to arrive on the receive socket, without consuming it.
+	 * @param timeout the maximal time to wait, in milliseconds. Zero or a negative value means not to wait at all.
+	 * @return true if a message can be received; false if no message arrived within the timeout.
+	 * @throws IOException Any of the usual Input/Output related exceptions.
+	 */
+	public boolean waitForMessage(long timeout) throws IOException {
+		if (inStream == null || receiveSocket == null){
+			throw new IOException("the channel is not connected");
+		}
+		long deadline = System.currentTimeMillis() + timeout;
+		
+		//The object stream has its own buffer, so it is checked before the socket buffer.
+		//Checking the object stream also consumes the reset marks that follow the sent objects, so a mark that arrives alone 
+		//is not considered as a new message.
+		while (inStream.available() == 0 && bufferedIn.available() == 0){
+			if (!waitForInput(receiveSocket, bufferedIn, deadline - System.currentTimeMillis())){
+				return false;
+			}
+		}
+		return true;
+	}
 
 	/**
 	 * Closes the sockets and all other used resources.
@@ -205,16 +287,26 @@ public class PlainTCPSocketChannel extends PlainChannel{
 		Logging.getLogger().log(Level.INFO, "Trying to connect to " + socketAddress.getAddress() + " on port " + socketAddress.getPort());
 		try {
 			//create and connect the socket. Cannot reconnect if the function connect fails since it closes the socket.
-			sendSocket = new Socket(socketAddress.getAddress(), socketAddress.getPort());
+			//The options are set before connecting, since the TCP window is negotiated while connecting.
+			Socket socket = new Socket();
+			try {
+				options.applyTo(socket);
+				socket.connect(socketAddress);
+			} catch (IOException e) {
+				socket.close();
+				throw e;
+			}
+			sendSocket = socket;
 			
 			if(sendSocket.isConnected()){
 				
 				if (checkIdentity){
 					sendIdentity();
 				}
+				sendIndex();
 				
 				Logging.getLogger().log(Level.INFO, "Socket connected");
-				outStream = new ObjectOutputStream(sendSocket.getOutputStream());
+				setOutputStream(sendSocket.getOutputStream());
 					
 				//After the send socket is connected, need to check if the receive socket is also connected.
 				//If so, set the channel state to READY.
@@ -222,7 +314,6 @@ public class PlainTCPSocketChannel extends PlainChannel{
 			}	
 		} catch (IOException e) {
 			Logging.getLogger().log(Level.FINEST, e.toString());
-			System.out.println(e.toString());
 			return false;
 		}
 		return true;
@@ -233,6 +324,71 @@ public class PlainTCPSocketChannel extends PlainChannel{
 		sendSocket.getOutputStream().write(port, 0, port.length);
 	}
 	
+	/**
+	 * Sets the index of this channel. After the send socket is connected, the index is sent to the other party so that 
+	 * the other party can match the socket to the right channel even if the channels are connected concurrently.
+	 * @param index the index of the channel in the array of the created channels.
+	 */
+	void setIndex(int index){
+		this.index = index;
+	}
+	
+	/**
+	 * Sets the TCP options of the sockets of this channel. Should be called before the channel is connected.
+	 * @param options the options to set.
+	 */
+	void setTransportOptions(TransportOptions options){
+		this.options = options;
+	}
+	
+	/**
+	 * Returns the actual TCP options of the sockets of this channel, as reported by the operating system. 
+	 * The operating system may adjust the requested buffer sizes, so the returned values may differ from the options 
+	 * that were set by the communication setup.
+	 * @return the effective options, or null in case the channel is not connected.
+	 * @throws SocketException in case the options could not be read.
+	 */
+	public TransportOptions getEffectiveOptions() throws SocketException {
+		if (sendSocket == null || receiveSocket == null){
+			return null;
+		}
+		return TransportOptions.getEffectiveOptions(sendSocket, receiveSocket, options.getStreamBufferSize());
+	}
+	
+	/**
+	 * Sets the TCP options to the given accepted socket. A failure is only logged, since the socket is still usable.
+	 * @param socket the receive socket of this channel.
+	 */
+	protected void applyOptions(Socket socket){
+		try {
+			options.applyTo(socket);
+		} catch (SocketException e) {
+			Logging.getLogger().log(Level.WARNING, e.toString());
+		}
+	}
+	
+	/**
+	 * Sends the index of this channel, in case it was set.
+	 */
+	protected void sendIndex() throws IOException {
+		if (index >= 0){
+			byte[] bytes = ByteBuffer.allocate(4).putInt(index).array();
+			sendSocket.getOutputStream().write(bytes, 0, bytes.length);
+		}
+	}
+	
+	/**
+	 * Sets the output stream used to send messages. 
+	 * The stream is buffered, so the functions that send messages flush it after writing each message.
+	 * @param out the output stream of the send socket.
+	 * @throws IOException
+	 */
+	protected void setOutputStream(OutputStream out) throws IOException {
+		outStream = new ObjectOutputStream(new BufferedOutputStream(out, options.getStreamBufferSize()));
+		//The object stream header should reach the other party, since it is waiting for it in order to create its input stream.
+		outStream.flush();
+	}
+	
 	/**
 	 * Returns if the send socket is connected.
 	 */
@@ -256,16 +412,20 @@ public class PlainTCPSocketChannel extends PlainChannel{
 	 * 		
 	 */
 	public void setReceiveSocket(Socket socket) {
-		this.receiveSocket = socket;
-		
+		applyOptions(socket);
 		try {
 			//set the input and output streams
-			inStream = new ObjectInputStream(socket.getInputStream());
+			bufferedIn = new BufferedInputStream(socket.getInputStream(), options.getStreamBufferSize());
+			inStream = new ObjectInputStream(bufferedIn);
+			//The listener bounds the reads until the stream is created. The messages may take any time.
+			socket.setSoTimeout(0);
+			//The socket is set only after the stream is created, since the channel becomes ready when both sockets are set.
+			this.receiveSocket = socket;
 			//After the receive socket is connected, need to check if the send socket is also connected.
 			//If so, set the channel state to READY.
 			setReady();
 		} catch (IOException e) {
-
+			this.receiveSocket = socket;
 			Logging.getLogger().log(Level.WARNING, e.toString());
 		}
 	}
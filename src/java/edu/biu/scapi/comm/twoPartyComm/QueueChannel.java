@@ -25,8 +25,15 @@
 
 package edu.biu.scapi.comm.twoPartyComm;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.util.LinkedList;
 
+import javax.jms.BytesMessage;
 import javax.jms.Connection;
 import javax.jms.DeliveryMode;
 import javax.jms.Destination;
@@ -37,7 +44,7 @@ import javax.jms.ObjectMessage;
 import javax.jms.Session;
 import javax.jms.Message;
 
-import edu.biu.scapi.comm.Channel;
+import edu.biu.scapi.comm.PollableChannel;
 
 /**
  * This class represents a concrete channel in the Decorator Pattern used to create Channels. This channel uses the 
@@ -60,10 +67,26 @@ import edu.biu.scapi.comm.Channel;
  * unreachable from another package. However, the send, receive and close functions will be declared public, therefore 
  * allowing anyone holding a channel to be able to use them.<p>
  * 
+ * The byte arrays sent by {@link #sendBytes(byte[])} and {@link #sendByteArrays(byte[][])} use {@link BytesMessage}s, 
+ * which avoid the serialization of object messages. The objects sent by {@link #send(Serializable)}, including byte arrays, 
+ * still use {@link ObjectMessage}s, so they can be received by a party that uses an older version of this class. 
+ * In addition, the channel can batch the sent messages: the messages are appended to one BytesMessage, which is sent when 
+ * it reaches the maximal batch size, before the channel receives a message and when the channel is closed. The receiving 
+ * channel unpacks batches regardless of its own batching configuration, but an older version cannot unpack them, so 
+ * batching should be enabled only when both parties use this version.
+ * 
  * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University (Moriya Farbstein)
  *
  */
-class QueueChannel implements Channel{
+class QueueChannel implements PollableChannel{
+	
+	static final String BATCH_PROPERTY = "scapiBatch";	//The property that holds the number of messages in a batch.
+	
+	//The types of the batched messages.
+	private static final byte OBJECT = 0;
+	private static final byte BYTES = 1;
+	private static final byte ARRAYS = 2;
+	
 	//A session is a single-threaded context for producing and consuming messages.
 	//We use a different sessions for send and receive messages.
 	private Session session;
@@ -76,6 +99,26 @@ class QueueChannel implements Channel{
 	private Connection connection;		//We save because we need it to remove the consumer queue at the end of the communication.
 	private DestroyDestinationUtil destroyer;
 	
+	private int maxBatchSize;			//The size of a batch that causes it to be sent. 0 means no batching.
+	private BytesMessage batch;			//The batch that is currently filled, or null if there is none.
+	private int batchCount;				//The number of messages in the current batch.
+	private int batchSize;				//The number of bytes in the current batch.
+	private LinkedList<BatchedMessage> received = new LinkedList<BatchedMessage>();	//Messages of a received batch that were not returned yet.
+	private Message waiting;			//A message that was received by waitForMessage and was not returned yet.
+	
+	/**
+	 * A message unpacked from a received batch.
+	 */
+	private static class BatchedMessage {
+		byte type;
+		Object data;
+		
+		BatchedMessage(byte type, Object data){
+			this.type = type;
+			this.data = data;
+		}
+	}
+	
 	/**
 	 * A constructor that gets the two parties, the Connection object to use and the number of connections.
 	 * It create the producer and consumer sessions and build a queue to send messages on and a queue to receive messages from. 
@@ -88,11 +131,28 @@ class QueueChannel implements Channel{
 	 * @param destroyer The class that delete the created destinations. Should match to the given connection object.
 	 */
 	QueueChannel(QueuePartyData first, QueuePartyData second, Connection connection, String connectionsId, DestroyDestinationUtil destroyer) {
+		this(first, second, connection, connectionsId, destroyer, Session.AUTO_ACKNOWLEDGE, 0);
+	}
+	
+	/**
+	 * A constructor that gets the two parties, the Connection object to use, the number of connections, the acknowledge mode 
+	 * of the session and the batch size.
+	 * @param first The party which declares the running program.
+	 * @param second The party which declares the other program.
+	 * @param connection The JMS connection object to build the producer and consumer on.
+	 * @param connectionsId the id of this connection.
+	 * @param destroyer The class that delete the created destinations. Should match to the given connection object.
+	 * @param acknowledgeMode The acknowledge mode of the session, for example Session.DUPS_OK_ACKNOWLEDGE.
+	 * @param maxBatchSize The number of bytes that causes a batch to be sent. 0 means that every message is sent immediately.
+	 */
+	QueueChannel(QueuePartyData first, QueuePartyData second, Connection connection, String connectionsId, DestroyDestinationUtil destroyer, 
+			int acknowledgeMode, int maxBatchSize) {
 		try {
 			this.connection = connection;
+			this.maxBatchSize = maxBatchSize;
 			
 			//Create the channel session.
-			session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+			session = connection.createSession(false, acknowledgeMode);
 			//Create the producer queue.
 			//String producerQueueName = "channel " +connectionsId+" From"+first.getId() + "To:"+ second.getId();
 			String producerQueueName = connectionsId+" "+first.getId() + " "+ second.getId();
@@ -117,9 +177,23 @@ class QueueChannel implements Channel{
 		}
 	}
 
+	/**
+	 * Sends the given message using an {@link ObjectMessage}, as in former versions. Byte arrays should be sent using 
+	 * {@link #sendBytes(byte[])}, which avoids the serialization.
+	 * In case of batching, the message is serialized and appended to the current batch.
+	 */
 	@Override
 	public void send(Serializable data) {
 		try{
+			if (maxBatchSize > 0){
+				BytesMessage message = startBatch(OBJECT);
+				byte[] serialized = serialize(data);
+				message.writeInt(serialized.length);
+				message.writeBytes(serialized);
+				endBatch(serialized.length);
+				return;
+			}
+			
 			//Send the message using the producer queue.
 			ObjectMessage message = session.createObjectMessage(data);
 			producer.send(message);	
@@ -133,11 +207,24 @@ class QueueChannel implements Channel{
 		
 	}
 
+	/**
+	 * Receives the next message. In case the other party sent bytes using {@link #sendBytes(byte[])}, the returned object 
+	 * is a byte array.
+	 */
 	@Override
 	public Serializable receive() {
 		try {
-			//Receive the message using the consumer.
-			Message message = consumer.receive();
+			Object message = nextMessage();
+			if (message instanceof BatchedMessage){
+				BatchedMessage batched = (BatchedMessage) message;
+				if (batched.type == OBJECT){
+					return deserialize((byte[]) batched.data);
+				}
+				return (Serializable) batched.data;
+			}
+			if (message instanceof BytesMessage){
+				return readBytes((BytesMessage) message);
+			}
 			//Check that the received message is instance of ObjectMessage.
 			if (!(message instanceof ObjectMessage)){
 				throw new IllegalArgumentException("message should be an instance of ObjectMessage");
@@ -151,8 +238,263 @@ class QueueChannel implements Channel{
 		}
 	}
 
+	/**
+	 * Receives the next message in case it arrives within the given timeout.
+	 * @return the received message, or null in case no message arrived within the timeout.
+	 */
+	@Override
+	public Serializable receive(long timeout) {
+		return waitForMessage(timeout) ? receive() : null;
+	}
+	
+	@Override
+	public Serializable tryReceive() {
+		return receive(0);
+	}
+	
+	/**
+	 * Waits until there is a message to receive, without returning it.<p>
+	 * Since a JMS message cannot be peeked, the message is taken from the queue and kept until the next receive function. 
+	 * The current batch is sent first, like before any receive.
+	 * @param timeout the maximal time to wait, in milliseconds. Zero or a negative value means not to wait at all.
+	 * @return true if a message can be received; false if no message arrived within the timeout.
+	 */
+	@Override
+	public boolean waitForMessage(long timeout) {
+		if (!received.isEmpty() || waiting != null){
+			return true;
+		}
+		flush();
+		try {
+			//A zero timeout means to wait forever in JMS, thus receiveNoWait is used instead.
+			waiting = (timeout > 0) ? consumer.receive(timeout) : consumer.receiveNoWait();
+		} catch (JMSException e) {
+			throw new edu.biu.scapi.exceptions.JMSException(e.getMessage());
+		}
+		return waiting != null;
+	}
+	
+	/**
+	 * Sends the given bytes using a {@link BytesMessage}, which avoids the serialization of an object message.
+	 */
+	@Override
+	public void sendBytes(byte[] data) {
+		try{
+			if (maxBatchSize > 0){
+				BytesMessage message = startBatch(BYTES);
+				message.writeInt(data.length);
+				message.writeBytes(data);
+				endBatch(data.length);
+				return;
+			}
+			
+			BytesMessage message = session.createBytesMessage();
+			message.writeBytes(data);
+			producer.send(message);
+			
+		} catch(JMSException e){
+			throw new edu.biu.scapi.exceptions.JMSException(e.getMessage());
+		}
+	}
+	
+	/**
+	 * Receives bytes that were sent using the {@link #sendBytes(byte[])} function.
+	 */
+	@Override
+	public byte[] receiveBytes() {
+		try {
+			Object message = nextMessage();
+			if (message instanceof BatchedMessage){
+				return (byte[]) checkType((BatchedMessage) message, BYTES);
+			}
+			return readBytes(checkBytesMessage(message));
+		} catch (JMSException e) {
+			throw new edu.biu.scapi.exceptions.JMSException(e.getMessage());
+		}
+	}
+	
+	/**
+	 * Sends the given arrays in one {@link BytesMessage}. The message contains the number of arrays and their lengths, 
+	 * followed by the arrays themselves.
+	 */
+	@Override
+	public void sendByteArrays(byte[][] data) {
+		try{
+			BytesMessage message = (maxBatchSize > 0) ? startBatch(ARRAYS) : session.createBytesMessage();
+			int size = 0;
+			message.writeInt(data.length);
+			for (int i=0; i<data.length; i++){
+				message.writeInt(data[i].length);
+				size += data[i].length;
+			}
+			for (int i=0; i<data.length; i++){
+				message.writeBytes(data[i]);
+			}
+			
+			if (maxBatchSize > 0){
+				endBatch(size);
+			} else{
+				producer.send(message);
+			}
+			
+		} catch(JMSException e){
+			throw new edu.biu.scapi.exceptions.JMSException(e.getMessage());
+		}
+	}
+	
+	/**
+	 * Receives arrays that were sent using the {@link #sendByteArrays(byte[][])} function.
+	 */
+	@Override
+	public byte[][] receiveByteArrays() {
+		try {
+			Object message = nextMessage();
+			if (message instanceof BatchedMessage){
+				return (byte[][]) checkType((BatchedMessage) message, ARRAYS);
+			}
+			return readArrays(checkBytesMessage(message));
+		} catch (JMSException e) {
+			throw new edu.biu.scapi.exceptions.JMSException(e.getMessage());
+		}
+	}
+	
+	/**
+	 * Sends the current batch, if there is one.
+	 */
+	void flush() {
+		if (batch == null){
+			return;
+		}
+		try {
+			batch.setIntProperty(BATCH_PROPERTY, batchCount);
+			producer.send(batch);
+		} catch (JMSException e) {
+			throw new edu.biu.scapi.exceptions.JMSException(e.getMessage());
+		} finally {
+			batch = null;
+			batchCount = 0;
+			batchSize = 0;
+		}
+	}
+	
+	/**
+	 * Returns the current batch, creating it if needed, after writing the type of the next message to it.
+	 */
+	private BytesMessage startBatch(byte type) throws JMSException {
+		if (batch == null){
+			batch = session.createBytesMessage();
+		}
+		batch.writeByte(type);
+		return batch;
+	}
+	
+	/**
+	 * Counts the message that was written to the batch, and sends the batch in case it is full.
+	 */
+	private void endBatch(int size) {
+		batchCount++;
+		batchSize += size;
+		if (batchSize >= maxBatchSize){
+			flush();
+		}
+	}
+	
+	/**
+	 * Returns the next message to handle: either a message of a received batch, or a new JMS message.<p>
+	 * The current batch is sent first, since the other party may wait for it in order to reply.
+	 */
+	private Object nextMessage() throws JMSException {
+		if (!received.isEmpty()){
+			return received.removeFirst();
+		}
+		flush();
+		
+		Message message = waiting;
+		waiting = null;
+		if (message == null){
+			message = consumer.receive();
+		}
+		if (message instanceof BytesMessage && message.propertyExists(BATCH_PROPERTY)){
+			unpack((BytesMessage) message);
+			return received.removeFirst();
+		}
+		return message;
+	}
+	
+	/**
+	 * Reads the messages of the given batch into the received messages list.
+	 */
+	private void unpack(BytesMessage message) throws JMSException {
+		int count = message.getIntProperty(BATCH_PROPERTY);
+		for (int i=0; i<count; i++){
+			byte type = message.readByte();
+			if (type == ARRAYS){
+				received.add(new BatchedMessage(type, readArrays(message)));
+			} else{
+				byte[] data = new byte[message.readInt()];
+				message.readBytes(data);
+				received.add(new BatchedMessage(type, data));
+			}
+		}
+	}
+	
+	private static Object checkType(BatchedMessage message, byte type){
+		if (message.type != type){
+			throw new IllegalArgumentException("the received message is not of the expected type");
+		}
+		return message.data;
+	}
+	
+	private static BytesMessage checkBytesMessage(Object message){
+		if (!(message instanceof BytesMessage)){
+			throw new IllegalArgumentException("message should be an instance of BytesMessage");
+		}
+		return (BytesMessage) message;
+	}
+	
+	private static byte[] readBytes(BytesMessage message) throws JMSException {
+		byte[] data = new byte[(int) message.getBodyLength()];
+		message.readBytes(data);
+		return data;
+	}
+	
+	private static byte[][] readArrays(BytesMessage message) throws JMSException {
+		byte[][] data = new byte[message.readInt()][];
+		for (int i=0; i<data.length; i++){
+			data[i] = new byte[message.readInt()];
+		}
+		for (int i=0; i<data.length; i++){
+			message.readBytes(data[i]);
+		}
+		return data;
+	}
+	
+	private static byte[] serialize(Serializable data) {
+		try {
+			ByteArrayOutputStream bOut = new ByteArrayOutputStream();
+			ObjectOutputStream oOut = new ObjectOutputStream(bOut);
+			oOut.writeObject(data);
+			oOut.close();
+			return bOut.toByteArray();
+		} catch (IOException e) {
+			throw new IllegalArgumentException("the message could not be serialized", e);
+		}
+	}
+	
+	private static Serializable deserialize(byte[] data) {
+		try {
+			return (Serializable) new ObjectInputStream(new ByteArrayInputStream(data)).readObject();
+		} catch (IOException e) {
+			throw new IllegalArgumentException("the message could not be deserialized", e);
+		} catch (ClassNotFoundException e) {
+			throw new IllegalArgumentException("the message could not be deserialized", e);
+		}
+	}
+
 	@Override
 	public void close(){
+		//Send the messages that are still batched.
+		flush();
 		try {
 			//Close the producer and consumer.
 			producer.close();
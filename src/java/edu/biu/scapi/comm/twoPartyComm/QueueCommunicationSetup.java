@@ -33,6 +33,7 @@ import java.util.logging.Level;
 import javax.jms.Connection;
 import javax.jms.ConnectionFactory;
 import javax.jms.JMSException;
+import javax.jms.Session;
 
 import org.apache.commons.exec.TimeoutObserver;
 import org.apache.commons.exec.Watchdog;
@@ -83,6 +84,8 @@ public class QueueCommunicationSetup implements TwoPartyCommunicationSetup, Time
 	QueuePartyData me;						//The data of the current application.
 	QueuePartyData other;					//The data of the other application to communicate with.
 	DestroyDestinationUtil destroyer;
+	private int acknowledgeMode = Session.AUTO_ACKNOWLEDGE;	//The acknowledge mode of the channels' sessions.
+	private int maxBatchSize = 0;							//The batch size of the channels. 0 means no batching.
 	
 	protected QueueCommunicationSetup(){}
 	
@@ -158,7 +161,7 @@ public class QueueCommunicationSetup implements TwoPartyCommunicationSetup, Time
 		//For each connection between the two parties, create a Queue channel.
 		int size = connectionsIds.length;
 		for (int i=0; i<size && !bTimedOut; i++){
-			QueueChannel channel = new QueueChannel(me, other, connection, connectionsIds[i], destroyer);
+			QueueChannel channel = new QueueChannel(me, other, connection, connectionsIds[i], destroyer, acknowledgeMode, maxBatchSize);
 			//put the created channel in the map.
 			connectedChannels.put(connectionsIds[i], channel);	
 		}
@@ -177,6 +180,32 @@ public class QueueCommunicationSetup implements TwoPartyCommunicationSetup, Time
 		return connectedChannels;
 	}
 	
+	/**
+	 * Sets the channels to acknowledge the received messages lazily, using the DUPS_OK_ACKNOWLEDGE mode. 
+	 * This reduces the acknowledgement traffic to the broker, but a message may be delivered twice in case of a failure.<p>
+	 * This function should be called before calling prepareForCommunication.
+	 */
+	public void enableDupsOkAcknowledge(){
+		acknowledgeMode = Session.DUPS_OK_ACKNOWLEDGE;
+	}
+	
+	/**
+	 * Sets the channels to batch the sent messages. The messages are appended to one message that is sent to the broker 
+	 * when it reaches the given size, before the channel receives a message and when the channel is closed.<p>
+	 * Batching is worthwhile when many small messages are sent one after the other. 
+	 * The other party unpacks the batches in any case, so it does not need to enable batching.
+	 * Note that a batch is sent only before the same channel receives, so a protocol that sends on one channel and then 
+	 * waits for a message on another channel should not use batching.<p>
+	 * This function should be called before calling prepareForCommunication.
+	 * @param maxBatchSize the number of bytes that causes a batch to be sent. 0 disables the batching.
+	 */
+	public void setBatchSize(int maxBatchSize){
+		if (maxBatchSize < 0){
+			throw new IllegalArgumentException("the batch size should not be negative");
+		}
+		this.maxBatchSize = maxBatchSize;
+	}
+	
 	@Override
 	public void close(){
 		try {
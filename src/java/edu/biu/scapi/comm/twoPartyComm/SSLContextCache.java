@@ -0,0 +1,185 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.comm.twoPartyComm;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.TrustManagerFactory;
+
+import edu.biu.scapi.generals.Logging;
+
+/**
+ * This class holds the {@link SSLContext}s used by the SSL communication setups, one for each pair of key store and trust store.<p>
+ * 
+ * Loading the stores and initializing a context is done only once. Moreover, the context holds the cache of the SSL sessions, 
+ * so sharing it between all the channels and all the executions lets the handshakes resume a cached session 
+ * (using the session id, or a session ticket where the JDK supports it) instead of performing a full handshake each time.<p>
+ * 
+ * A cached context is returned only for the password it was loaded with, and only as long as the files of the stores 
+ * were not modified. Otherwise, the stores are loaded again, which also checks the given password, and the new context 
+ * replaces the cached one.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+public class SSLContextCache {
+
+	public static final int DEFAULT_SESSION_TIMEOUT = 24 * 60 * 60;	//The time a cached session can be resumed, in seconds.
+	
+	/**
+	 * A cached context, together with the state of the stores and the password it was loaded with.
+	 */
+	private static class Entry {
+		String fingerprint;
+		SSLContext context;
+		
+		Entry(String fingerprint, SSLContext context){
+			this.fingerprint = fingerprint;
+			this.context = context;
+		}
+	}
+	
+	private static Map<String, Entry> contexts = new HashMap<String, Entry>();	//The cached contexts by the paths of the stores.
+	
+	private SSLContextCache() {}
+	
+	/**
+	 * Returns the context loaded with the given key store and trust store. The context is created on the first call, 
+	 * and again whenever the password is different from the cached one or one of the stores was modified.
+	 * @param keyStoreName Name of the keystore file, containing the certificate that should be sent to the other party.
+	 * @param trustStoreName Name of the truststore file, containing the certificate that should be received from the other party.
+	 * @param storePass The password to the keyStore and trustStore.
+	 * @return the shared context.
+	 * @throws IOException In case there is a problem with the key store or trust store file.
+	 * @throws SSLException In case there is a problem during the SSL protocol initialization.
+	 */
+	public static synchronized SSLContext getContext(String keyStoreName, String trustStoreName, String storePass) throws SSLException, IOException {
+		File keyStore = new File(keyStoreName);
+		File trustStore = new File(trustStoreName);
+		String key = keyStore.getAbsolutePath() + File.pathSeparator + trustStore.getAbsolutePath();
+		String fingerprint = fingerprint(keyStore) + fingerprint(trustStore) + hash(storePass);
+		
+		Entry entry = contexts.get(key);
+		if (entry == null || !entry.fingerprint.equals(fingerprint)){
+			//Loading the stores fails in case the password is wrong, so the cached context is kept.
+			entry = new Entry(fingerprint, createContext(keyStoreName, trustStoreName, storePass));
+			contexts.put(key, entry);
+		}
+		return entry.context;
+	}
+	
+	/**
+	 * Returns the modification time and the size of the given file, which change when the file is replaced.
+	 */
+	private static String fingerprint(File file){
+		return file.lastModified() + "/" + file.length() + File.pathSeparator;
+	}
+	
+	/**
+	 * Returns the SHA-256 hash of the given password, so the password itself is not kept in the cache.
+	 */
+	private static String hash(String password) throws SSLException {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(password.getBytes("UTF-8"));
+			StringBuilder hex = new StringBuilder();
+			for (byte b : digest){
+				hex.append(String.format("%02x", b));
+			}
+			return hex.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new SSLException(e);
+		} catch (IOException e) {
+			throw new SSLException(e);
+		}
+	}
+	
+	/**
+	 * Sets the time that the sessions of the given context can be resumed.
+	 * @param sc a context returned by {@link #getContext(String, String, String)}.
+	 * @param seconds the timeout, in seconds. 0 means no limit.
+	 */
+	public static void setSessionTimeout(SSLContext sc, int seconds){
+		sc.getClientSessionContext().setSessionTimeout(seconds);
+		sc.getServerSessionContext().setSessionTimeout(seconds);
+	}
+	
+	/**
+	 * Removes all the contexts, so the next calls load the stores again. The sessions of the removed contexts can not be resumed.
+	 */
+	public static synchronized void clear(){
+		contexts.clear();
+	}
+	
+	/**
+	 * Loads the key store and the trust store and initializes a new context with them.
+	 */
+	private static SSLContext createContext(String keyStoreName, String trustStoreName, String storePass) throws SSLException, IOException {
+		try {
+			//Loading the trust store containing the certificate that should be received from the other party.
+			KeyStore trustStore = loadStore(trustStoreName, storePass);
+			TrustManagerFactory tmf = TrustManagerFactory.getInstance("SunX509");
+			tmf.init(trustStore);
+			
+			//Loading the key store containing the certificate that should be sent to the other party.
+			KeyStore keyStore = loadStore(keyStoreName, storePass);
+			KeyManagerFactory kmf = KeyManagerFactory.getInstance("SunX509");
+			kmf.init(keyStore, storePass.toCharArray());
+			
+			//Create the SSL context and initialize it with the created key store and trust store.
+			SSLContext sc = SSLContext.getInstance(SSLSocketChannel.PROTOCOL);
+			sc.init(kmf.getKeyManagers(), tmf.getTrustManagers(), new SecureRandom());
+			setSessionTimeout(sc, DEFAULT_SESSION_TIMEOUT);
+			return sc;
+		} catch (GeneralSecurityException e) {
+			Logging.getLogger().log(Level.SEVERE, e.toString());
+			throw new SSLException(e);
+		}
+	}
+	
+	private static KeyStore loadStore(String name, String storePass) throws GeneralSecurityException, IOException {
+		KeyStore store = KeyStore.getInstance("JKS");
+		InputStream in = new FileInputStream(name);
+		try {
+			store.load(in, storePass.toCharArray());
+		} finally {
+			in.close();
+		}
+		return store;
+	}
+}
@@ -26,9 +26,9 @@
 package edu.biu.scapi.comm.twoPartyComm;
 
 import java.io.IOException;
-import java.io.ObjectOutputStream;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.net.Socket;
 import java.util.logging.Level;
 
 import javax.net.ssl.HandshakeCompletedEvent;
@@ -53,7 +53,23 @@ import edu.biu.scapi.generals.Logging;
  */
 public class SSLSocketChannel extends PlainTCPSocketChannel{
 	
+	public static final String PROTOCOL = "TLSv1.2";
+	
+	/**
+	 * The default cipher suites. 
+	 */
+	public static final String[] CBC_CIPHER_SUITES = {"TLS_ECDHE_ECDSA_WITH_AES_128_CBC_SHA256", "TLS_ECDHE_RSA_WITH_AES_128_CBC_SHA256"};
+	
+	/**
+	 * AES-GCM cipher suites. They encrypt and authenticate in one pass and benefit from the AES-NI and carry-less 
+	 * multiplication instructions, so they are faster than the default suites on most processors.
+	 */
+	public static final String[] GCM_CIPHER_SUITES = {"TLS_ECDHE_ECDSA_WITH_AES_128_GCM_SHA256", "TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256"};
+	
 	private SSLSocketFactory ssf; //Used to create the ssl sockets.
+	private String[] cipherSuites = CBC_CIPHER_SUITES;	//The enabled cipher suites.
+	private long handshakeTime = -1;					//The time of the handshake of the send socket, in milliseconds.
+	private boolean sessionResumed;						//Indicates whether the handshake resumed a cached session.
 	
 	/**
 	 * A constructor that create the socket address according to the given ip and port and set the state of this channel to not ready.
@@ -77,6 +93,40 @@ public class SSLSocketChannel extends PlainTCPSocketChannel{
 		this.ssf = ssf;
 	}
 	
+	/**
+	 * Sets the cipher suites to enable. Both parties should enable at least one common suite.
+	 * @param cipherSuites the names of the cipher suites.
+	 */
+	void setCipherSuites(String[] cipherSuites){
+		this.cipherSuites = cipherSuites;
+	}
+	
+	/**
+	 * Sets the protocol and the given cipher suites to the given ssl socket.
+	 * @param socket the socket to configure. Can be either a client or a server socket.
+	 * @param cipherSuites the names of the cipher suites to enable.
+	 */
+	public static void configure(SSLSocket socket, String[] cipherSuites){
+		socket.setEnabledProtocols(new String[]{PROTOCOL});
+		socket.setEnabledCipherSuites(cipherSuites);
+	}
+	
+	/**
+	 * Returns the time it took to perform the handshake of the send socket, in milliseconds, or -1 in case the channel 
+	 * was not connected yet.
+	 */
+	public long getHandshakeTime(){
+		return handshakeTime;
+	}
+	
+	/**
+	 * Returns true in case the handshake of the send socket resumed a session that was cached by an earlier handshake,
+	 * instead of performing a full handshake.
+	 */
+	public boolean isSessionResumed(){
+		return sessionResumed;
+	}
+	
 	@Override
 	public boolean connect()  {
 		//try to connect
@@ -84,18 +134,21 @@ public class SSLSocketChannel extends PlainTCPSocketChannel{
 		
 		//create the SSL socket. Cannot reconnect if the function connect fails since it closes the socket.
 		try {
-			sendSocket = ssf.createSocket(socketAddress.getAddress(), socketAddress.getPort());
-			
-			//Set the enables protocol to TLS 1.2.
-			String [] protocols = new String[1];
-			protocols[0] = "TLSv1.2";
-			((SSLSocket)sendSocket).setEnabledProtocols(protocols);
+			long start = System.nanoTime();
+			long startMillis = System.currentTimeMillis();
+			//The options are set before connecting, since the TCP window is negotiated while connecting.
+			Socket socket = ssf.createSocket();
+			try {
+				options.applyTo(socket);
+				socket.connect(socketAddress);
+			} catch (IOException e) {
+				socket.close();
+				throw e;
+			}
+			sendSocket = socket;
 			
-			//Set the enables cipherSuits.
-			String [] cipherSuits = new String[2];
-			cipherSuits[0] = "TLS_ECDHE_ECDSA_WITH_AES_128_CBC_SHA256";
-			cipherSuits[1] = "TLS_ECDHE_RSA_WITH_AES_128_CBC_SHA256";
-			((SSLSocket)sendSocket).setEnabledCipherSuites(cipherSuits);
+			//Set the enables protocol to TLS 1.2 and the enabled cipher suites.
+			configure((SSLSocket)sendSocket, cipherSuites);
 			
 			//Configure the socket to use client mode when handshaking.
 			((SSLSocket)sendSocket).setUseClientMode(true);
@@ -111,6 +164,11 @@ public class SSLSocketChannel extends PlainTCPSocketChannel{
 			//Start the handshaking.
 			((SSLSocket)sendSocket).startHandshake();
 			
+			//A resumed session was created by an earlier handshake.
+			sessionResumed = ((SSLSocket)sendSocket).getSession().getCreationTime() < startMillis;
+			handshakeTime = (System.nanoTime() - start) / 1000000;
+			Logging.getLogger().log(Level.INFO, "handshake took " + handshakeTime + " ms" + (sessionResumed ? " (resumed session)" : ""));
+			
 		} catch (IOException e) {
 			//This exception can be thrown every time the socket didn't manage to connect. 
 			//This is fine because the channel tries to connect until it succeed.
@@ -121,6 +179,16 @@ public class SSLSocketChannel extends PlainTCPSocketChannel{
 	
 	}
 
+	/**
+	 * Waits until the next message starts to arrive on the receive socket, without consuming it.<p>
+	 * The SSL socket reports as available only bytes that were already decrypted. Thus, the socket is read for at least one 
+	 * millisecond even when the given timeout is zero, in order to decrypt the records that have already arrived.
+	 */
+	@Override
+	public boolean waitForMessage(long timeout) throws IOException {
+		return super.waitForMessage(Math.max(timeout, 1));
+	}
+	
 	/**
 	 * Listens until the SSL handshake is complete.
 	 * Then, sets the channel as the receive socket.
@@ -141,7 +209,7 @@ public class SSLSocketChannel extends PlainTCPSocketChannel{
 			
 			Logging.getLogger().log(Level.INFO, "Socket connected");
 			try {
-				channel.outStream = new ObjectOutputStream(arg0.getSocket().getOutputStream());
+				channel.setOutputStream(arg0.getSocket().getOutputStream());
 				
 			} catch (IOException e) {
 				
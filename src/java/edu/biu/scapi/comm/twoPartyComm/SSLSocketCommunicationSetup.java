@@ -25,24 +25,13 @@
 
 package edu.biu.scapi.comm.twoPartyComm;
 
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.security.KeyManagementException;
-import java.security.KeyStore;
-import java.security.KeyStoreException;
-import java.security.NoSuchAlgorithmException;
-import java.security.SecureRandom;
-import java.security.UnrecoverableKeyException;
-import java.security.cert.CertificateException;
-import java.util.logging.Level;
+import java.util.Map;
 
-import javax.net.ssl.KeyManagerFactory;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLException;
-import javax.net.ssl.TrustManagerFactory;
 
 import edu.biu.scapi.exceptions.DuplicatePartyException;
-import edu.biu.scapi.generals.Logging;
 
 /**
  * This class implements a communication between two parties using SSL sockets.<p>
@@ -52,14 +41,16 @@ import edu.biu.scapi.generals.Logging;
  * In order to create an sslSocket you should have an {@link SSLContext} which should be loaded with the key store and trust store. 
  * The keyStore contains the certificate that should be sent to the other party, in SCAPI the default name is "scapiKeystore".
  * The trustStore contains the certificate that should be received from the other party, in SCAPI the default name as "scapiCacerts".
- * This loading is done once in the constructor of this class and is passed to the {@link SSLSocketListenerThread} and to each {@link SSLSocketChannel}. This factory is used to send the certificate of this application.
+ * The context is taken from the {@link SSLContextCache}, so it is loaded once and shared by all the setups and channels, which lets the handshakes resume cached sessions.
+ * It is passed to the {@link SSLSocketListenerThread} and to each {@link SSLSocketChannel}. This factory is used to send the certificate of this application.
  * 
  * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University (Moriya Farbstein)
  *
  */
 public class SSLSocketCommunicationSetup extends SocketCommunicationSetup{
 	
-	private SSLContext sc;	//Loaded with the keyStore and trustStore and used to get the SSLSocketFactory and SSLServerSocketFactory from.
+	private SSLContext sc;	//Loaded with the keyStore and trustStore and used to get the SSLSocketFactory from.
+	private String[] cipherSuites = SSLSocketChannel.CBC_CIPHER_SUITES;	//The enabled cipher suites.
 	
 	/**
 	 * Constructor that gets the data of both parties and the password to the keyStore and trustStore.
@@ -90,49 +81,45 @@ public class SSLSocketCommunicationSetup extends SocketCommunicationSetup{
 	public SSLSocketCommunicationSetup(PartyData me, PartyData party, String keyStoreName, String trustStoreName, String storePass) throws DuplicatePartyException, SSLException, IOException{
 		super(me, party);
 		
-		//Creating the SSL Context to get the socket factories from.
-		try {
-			
-			//Loading the trust store containing the certificate that should be received from the other party.
-			KeyStore trustStore = KeyStore.getInstance("JKS");
-			trustStore.load(new FileInputStream(trustStoreName), storePass.toCharArray());
-	        TrustManagerFactory tmf = TrustManagerFactory.getInstance("SunX509");
-	        tmf.init(trustStore);
-	         
-	        //Loading the key store containing the certificate that should be sent to the other party.
-	        KeyStore keyStore = KeyStore.getInstance("JKS");
-	        keyStore.load(new FileInputStream(keyStoreName), storePass.toCharArray());
-	        KeyManagerFactory kmf = KeyManagerFactory.getInstance("SunX509");
-	        kmf.init(keyStore, storePass.toCharArray());
-	         
-	        //Create the SSL context and initialize it with the created key store and trust store.
-	        sc = SSLContext.getInstance("TLSv1.2");
-	        sc.init(kmf.getKeyManagers(), tmf.getTrustManagers(), new SecureRandom());
-		
-		} catch (UnrecoverableKeyException e) {
-			Logging.getLogger().log(Level.SEVERE, e.toString());    
-			throw new SSLException(e.getCause());
-		} catch (KeyStoreException e) {
-			Logging.getLogger().log(Level.SEVERE, e.toString());    
-			throw new SSLException(e.getCause());
-		} catch (CertificateException e) {
-			Logging.getLogger().log(Level.SEVERE, e.toString());    
-			throw new SSLException(e.getCause());
-		} catch (NoSuchAlgorithmException e) {
-			Logging.getLogger().log(Level.SEVERE, e.toString());    
-			throw new SSLException(e.getCause());
-		} catch (KeyManagementException e) {
-			Logging.getLogger().log(Level.SEVERE, e.toString());    
-			throw new SSLException(e.getCause());
-		} 
+		//Get the shared SSL Context to get the socket factories from.
+		sc = SSLContextCache.getContext(keyStoreName, trustStoreName, storePass);
 		
 		//Create the connector object that creates and connects the channels.
 		connector = new TwoPartySocketConnector(me, other, sc.getSocketFactory());
 	}
 	
+	/**
+	 * Sets the cipher suites that the channels enable, for example {@link SSLSocketChannel#GCM_CIPHER_SUITES}.
+	 * Both parties should enable at least one common suite.<p>
+	 * This function should be called before calling prepareForCommunication.
+	 * @param cipherSuites the names of the cipher suites.
+	 */
+	public void setCipherSuites(String[] cipherSuites){
+		this.cipherSuites = cipherSuites;
+		connector.setCipherSuites(cipherSuites);
+	}
+	
+	/**
+	 * Sets the time that the SSL sessions can be resumed. 
+	 * The sessions are shared with all the setups that use the same key store and trust store.
+	 * @param seconds the timeout, in seconds. 0 means no limit.
+	 */
+	public void setSessionTimeout(int seconds){
+		SSLContextCache.setSessionTimeout(sc, seconds);
+	}
+	
+	/**
+	 * Returns the time it took to perform the SSL handshake of each channel, in milliseconds.
+	 * Use {@link SSLSocketChannel#isSessionResumed()} to check whether a channel resumed a cached session.
+	 * @return a map from the name of each channel to its handshake time.
+	 */
+	public Map<String, Long> getHandshakeTimes(){
+		return connector.getHandshakeTimes();
+	}
+	
 	@Override
 	protected void createListener(PlainTCPSocketChannel[] channels) {
-		listeningThread = new SSLSocketListenerThread(channels, me, other.getIpAddress(), sc.getServerSocketFactory());
+		listeningThread = new SSLSocketListenerThread(channels, me, other.getIpAddress(), sc.getSocketFactory(), cipherSuites);
 	}
 	
 
@@ -22,153 +22,65 @@
 * %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
 * 
 */
-
 package edu.biu.scapi.comm.twoPartyComm;
 
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.Socket;
-import java.nio.channels.ClosedChannelException;
-import java.util.logging.Level;
 
-import javax.net.ssl.SSLServerSocket;
-import javax.net.ssl.SSLServerSocketFactory;
 import javax.net.ssl.SSLSocket;
-
-import edu.biu.scapi.generals.Logging;
+import javax.net.ssl.SSLSocketFactory;
 
 /**
  * This class listen to incoming connections from the other party and set the received sockets to the channels.
- * It uses the SSLServerSocket class and defining some parameters of the SSL protocol.
+ * The accepted sockets are layered with SSL sockets in server mode, defining some parameters of the SSL protocol.<p>
+ * The SSL channels are connected one after the other, so the accepted sockets are set to the channels in the accepting order.
  * 
  * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University (Moriya Farbstein)
  *
  */
 class SSLSocketListenerThread extends SocketListenerThread {
 	
-	private SSLServerSocketFactory ssf; //Used to create the ssl server socket.
+	private SSLSocketFactory ssf; //Used to create the ssl sockets over the accepted sockets.
+	private String[] cipherSuites; //The enabled cipher suites.
 	
 	/**
-	* A constructor that opens the server socket.
+	* A constructor that sets the channels and the address to listen on.
 	* @param channels the channels that should be set with receive socket.
 	* @param me the data of the current application.
-	* @param partyAdd The address to listen on.
-	* @param ssf Used to create the ssl server socket.
+	* @param partyAdd The address of the other party.
+	* @param ssf Used to create the ssl sockets over the accepted sockets.
+	* @param cipherSuites The cipher suites to enable.
 	*/
-	SSLSocketListenerThread(PlainTCPSocketChannel[] channels, SocketPartyData me, InetAddress partyAdd, SSLServerSocketFactory ssf) {
+	SSLSocketListenerThread(PlainTCPSocketChannel[] channels, SocketPartyData me, InetAddress partyAdd, SSLSocketFactory ssf, String[] cipherSuites) {
 		this.ssf = ssf;
+		this.cipherSuites = cipherSuites;
 		doConstruct(channels, me, partyAdd);
 	}
 	
 	/**
-	 * created the {@link SSLServerSocket} using the {@link SSLServerSocketFactory} given in the constructor.
+	 * The SSL channels do not send their index, so the next channel is returned.
 	 */
-	protected void createServerSocket(SocketPartyData me) {
-		//prepare the listener.
-		try {
-
-			//Create the server socket.
-			listener = ssf.createServerSocket(me.getPort(), 0, me.getIpAddress());
-
-		} catch (IOException e) {
-			Logging.getLogger().log(Level.WARNING, e.toString());
-		}
+	@Override
+	protected int readIndex(Socket socket){
+		return connected;
 	}
-
+	
 	/**
-	* This function is the main function of the SSLSocketListenerThread. 
-	* Mainly, we listen and accept valid connections as long as the flag bStopped is false or until we have 
-	* got as much connections as we should.<p>
-	*/
-	public void run() {
-		
-		//Set the state of all channels to connecting.
-		int size = channels.length;
-		for (int i=0; i<size; i++){
-		
-			channels[i].setState(PlainTCPSocketChannel.State.CONNECTING);
-		}
-		
-		int i=0;
-		//Loop for listening to incoming connections and make sure that this thread should not stopped.
-		while (i < size && !bStopped) {
+	 * Creates an SSL socket in server mode over the accepted socket and does the handshake. 
+	 * The handshake is bounded by the read timeout of the accepted socket.
+	 */
+	@Override
+	protected Socket prepareSocket(Socket socket) throws IOException {
+		SSLSocket sslSocket = (SSLSocket) ssf.createSocket(socket, socket.getInetAddress().getHostAddress(), socket.getPort(), true);
 		
-			Socket socket = null;
-			try {
-			
-				Logging.getLogger().log(Level.INFO, "Trying to listen "+ listener.getLocalPort());
-				
-				//Use the server socket to listen to incoming connections.
-				socket = listener.accept();
-			
-			}	catch (ClosedChannelException e) {
-				// TODO: handle exception
-				Logging.getLogger().log(Level.WARNING, e.toString());
-			} 	catch (IOException e) {
-			
-				Logging.getLogger().log(Level.WARNING, e.toString());
-			}
+		//Set the enables protocol to TLS 1.2 and the enabled cipher suites.
+		SSLSocketChannel.configure(sslSocket, cipherSuites);
 		
-			//If there was no connection request wait a second and try again.
-			if(socket==null){
-				try {
-					Thread.sleep (1000);
-				} catch (InterruptedException e) {
-				
-					Logging.getLogger().log(Level.INFO, e.toString());
-				}
-			//If there was an incoming request, check it.
-			} else{
-				//Get the ip of the client socket.
-				InetAddress inetAddr = socket.getInetAddress();
-				
-				//if the accepted address is not a valid address. I.e. different from the other party's address. 
-				if(!inetAddr.equals(partyAddr)){//an unauthorized ip tried to connect
-				
-					//Close the socket.
-					try {
-						socket.close();
-					} catch (IOException e) {
-					
-						Logging.getLogger().log(Level.WARNING, e.toString());
-					}
-					
-				//If the accepted address is valid, set it as the receive socket of the channel.
-				//The send socket is set in the SocketCommunicationSetup.connect function. 
-				} else{ 
-					//Set the enables protocol to TLS 1.2.
-					String [] protocols = new String[1];
-					protocols[0] = "TLSv1.2";
-					((SSLSocket)socket).setEnabledProtocols(protocols);
-					
-					//Set the enables cipher suits to .
-					String [] cipherSuits = new String[2];
-					cipherSuits[0] = "TLS_ECDHE_ECDSA_WITH_AES_128_CBC_SHA256";
-					cipherSuits[1] = "TLS_ECDHE_RSA_WITH_AES_128_CBC_SHA256";
-					((SSLSocket)socket).setEnabledCipherSuites(cipherSuits);
-					
-					//Configure the socket to use server mode when handshaking and to check client authentication.
-					((SSLSocket)socket).setUseClientMode(false);
-					((SSLSocket)socket).setNeedClientAuth(true);
-					
-					((SSLSocketChannel)channels[i]).setReceiveSocket(socket);
-					
-					//Increment the index of incoming connections.
-					i++;
-				}
-			}
-		}
-	
-		Logging.getLogger().log(Level.INFO, "End of listening thread run");
-		
-		//After accepting all connections, close the thread.
-		try {
-			listener.close();
-		} catch (IOException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		}
-	
+		//Configure the socket to use server mode when handshaking and to check client authentication.
+		sslSocket.setUseClientMode(false);
+		sslSocket.setNeedClientAuth(true);
+		sslSocket.startHandshake();
+		return sslSocket;
 	}
-
 }
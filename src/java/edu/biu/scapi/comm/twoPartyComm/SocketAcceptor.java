@@ -0,0 +1,312 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.comm.twoPartyComm;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import edu.biu.scapi.generals.Logging;
+
+/**
+ * This class accepts the incoming connections of all the socket communication setups of the application using one thread 
+ * and one {@link Selector}.<p>
+ * 
+ * Each listener registers the address it listens on together with an {@link AcceptHandler}. As soon as a connection arrives,
+ * the acceptor thread accepts it and passes it to the handler of the address, so there is no polling delay.<p>
+ * 
+ * The acceptor thread only accepts. The handler is called by a thread of the registered address, which handles the accepted 
+ * connections of the address one after the other, in the order they were accepted. The thread exists only while connections 
+ * are handled. Thus, a handler may block while it reads a preamble or does a handshake, without delaying the connections of 
+ * the other addresses. It should still use a read timeout, since it delays the next connections of its own address.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+public class SocketAcceptor {
+
+	/**
+	 * Handles the connections accepted on a registered address.
+	 */
+	public interface AcceptHandler {
+		
+		/**
+		 * Called for every accepted connection, in the order the connections were accepted. 
+		 * The calls of one handler are never concurrent.
+		 * @param socketChannel the accepted connection, in blocking mode.
+		 */
+		void accepted(SocketChannel socketChannel);
+	}
+	
+	private static SocketAcceptor instance;
+	
+	private Selector selector;
+	private Thread thread;
+	private ConcurrentLinkedQueue<Runnable> pending = new ConcurrentLinkedQueue<Runnable>();	//Operations that should be done by the acceptor thread.
+	
+	/**
+	 * Holds the handler of a registered address and the executor that calls it.
+	 */
+	private static class Registration {
+		AcceptHandler handler;
+		ExecutorService executor;
+		
+		Registration(AcceptHandler handler, final int port){
+			this.handler = handler;
+			//A single thread that ends after a second without connections.
+			ThreadPoolExecutor pool = new ThreadPoolExecutor(1, 1, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "SocketAcceptor-" + port);
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			pool.allowCoreThreadTimeOut(true);
+			this.executor = pool;
+		}
+	}
+	
+	private SocketAcceptor() {}
+	
+	/**
+	 * Returns the acceptor shared by all the communication setups.
+	 */
+	public static synchronized SocketAcceptor getInstance(){
+		if (instance == null){
+			instance = new SocketAcceptor();
+		}
+		return instance;
+	}
+	
+	/**
+	 * Starts listening on the given address. The incoming connections are passed to the given handler.
+	 * @param address the address to listen on.
+	 * @param handler gets the accepted connections.
+	 * @return the server socket channel that listens on the address. Should be passed to {@link #unregister(ServerSocketChannel)}.
+	 * @throws IOException in case the address could not be bound.
+	 */
+	public ServerSocketChannel register(InetSocketAddress address, AcceptHandler handler) throws IOException {
+		return register(address, handler, new TransportOptions());
+	}
+	
+	/**
+	 * Starts listening on the given address, using the given TCP options. The incoming connections are passed to the given handler.<p>
+	 * The receive buffer size of the options is set before the address is bound, so the accepted connections can negotiate 
+	 * a TCP window that is bigger than 64KB.
+	 * @param address the address to listen on.
+	 * @param handler gets the accepted connections.
+	 * @param options the TCP options of the listening socket.
+	 * @return the server socket channel that listens on the address. Should be passed to {@link #unregister(ServerSocketChannel)}.
+	 * @throws IOException in case the address could not be bound.
+	 */
+	public ServerSocketChannel register(InetSocketAddress address, final AcceptHandler handler, TransportOptions options) throws IOException {
+		final ServerSocketChannel server = ServerSocketChannel.open();
+		try {
+			server.socket().setReuseAddress(true);
+			options.applyTo(server.socket());
+			server.socket().bind(address);
+			server.configureBlocking(false);
+		} catch (IOException e) {
+			server.close();
+			throw e;
+		}
+		
+		final Registration registration = new Registration(handler, address.getPort());
+		execute(new Runnable() {
+			public void run() {
+				try {
+					server.register(selector, SelectionKey.OP_ACCEPT, registration);
+				} catch (IOException e) {
+					Logging.getLogger().log(Level.WARNING, e.toString());
+				}
+			}
+		});
+		return server;
+	}
+	
+	/**
+	 * Stops listening on the given server socket channel and closes it.<p>
+	 * When this function returns, the address is no longer bound and no more connections are passed to its handler, except 
+	 * for the connections that were already accepted. 
+	 * @param server the channel returned by {@link #register(InetSocketAddress, AcceptHandler)}.
+	 */
+	public void unregister(final ServerSocketChannel server){
+		final CountDownLatch done = new CountDownLatch(1);
+		Runnable close = new Runnable() {
+			public void run() {
+				cancel(server);
+				try {
+					//Flush the cancelled key, so the channel is actually closed.
+					selector.selectNow();
+				} catch (IOException e) {
+					Logging.getLogger().log(Level.WARNING, e.toString());
+				}
+				done.countDown();
+			}
+		};
+		
+		try {
+			execute(close);
+			done.await();
+		} catch (IOException e) {
+			Logging.getLogger().log(Level.WARNING, e.toString());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	/**
+	 * Cancels the registration of the given server socket channel and closes it.
+	 */
+	private void cancel(ServerSocketChannel server){
+		SelectionKey key = server.keyFor(selector);
+		if (key != null){
+			key.cancel();
+			//The connections that were already passed to the executor are still handled.
+			((Registration) key.attachment()).executor.shutdown();
+		}
+		try {
+			server.close();
+		} catch (IOException e) {
+			Logging.getLogger().log(Level.WARNING, e.toString());
+		}
+	}
+	
+	/**
+	 * Passes the given operation to the acceptor thread, starting the thread if needed.
+	 */
+	private synchronized void execute(Runnable operation) throws IOException {
+		if (thread == null){
+			selector = Selector.open();
+			thread = new AcceptorThread();
+			thread.start();
+		}
+		pending.add(operation);
+		selector.wakeup();
+	}
+	
+	/**
+	 * The single thread that waits for incoming connections of all the registered addresses.
+	 */
+	private class AcceptorThread extends Thread {
+		
+		AcceptorThread(){
+			setName("SocketAcceptor");
+			setDaemon(true);
+		}
+		
+		public void run(){
+			while (true){
+				try {
+					selector.select();
+				} catch (IOException e) {
+					Logging.getLogger().log(Level.WARNING, e.toString());
+				}
+				
+				Runnable operation;
+				while ((operation = pending.poll()) != null){
+					operation.run();
+				}
+				
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()){
+					SelectionKey key = keys.next();
+					keys.remove();
+					if (key.isValid() && key.isAcceptable()){
+						accept((ServerSocketChannel) key.channel(), (Registration) key.attachment());
+					}
+				}
+			}
+		}
+		
+		/**
+		 * Accepts all the waiting connections of the given server socket channel and passes them to the executor of its handler.
+		 */
+		private void accept(ServerSocketChannel server, Registration registration){
+			SocketChannel socketChannel;
+			while (server.isOpen()){
+				try {
+					socketChannel = server.accept();
+				} catch (IOException e) {
+					Logging.getLogger().log(Level.WARNING, e.toString());
+					return;
+				}
+				if (socketChannel == null){
+					return;
+				}
+				
+				try {
+					registration.executor.execute(new AcceptTask(registration.handler, socketChannel));
+				} catch (RejectedExecutionException e) {
+					//The address was unregistered.
+					close(socketChannel);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Passes one accepted connection to the handler of its address.
+	 */
+	private static class AcceptTask implements Runnable {
+		private AcceptHandler handler;
+		private SocketChannel socketChannel;
+		
+		AcceptTask(AcceptHandler handler, SocketChannel socketChannel){
+			this.handler = handler;
+			this.socketChannel = socketChannel;
+		}
+		
+		public void run(){
+			try {
+				handler.accepted(socketChannel);
+			} catch (RuntimeException e) {
+				Logging.getLogger().log(Level.WARNING, e.toString());
+				close(socketChannel);
+			}
+		}
+	}
+	
+	private static void close(SocketChannel socketChannel){
+		try {
+			socketChannel.close();
+		} catch (IOException e) {
+			Logging.getLogger().log(Level.WARNING, e.toString());
+		}
+	}
+}
@@ -51,6 +51,12 @@ import edu.biu.scapi.generals.Logging;
  * </ul>
  * From this point onwards, the application can send and receive messages in each connection as required by the protocol.<p>
  * 
+ * The channels are connected concurrently, so the other party may accept them in any order. Therefore, each channel sends 
+ * its index (as a 4 bytes integer) right after its socket is connected, and the listener of the other party sets the accepted 
+ * socket to the channel with that index. This changes the connect step of former versions, where the sockets were matched 
+ * to the channels by their accepting order and no index was sent: <b>both parties should use the same version of this class</b>. 
+ * A former version would read the index as the beginning of the stream, and its channels would not be matched.<p>
+ * 
  * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University (Moriya Farbstein)
  *
  */
@@ -64,6 +70,7 @@ public class SocketCommunicationSetup implements TwoPartyCommunicationSetup, Tim
 	private int connectionsNumber;									//Holds the number of created connections. 
 	protected SocketPartyData me;									//The data of the current application.
 	protected SocketPartyData other;								//The data of the other application to communicate with.
+	protected TransportOptions options = new TransportOptions();	//The TCP options of the created channels.
 	
 	/**
 	 * A constructor that set the given parties.
@@ -155,7 +162,7 @@ public class SocketCommunicationSetup implements TwoPartyCommunicationSetup, Tim
 	 * The function does the following steps:
 	 * 1. Calls the connector.createChannels function that creates a channel for each connection.
 	 * 2. Start a listening thread that accepts calls from the other party.
-	 * 3. Calls the connector.connect function that calls each channel's connect function in order to connect each channel to the other party.
+	 * 3. Calls the connector.connectConcurrently function that calls the channels' connect functions at the same time in order to connect each channel to the other party.
 	 * @param connectionsIds The names of the requested connections. 
 	 *
 	 */
@@ -168,11 +175,12 @@ public class SocketCommunicationSetup implements TwoPartyCommunicationSetup, Tim
 			//Create a listening thread with the created channels.
 			//The listening thread receives calls from the other party and set the creates sockets as the receiveSocket of the channels.
 			createListener(channels);
+			listeningThread.setTransportOptions(options);
 			listeningThread.start();
 		}
 		
-		//Calls the connector to connect each channel.
-		connector.connect(channels);
+		//Calls the connector to connect all the channels concurrently.
+		connector.connectConcurrently(channels);
 		
 	}
 
@@ -187,6 +195,47 @@ public class SocketCommunicationSetup implements TwoPartyCommunicationSetup, Tim
 		this.enableNagle  = true;
 	}
 	
+	/**
+	 * Sets this communication setup to create {@link NIOSocketChannel}s instead of {@link PlainTCPSocketChannel}s.<p>
+	 * The NIO channels write byte arrays and ByteBuffers to the wire as is and serialize other objects only once, which 
+	 * makes them preferable for bulk data. Both parties should call this function, since the wire format of the channels differs.<p>
+	 * This function should be called before calling prepareForCommunication.
+	 */
+	public void enableNio(){
+		connector.enableNio();
+	}
+	
+	/**
+	 * Sets the TCP options of the created channels, such as the sizes of the socket buffers.<p>
+	 * The options are set on both sockets of each channel, before they are connected. The receive buffer size is also 
+	 * set on the listening socket of this application, so both parties should set the options in order to get big 
+	 * receive windows in both directions.<p>
+	 * This function should be called before calling prepareForCommunication.
+	 * @param options the options to set.
+	 */
+	public void setTransportOptions(TransportOptions options){
+		this.options = options;
+		connector.setTransportOptions(options);
+	}
+	
+	/**
+	 * Returns the actual TCP options of each channel that was created by the last call to prepareForCommunication, 
+	 * as reported by the operating system. The operating system may adjust the requested buffer sizes.
+	 * @return a map from the name of each channel to its effective options.
+	 */
+	public Map<String, TransportOptions> getEffectiveOptions(){
+		return connector.getEffectiveOptions();
+	}
+	
+	/**
+	 * Returns the time it took to connect each channel, in milliseconds. 
+	 * The latency is measured from the beginning of the connect step until the channel's send socket was connected.
+	 * @return a map from the name of each channel to its connect latency.
+	 */
+	public Map<String, Long> getConnectLatencies(){
+		return connector.getConnectLatencies();
+	}
+	
 	/**
 	 * This function is called by the infrastructure of the Watchdog if the previously set timeout has passed. (Do not call this function).
 	 */
@@ -22,41 +22,52 @@
 * %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
 * 
 */ 
-
 package edu.biu.scapi.comm.twoPartyComm;
 
+import java.io.DataInputStream;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
-import java.net.ServerSocket;
-import java.nio.channels.ClosedChannelException;
+import java.net.Socket;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 import java.util.logging.Level;
 import edu.biu.scapi.generals.Logging;
 
 /**
- * This class listen to incoming connections from the other party and set the received sockets to the channels.
+ * This class listen to incoming connections from the other party and set the received sockets to the channels.<p>
+ * The other party connects its channels concurrently, so the sockets may arrive in any order. Each connecting channel 
+ * first sends its index, and the received socket is set to the channel with that index.<p>
+ * 
+ * The listener does not have a thread of its own. It registers its address to the shared {@link SocketAcceptor}, which 
+ * passes each incoming connection to it as soon as it is accepted. The reads of the preamble, of a handshake and of the 
+ * stream header of the channel are bounded by a read timeout, which the channel removes once its streams are created.
  * 
  * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University (Moriya Farbstein)
  *
  */
-class SocketListenerThread extends Thread{
+class SocketListenerThread implements SocketAcceptor.AcceptHandler{
+	
+	protected static final int READ_TIMEOUT = 5000;	//The maximal time to wait for each read of an accepted socket, until it is set to its channel, in milliseconds.
 	
 	protected InetAddress partyAddr;				//The address of the other party.
 	protected PlainTCPSocketChannel[] channels;	//All connections between me and the other party. The received sockets of each channel should be set when accepted. 
 	
-	protected boolean bStopped = false;			//A flag that indicates if to keep on listening or stop.
-	protected ServerSocket listener;		//Channel to listen on.
+	protected volatile boolean bStopped = false;	//A flag that indicates if to keep on listening or stop.
+	protected InetSocketAddress address;			//The address to listen on.
+	protected ServerSocketChannel listener;		//Channel to listen on. Registered to the SocketAcceptor.
+	protected int connected;						//The number of channels whose receive socket was set.
+	private boolean[] isSet;						//Indicates for each channel whether its receive socket was set.
+	protected TransportOptions options = new TransportOptions();	//The TCP options of the listening socket.
 
 	SocketListenerThread(){
 		
 	}
 	/**
-	* A constructor that open the server socket.
+	* A constructor that sets the channels and the address to listen on.
 	* @param channels the channels that should be set with receive socket.
 	* @param me the data of the current application.
-	* @param partyAdd The address to listen on.
+	* @param partyAdd The address of the other party.
 	*/
 	SocketListenerThread(PlainTCPSocketChannel[] channels, SocketPartyData me, InetAddress partyAdd) {
 	
@@ -68,120 +79,143 @@ class SocketListenerThread extends Thread{
 		
 		this.channels = channels;
 		this.partyAddr = partyAdd;
-		
-		createServerSocket(me);
+		this.address = new InetSocketAddress(me.getIpAddress(), me.getPort());
+		this.isSet = new boolean[channels.length];
 	}
 
+	/**
+	 * Sets the TCP options of the listening socket. Should be called before the listener is started.
+	 * @param options the options to set.
+	 */
+	void setTransportOptions(TransportOptions options){
+		this.options = options;
+	}
 
 	/**
-	 * Created the {@link ServerSocketChannel}.
-	 * @param me
+	 * Sets the state of all channels to connecting and starts listening on the address of the current application.
 	 */
-	protected void createServerSocket(SocketPartyData me) {
-		//prepare the listener.
+	void start(){
+		for (int i=0; i<channels.length; i++){
+			channels[i].setState(PlainTCPSocketChannel.State.CONNECTING);
+		}
+		
 		try {
-			ServerSocketChannel channel = ServerSocketChannel.open();
-			channel.configureBlocking (false);
-			listener = channel.socket();
-			listener.bind (new InetSocketAddress (me.getIpAddress(), me.getPort()));
+			Logging.getLogger().log(Level.INFO, "Trying to listen "+ address.getPort());
+			ServerSocketChannel server = SocketAcceptor.getInstance().register(address, this, options);
+			synchronized (this){
+				listener = server;
+			}
+			//The listener may have been stopped while registering.
+			if (bStopped || connected == channels.length){
+				close();
+			}
 		} catch (IOException e) {
-		
 			Logging.getLogger().log(Level.WARNING, e.toString());
-	
 		}
 	}
 
-
 	/**
-	* Sets the flag bStopped to false. In the run function of this thread this flag is checked - 
-	* if the flag is true the run functions returns, otherwise continues.
+	* Sets the flag bStopped to true and stops listening.
 	*/
 	void stopConnecting(){
 	
 		//Set the flag to true.
 		bStopped = true;
+		close();
 	}
 
-
-
 	/**
-	* This function is the main function of the SocketListenerThread. Mainly, we listen and accept valid connections 
-	* as long as the flag bStopped is false or until we have got as much connections as we should.<p>
-	* We use the ServerSocketChannel rather than the regular ServerSocket since we want the accept to be non-blocking. 
-	* If the accept function is blocking the flag bStopped will not be checked until the thread is unblocked.  
+	* Called by the {@link SocketAcceptor} for each incoming connection. Sets the accepted socket as the receive socket of 
+	* the channel whose index was sent by the other party. After all channels were set, stops listening.
 	*/
-	public void run() {
-	
-		//Set the state of all channels to connecting.
-		int size = channels.length;
-		for (int i=0; i<size; i++){
+	public synchronized void accepted(SocketChannel socketChannel) {
+		Socket socket = socketChannel.socket();
 		
-			channels[i].setState(PlainTCPSocketChannel.State.CONNECTING);
+		//The listener was stopped or an unauthorized ip tried to connect. I.e. different from the other party's address. 
+		if (bStopped || connected == channels.length || !socket.getInetAddress().equals(partyAddr)){
+			closeSocket(socket);
+			return;
 		}
 		
-		int i=0;
-		//Loop for listening to incoming connections and make sure that this thread should not stopped.
-		while (i < size && !bStopped) {
+		//The send socket is set in the SocketCommunicationSetup.connect function. 
+		int index;
+		try {
+			socket.setSoTimeout(READ_TIMEOUT);
+			index = readIndex(socket);
+		} catch (IOException e) {
+			Logging.getLogger().log(Level.WARNING, e.toString());
+			closeSocket(socket);
+			return;
+		}
 		
-			SocketChannel socketChannel = null;
-			try {
-			
-				Logging.getLogger().log(Level.INFO, "Trying to listen "+ listener.getLocalPort());
-				
-				//Use the server socket to listen to incoming connections.
-				socketChannel = listener.getChannel().accept();
-			
-			}	catch (ClosedChannelException e) {
-				// TODO: handle exception
-				Logging.getLogger().log(Level.WARNING, e.toString());
-			} 	catch (IOException e) {
-			
-				Logging.getLogger().log(Level.WARNING, e.toString());
-			}
+		//The index is not valid or belongs to a channel that is already connected.
+		if (index < 0 || index >= channels.length || isSet[index]){
+			closeSocket(socket);
+			return;
+		}
 		
-			//If there was no connection request wait a second and try again.
-			if(socketChannel==null){
-				try {
-					Thread.sleep (1000);
-				} catch (InterruptedException e) {
-				
-					Logging.getLogger().log(Level.INFO, e.toString());
-				}
-			//If there was an incoming request, check it.
-			} else{
-				//Get the ip of the client socket.
-				InetAddress inetAddr = socketChannel.socket().getInetAddress();
-				
-				//if the accepted address is not a valid address. I.e. different from the other party's address. 
-				if(!inetAddr.equals(partyAddr)){//an unauthorized ip tried to connect
-				
-					//Close the socket.
-					try {
-						socketChannel.close();
-					} catch (IOException e) {
-					
-						Logging.getLogger().log(Level.WARNING, e.toString());
-					}
-				//If the accepted address is valid, set it as the receive socket of the channel.
-				//The send socket is set in the SocketCommunicationSetup.connect function. 
-				} else{ 
-					channels[i].setReceiveSocket(socketChannel.socket());
-					
-					//Increment the index of incoming connections.
-					i++;
-				}
-			}
+		try {
+			//The read timeout also bounds the handshake and the stream header, and is removed by the channel.
+			channels[index].setReceiveSocket(prepareSocket(socket));
+		} catch (IOException e) {
+			Logging.getLogger().log(Level.WARNING, e.toString());
+			closeSocket(socket);
+			return;
 		}
-	
-		Logging.getLogger().log(Level.INFO, "End of listening thread run");
+		isSet[index] = true;
+		connected++;
 		
-		//After accepting all connections, close the thread.
+		//After accepting all connections, stop listening.
+		if (connected == channels.length){
+			Logging.getLogger().log(Level.INFO, "End of listening");
+			close();
+		}
+	}
+	
+	/**
+	 * Reads the index of the channel that the other party connected. The read timeout of the socket is already set.
+	 * @param socket the accepted socket.
+	 * @return the received index, or -1 in case the index could not be read.
+	 */
+	protected int readIndex(Socket socket){
 		try {
-			listener.close();
-			} catch (IOException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+			//The DataInputStream does not buffer, so no data of the channel is consumed.
+			return new DataInputStream(socket.getInputStream()).readInt();
+		} catch (IOException e) {
+			Logging.getLogger().log(Level.WARNING, e.toString());
+			return -1;
+		}
+	}
+	
+	/**
+	 * Prepares the accepted socket before it is set to the channel. This implementation returns the socket as is.
+	 * @param socket the accepted socket.
+	 * @return the socket that should be set to the channel.
+	 */
+	protected Socket prepareSocket(Socket socket) throws IOException {
+		return socket;
+	}
+	
+	/**
+	 * Stops listening, in case the listener is still registered.
+	 */
+	protected void close(){
+		ServerSocketChannel server;
+		synchronized (this){
+			server = listener;
+			listener = null;
 		}
+		//Unregister outside the lock, since the acceptor thread may be waiting for it.
+		if (server != null){
+			SocketAcceptor.getInstance().unregister(server);
+		}
+	}
 	
+	protected static void closeSocket(Socket socket){
+		try {
+			socket.close();
+		} catch (IOException e) {
+			Logging.getLogger().log(Level.WARNING, e.toString());
+		}
 	}
 }
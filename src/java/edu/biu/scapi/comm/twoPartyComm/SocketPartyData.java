@@ -75,6 +75,13 @@ public class SocketPartyData implements PartyData{
 		
 	}
 	
+	/**
+	 * Checks whether the given object is a party with the same ip address and port.<p>
+	 * Note that in former versions this function returned true for any two parties. The communication setups compare 
+	 * parties using {@link #compareTo(SocketPartyData)}, so only code that keys maps or sets by parties is affected.
+	 * @param c the object to compare to.
+	 * @return true if the given object is a SocketPartyData with the same ip address and port; false otherwise.
+	 */
 	@Override
 	public boolean equals(Object c){
 		if (!(c instanceof SocketPartyData)){
@@ -84,7 +91,7 @@ public class SocketPartyData implements PartyData{
 		if (ipAddress.equals(otherParty.getIpAddress()) && (port==otherParty.getPort())){
 			return true;
 		}
-		return true;
+		return false;
 		
 	}
 	@Override
@@ -0,0 +1,162 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.comm.twoPartyComm;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded lock-free queue for one producer thread and one consumer thread, used by the {@link LoopbackChannel}.<p>
+ * 
+ * The producer is the only thread that advances the tail and the consumer is the only thread that advances the head, so no 
+ * locks or compare-and-swap operations are needed. A thread that finds the queue full (or empty) spins for a short time, 
+ * then yields, and then parks for short periods until it can continue.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+class SpscRingBuffer {
+
+	private static final int SPIN_TRIES = 100;			//Number of busy tries before yielding.
+	private static final int YIELD_TRIES = 200;			//Number of tries (including the busy ones) before parking.
+	private static final long PARK_NANOS = 20000;		//The time to park between two tries after yielding.
+	
+	private final Object[] buffer;
+	private final int mask;
+	private final AtomicLong head = new AtomicLong();	//The index of the next element to take. Advanced by the consumer.
+	private final AtomicLong tail = new AtomicLong();	//The index of the next element to put. Advanced by the producer.
+	private volatile boolean closed;
+	
+	/**
+	 * Creates a queue that can hold the given number of elements, rounded up to a power of two.
+	 */
+	SpscRingBuffer(int capacity){
+		int size = 1;
+		while (size < capacity){
+			size <<= 1;
+		}
+		buffer = new Object[size];
+		mask = size - 1;
+	}
+	
+	/**
+	 * Puts the given element in the queue. Waits in case the queue is full.
+	 * @throws IOException in case the queue was closed or the thread was interrupted.
+	 */
+	void put(Object element) throws IOException {
+		long t = tail.get();
+		int tries = 0;
+		while (t - head.get() == buffer.length){
+			if (closed){
+				throw new IOException("the channel is closed");
+			}
+			tries = idle(tries);
+		}
+		if (closed){
+			throw new IOException("the channel is closed");
+		}
+		buffer[(int) t & mask] = element;
+		//The ordered write publishes the element to the consumer.
+		tail.lazySet(t + 1);
+	}
+	
+	/**
+	 * Takes the next element from the queue. Waits in case the queue is empty.
+	 * @throws IOException in case the queue is empty and closed, or the thread was interrupted.
+	 */
+	Object take() throws IOException {
+		long h = head.get();
+		int tries = 0;
+		while (h == tail.get()){
+			if (closed){
+				//Check again, since an element may have been put before the queue was closed.
+				if (h == tail.get()){
+					throw new EOFException("the other party closed the channel");
+				}
+				break;
+			}
+			tries = idle(tries);
+		}
+		int index = (int) h & mask;
+		Object element = buffer[index];
+		buffer[index] = null;
+		head.lazySet(h + 1);
+		return element;
+	}
+	
+	/**
+	 * Waits until the queue is not empty, or until the given timeout has passed. Should be called by the consumer.
+	 * @param timeout the maximal time to wait, in milliseconds. Zero or a negative value means not to wait at all.
+	 * @return true if there is an element to take, or the queue is closed so the next take does not wait; 
+	 * false if the timeout has passed.
+	 * @throws IOException in case the thread was interrupted.
+	 */
+	boolean await(long timeout) throws IOException {
+		long h = head.get();
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+		int tries = 0;
+		while (h == tail.get() && !closed){
+			if (System.nanoTime() - deadline >= 0){
+				return false;
+			}
+			tries = idle(tries);
+		}
+		return true;
+	}
+	
+	/**
+	 * Closes the queue. Elements that were already put can still be taken.
+	 */
+	void close(){
+		closed = true;
+	}
+	
+	boolean isClosed(){
+		return closed;
+	}
+	
+	/**
+	 * Waits before the next try, according to the number of tries so far.
+	 * @return the number of tries, including the current one.
+	 */
+	private static int idle(int tries) throws InterruptedIOException {
+		if (tries >= YIELD_TRIES){
+			LockSupport.parkNanos(PARK_NANOS);
+			if (Thread.interrupted()){
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException();
+			}
+			return tries;
+		}
+		if (tries >= SPIN_TRIES){
+			Thread.yield();
+		}
+		return tries + 1;
+	}
+}
@@ -0,0 +1,218 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.comm.twoPartyComm;
+
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+
+/**
+ * This class holds the TCP options of the sockets that the socket communication setups create.<p>
+ * 
+ * By default all the options are left to the JVM and the operating system, which usually means small socket buffers. 
+ * On links with a high bandwidth-delay product (a fast link with a long round trip time) the sender cannot have more 
+ * than one receive buffer of unacknowledged data in flight, so the throughput is bounded by receiveBufferSize / RTT. 
+ * In order to fill such a link the buffers should be at least as big as the bandwidth multiplied by the round trip time.<p>
+ * 
+ * The options are set per channel, on both the send socket and the receive socket, before the sockets are connected. 
+ * The receive buffer size is also set on the listening socket, since a receive window bigger than 64KB is negotiated 
+ * while connecting. The operating system may adjust the requested sizes (Linux, for example, reports twice the requested size), 
+ * so the actual values of a connected channel can be read using {@link PlainTCPSocketChannel#getEffectiveOptions()}.<p>
+ * 
+ * The Nagle algorithm is not part of these options, since it is set by the enableNagle function of the communication setups.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+public class TransportOptions {
+
+	public static final int DEFAULT = -1;	//Indicates that the option is not set, so the default of the system is used.
+	
+	private int sendBufferSize = DEFAULT;		//The size of the send buffer of the sockets (SO_SNDBUF).
+	private int receiveBufferSize = DEFAULT;	//The size of the receive buffer of the sockets (SO_RCVBUF).
+	private int trafficClass = DEFAULT;			//The traffic class or type-of-service of the sent packets (IP_TOS).
+	private Boolean keepAlive;					//Indicates whether to send keep alive probes on idle connections (SO_KEEPALIVE). Null means the default.
+	private int streamBufferSize = PlainTCPSocketChannel.STREAM_BUFFER_SIZE;	//The size of the buffers between the object streams and the sockets.
+	
+	/**
+	 * Creates options that leave all the socket options to the system, with the default size of the stream buffers.
+	 */
+	public TransportOptions(){}
+	
+	/**
+	 * Creates options with the given socket buffer sizes. The other options are left to the system.
+	 * @param sendBufferSize the size of the send buffer of each socket, in bytes.
+	 * @param receiveBufferSize the size of the receive buffer of each socket, in bytes.
+	 */
+	public TransportOptions(int sendBufferSize, int receiveBufferSize){
+		setSendBufferSize(sendBufferSize);
+		setReceiveBufferSize(receiveBufferSize);
+	}
+	
+	public int getSendBufferSize() {
+		return sendBufferSize;
+	}
+
+	/**
+	 * Sets the size of the send buffer of each socket (SO_SNDBUF).
+	 * @param size the size in bytes, or {@link #DEFAULT}.
+	 */
+	public void setSendBufferSize(int size) {
+		checkSize(size);
+		this.sendBufferSize = size;
+	}
+
+	public int getReceiveBufferSize() {
+		return receiveBufferSize;
+	}
+
+	/**
+	 * Sets the size of the receive buffer of each socket (SO_RCVBUF). This size bounds the TCP window, thus it should be 
+	 * at least the bandwidth-delay product of the link.
+	 * @param size the size in bytes, or {@link #DEFAULT}.
+	 */
+	public void setReceiveBufferSize(int size) {
+		checkSize(size);
+		this.receiveBufferSize = size;
+	}
+
+	public int getTrafficClass() {
+		return trafficClass;
+	}
+
+	/**
+	 * Sets the traffic class or type-of-service octet of the IP header of the sent packets (IP_TOS). 
+	 * The network may ignore this value.
+	 * @param trafficClass a value between 0 and 255, or {@link #DEFAULT}.
+	 */
+	public void setTrafficClass(int trafficClass) {
+		if (trafficClass != DEFAULT && (trafficClass < 0 || trafficClass > 255)){
+			throw new IllegalArgumentException("the traffic class should be between 0 and 255");
+		}
+		this.trafficClass = trafficClass;
+	}
+
+	/**
+	 * Returns whether keep alive probes are sent, or null in case the option is left to the system.
+	 */
+	public Boolean getKeepAlive() {
+		return keepAlive;
+	}
+
+	/**
+	 * Sets whether to send keep alive probes on idle connections (SO_KEEPALIVE), so that a connection to a party that 
+	 * disappeared during a long local computation is eventually detected.
+	 * @param keepAlive true to send probes, false not to send them, or null to leave the option to the system.
+	 */
+	public void setKeepAlive(Boolean keepAlive) {
+		this.keepAlive = keepAlive;
+	}
+
+	public int getStreamBufferSize() {
+		return streamBufferSize;
+	}
+
+	/**
+	 * Sets the size of the buffers between the object streams of the channels and the sockets. 
+	 * Bigger buffers mean fewer system calls when sending big messages.
+	 * @param size the size in bytes.
+	 */
+	public void setStreamBufferSize(int size) {
+		if (size <= 0){
+			throw new IllegalArgumentException("the stream buffer size should be positive");
+		}
+		this.streamBufferSize = size;
+	}
+	
+	private static void checkSize(int size){
+		if (size != DEFAULT && size <= 0){
+			throw new IllegalArgumentException("the buffer size should be positive");
+		}
+	}
+	
+	/**
+	 * Sets the options to the given socket. In order for the receive buffer size to affect the TCP window, this function 
+	 * should be called before the socket is connected.
+	 * @param socket the socket to configure.
+	 * @throws SocketException in case one of the options could not be set.
+	 */
+	public void applyTo(Socket socket) throws SocketException {
+		if (sendBufferSize != DEFAULT){
+			socket.setSendBufferSize(sendBufferSize);
+		}
+		if (receiveBufferSize != DEFAULT){
+			socket.setReceiveBufferSize(receiveBufferSize);
+		}
+		if (trafficClass != DEFAULT){
+			socket.setTrafficClass(trafficClass);
+		}
+		if (keepAlive != null){
+			socket.setKeepAlive(keepAlive);
+		}
+	}
+	
+	/**
+	 * Sets the receive buffer size to the given listening socket, so that the accepted sockets get it while connecting. 
+	 * This function should be called before the socket is bound.
+	 * @param server the listening socket to configure.
+	 * @throws SocketException in case the option could not be set.
+	 */
+	public void applyTo(ServerSocket server) throws SocketException {
+		if (receiveBufferSize != DEFAULT){
+			server.setReceiveBufferSize(receiveBufferSize);
+		}
+	}
+	
+	/**
+	 * Returns the actual options of the given connected sockets. 
+	 * The send buffer size, the traffic class and the keep alive are taken from the send socket, and the receive 
+	 * buffer size from the receive socket.
+	 * @param sendSocket the socket used to send messages.
+	 * @param receiveSocket the socket used to receive messages.
+	 * @param streamBufferSize the size of the stream buffers of the channel.
+	 * @return the effective options.
+	 * @throws SocketException in case one of the options could not be read.
+	 */
+	static TransportOptions getEffectiveOptions(Socket sendSocket, Socket receiveSocket, int streamBufferSize) throws SocketException {
+		TransportOptions effective = new TransportOptions();
+		effective.sendBufferSize = sendSocket.getSendBufferSize();
+		effective.receiveBufferSize = receiveSocket.getReceiveBufferSize();
+		effective.trafficClass = sendSocket.getTrafficClass();
+		effective.keepAlive = sendSocket.getKeepAlive();
+		effective.streamBufferSize = streamBufferSize;
+		return effective;
+	}
+	
+	@Override
+	public String toString() {
+		return "TransportOptions [sendBufferSize=" + toString(sendBufferSize) + ", receiveBufferSize=" + toString(receiveBufferSize) 
+				+ ", trafficClass=" + toString(trafficClass) + ", keepAlive=" + (keepAlive == null ? "default" : keepAlive) 
+				+ ", streamBufferSize=" + streamBufferSize + "]";
+	}
+	
+	private static String toString(int option){
+		return option == DEFAULT ? "default" : Integer.toString(option);
+	}
+}
@@ -1,12 +1,18 @@
 package edu.biu.scapi.comm.twoPartyComm;
 
 import java.net.InetSocketAddress;
+import java.net.SocketException;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.logging.Level;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
 import javax.net.ssl.SSLSocketFactory;
 
 import edu.biu.scapi.comm.Channel;
@@ -16,6 +22,9 @@ import edu.biu.scapi.generals.Logging;
  * This class manage the socket channels in both two party and multiparty communications. <P>
  * The class does the creation of the channels and the connect step during the communication setup. <p>
  * 
+ * Channels that are connected by {@link #connectConcurrently(PlainTCPSocketChannel[])} send their index to the other party, 
+ * which is not compatible with the listeners of former versions. See {@link SocketCommunicationSetup} for details.<p>
+ * 
  * Although it is declared "public" it is not for public usage and we recommend not to use it. 
  * In order to setup a communication use one of the communication setup classes.
  * 
@@ -24,12 +33,22 @@ import edu.biu.scapi.generals.Logging;
  */
 public class TwoPartySocketConnector {
 	
+	private static final int MAX_CONNECTING_THREADS = 16;	//The maximal number of channels that connect at the same time.
+	private static final long MIN_BACKOFF = 10;				//The time to wait after the first failed connection attempt, in milliseconds.
+	private static final long MAX_BACKOFF = 200;			//The maximal time to wait between two connection attempts, in milliseconds.
+	private static final long VERIFY_INTERVAL = 10;			//The time between two checks of the channels' state, in milliseconds.
+	
 	private SocketPartyData me;						//The data of the current application
 	private SocketPartyData other;					//The data of the other application to communicate with.
-	private boolean bStopped = false;				//A flag that indicates if to keep on listening or stop.
+	private volatile boolean bStopped = false;		//A flag that indicates if to keep on listening or stop.
 	private boolean isSecure;						// A flag that indicates to use SSL or not.
+	private boolean isNio = false;					// A flag that indicates to use NIO channels or not.
 	private SSLSocketFactory factory;				//In case of SSL communication, the sockets are created via this factory.
+	private String[] cipherSuites = SSLSocketChannel.CBC_CIPHER_SUITES;	//In case of SSL communication, the enabled cipher suites.
+	private TransportOptions options = new TransportOptions();			//The TCP options of the created channels.
 	private Map<String, Channel> connectionsMap;
+	private Map<Channel, String> channelsNames;		//The name of each created channel.
+	private Map<String, Long> connectLatencies = new ConcurrentHashMap<String, Long>();	//The time it took to connect each channel.
 	
 	
 	/**
@@ -59,6 +78,45 @@ public class TwoPartySocketConnector {
 		this.factory = factory;
 	}
 	
+	/**
+	 * Sets the connector to create {@link NIOSocketChannel}s instead of {@link PlainTCPSocketChannel}s.<p>
+	 * NIO channels are plain channels, thus this function should not be called in case of secure channels.
+	 */
+	public void enableNio(){
+		if (isSecure){
+			throw new IllegalStateException("NIO channels can not be used for secure communication");
+		}
+		isNio = true;
+	}
+	
+	/**
+	 * Sets the cipher suites that the created SSL channels enable.<p>
+	 * This function should be called before the channels are created.
+	 * @param cipherSuites the names of the cipher suites.
+	 */
+	public void setCipherSuites(String[] cipherSuites){
+		if (!isSecure){
+			throw new IllegalStateException("cipher suites can be set only for secure communication");
+		}
+		this.cipherSuites = cipherSuites;
+	}
+	
+	/**
+	 * Sets the TCP options of the created channels.<p>
+	 * This function should be called before the channels are created.
+	 * @param options the options to set.
+	 */
+	public void setTransportOptions(TransportOptions options){
+		this.options = options;
+	}
+	
+	/**
+	 * Returns the TCP options of the created channels.
+	 */
+	public TransportOptions getTransportOptions(){
+		return options;
+	}
+	
 	/**
 	 * Creates the channels and give them the names in connectionsIds array.
 	 * @param connectionsIds Array of channels names.
@@ -68,6 +126,7 @@ public class TwoPartySocketConnector {
 	public PlainTCPSocketChannel[] createChannels(String[] connectionsIds, boolean checkIdentity) {
 		//Initiate the channels map.
 		connectionsMap = new HashMap<String,Channel>();
+		channelsNames = new HashMap<Channel, String>();
 		
 		//Create an InetSocketAddress of the other party.
 		InetSocketAddress inetSocketAdd = new InetSocketAddress(other.getIpAddress(), other.getPort());
@@ -80,14 +139,20 @@ public class TwoPartySocketConnector {
 		for (int i=0; i<size; i++){
 			//Create a channel.
 			if (isSecure){ //In case of secure channel, create an SSLSocketChannel.
-				channels[i] = new SSLSocketChannel(inetSocketAdd, factory, checkIdentity, me);
+				SSLSocketChannel channel = new SSLSocketChannel(inetSocketAdd, factory, checkIdentity, me);
+				channel.setCipherSuites(cipherSuites);
+				channels[i] = channel;
+			} else if (isNio){ //In case of NIO channel, create an NIOSocketChannel.
+				channels[i] = new NIOSocketChannel(inetSocketAdd, checkIdentity, me);
 			} else { //In case of plain channel, create an PlainTCPSocketChannel.
 				channels[i] = new PlainTCPSocketChannel(inetSocketAdd, checkIdentity, me);
 			}
+			channels[i].setTransportOptions(options);
 			//Set to NOT_INIT state.
 			channels[i].setState(PlainTCPSocketChannel.State.NOT_INIT);
 			// Add the channel to the map.
 			connectionsMap.put(connectionsIds[i], channels[i]);
+			channelsNames.put(channels[i], connectionsIds[i]);
 		}
 		
 		return channels;
@@ -95,28 +160,144 @@ public class TwoPartySocketConnector {
 
 	
 	/**
-	 * This function calls each channel to connect to the other party.
+	 * This function calls each channel to connect to the other party, one after the other.<p>
+	 * The channels connect in the order of the given array, which is the order in which the other party accepts them.
 	 * @param channels between me to the other party.
 	 */
 	public void connect(PlainTCPSocketChannel[] channels){
 
+		long start = System.nanoTime();
+		
 		//For each channel, call the connect function until the channel is actually connected.
 		for (int i=0; i<channels.length && !bStopped; i++){
+			connect(channels[i], start);
+		}
+	}
+	
+	/**
+	 * This function connects all the given channels to the other party at the same time, so that the time of the connect 
+	 * step does not grow linearly with the number of channels.<p>
+	 * Since the other party may accept the channels in any order, each channel sends its index after it is connected. 
+	 * The listener of the other party should read this index, as the {@link SocketListenerThread} does.<p>
+	 * SSL channels are connected one after the other using the {@link #connect(PlainTCPSocketChannel[])} function, since 
+	 * the SSL listener accepts the channels in the connecting order.
+	 * @param channels between me to the other party.
+	 */
+	public void connectConcurrently(final PlainTCPSocketChannel[] channels){
+		if (isSecure){
+			connect(channels);
+			return;
+		}
+		
+		final long start = System.nanoTime();
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(channels.length, MAX_CONNECTING_THREADS)));
+		for (int i=0; i<channels.length; i++){
+			channels[i].setIndex(i);
+			final PlainTCPSocketChannel channel = channels[i];
+			executor.execute(new Runnable(){
+				public void run() {
+					connect(channel, start);
+				}
+			});
+		}
+		
+		//Wait until all the channels are connected or the connecting has been stopped.
+		executor.shutdown();
+		try {
+			executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Logging.getLogger().log(Level.INFO, e.toString());
+			executor.shutdownNow();
+		}
+	}
+	
+	/**
+	 * Calls the connect function of the given channel until the channel is actually connected.<p>
+	 * In case the other party does not listen yet, the time between two attempts grows exponentially up to a bound, 
+	 * so that the connecting does not overload the machine but still succeeds soon after the other party is up.
+	 * @param channel the channel to connect.
+	 * @param start the time the connect step began, used to measure the connect latency.
+	 */
+	private void connect(PlainTCPSocketChannel channel, long start){
+		long backoff = MIN_BACKOFF;
+		
+		//while connection has not been stopped by owner and connection has failed.
+		while(!channel.isSendConnected() && !bStopped){
 			
-			//while connection has not been stopped by owner and connection has failed.
-			while(!channels[i].isSendConnected() && !bStopped){
-				
-				//Set the state to connecting.
-				channels[i].setState(PlainTCPSocketChannel.State.CONNECTING);
-				Logging.getLogger().log(Level.INFO, "state: connecting " + channels[i].toString());
-				
-				//Try to connect.
-				channels[i].connect();
-				
+			//Set the state to connecting.
+			channel.setState(PlainTCPSocketChannel.State.CONNECTING);
+			Logging.getLogger().log(Level.INFO, "state: connecting " + channel.toString());
+			
+			//Try to connect. If failed, wait before the next attempt.
+			if (!channel.connect() && !bStopped){
+				try {
+					Thread.sleep(backoff);
+				} catch (InterruptedException e) {
+					Logging.getLogger().log(Level.INFO, e.toString());
+				}
+				backoff = Math.min(2 * backoff, MAX_BACKOFF);
+			}
+		}
+		
+		if (channel.isSendConnected()){
+			long latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+			String name = channelsNames.get(channel);
+			if (name != null){
+				connectLatencies.put(name, latency);
+			}
+			Logging.getLogger().log(Level.INFO, "channel " + name + " connected after " + latency + " ms");
+		}
+	}
+	
+	/**
+	 * Returns the time it took to connect each channel, in milliseconds, measured from the beginning of the connect step 
+	 * until the channel's send socket was connected.<p>
+	 * The returned map is filled by the connect functions and is not reset between calls.
+	 * @return a map from the name of each channel to its connect latency.
+	 */
+	public Map<String, Long> getConnectLatencies(){
+		return connectLatencies;
+	}
+	
+	/**
+	 * Returns the time it took to perform the SSL handshake of each connected channel, in milliseconds.<p>
+	 * In case of plain channels, the returned map is empty.
+	 * @return a map from the name of each channel to its handshake time.
+	 */
+	public Map<String, Long> getHandshakeTimes(){
+		Map<String, Long> times = new HashMap<String, Long>();
+		if (channelsNames != null){
+			for (Map.Entry<Channel, String> entry : channelsNames.entrySet()){
+				if (entry.getKey() instanceof SSLSocketChannel){
+					long time = ((SSLSocketChannel) entry.getKey()).getHandshakeTime();
+					if (time >= 0){
+						times.put(entry.getValue(), time);
+					}
+				}
+			}
+		}
+		return times;
+	}
+	
+	/**
+	 * Returns the actual TCP options of each connected channel, as reported by the operating system.
+	 * @return a map from the name of each channel to its effective options.
+	 */
+	public Map<String, TransportOptions> getEffectiveOptions(){
+		Map<String, TransportOptions> effective = new HashMap<String, TransportOptions>();
+		if (channelsNames != null){
+			for (Map.Entry<Channel, String> entry : channelsNames.entrySet()){
+				try {
+					TransportOptions channelOptions = ((PlainTCPSocketChannel) entry.getKey()).getEffectiveOptions();
+					if (channelOptions != null){
+						effective.put(entry.getValue(), channelOptions);
+					}
+				} catch (SocketException e) {
+					Logging.getLogger().log(Level.WARNING, e.toString());
+				}
 			}
-				
-			Logging.getLogger().log(Level.INFO, "End of securing thread run" + channels[i].toString());
 		}
+		return effective;
 	}
 	
 	/**
@@ -165,7 +346,7 @@ public class TwoPartySocketConnector {
 		//Wait until the thread has been stopped or all the channels are connected.
 		while(!bStopped && !areAllConnected()){
 			try {
-				Thread.sleep(500);
+				Thread.sleep(VERIFY_INTERVAL);
 			} catch (InterruptedException e) {
 
 				Logging.getLogger().log(Level.FINEST, e.toString());
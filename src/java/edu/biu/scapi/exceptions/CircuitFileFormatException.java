@@ -34,4 +34,14 @@ public class CircuitFileFormatException extends Exception implements
    */
   private static final long serialVersionUID = 1L;
 
+  public CircuitFileFormatException() {
+  }
+
+  /**
+   * @param message describes the problem in the circuit file, for example its position.
+   */
+  public CircuitFileFormatException(String message) {
+    super(message);
+  }
+
 }
@@ -0,0 +1,67 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+
+package edu.biu.scapi.interactiveMidProtocols.ot;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import edu.biu.scapi.comm.codec.GroupElementCodec;
+import edu.biu.scapi.comm.codec.MessageCodec;
+
+/**
+ * Codec for {@link OTRGroupElementPairMsg}. The message is written as the encodings of its two group elements.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+public class OTRGroupElementPairMsgCodec implements MessageCodec<OTRGroupElementPairMsg> {
+
+	private GroupElementCodec elementCodec;
+	
+	/**
+	 * @param elementCodec codec of the elements of the Dlog group used by the OT protocol.
+	 */
+	public OTRGroupElementPairMsgCodec(GroupElementCodec elementCodec){
+		this.elementCodec = elementCodec;
+	}
+	
+	@Override
+	public Class<OTRGroupElementPairMsg> getMessageClass() {
+		return OTRGroupElementPairMsg.class;
+	}
+
+	@Override
+	public void encode(OTRGroupElementPairMsg msg, DataOutput out) throws IOException {
+		elementCodec.encode(msg.getFirstGE(), out);
+		elementCodec.encode(msg.getSecondGE(), out);
+	}
+
+	@Override
+	public OTRGroupElementPairMsg decode(DataInput in) throws IOException {
+		return new OTRGroupElementPairMsg(elementCodec.decode(in), elementCodec.decode(in));
+	}
+}
@@ -0,0 +1,83 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+
+package edu.biu.scapi.interactiveMidProtocols.sigmaProtocol.utility;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import edu.biu.scapi.comm.codec.Codecs;
+import edu.biu.scapi.comm.codec.MessageCodec;
+import edu.biu.scapi.comm.codec.MessageCodecRegistry;
+
+/**
+ * Codec for {@link SigmaMultipleMsg}. The message is written as the number of inner messages followed by the inner 
+ * messages, each encoded by the registry according to its type.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+public class SigmaMultipleMsgCodec implements MessageCodec<SigmaMultipleMsg> {
+
+	private MessageCodecRegistry registry;
+	
+	/**
+	 * @param registry the registry used to encode the inner messages.
+	 */
+	public SigmaMultipleMsgCodec(MessageCodecRegistry registry){
+		this.registry = registry;
+	}
+	
+	@Override
+	public Class<SigmaMultipleMsg> getMessageClass() {
+		return SigmaMultipleMsg.class;
+	}
+
+	@Override
+	public void encode(SigmaMultipleMsg msg, DataOutput out) throws IOException {
+		ArrayList<SigmaProtocolMsg> messages = msg.getMessages();
+		int size = messages.size();
+		Codecs.writeVarInt(out, size);
+		for (int i=0; i<size; i++){
+			registry.write(messages.get(i), out);
+		}
+	}
+
+	@Override
+	public SigmaMultipleMsg decode(DataInput in) throws IOException {
+		int size = Codecs.readVarInt(in);
+		ArrayList<SigmaProtocolMsg> messages = new ArrayList<SigmaProtocolMsg>(Codecs.initialCapacity(size));
+		try {
+			for (int i=0; i<size; i++){
+				messages.add((SigmaProtocolMsg) registry.read(in));
+			}
+		} catch (ClassNotFoundException e) {
+			throw new IOException(e);
+		}
+		return new SigmaMultipleMsg(messages);
+	}
+}
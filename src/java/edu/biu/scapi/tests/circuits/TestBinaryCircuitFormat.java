@@ -0,0 +1,67 @@
+package edu.biu.scapi.tests.circuits;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.Writer;
+import java.util.Scanner;
+
+import org.junit.Test;
+
+import edu.biu.scapi.circuits.circuit.BinaryCircuitFormat;
+import edu.biu.scapi.circuits.circuit.BooleanCircuit;
+import edu.biu.scapi.exceptions.CircuitFileFormatException;
+
+public class TestBinaryCircuitFormat {
+
+	//Two parties with one input each. Gate 0 is AND, gate 1 is NOT with two outputs and gate 2 has three inputs.
+	private static final String CIRCUIT = 
+			"3 2\n" +
+			"1 1 0\n" +
+			"2 1 1\n" +
+			"3 4 5 6\n" +
+			"2 1 0 1 2 0001\n" +
+			"1 2 2 3 4 10   # a comment\n" +
+			"3 1 0 1 3 5 01101001\n" +
+			"1 2 3 4 5 6\n";
+	
+	private static File createTextFile(String content) throws Exception {
+		File file = File.createTempFile("circuit", ".txt");
+		file.deleteOnExit();
+		Writer writer = new FileWriter(file);
+		writer.write(content);
+		writer.close();
+		return file;
+	}
+	
+	@Test
+	public void TestParserMatchesScanner() throws Exception {
+		File file = createTextFile(CIRCUIT.replace("   # a comment", ""));
+		assertEquals(new BooleanCircuit(new Scanner(file)), new BooleanCircuit(file));
+		
+		//Comments are skipped by the parser.
+		assertEquals(new BooleanCircuit(file), new BooleanCircuit(createTextFile(CIRCUIT)));
+	}
+	
+	@Test
+	public void TestRoundTrip() throws Exception {
+		File textFile = createTextFile(CIRCUIT);
+		BooleanCircuit circuit = new BooleanCircuit(textFile);
+		
+		File binaryFile = BinaryCircuitFormat.getBinaryFile(textFile);
+		binaryFile.deleteOnExit();
+		assertFalse(binaryFile.exists());
+		
+		//The first load writes the binary copy and the second one reads it.
+		assertEquals(circuit, BinaryCircuitFormat.load(textFile));
+		assertTrue(binaryFile.exists());
+		assertEquals(circuit, BinaryCircuitFormat.load(textFile));
+		assertEquals(circuit, BinaryCircuitFormat.read(binaryFile));
+	}
+	
+	@Test(expected = CircuitFileFormatException.class)
+	public void TestInvalidFile() throws Exception {
+		new BooleanCircuit(createTextFile("3 2\n1 1 0\n2 1 x\n"));
+	}
+}
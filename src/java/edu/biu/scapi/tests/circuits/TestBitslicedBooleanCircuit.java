@@ -0,0 +1,88 @@
+package edu.biu.scapi.tests.circuits;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import edu.biu.scapi.circuits.circuit.BitslicedBooleanCircuit;
+import edu.biu.scapi.circuits.circuit.BooleanCircuit;
+import edu.biu.scapi.circuits.circuit.Gate;
+import edu.biu.scapi.circuits.circuit.NOTGate;
+import edu.biu.scapi.circuits.circuit.Wire;
+
+public class TestBitslicedBooleanCircuit {
+
+	private static final int INPUTS = 6;
+	
+	/**
+	 * Creates a one party circuit with a gate for each of the 16 two-input truth tables, followed by a NOT gate with fan-out.
+	 * Every gate output is an output of the circuit.
+	 */
+	private static BooleanCircuit createCircuit(){
+		Random random = new Random(1);
+		Gate[] gates = new Gate[17];
+		int[] outputs = new int[17];
+		for (int t = 0; t < 16; t++){
+			BitSet truthTable = new BitSet();
+			for (int i = 0; i < 4; i++){
+				if ((t & (1 << i)) != 0){
+					truthTable.set(i);
+				}
+			}
+			//Each gate gets two earlier wires as inputs.
+			int wire = INPUTS + t;
+			gates[t] = new Gate(t, truthTable, new int[]{random.nextInt(wire), random.nextInt(wire)}, new int[]{wire});
+			outputs[t] = wire;
+		}
+		gates[16] = new NOTGate(16, INPUTS + 15, new int[]{INPUTS + 16, INPUTS + 17});
+		outputs[16] = INPUTS + 17;
+		
+		ArrayList<Integer> inputWires = new ArrayList<Integer>();
+		for (int i = 0; i < INPUTS; i++){
+			inputWires.add(i);
+		}
+		ArrayList<ArrayList<Integer>> inputs = new ArrayList<ArrayList<Integer>>();
+		inputs.add(inputWires);
+		return new BooleanCircuit(gates, outputs, inputs);
+	}
+	
+	@Test
+	public void TestCompute() throws Exception {
+		BooleanCircuit circuit = createCircuit();
+		BitslicedBooleanCircuit bitsliced = new BitslicedBooleanCircuit(circuit, 2);
+		assertEquals(128, bitsliced.getBatchSize());
+		
+		//Evaluate all the inputs twice, so both lanes are used.
+		byte[][] inputs = new byte[2 << INPUTS][INPUTS];
+		for (int e = 0; e < inputs.length; e++){
+			for (int i = 0; i < INPUTS; i++){
+				inputs[e][i] = (byte) ((e >> i) & 1);
+			}
+		}
+		byte[][] outputs = bitsliced.compute(inputs);
+		
+		int[] outputWires = circuit.getOutputWireIndices();
+		for (int e = 0; e < inputs.length; e++){
+			Map<Integer, Wire> input = new HashMap<Integer, Wire>();
+			for (int i = 0; i < INPUTS; i++){
+				input.put(i, new Wire(inputs[e][i]));
+			}
+			circuit.setInputs(input, 1);
+			Map<Integer, Wire> expected = circuit.compute();
+			for (int i = 0; i < outputWires.length; i++){
+				assertEquals(expected.get(outputWires[i]).getValue(), outputs[e][i]);
+			}
+		}
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void TestTooManyEvaluations() {
+		new BitslicedBooleanCircuit(createCircuit()).compute(new byte[65][INPUTS]);
+	}
+}
@@ -0,0 +1,161 @@
+package edu.biu.scapi.tests.circuits;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import edu.biu.scapi.circuits.circuit.ANDGate;
+import edu.biu.scapi.circuits.circuit.BooleanCircuit;
+import edu.biu.scapi.circuits.circuit.CircuitLevels;
+import edu.biu.scapi.circuits.circuit.CompiledBooleanCircuit;
+import edu.biu.scapi.circuits.circuit.Gate;
+import edu.biu.scapi.circuits.circuit.LevelScheduler;
+import edu.biu.scapi.circuits.circuit.Wire;
+import edu.biu.scapi.circuits.circuit.XORGate;
+import edu.biu.scapi.circuits.encryption.AESFixedKeyMultiKeyEncryption;
+import edu.biu.scapi.circuits.encryption.MultiKeyEncryptionScheme;
+import edu.biu.scapi.circuits.encryption.ThreadLocalMultiKeyEncryption;
+import edu.biu.scapi.circuits.garbledCircuit.CircuitCreationValues;
+import edu.biu.scapi.circuits.garbledCircuit.FreeXORGarblingParameters;
+import edu.biu.scapi.circuits.garbledCircuit.GarbledBooleanCircuitImp;
+import edu.biu.scapi.circuits.garbledCircuit.GarblingParameters;
+import edu.biu.scapi.primitives.prf.bc.BcAES;
+
+public class TestCircuitLevels {
+
+	/**
+	 * Creates a circuit of two parties that computes the AND of each pair of bits of the parties' inputs (level 0), 
+	 * XORs neighboring pairs (level 1) and ANDs the results to one bit (levels 2 and up).
+	 * The input wires of party 1 are 0 ... size-1 and the input wires of party 2 are size ... 2*size-1.
+	 */
+	private static BooleanCircuit createCircuit(int size){
+		ArrayList<Gate> gates = new ArrayList<Gate>();
+		int wire = 2 * size;
+		int[] layer = new int[size];
+		for (int i = 0; i < size; i++){
+			gates.add(new ANDGate(gates.size(), new int[]{i, size + i}, new int[]{wire}));
+			layer[i] = wire++;
+		}
+		int[] next = new int[size / 2];
+		for (int i = 0; i < size / 2; i++){
+			gates.add(new XORGate(gates.size(), new int[]{layer[2 * i], layer[2 * i + 1]}, new int[]{wire}));
+			next[i] = wire++;
+		}
+		int result = next[0];
+		for (int i = 1; i < next.length; i++){
+			gates.add(new ANDGate(gates.size(), new int[]{result, next[i]}, new int[]{wire}));
+			result = wire++;
+		}
+		
+		ArrayList<ArrayList<Integer>> inputs = new ArrayList<ArrayList<Integer>>();
+		for (int party = 0; party < 2; party++){
+			ArrayList<Integer> wires = new ArrayList<Integer>();
+			for (int i = 0; i < size; i++){
+				wires.add(party * size + i);
+			}
+			inputs.add(wires);
+		}
+		return new BooleanCircuit(gates.toArray(new Gate[gates.size()]), new int[]{result}, inputs);
+	}
+	
+	@Test
+	public void TestLevels() {
+		CircuitLevels levels = new CircuitLevels(createCircuit(8));
+		
+		assertEquals(8 + 4 + 3, levels.getNumberOfGates());
+		assertEquals(5, levels.getNumberOfLevels());
+		assertArrayEquals(new int[]{8, 4, 1, 1, 1}, levels.getWidths());
+		assertEquals(8, levels.getMaxWidth());
+		assertArrayEquals(new int[]{8, 9, 10, 11}, levels.getGates(1));
+		assertEquals(4, levels.getLevel(14));
+		assertEquals(1, levels.getNumberOfComponents());
+		
+		//Without the last gates, each XOR gate and its two AND gates are a separate component.
+		Gate[] gates = createCircuit(8).getGates();
+		Gate[] withoutLastGates = new Gate[12];
+		System.arraycopy(gates, 0, withoutLastGates, 0, 12);
+		levels = new CircuitLevels(withoutLastGates);
+		assertEquals(4, levels.getNumberOfComponents());
+		assertArrayEquals(new int[]{2, 3, 9}, levels.getComponentGates(1));
+	}
+	
+	@Test
+	public void TestParallelEvaluation() {
+		BooleanCircuit circuit = createCircuit(1024);
+		CompiledBooleanCircuit compiled = circuit.getCompiledCircuit();
+		LevelScheduler scheduler = new LevelScheduler(new CircuitLevels(circuit), new ForkJoinPool(4), 16);
+		
+		byte[] expected = compiled.createWireVector();
+		byte[] actual = compiled.createWireVector();
+		Random random = new Random();
+		for (int i = 0; i < 2 * 1024; i++){
+			expected[i] = actual[i] = (byte) random.nextInt(2);
+		}
+		compiled.evaluate(expected);
+		compiled.evaluate(actual, scheduler);
+		assertArrayEquals(expected, actual);
+	}
+	
+	@Test
+	public void TestParallelGarbling() throws Exception {
+		BooleanCircuit circuit = createCircuit(64);
+		MultiKeyEncryptionScheme mes = new ThreadLocalMultiKeyEncryption(new ThreadLocalMultiKeyEncryption.Factory() {
+			@Override
+			public MultiKeyEncryptionScheme create() {
+				return new AESFixedKeyMultiKeyEncryption(new BcAES());
+			}
+		});
+		GarbledBooleanCircuitImp garbled = new GarbledBooleanCircuitImp(new FreeXORGarblingParameters(circuit, mes, false));
+		garbled.setScheduler(new LevelScheduler(new CircuitLevels(circuit), new ForkJoinPool(4), 4));
+		CircuitCreationValues values = garbled.garble();
+		assertTrue(garbled.verify(values.getAllInputWireValues()));
+		
+		//All the inputs are 1, so the AND of the XORs of neighboring pairs is 0.
+		Map<Integer, Byte> ungarbledInput = new HashMap<Integer, Byte>();
+		for (int party = 1; party <= 2; party++){
+			Map<Integer, Wire> input = new HashMap<Integer, Wire>();
+			for (int w : circuit.getInputWireIndices(party)){
+				ungarbledInput.put(w, (byte) 1);
+				input.put(w, new Wire((byte) 1));
+			}
+			circuit.setInputs(input, party);
+		}
+		garbled.setGarbledInputFromUngarbledInput(ungarbledInput, values.getAllInputWireValues());
+		int output = circuit.getOutputWireIndices()[0];
+		assertEquals(circuit.compute().get(output).getValue(), garbled.translate(garbled.compute()).get(output).getValue());
+	}
+	
+	@Test
+	public void TestSchedulerRequiresParallelGarbling() throws Exception {
+		BooleanCircuit circuit = createCircuit(8);
+		LevelScheduler scheduler = new LevelScheduler(new CircuitLevels(circuit), new ForkJoinPool(2), 4);
+		MultiKeyEncryptionScheme threadLocal = new ThreadLocalMultiKeyEncryption(new ThreadLocalMultiKeyEncryption.Factory() {
+			@Override
+			public MultiKeyEncryptionScheme create() {
+				return new AESFixedKeyMultiKeyEncryption(new BcAES());
+			}
+		});
+		GarblingParameters[] rejected = {
+				//The encryption scheme is shared by the threads.
+				new FreeXORGarblingParameters(circuit, new AESFixedKeyMultiKeyEncryption(new BcAES()), false),
+				//The gates share a key derivation function.
+				new FreeXORGarblingParameters(circuit, threadLocal, true),
+		};
+		for (GarblingParameters parameters : rejected){
+			GarbledBooleanCircuitImp garbled = new GarbledBooleanCircuitImp(parameters);
+			try {
+				garbled.setScheduler(scheduler);
+				fail("a scheduler was set to a circuit that cannot be garbled in parallel");
+			} catch (IllegalStateException e) {}
+			//Removing the scheduler is always allowed.
+			garbled.setScheduler(null);
+		}
+		new GarbledBooleanCircuitImp(new FreeXORGarblingParameters(circuit, threadLocal, false)).setScheduler(scheduler);
+	}
+}
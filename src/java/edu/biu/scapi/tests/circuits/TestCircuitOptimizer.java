@@ -0,0 +1,130 @@
+package edu.biu.scapi.tests.circuits;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import edu.biu.scapi.circuits.circuit.ANDGate;
+import edu.biu.scapi.circuits.circuit.BooleanCircuit;
+import edu.biu.scapi.circuits.circuit.CircuitOptimizer;
+import edu.biu.scapi.circuits.circuit.CompiledBooleanCircuit;
+import edu.biu.scapi.circuits.circuit.Gate;
+import edu.biu.scapi.circuits.circuit.NOTGate;
+import edu.biu.scapi.circuits.circuit.ORGate;
+import edu.biu.scapi.circuits.circuit.XORGate;
+
+public class TestCircuitOptimizer {
+
+	/**
+	 * Creates a circuit of one party whose input wires are 0 ... numberOfInputs-1.
+	 */
+	private static BooleanCircuit createCircuit(Gate[] gates, int[] outputs, int numberOfInputs){
+		ArrayList<Integer> wires = new ArrayList<Integer>();
+		for (int i = 0; i < numberOfInputs; i++){
+			wires.add(i);
+		}
+		ArrayList<ArrayList<Integer>> inputs = new ArrayList<ArrayList<Integer>>();
+		inputs.add(wires);
+		return new BooleanCircuit(gates, outputs, inputs);
+	}
+	
+	/**
+	 * Checks that both circuits compute the same outputs on all the inputs.
+	 */
+	private static void assertEquivalent(BooleanCircuit expected, BooleanCircuit actual, int numberOfInputs){
+		assertArrayEquals(expected.getOutputWireIndices(), actual.getOutputWireIndices());
+		CompiledBooleanCircuit expectedCompiled = expected.getCompiledCircuit();
+		CompiledBooleanCircuit actualCompiled = actual.getCompiledCircuit();
+		byte[] expectedWires = expectedCompiled.createWireVector();
+		byte[] actualWires = actualCompiled.createWireVector();
+		for (int input = 0; input < 1 << numberOfInputs; input++){
+			for (int i = 0; i < numberOfInputs; i++){
+				expectedWires[i] = actualWires[i] = (byte) ((input >> i) & 1);
+			}
+			expectedCompiled.evaluate(expectedWires);
+			actualCompiled.evaluate(actualWires);
+			for (int output : expected.getOutputWireIndices()){
+				assertEquals("input " + input + ", output " + output, expectedWires[output], actualWires[output]);
+			}
+		}
+	}
+	
+	@Test
+	public void TestConstantsAndDeadGates() throws Exception {
+		//wire 3 = x XOR x = 0, wire 4 = NOT 0 = 1, wire 5 = y AND 1 = y, wire 6 = z OR 0 = z and wire 7 is not used.
+		Gate[] gates = {
+			new XORGate(0, new int[]{0, 0}, new int[]{3}),
+			new NOTGate(1, 3, new int[]{4}),
+			new ANDGate(2, new int[]{1, 4}, new int[]{5}),
+			new ORGate(3, new int[]{2, 3}, new int[]{6}),
+			new ANDGate(4, new int[]{0, 1}, new int[]{7}),
+			new XORGate(5, new int[]{5, 6}, new int[]{8})
+		};
+		BooleanCircuit circuit = createCircuit(gates, new int[]{8}, 3);
+		CircuitOptimizer optimizer = new CircuitOptimizer();
+		BooleanCircuit optimized = optimizer.optimize(circuit);
+		
+		assertEquivalent(circuit, optimized, 3);
+		assertEquals(1, optimized.getGates().length);
+		assertArrayEquals(new int[]{1, 2}, optimized.getGates()[0].getInputWireIndices());
+		assertEquals(3, optimizer.getStatisticsBefore().getNumberOfANDGates());
+		assertEquals(0, optimizer.getStatisticsAfter().getNumberOfANDGates());
+		assertEquals(1, optimizer.getStatisticsAfter().getNumberOfXORGates());
+	}
+	
+	@Test
+	public void TestNOTGatesAndOutputs() throws Exception {
+		//wire 2 = NOT x, wire 3 = NOT y, wire 4 = NOT x AND NOT y. Wires 2 and 4 are outputs.
+		Gate[] gates = {
+			new NOTGate(0, 0, new int[]{2}),
+			new NOTGate(1, 1, new int[]{3}),
+			new ANDGate(2, new int[]{2, 3}, new int[]{4})
+		};
+		BooleanCircuit circuit = createCircuit(gates, new int[]{2, 4}, 2);
+		BooleanCircuit optimized = new CircuitOptimizer().optimize(circuit);
+		
+		assertEquivalent(circuit, optimized, 2);
+		//The NOT of y is merged into the AND gate, but NOT x is still needed as an output.
+		assertEquals(2, optimized.getGates().length);
+	}
+	
+	@Test
+	public void TestANDToXOR() throws Exception {
+		//A multiplexer: (s AND a) OR (NOT s AND b), where s = wire 0, a = wire 1 and b = wire 2.
+		Gate[] gates = {
+			new ANDGate(0, new int[]{0, 1}, new int[]{3}),
+			new NOTGate(1, 0, new int[]{4}),
+			new ANDGate(2, new int[]{4, 2}, new int[]{5}),
+			new ORGate(3, new int[]{3, 5}, new int[]{6})
+		};
+		BooleanCircuit circuit = createCircuit(gates, new int[]{6}, 3);
+		CircuitOptimizer optimizer = new CircuitOptimizer();
+		BooleanCircuit optimized = optimizer.optimize(circuit);
+		
+		assertEquivalent(circuit, optimized, 3);
+		assertEquals(3, optimizer.getStatisticsBefore().getNumberOfANDGates());
+		assertEquals(2, optimizer.getStatisticsAfter().getNumberOfANDGates());
+		assertEquals(1, optimizer.getStatisticsAfter().getNumberOfXORGates());
+	}
+	
+	@Test
+	public void TestFactorAND() throws Exception {
+		//(c AND a) XOR (c AND b) where c = wire 0, a = wire 1 and b = wire 2.
+		Gate[] gates = {
+			new ANDGate(0, new int[]{0, 1}, new int[]{3}),
+			new ANDGate(1, new int[]{2, 0}, new int[]{4}),
+			new XORGate(2, new int[]{3, 4}, new int[]{5})
+		};
+		BooleanCircuit circuit = createCircuit(gates, new int[]{5}, 3);
+		CircuitOptimizer optimizer = new CircuitOptimizer();
+		BooleanCircuit optimized = optimizer.optimize(circuit);
+		
+		assertEquivalent(circuit, optimized, 3);
+		assertEquals(1, optimizer.getStatisticsAfter().getNumberOfANDGates());
+		assertEquals(1, optimizer.getStatisticsAfter().getNumberOfXORGates());
+		assertTrue(Arrays.equals(new int[]{5}, optimized.getGates()[1].getOutputWireIndices()));
+	}
+}
@@ -0,0 +1,108 @@
+package edu.biu.scapi.tests.circuits;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import edu.biu.scapi.circuits.circuit.ANDGate;
+import edu.biu.scapi.circuits.circuit.BooleanCircuit;
+import edu.biu.scapi.circuits.circuit.CompiledBooleanCircuit;
+import edu.biu.scapi.circuits.circuit.Gate;
+import edu.biu.scapi.circuits.circuit.NOTGate;
+import edu.biu.scapi.circuits.circuit.ORGate;
+import edu.biu.scapi.circuits.circuit.Wire;
+import edu.biu.scapi.circuits.circuit.XORGate;
+
+public class TestCompiledBooleanCircuit {
+
+	/**
+	 * Creates a circuit of two parties with one input each (wires 0 and 1) that computes:
+	 * wire 5 = NOT(x AND y), wire 6 = (x XOR y) OR NOT(x AND y), wire 7 = NOT(y) OR x.
+	 */
+	private static BooleanCircuit createCircuit(){
+		BitSet notYOrX = new BitSet();
+		notYOrX.set(0);
+		notYOrX.set(2);
+		notYOrX.set(3);
+		Gate[] gates = {
+			new ANDGate(0, new int[]{0, 1}, new int[]{2}),
+			new XORGate(1, new int[]{0, 1}, new int[]{3}),
+			new NOTGate(2, 2, new int[]{4, 5}),
+			new ORGate(3, new int[]{3, 4}, new int[]{6}),
+			new Gate(4, notYOrX, new int[]{0, 1}, new int[]{7})
+		};
+		return new BooleanCircuit(gates, new int[]{5, 6, 7}, inputs(2));
+	}
+	
+	private static ArrayList<ArrayList<Integer>> inputs(int parties){
+		ArrayList<ArrayList<Integer>> inputs = new ArrayList<ArrayList<Integer>>();
+		for (int i = 0; i < parties; i++){
+			ArrayList<Integer> wires = new ArrayList<Integer>();
+			wires.add(i);
+			inputs.add(wires);
+		}
+		return inputs;
+	}
+	
+	private static void setInput(BooleanCircuit circuit, int party, int wire, int value) throws Exception {
+		Map<Integer, Wire> input = new HashMap<Integer, Wire>();
+		input.put(wire, new Wire((byte) value));
+		circuit.setInputs(input, party);
+	}
+	
+	@Test
+	public void TestCompute() throws Exception {
+		BooleanCircuit circuit = createCircuit();
+		for (int x = 0; x < 2; x++){
+			for (int y = 0; y < 2; y++){
+				setInput(circuit, 1, 0, x);
+				setInput(circuit, 2, 1, y);
+				Map<Integer, Wire> output = circuit.compute();
+				
+				int nand = 1 - (x & y);
+				assertEquals(nand, output.get(5).getValue());
+				assertEquals((x ^ y) | nand, output.get(6).getValue());
+				assertEquals((1 - y) | x, output.get(7).getValue());
+			}
+		}
+	}
+	
+	@Test
+	public void TestEvaluate() throws Exception {
+		CompiledBooleanCircuit compiled = createCircuit().getCompiledCircuit();
+		assertEquals(8, compiled.getNumberOfWires());
+		assertEquals(5, compiled.getNumberOfGates());
+		
+		byte[] wires = compiled.createWireVector();
+		byte[] output = new byte[3];
+		wires[0] = 1;
+		wires[1] = 1;
+		compiled.evaluate(wires, output);
+		assertArrayEquals(new byte[]{0, 0, 1}, output);
+		//The fan-out wires of the NOT gate get the same value.
+		assertEquals(wires[4], wires[5]);
+	}
+	
+	@Test
+	public void TestNotCompilable() throws Exception {
+		//A majority gate has three inputs, so the circuit is computed gate by gate.
+		BitSet majority = new BitSet();
+		majority.set(3);
+		majority.set(5);
+		majority.set(6);
+		majority.set(7);
+		Gate[] gates = {new Gate(0, majority, new int[]{0, 1, 2}, new int[]{3})};
+		assertFalse(CompiledBooleanCircuit.isCompilable(gates));
+		
+		BooleanCircuit circuit = new BooleanCircuit(gates, new int[]{3}, inputs(3));
+		setInput(circuit, 1, 0, 1);
+		setInput(circuit, 2, 1, 0);
+		setInput(circuit, 3, 2, 1);
+		assertEquals(1, circuit.compute().get(3).getValue());
+	}
+}
@@ -0,0 +1,107 @@
+package edu.biu.scapi.tests.comm;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import edu.biu.scapi.comm.Channel;
+import edu.biu.scapi.comm.PlainChannel;
+import edu.biu.scapi.comm.twoPartyComm.LoopbackCommunicationSetup;
+import edu.biu.scapi.comm.twoPartyComm.PartyData;
+import edu.biu.scapi.comm.twoPartyComm.SocketCommunicationSetup;
+import edu.biu.scapi.comm.twoPartyComm.SocketPartyData;
+import edu.biu.scapi.comm.twoPartyComm.TwoPartyCommunicationSetup;
+
+/**
+ * Creates pairs of connected channels for the tests of the channels and their decorators.<p>
+ *
+ * The parties get ephemeral ports, so tests do not collide with each other or with other processes.
+ * The second party connects in a background thread, and any failure of that thread is thrown from the calling thread.
+ */
+class ChannelPairs {
+
+	/**
+	 * Creates the communication setup of one party.
+	 */
+	interface SetupFactory {
+		TwoPartyCommunicationSetup create(PartyData me, PartyData other) throws Exception;
+	}
+
+	private static final long TIMEOUT = 10000;
+
+	/**
+	 * Returns two parties on the local host, with ports that are currently free.
+	 */
+	static SocketPartyData[] parties() throws IOException {
+		InetAddress localhost = InetAddress.getByName("127.0.0.1");
+		//Both sockets are bound at the same time, so the two ports are different.
+		ServerSocket first = new ServerSocket(0, 1, localhost);
+		ServerSocket second = new ServerSocket(0, 1, localhost);
+		try {
+			return new SocketPartyData[]{new SocketPartyData(localhost, first.getLocalPort()), new SocketPartyData(localhost, second.getLocalPort())};
+		} finally {
+			first.close();
+			second.close();
+		}
+	}
+
+	/**
+	 * Creates a pair of connected loopback channels.
+	 */
+	static PlainChannel[] loopback() throws Exception {
+		return connect(new SetupFactory(){
+			public TwoPartyCommunicationSetup create(PartyData me, PartyData other) throws Exception {
+				return new LoopbackCommunicationSetup(me, other);
+			}
+		});
+	}
+
+	/**
+	 * Creates a pair of connected socket channels.
+	 */
+	static PlainChannel[] sockets() throws Exception {
+		return connect(new SetupFactory(){
+			public TwoPartyCommunicationSetup create(PartyData me, PartyData other) throws Exception {
+				return new SocketCommunicationSetup(me, other);
+			}
+		});
+	}
+
+	/**
+	 * Creates a pair of channels that are connected by the setups of the given factory.
+	 * @return the channel of the first party and the channel of the second party.
+	 */
+	static PlainChannel[] connect(final SetupFactory factory) throws Exception {
+		final PartyData[] parties = parties();
+		final AtomicReference<Map<String, Channel>> result = new AtomicReference<Map<String, Channel>>();
+		final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+		Thread thread = new Thread(){
+			public void run(){
+				try {
+					result.set(factory.create(parties[1], parties[0]).prepareForCommunication(new String[]{"a"}, TIMEOUT));
+				} catch (Throwable e) {
+					error.set(e);
+				}
+			}
+		};
+		thread.start();
+		Map<String, Channel> mine;
+		try {
+			mine = factory.create(parties[0], parties[1]).prepareForCommunication(new String[]{"a"}, TIMEOUT);
+		} finally {
+			thread.join();
+		}
+
+		//Report the failure of the second party as the failure of the test.
+		Throwable e = error.get();
+		if (e instanceof Exception){
+			throw (Exception) e;
+		}
+		if (e != null){
+			throw (Error) e;
+		}
+		return new PlainChannel[]{(PlainChannel) mine.get("a"), (PlainChannel) result.get().get("a")};
+	}
+}
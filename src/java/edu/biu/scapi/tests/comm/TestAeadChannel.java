@@ -0,0 +1,117 @@
+package edu.biu.scapi.tests.comm;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.junit.Test;
+
+import edu.biu.scapi.comm.AeadChannel;
+import edu.biu.scapi.comm.PlainChannel;
+
+public class TestAeadChannel {
+
+	private static final SecretKey KEY = new SecretKeySpec(new byte[16], "AES");
+	
+	@Test
+	public void TestSendReceive() throws Exception {
+		PlainChannel[] plain = ChannelPairs.loopback();
+		AeadChannel first = new AeadChannel(plain[0], KEY, true);
+		AeadChannel second = new AeadChannel(plain[1], KEY, false);
+		
+		first.send("message");
+		first.sendBytes(new byte[]{1, 2, 3});
+		first.sendByteArrays(new byte[][]{{4}, {}, {5, 6}});
+		first.sendBytes(new byte[0]);
+		assertEquals("message", second.receive());
+		assertArrayEquals(new byte[]{1, 2, 3}, second.receiveBytes());
+		assertArrayEquals(new byte[][]{{4}, {}, {5, 6}}, second.receiveByteArrays());
+		assertArrayEquals(new byte[0], second.receiveBytes());
+		
+		second.send(new int[]{7, 8});
+		assertArrayEquals(new int[]{7, 8}, (int[]) first.receive());
+		
+		first.close();
+		second.close();
+	}
+	
+	@Test
+	public void TestWrongKey() throws Exception {
+		PlainChannel[] plain = ChannelPairs.loopback();
+		AeadChannel first = new AeadChannel(plain[0], KEY, true);
+		AeadChannel second = new AeadChannel(plain[1], new SecretKeySpec(new byte[32], "AES"), false);
+		
+		first.sendBytes(new byte[]{1, 2, 3});
+		try {
+			second.receiveBytes();
+			fail("a record sealed with a different key was opened");
+		} catch (IOException e) {}
+	}
+	
+	@Test
+	public void TestWrongType() throws Exception {
+		PlainChannel[] plain = ChannelPairs.loopback();
+		AeadChannel first = new AeadChannel(plain[0], KEY, true);
+		AeadChannel second = new AeadChannel(plain[1], KEY, false);
+		
+		first.sendBytes(new byte[]{1, 2, 3});
+		try {
+			second.receiveByteArrays();
+			fail("a bytes record was opened as arrays");
+		} catch (IOException e) {}
+		
+		//After a failure, the channel can not be used anymore.
+		first.sendBytes(new byte[]{1, 2, 3});
+		try {
+			second.receiveBytes();
+			fail("the channel was used after a failure");
+		} catch (IOException e) {}
+	}
+	
+	@Test
+	public void TestReflectedRecord() throws Exception {
+		PlainChannel[] plain = ChannelPairs.loopback();
+		AeadChannel first = new AeadChannel(plain[0], KEY, true);
+		
+		//The other party sends the record back as is.
+		first.sendBytes(new byte[]{1, 2, 3});
+		plain[1].sendBytes(plain[1].receiveBytes());
+		try {
+			first.receiveBytes();
+			fail("a reflected record was opened");
+		} catch (IOException e) {}
+	}
+	
+	@Test
+	public void TestSharedKey() throws Exception {
+		PlainChannel[] plain1 = ChannelPairs.loopback();
+		PlainChannel[] plain2 = ChannelPairs.loopback();
+		AeadChannel first1 = new AeadChannel(plain1[0], KEY, true);
+		AeadChannel first2 = new AeadChannel(plain2[0], KEY, true);
+		AeadChannel second2 = new AeadChannel(plain2[1], KEY, false);
+		
+		//Two channels with the same key and the same sequence numbers seal the same message differently.
+		first1.sendBytes(new byte[]{1, 2, 3});
+		first2.sendBytes(new byte[]{1, 2, 3});
+		byte[] record1 = plain1[1].receiveBytes();
+		byte[] record2 = plain2[1].receiveBytes();
+		//The ciphertext and the tag are at the end of the record.
+		int sealed = 3 + 16;
+		assertFalse(Arrays.equals(Arrays.copyOfRange(record1, record1.length - sealed, record1.length), 
+				Arrays.copyOfRange(record2, record2.length - sealed, record2.length)));
+		
+		//A record of one channel can not be spliced into another channel with the same key.
+		plain2[0].sendBytes(record2);
+		assertArrayEquals(new byte[]{1, 2, 3}, second2.receiveBytes());
+		first1.sendBytes(new byte[]{4, 5, 6});
+		plain2[0].sendBytes(plain1[1].receiveBytes());
+		try {
+			second2.receiveBytes();
+			fail("a record of another channel was opened");
+		} catch (IOException e) {}
+	}
+}
@@ -0,0 +1,150 @@
+package edu.biu.scapi.tests.comm;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import edu.biu.scapi.comm.AsyncChannel;
+import edu.biu.scapi.comm.PlainChannel;
+
+public class TestAsyncChannel {
+
+	@Test(timeout = 10000)
+	public void TestOrdering() throws Exception {
+		PlainChannel[] plain = ChannelPairs.loopback();
+		AsyncChannel async = new AsyncChannel(plain[0], 2);
+		
+		//More messages than the capacity of the queue, mixing all the sending functions.
+		List<Future<Void>> futures = new ArrayList<Future<Void>>();
+		for (int i=0; i<10; i++){
+			futures.add(async.sendAsync(i));
+			futures.add(async.sendBytesAsync(new byte[]{(byte) i}));
+		}
+		async.send("last");
+		async.sendByteArrays(new byte[][]{{1}, {2}});
+		futures.add(async.sendByteArraysAsync(new byte[][]{{3}}));
+		async.flush();
+		for (Future<Void> future : futures){
+			assertTrue(future.isDone());
+			future.get();
+		}
+		assertEquals(0, async.getPendingCount());
+		
+		for (int i=0; i<10; i++){
+			assertEquals(i, plain[1].receive());
+			assertArrayEquals(new byte[]{(byte) i}, plain[1].receiveBytes());
+		}
+		assertEquals("last", plain[1].receive());
+		assertArrayEquals(new byte[][]{{1}, {2}}, plain[1].receiveByteArrays());
+		assertArrayEquals(new byte[][]{{3}}, plain[1].receiveByteArrays());
+		async.close();
+	}
+	
+	@Test(timeout = 10000)
+	public void TestCloseSendsQueuedMessages() throws Exception {
+		PlainChannel[] plain = ChannelPairs.loopback();
+		AsyncChannel async = new AsyncChannel(plain[0]);
+		Future<Void> first = async.sendAsync("first");
+		Future<Void> second = async.sendBytesAsync(new byte[]{2});
+		async.close();
+		
+		first.get();
+		second.get();
+		assertTrue(async.isClosed());
+		assertEquals("first", plain[1].receive());
+		assertArrayEquals(new byte[]{2}, plain[1].receiveBytes());
+		
+		//Nothing can be sent after the channel was closed.
+		try {
+			async.sendAsync("after");
+			fail("a message was queued after close");
+		} catch (IOException e) {}
+		try {
+			async.flush();
+			fail("flush succeeded after close");
+		} catch (IOException e) {}
+		
+		//Closing again has no effect.
+		async.close();
+	}
+	
+	@Test(timeout = 20000)
+	public void TestConcurrentClose() throws Exception {
+		for (int round = 0; round < 20; round++){
+			PlainChannel[] plain = ChannelPairs.loopback();
+			final AsyncChannel async = new AsyncChannel(plain[0], 1);
+			final AtomicInteger sent = new AtomicInteger();
+			final AtomicInteger rejected = new AtomicInteger();
+			final List<Throwable> errors = new ArrayList<Throwable>();
+			
+			//The senders race with close. Every message should be either sent or rejected, and nothing should block.
+			Thread[] senders = new Thread[3];
+			for (int i=0; i<senders.length; i++){
+				senders[i] = new Thread(){
+					public void run(){
+						for (int j=0; j<50; j++){
+							try {
+								if (j % 3 == 0){
+									async.send(j);
+								} else if (j % 3 == 1){
+									async.sendAsync(j).get();
+								} else {
+									async.flush();
+									continue;
+								}
+								sent.incrementAndGet();
+							} catch (IOException e) {
+								rejected.incrementAndGet();
+							} catch (ExecutionException e) {
+								rejected.incrementAndGet();
+							} catch (Throwable e) {
+								synchronized (errors){
+									errors.add(e);
+								}
+							}
+						}
+					}
+				};
+				senders[i].start();
+			}
+			Thread.sleep(round % 3);
+			async.close();
+			for (Thread sender : senders){
+				sender.join();
+			}
+			assertTrue(errors.toString(), errors.isEmpty());
+			
+			//All the messages that were reported as sent can be received.
+			for (int i=0; i<sent.get(); i++){
+				plain[1].receive();
+			}
+		}
+	}
+	
+	@Test(timeout = 10000)
+	public void TestFailedSending() throws Exception {
+		PlainChannel[] plain = ChannelPairs.loopback();
+		AsyncChannel async = new AsyncChannel(plain[0]);
+		
+		//A message that can not be serialized fails, and so does every message after it.
+		Future<Void> failed = async.sendAsync(new Object[]{new Object()});
+		try {
+			failed.get();
+			fail("a message that can not be serialized was sent");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof IOException);
+		}
+		try {
+			async.send("after failure");
+			fail("a message was sent after a failure");
+		} catch (IOException e) {}
+		async.close();
+	}
+}
@@ -0,0 +1,179 @@
+package edu.biu.scapi.tests.comm;
+
+import static org.junit.Assert.*;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import edu.biu.scapi.comm.Channel;
+import edu.biu.scapi.comm.twoPartyComm.ChannelPool;
+import edu.biu.scapi.comm.twoPartyComm.LoopbackCommunicationSetup;
+import edu.biu.scapi.comm.twoPartyComm.PartyData;
+import edu.biu.scapi.comm.twoPartyComm.SocketPartyData;
+
+public class TestChannelPool {
+
+	private static PartyData party(int port) throws Exception {
+		return new SocketPartyData(InetAddress.getByName("127.0.0.1"), port);
+	}
+	
+	/**
+	 * Creates the pools of two parties that communicate with each other.
+	 */
+	private static ChannelPool[] pools(PartyData p1, PartyData p2) throws Exception {
+		ChannelPool first = new ChannelPool(5000);
+		first.addParty(p2, new LoopbackCommunicationSetup(p1, p2));
+		ChannelPool second = new ChannelPool(5000);
+		second.addParty(p1, new LoopbackCommunicationSetup(p2, p1));
+		return new ChannelPool[]{first, second};
+	}
+	
+	/**
+	 * Leases the given number of channels in both parties at the same time, as a protocol execution does.
+	 * @param firstOther the party that the first pool leases channels to.
+	 * @param secondOther the party that the second pool leases channels to.
+	 */
+	private static Channel[][] leaseBoth(final ChannelPool[] pools, PartyData firstOther, final PartyData secondOther, final int count) throws Exception {
+		final List<Channel[]> result = new ArrayList<Channel[]>();
+		final List<Exception> errors = new ArrayList<Exception>();
+		Thread thread = new Thread(){
+			public void run(){
+				try {
+					result.add(pools[1].lease(secondOther, count));
+				} catch (Exception e) {
+					errors.add(e);
+				}
+			}
+		};
+		thread.start();
+		Channel[] mine = pools[0].lease(firstOther, count);
+		thread.join();
+		assertTrue(errors.toString(), errors.isEmpty());
+		return new Channel[][]{mine, result.get(0)};
+	}
+	
+	/**
+	 * Leases channels that are already idle in both pools, so there is no need to run the parties at the same time.
+	 */
+	private static Channel[][] leaseIdle(ChannelPool[] pools, PartyData firstOther, PartyData secondOther, int count) throws Exception {
+		return new Channel[][]{pools[0].lease(firstOther, count), pools[1].lease(secondOther, count)};
+	}
+	
+	/**
+	 * Checks that the i-th channel of one party is connected to the i-th channel of the other party.
+	 */
+	private static void assertPaired(Channel[][] channels) throws Exception {
+		for (int i = 0; i < channels[0].length; i++){
+			channels[0][i].send(i);
+		}
+		for (int i = 0; i < channels[1].length; i++){
+			assertEquals(i, channels[1][i].receive());
+		}
+	}
+	
+	@Test
+	public void TestReuse() throws Exception {
+		PartyData p1 = party(9500);
+		PartyData p2 = party(9501);
+		ChannelPool[] pools = pools(p1, p2);
+		
+		Channel[][] first = leaseBoth(pools, p2, p1, 3);
+		assertPaired(first);
+		assertEquals(3, pools[0].getLeasedCount(p2));
+		assertEquals(0, pools[0].getIdleCount(p2));
+		pools[0].release(p2, first[0]);
+		pools[1].release(p1, first[1]);
+		assertEquals(0, pools[0].getLeasedCount(p2));
+		assertEquals(3, pools[0].getIdleCount(p2));
+		
+		//The idle channels are leased again, in the same order in both parties.
+		Channel[][] second = leaseIdle(pools, p2, p1, 3);
+		for (int i = 0; i < 3; i++){
+			assertSame(first[0][i], second[0][i]);
+			assertSame(first[1][i], second[1][i]);
+		}
+		assertPaired(second);
+		
+		//A lease of fewer channels takes the first ones by name, and a larger lease adds new channels.
+		pools[0].release(p2, second[0]);
+		pools[1].release(p1, second[1]);
+		Channel[][] third = leaseIdle(pools, p2, p1, 1);
+		assertSame(first[0][0], third[0][0]);
+		assertPaired(third);
+		Channel[][] fourth = leaseBoth(pools, p2, p1, 4);
+		assertPaired(fourth);
+		assertEquals(5, pools[0].getLeasedCount(p2));
+		
+		pools[0].close();
+		pools[1].close();
+		assertTrue(first[0][0].isClosed());
+		assertTrue(fourth[0][3].isClosed());
+	}
+	
+	@Test
+	public void TestPartiesAreDistinctKeys() throws Exception {
+		//The pool keys its channels by the parties, so different parties must not be equal.
+		assertEquals(party(9510), party(9510));
+		assertEquals(party(9510).hashCode(), party(9510).hashCode());
+		assertFalse(party(9510).equals(party(9511)));
+		assertFalse(party(9510).equals(new SocketPartyData(InetAddress.getByName("127.0.0.2"), 9510)));
+	}
+	
+	@Test
+	public void TestClosedChannelsAreRemoved() throws Exception {
+		PartyData p1 = party(9510);
+		PartyData p2 = party(9511);
+		ChannelPool[] pools = pools(p1, p2);
+		
+		Channel[][] leased = leaseBoth(pools, p2, p1, 3);
+		leased[0][1].close();
+		leased[1][1].close();
+		pools[0].release(p2, leased[0]);
+		pools[1].release(p1, leased[1]);
+		assertEquals(2, pools[0].getIdleCount(p2));
+		
+		//A channel that was closed while idle is not leased either.
+		leased[0][2].close();
+		leased[1][2].close();
+		Channel[][] again = leaseBoth(pools, p2, p1, 2);
+		for (int i = 0; i < 2; i++){
+			assertFalse(again[0][i].isClosed());
+			assertNotSame(leased[0][2], again[0][i]);
+		}
+		assertPaired(again);
+		pools[0].close();
+		pools[1].close();
+	}
+	
+	@Test
+	public void TestIllegalArguments() throws Exception {
+		PartyData p1 = party(9520);
+		PartyData p2 = party(9521);
+		ChannelPool[] pools = pools(p1, p2);
+		
+		try {
+			pools[0].lease(party(9522), 1);
+			fail("a channel was leased to an unknown party");
+		} catch (IllegalArgumentException e) {}
+		try {
+			pools[0].addParty(p2, new LoopbackCommunicationSetup(p1, p2));
+			fail("a party was added twice");
+		} catch (IllegalArgumentException e) {}
+		
+		Channel[][] leased = leaseBoth(pools, p2, p1, 1);
+		try {
+			pools[0].release(p2, leased[1]);
+			fail("a channel of another pool was released");
+		} catch (IllegalArgumentException e) {}
+		pools[0].release(p2, leased[0]);
+		try {
+			pools[0].release(p2, leased[0]);
+			fail("a channel was released twice");
+		} catch (IllegalArgumentException e) {}
+		pools[0].close();
+		pools[1].close();
+	}
+}
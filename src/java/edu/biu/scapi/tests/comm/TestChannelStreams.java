@@ -0,0 +1,143 @@
+package edu.biu.scapi.tests.comm;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.biu.scapi.comm.Channel;
+import edu.biu.scapi.comm.ChannelInputStream;
+import edu.biu.scapi.comm.ChannelOutputStream;
+import edu.biu.scapi.comm.twoPartyComm.LoopbackCommunicationSetup;
+import edu.biu.scapi.comm.twoPartyComm.PartyData;
+import edu.biu.scapi.comm.twoPartyComm.SocketPartyData;
+
+public class TestChannelStreams {
+
+	private Channel sender;
+	private Channel receiver;
+	
+	@Before
+	public void prepareChannels() throws Exception {
+		final PartyData p1 = new SocketPartyData(InetAddress.getByName("127.0.0.1"), 9020);
+		final PartyData p2 = new SocketPartyData(InetAddress.getByName("127.0.0.1"), 9021);
+		final List<Channel> other = new ArrayList<Channel>();
+		Thread thread = new Thread(){
+			public void run(){
+				try {
+					other.add(new LoopbackCommunicationSetup(p2, p1).prepareForCommunication(new String[]{"a"}, 5000).get("a"));
+				} catch (Exception e) {
+					fail(e.toString());
+				}
+			}
+		};
+		thread.start();
+		Map<String, Channel> mine = new LoopbackCommunicationSetup(p1, p2).prepareForCommunication(new String[]{"a"}, 5000);
+		thread.join();
+		sender = mine.get("a");
+		receiver = other.get(0);
+	}
+	
+	@Test
+	public void TestStreamBytes() throws Exception {
+		byte[] data = new byte[100000];
+		new Random(1).nextBytes(data);
+		
+		//Write in parts that do not match the chunk size.
+		OutputStream out = new ChannelOutputStream(sender, 1000);
+		out.write(data, 0, 1);
+		out.write(data, 1, 4999);
+		out.flush();
+		out.write(data, 5000, data.length - 5000);
+		out.close();
+		sender.send("next");
+		
+		byte[] received = new byte[data.length];
+		InputStream in = new ChannelInputStream(receiver);
+		new DataInputStream(in).readFully(received);
+		assertEquals(-1, in.read());
+		in.close();
+		assertArrayEquals(data, received);
+		assertEquals("next", receiver.receive());
+	}
+	
+	@Test
+	public void TestSendObject() throws Exception {
+		byte[][] tables = new byte[1000][];
+		for (int i = 0; i < tables.length; i++){
+			tables[i] = new byte[]{(byte) i, (byte) (i >> 8)};
+		}
+		ChannelOutputStream.sendObject(sender, tables);
+		sender.send("next");
+		
+		byte[][] received = (byte[][]) ChannelInputStream.receiveObject(receiver);
+		assertEquals(tables.length, received.length);
+		assertArrayEquals(tables[999], received[999]);
+		assertEquals("next", receiver.receive());
+	}
+	
+	@Test
+	public void TestCloseSkipsRest() throws Exception {
+		OutputStream out = new ChannelOutputStream(sender, 10);
+		out.write(new byte[95]);
+		out.close();
+		sender.sendBytes(new byte[]{7});
+		
+		ChannelInputStream in = new ChannelInputStream(receiver);
+		assertEquals(0, in.read());
+		in.close();
+		assertArrayEquals(new byte[]{7}, receiver.receiveBytes());
+		
+		ChannelOutputStream.sendObject(sender, "copied");
+		ByteArrayOutputStream copy = new ByteArrayOutputStream();
+		assertTrue(new ChannelInputStream(receiver).copyTo(copy) > 0);
+	}
+	
+	@Test
+	public void TestCopyToIsBounded() throws Exception {
+		OutputStream out = new ChannelOutputStream(sender, 10);
+		out.write(new byte[95]);
+		out.close();
+		out = new ChannelOutputStream(sender, 10);
+		out.write(new byte[95]);
+		out.close();
+		
+		//A stream of exactly the maximal length is copied.
+		ByteArrayOutputStream copy = new ByteArrayOutputStream();
+		assertEquals(95, new ChannelInputStream(receiver).copyTo(copy, 95));
+		assertEquals(95, copy.size());
+		
+		//A longer stream is copied only up to the maximal length.
+		copy.reset();
+		assertEquals(-1, new ChannelInputStream(receiver).copyTo(copy, 50));
+		assertEquals(50, copy.size());
+	}
+	
+	@Test
+	public void TestReceiveObjectKeepsTheDeserializationFailure() throws Exception {
+		//A chunk that is not a serialized object, and no end of the stream.
+		sender.sendBytes(new byte[]{1, 2, 3, 4});
+		sender.close();
+		
+		try {
+			ChannelInputStream.receiveObject(receiver);
+			fail("a corrupted object was received");
+		} catch (StreamCorruptedException e) {
+			//The failure to skip the rest of the stream is attached to the deserialization failure.
+			assertEquals(1, e.getSuppressed().length);
+			assertTrue(e.getSuppressed()[0] instanceof IOException);
+		}
+	}
+}
@@ -0,0 +1,144 @@
+package edu.biu.scapi.tests.comm;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import edu.biu.scapi.comm.CoalescingChannel;
+import edu.biu.scapi.comm.PlainChannel;
+
+public class TestCoalescingChannel {
+
+	@Test
+	public void TestMessagesAreBatched() throws Exception {
+		PlainChannel[] plain = ChannelPairs.loopback();
+		CoalescingChannel sender = new CoalescingChannel(plain[0]);
+		
+		for (int i = 0; i < 100; i++){
+			sender.send(i);
+		}
+		assertFalse(plain[1].waitForMessage(0));
+		sender.flush();
+		
+		//All the messages arrive in one batch, and flushing an empty buffer sends nothing.
+		assertTrue(plain[1].waitForMessage(0));
+		plain[1].receiveBytes();
+		sender.flush();
+		assertFalse(plain[1].waitForMessage(0));
+		sender.close();
+	}
+	
+	@Test
+	public void TestRoundTrip() throws Exception {
+		PlainChannel[] plain = ChannelPairs.loopback();
+		CoalescingChannel first = new CoalescingChannel(plain[0], 1024, 0);
+		CoalescingChannel second = new CoalescingChannel(plain[1], 1024, 0);
+		
+		//Messages of all the types, some of them larger than a batch.
+		byte[] large = new byte[5000];
+		large[4999] = 9;
+		for (int i = 0; i < 50; i++){
+			first.send("message " + i);
+			first.sendBytes(new byte[]{(byte) i});
+			first.sendByteArrays(new byte[][]{{(byte) i}, {}});
+		}
+		first.sendBytes(large);
+		first.sendByteArrays(new byte[][]{large, large});
+		first.flush();
+		
+		for (int i = 0; i < 50; i++){
+			assertEquals("message " + i, second.receive());
+			assertArrayEquals(new byte[]{(byte) i}, second.receiveBytes());
+			assertArrayEquals(new byte[][]{{(byte) i}, {}}, second.receiveByteArrays());
+		}
+		assertArrayEquals(large, second.receiveBytes());
+		assertArrayEquals(new byte[][]{large, large}, second.receiveByteArrays());
+		assertFalse(second.waitForMessage(0));
+		first.close();
+		second.close();
+	}
+	
+	@Test(timeout = 10000)
+	public void TestReceiveFlushes() throws Exception {
+		PlainChannel[] plain = ChannelPairs.loopback();
+		final CoalescingChannel first = new CoalescingChannel(plain[0]);
+		final CoalescingChannel second = new CoalescingChannel(plain[1]);
+		final List<Exception> errors = new ArrayList<Exception>();
+		
+		//A request-response protocol that never calls flush. Each party's receive sends its buffered answer.
+		Thread other = new Thread(){
+			public void run(){
+				try {
+					for (int i = 0; i < 20; i++){
+						int request = (Integer) second.receive();
+						second.send(request + 1);
+					}
+					second.flush();
+				} catch (Exception e) {
+					errors.add(e);
+				}
+			}
+		};
+		other.start();
+		for (int i = 0; i < 20; i++){
+			first.send(i);
+			assertEquals(i + 1, first.receive());
+		}
+		other.join();
+		assertTrue(errors.toString(), errors.isEmpty());
+		first.close();
+		second.close();
+	}
+	
+	@Test(timeout = 10000)
+	public void TestTimerFlush() throws Exception {
+		PlainChannel[] plain = ChannelPairs.loopback();
+		CoalescingChannel delayed = new CoalescingChannel(plain[0], CoalescingChannel.DEFAULT_MAX_BATCH_SIZE, 50);
+		CoalescingChannel receiver = new CoalescingChannel(plain[1]);
+		
+		//The message is sent by the timer without flushing.
+		delayed.send("late");
+		assertTrue(plain[1].waitForMessage(5000));
+		assertEquals("late", receiver.receive());
+		
+		//A flush by waitForMessage, as done by receive, before the timer does not send the batch twice.
+		delayed.send("early");
+		assertFalse(delayed.waitForMessage(0));
+		assertEquals("early", receiver.receive());
+		Thread.sleep(200);
+		assertFalse(plain[1].waitForMessage(0));
+		delayed.close();
+		receiver.close();
+	}
+	
+	@Test
+	public void TestNoTimerWithoutDelay() throws Exception {
+		PlainChannel[] plain = ChannelPairs.loopback();
+		CoalescingChannel sender = new CoalescingChannel(plain[0]);
+		sender.send("buffered");
+		assertFalse(plain[1].waitForMessage(200));
+		sender.close();
+		
+		//Close sends the buffered messages.
+		assertTrue(plain[1].waitForMessage(0));
+	}
+	
+	@Test
+	public void TestWrongType() throws Exception {
+		PlainChannel[] plain = ChannelPairs.loopback();
+		CoalescingChannel first = new CoalescingChannel(plain[0]);
+		CoalescingChannel second = new CoalescingChannel(plain[1]);
+		first.sendBytes(new byte[]{1});
+		first.flush();
+		try {
+			second.receive();
+			fail("bytes were received as an object");
+		} catch (IOException e) {}
+		first.close();
+		second.close();
+	}
+}
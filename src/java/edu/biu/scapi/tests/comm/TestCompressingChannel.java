@@ -0,0 +1,155 @@
+package edu.biu.scapi.tests.comm;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.junit.Test;
+
+import edu.biu.scapi.comm.CompressingChannel;
+import edu.biu.scapi.comm.PlainChannel;
+import edu.biu.scapi.comm.compression.DeflateCompressor;
+import edu.biu.scapi.comm.twoPartyComm.LoopbackCommunicationSetup;
+import edu.biu.scapi.comm.twoPartyComm.PartyData;
+import edu.biu.scapi.comm.twoPartyComm.TwoPartyCommunicationSetup;
+
+public class TestCompressingChannel {
+
+	/**
+	 * Creates a pair of connected loopback channels.
+	 * @param copyMessages false in order to pass the references of the sent messages to the other party.
+	 */
+	private static PlainChannel[] channels(final boolean copyMessages) throws Exception {
+		return ChannelPairs.connect(new ChannelPairs.SetupFactory(){
+			public TwoPartyCommunicationSetup create(PartyData me, PartyData other) throws Exception {
+				return new LoopbackCommunicationSetup(me, other, LoopbackCommunicationSetup.DEFAULT_CAPACITY, copyMessages);
+			}
+		});
+	}
+	
+	private static byte[] random(int size){
+		byte[] data = new byte[size];
+		new Random(size).nextBytes(data);
+		return data;
+	}
+	
+	private static byte[] compressible(int size){
+		byte[] data = new byte[size];
+		for (int i = 0; i < size; i++){
+			data[i] = (byte) (i % 7);
+		}
+		return data;
+	}
+	
+	@Test
+	public void TestRoundTrip() throws Exception {
+		PlainChannel[] plain = channels(true);
+		CompressingChannel first = new CompressingChannel(plain[0]);
+		CompressingChannel second = new CompressingChannel(plain[1]);
+		
+		byte[][] messages = {random(10000), compressible(10000), compressible(10), new byte[0]};
+		for (byte[] message : messages){
+			first.sendBytes(message);
+			assertArrayEquals(message, second.receiveBytes());
+		}
+		byte[][][] arrays = {
+				{random(5000), random(3000)},
+				{compressible(5000), new byte[0], compressible(3000)},
+				{compressible(10)},
+				{},
+		};
+		for (byte[][] message : arrays){
+			first.sendByteArrays(message);
+			assertArrayEquals(message, second.receiveByteArrays());
+		}
+		int[] object = new int[1000];
+		first.send(object);
+		assertArrayEquals(object, (int[]) second.receive());
+	}
+	
+	@Test
+	public void TestAdaptiveCompression() throws Exception {
+		PlainChannel[] plain = channels(true);
+		CompressingChannel first = new CompressingChannel(plain[0]);
+		CompressingChannel second = new CompressingChannel(plain[1]);
+		
+		//Random bytes are sent with a one byte header.
+		first.sendBytes(random(100000));
+		second.receiveBytes();
+		assertEquals(100000, first.getOriginalBytes());
+		assertEquals(100001, first.getSentBytes());
+		first.sendByteArrays(new byte[][]{random(50000), random(50000)});
+		second.receiveByteArrays();
+		assertEquals(200002, first.getSentBytes());
+		
+		//Repetitive bytes are compressed.
+		first.sendBytes(compressible(100000));
+		first.sendByteArrays(new byte[][]{compressible(50000), compressible(50000)});
+		second.receiveBytes();
+		second.receiveByteArrays();
+		assertEquals(400000, first.getOriginalBytes());
+		assertTrue(first.getSentBytes() < 210000);
+	}
+	
+	@Test
+	public void TestRawMessagesAreNotCopied() throws Exception {
+		//The loopback channels pass references, so the receiver gets the sent arrays themselves unless the channel copied them.
+		PlainChannel[] plain = channels(false);
+		CompressingChannel first = new CompressingChannel(plain[0]);
+		CompressingChannel second = new CompressingChannel(plain[1]);
+		
+		byte[] data = random(100000);
+		first.sendBytes(data);
+		assertSame(data, second.receiveBytes());
+		
+		byte[][] arrays = {random(1000), random(1000)};
+		first.sendByteArrays(arrays);
+		byte[][] received = second.receiveByteArrays();
+		assertSame(arrays[0], received[0]);
+		assertSame(arrays[1], received[1]);
+	}
+	
+	@Test
+	public void TestOriginalLengthIsBounded() throws Exception {
+		PlainChannel[] plain = channels(true);
+		CompressingChannel receiver = new CompressingChannel(plain[1]);
+		byte[] compressed = new DeflateCompressor().compress(new byte[16], 0, 16);
+		
+		//A compressed message that declares a negative or huge original length.
+		int[] lengths = {-1, Integer.MAX_VALUE};
+		for (int length : lengths){
+			plain[0].sendByteArrays(new byte[][]{ByteBuffer.allocate(5).put((byte) 1).putInt(length).array(), compressed});
+			try {
+				receiver.receiveBytes();
+				fail("a message with an illegal original length was received");
+			} catch (IOException e) {}
+		}
+		
+		//A message that is longer than the configured maximum.
+		receiver.setMaxMessageSize(8);
+		plain[0].sendByteArrays(new byte[][]{ByteBuffer.allocate(5).put((byte) 1).putInt(16).array(), compressed});
+		try {
+			receiver.receiveBytes();
+			fail("a message longer than the maximal size was received");
+		} catch (IOException e) {}
+		
+		//Compressed arrays whose encoding declares more arrays than it holds.
+		receiver.setMaxMessageSize(CompressingChannel.DEFAULT_MAX_MESSAGE_SIZE);
+		byte[] encoding = ByteBuffer.allocate(12).putInt(1000).putInt(4).putInt(0).array();
+		byte[] compressedEncoding = new DeflateCompressor().compress(encoding, 0, encoding.length);
+		plain[0].sendByteArrays(new byte[][]{ByteBuffer.allocate(5).put((byte) 3).putInt(12).array(), compressedEncoding});
+		try {
+			receiver.receiveByteArrays();
+			fail("a malformed arrays message was received");
+		} catch (IOException e) {}
+		
+		//A message without a header.
+		plain[0].sendByteArrays(new byte[0][]);
+		try {
+			receiver.receiveBytes();
+			fail("a message without a header was received");
+		} catch (IOException e) {}
+	}
+}
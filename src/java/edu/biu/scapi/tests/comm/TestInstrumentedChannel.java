@@ -0,0 +1,87 @@
+package edu.biu.scapi.tests.comm;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+import org.junit.Test;
+
+import edu.biu.scapi.comm.PlainChannel;
+import edu.biu.scapi.comm.metrics.ChannelMetrics;
+import edu.biu.scapi.comm.metrics.ChannelMetricsRegistry;
+import edu.biu.scapi.comm.metrics.InstrumentedChannel;
+
+public class TestInstrumentedChannel {
+
+	private static long serializedSize(Serializable data) throws Exception {
+		ByteArrayOutputStream bOut = new ByteArrayOutputStream();
+		ObjectOutputStream oOut = new ObjectOutputStream(bOut);
+		oOut.writeObject(data);
+		oOut.close();
+		return bOut.size();
+	}
+	
+	@Test
+	public void TestTransparentToOtherParty() throws Exception {
+		//Only one party instruments its channel, and the other party uses the plain socket channel.
+		PlainChannel[] plain = ChannelPairs.sockets();
+		ChannelMetricsRegistry registry = new ChannelMetricsRegistry();
+		InstrumentedChannel instrumented = new InstrumentedChannel(plain[0], "a", registry);
+		
+		int[] object = {1, 2, 3};
+		instrumented.send(object);
+		instrumented.sendBytes(new byte[]{4, 5});
+		instrumented.sendByteArrays(new byte[][]{{6}, {7, 8}});
+		assertArrayEquals(object, (int[]) plain[1].receive());
+		assertArrayEquals(new byte[]{4, 5}, plain[1].receiveBytes());
+		assertArrayEquals(new byte[][]{{6}, {7, 8}}, plain[1].receiveByteArrays());
+		
+		plain[1].send("answer");
+		plain[1].sendBytes(new byte[]{9});
+		assertEquals("answer", instrumented.receive());
+		assertArrayEquals(new byte[]{9}, instrumented.receiveBytes());
+		
+		instrumented.close();
+		plain[1].close();
+	}
+	
+	@Test
+	public void TestCounters() throws Exception {
+		PlainChannel[] plain = ChannelPairs.sockets();
+		ChannelMetricsRegistry registry = new ChannelMetricsRegistry();
+		InstrumentedChannel first = new InstrumentedChannel(plain[0], "first", registry);
+		InstrumentedChannel second = new InstrumentedChannel(plain[1], "second", registry);
+		
+		String object = "some message";
+		first.send(object);
+		first.sendBytes(new byte[10]);
+		first.sendByteArrays(new byte[][]{new byte[3], new byte[4]});
+		assertEquals(object, second.receive());
+		second.receiveBytes();
+		second.receiveByteArrays();
+		second.sendBytes(new byte[5]);
+		first.receiveBytes();
+		
+		ChannelMetrics sent = registry.getMetrics("first");
+		ChannelMetrics received = registry.getMetrics("second");
+		assertSame(sent, first.getMetrics());
+		long expected = serializedSize(object) + 10 + 7;
+		assertEquals(3, sent.getMessagesSent());
+		assertEquals(expected, sent.getBytesSent());
+		assertEquals(3, received.getMessagesReceived());
+		assertEquals(expected, received.getBytesReceived());
+		assertEquals(1, sent.getMessagesReceived());
+		assertEquals(5, sent.getBytesReceived());
+		
+		//The first party sent and then received once, the second party received before it sent.
+		assertEquals(1, sent.getRoundTrips());
+		assertEquals(0, received.getRoundTrips());
+		
+		sent.reset();
+		assertEquals(0, sent.getBytesSent());
+		first.close();
+		second.close();
+	}
+}
@@ -0,0 +1,163 @@
+package edu.biu.scapi.tests.comm;
+
+import static org.junit.Assert.*;
+
+import java.io.EOFException;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Test;
+
+import edu.biu.scapi.comm.Channel;
+import edu.biu.scapi.comm.PollableChannel;
+import edu.biu.scapi.comm.multiPartyComm.LoopbackMultipartyCommunicationSetup;
+import edu.biu.scapi.comm.twoPartyComm.LoopbackCommunicationSetup;
+import edu.biu.scapi.comm.twoPartyComm.PartyData;
+import edu.biu.scapi.comm.twoPartyComm.SocketPartyData;
+
+public class TestLoopbackCommunicationSetup {
+
+	private static PartyData party(int port) throws Exception {
+		return new SocketPartyData(InetAddress.getByName("127.0.0.1"), port);
+	}
+	
+	/**
+	 * Prepares the channels of the other party in a different thread.
+	 */
+	private static Thread prepareInThread(final LoopbackCommunicationSetup setup, final String[] ids, final List<Map<String, Channel>> result){
+		Thread thread = new Thread(){
+			public void run(){
+				try {
+					result.add(setup.prepareForCommunication(ids, 5000));
+				} catch (TimeoutException e) {
+					fail("Got TimeoutException");
+				}
+			}
+		};
+		thread.start();
+		return thread;
+	}
+	
+	@Test
+	public void TestSendReceive() throws Exception {
+		PartyData p1 = party(9000);
+		PartyData p2 = party(9001);
+		String[] ids = {"a", "b"};
+		
+		List<Map<String, Channel>> result = new ArrayList<Map<String, Channel>>();
+		Thread thread = prepareInThread(new LoopbackCommunicationSetup(p2, p1), ids, result);
+		Map<String, Channel> mine = new LoopbackCommunicationSetup(p1, p2).prepareForCommunication(ids, 5000);
+		thread.join();
+		Map<String, Channel> others = result.get(0);
+		
+		//The sent message is copied, so changing it after sending does not change the received message.
+		int[] message = {1, 2, 3};
+		mine.get("a").send(message);
+		message[0] = 7;
+		assertArrayEquals(new int[]{1, 2, 3}, (int[]) others.get("a").receive());
+		
+		byte[] bytes = {4, 5};
+		others.get("b").sendBytes(bytes);
+		bytes[0] = 0;
+		assertArrayEquals(new byte[]{4, 5}, mine.get("b").receiveBytes());
+		
+		mine.get("b").sendByteArrays(new byte[][]{{1}, {}, {2, 3}});
+		byte[][] arrays = others.get("b").receiveByteArrays();
+		assertEquals(3, arrays.length);
+		assertArrayEquals(new byte[]{2, 3}, arrays[2]);
+		
+		//After the channel is closed, the sent messages can still be received.
+		mine.get("a").send("last");
+		mine.get("a").close();
+		assertEquals("last", others.get("a").receive());
+		try {
+			others.get("a").receive();
+			fail("Expected EOFException");
+		} catch (EOFException e) {
+		}
+	}
+	
+	@Test
+	public void TestReceiveWithTimeout() throws Exception {
+		PartyData p1 = party(9004);
+		PartyData p2 = party(9005);
+		String[] ids = {"a"};
+		
+		List<Map<String, Channel>> result = new ArrayList<Map<String, Channel>>();
+		Thread thread = prepareInThread(new LoopbackCommunicationSetup(p2, p1), ids, result);
+		Channel mine = new LoopbackCommunicationSetup(p1, p2).prepareForCommunication(ids, 5000).get("a");
+		thread.join();
+		PollableChannel other = (PollableChannel) result.get(0).get("a");
+		
+		//No message was sent yet.
+		assertNull(other.tryReceive());
+		long start = System.currentTimeMillis();
+		assertNull(other.receive(50));
+		assertTrue(System.currentTimeMillis() - start >= 50);
+		
+		mine.send("first");
+		mine.send("second");
+		assertEquals("first", other.tryReceive());
+		assertEquals("second", other.receive(1000));
+		assertNull(other.tryReceive());
+		
+		//After the channel is closed, the polling functions return and the receive reports the closing.
+		mine.close();
+		try {
+			other.receive(1000);
+			fail("Expected EOFException");
+		} catch (EOFException e) {
+		}
+	}
+	
+	@Test(expected = TimeoutException.class)
+	public void TestTimeout() throws Exception {
+		new LoopbackCommunicationSetup(party(9002), party(9003)).prepareForCommunication(new String[]{"a"}, 100);
+	}
+	
+	@Test
+	public void TestMultiparty() throws Exception {
+		final PartyData[] parties = {party(9010), party(9011), party(9012)};
+		final List<Map<PartyData, Map<String, Channel>>> result = new ArrayList<Map<PartyData, Map<String, Channel>>>();
+		
+		Thread[] threads = new Thread[parties.length];
+		for (int i = 0; i < parties.length; i++){
+			//Each party lists the other parties in a different order.
+			final List<PartyData> list = new ArrayList<PartyData>();
+			for (int j = 0; j < parties.length; j++){
+				list.add(parties[(i + j) % parties.length]);
+			}
+			threads[i] = new Thread(){
+				public void run(){
+					try {
+						Map<PartyData, Object> requested = new HashMap<PartyData, Object>();
+						requested.put(list.get(1), 2);
+						requested.put(list.get(2), 2);
+						Map<PartyData, Map<String, Channel>> channels = new LoopbackMultipartyCommunicationSetup(list).prepareForCommunication(requested, 5000);
+						synchronized (result){
+							result.add(channels);
+						}
+					} catch (Exception e) {
+						fail(e.toString());
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for (int i = 0; i < threads.length; i++){
+			threads[i].join();
+		}
+		
+		assertEquals(parties.length, result.size());
+		for (Map<PartyData, Map<String, Channel>> channels : result){
+			assertEquals(2, channels.size());
+			for (Map<String, Channel> partyChannels : channels.values()){
+				assertEquals(2, partyChannels.size());
+			}
+		}
+	}
+}
@@ -0,0 +1,125 @@
+package edu.biu.scapi.tests.comm;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+
+import org.junit.Test;
+
+import edu.biu.scapi.comm.codec.GroupElementCodec;
+import edu.biu.scapi.comm.codec.MessageCodecRegistry;
+import edu.biu.scapi.interactiveMidProtocols.ot.OTRGroupElementPairMsg;
+import edu.biu.scapi.interactiveMidProtocols.ot.OTRGroupElementPairMsgCodec;
+import edu.biu.scapi.interactiveMidProtocols.sigmaProtocol.utility.SigmaBIMsg;
+import edu.biu.scapi.interactiveMidProtocols.sigmaProtocol.utility.SigmaBIMsgCodec;
+import edu.biu.scapi.interactiveMidProtocols.sigmaProtocol.utility.SigmaGroupElementMsg;
+import edu.biu.scapi.interactiveMidProtocols.sigmaProtocol.utility.SigmaGroupElementMsgCodec;
+import edu.biu.scapi.interactiveMidProtocols.sigmaProtocol.utility.SigmaMultipleMsg;
+import edu.biu.scapi.interactiveMidProtocols.sigmaProtocol.utility.SigmaMultipleMsgCodec;
+import edu.biu.scapi.interactiveMidProtocols.sigmaProtocol.utility.SigmaProtocolMsg;
+import edu.biu.scapi.primitives.dlog.DlogGroup;
+import edu.biu.scapi.primitives.dlog.ECElementSendableData;
+import edu.biu.scapi.primitives.dlog.GroupElement;
+import edu.biu.scapi.primitives.dlog.GroupElementSendableData;
+import edu.biu.scapi.primitives.dlog.bc.BcDlogECF2m;
+
+public class TestMessageCodecRegistry {
+
+	private DlogGroup dlog = createDlog();
+	private GroupElementCodec elementCodec = new GroupElementCodec(dlog);
+	private MessageCodecRegistry registry = createRegistry();
+	
+	private DlogGroup createDlog(){
+		try {
+			return new BcDlogECF2m("K-233");
+		} catch (IOException e) {
+			fail("Got IOError");
+			return null;
+		}
+	}
+	
+	private MessageCodecRegistry createRegistry(){
+		MessageCodecRegistry registry = new MessageCodecRegistry();
+		registry.register(1, elementCodec);
+		registry.register(2, new OTRGroupElementPairMsgCodec(elementCodec));
+		registry.register(3, new SigmaGroupElementMsgCodec(elementCodec));
+		registry.register(4, new SigmaBIMsgCodec());
+		registry.register(5, new SigmaMultipleMsgCodec(registry));
+		return registry;
+	}
+	
+	@Test
+	public void TestPointIsCompressed() throws Exception {
+		GroupElement element = dlog.createRandomElement();
+		byte[] encoded = registry.encode(element.generateSendableData());
+		
+		//One byte of type id, one byte of y parity and 30 bytes of x.
+		assertEquals(2 + 30, encoded.length);
+		GroupElementSendableData decoded = (GroupElementSendableData) registry.decode(encoded);
+		assertEquals(element, dlog.reconstructElement(true, decoded));
+	}
+	
+	@Test
+	public void TestInfinity() throws Exception {
+		ECElementSendableData infinity = new ECElementSendableData(null, null);
+		ECElementSendableData decoded = (ECElementSendableData) registry.decode(registry.encode(infinity));
+		assertNull(decoded.getX());
+		assertNull(decoded.getY());
+	}
+	
+	@Test
+	public void TestOTPairMsg() throws Exception {
+		GroupElement h0 = dlog.createRandomElement();
+		GroupElement h1 = dlog.createRandomElement();
+		OTRGroupElementPairMsg msg = new OTRGroupElementPairMsg(h0.generateSendableData(), h1.generateSendableData());
+		
+		OTRGroupElementPairMsg decoded = (OTRGroupElementPairMsg) registry.decode(registry.encode(msg));
+		assertEquals(h0, dlog.reconstructElement(true, decoded.getFirstGE()));
+		assertEquals(h1, dlog.reconstructElement(true, decoded.getSecondGE()));
+	}
+	
+	@Test
+	public void TestSigmaMultipleMsg() throws Exception {
+		GroupElement element = dlog.createRandomElement();
+		BigInteger z = new BigInteger("-1234567890123456789");
+		ArrayList<SigmaProtocolMsg> messages = new ArrayList<SigmaProtocolMsg>();
+		messages.add(new SigmaBIMsg(z));
+		messages.add(new SigmaGroupElementMsg(element.generateSendableData()));
+		
+		SigmaMultipleMsg decoded = (SigmaMultipleMsg) registry.decode(registry.encode(new SigmaMultipleMsg(messages)));
+		assertEquals(z, ((SigmaBIMsg) decoded.getMessages().get(0)).getMsg());
+		assertEquals(element, dlog.reconstructElement(true, ((SigmaGroupElementMsg) decoded.getMessages().get(1)).getElement()));
+	}
+	
+	@Test
+	public void TestUnregisteredTypeUsesSerialization() throws Exception {
+		byte[] encoded = registry.encode("not registered");
+		assertEquals(MessageCodecRegistry.JAVA_SERIALIZATION_TYPE, encoded[0]);
+		assertEquals("not registered", registry.decode(encoded));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void TestDuplicateTypeId() {
+		registry.register(1, new SigmaBIMsgCodec());
+	}
+	
+	@Test
+	public void TestUntrustedSizes() throws Exception {
+		//Type id of a batch message followed by the largest valid size, without any elements.
+		byte[][] encodings = {
+				{5, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07},
+				{(byte) MessageCodecRegistry.JAVA_SERIALIZATION_TYPE, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07},
+				{4, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07},
+				//A size that does not fit in a non negative int.
+				{5, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F},
+		};
+		for (byte[] encoded : encodings){
+			try {
+				registry.decode(encoded);
+				fail("a message with a wrong size was decoded");
+			} catch (IOException e) {}
+		}
+	}
+}
@@ -0,0 +1,181 @@
+package edu.biu.scapi.tests.comm;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import edu.biu.scapi.comm.Channel;
+import edu.biu.scapi.comm.multiPartyComm.MultipartyExchange;
+import edu.biu.scapi.comm.twoPartyComm.LoopbackCommunicationSetup;
+import edu.biu.scapi.comm.twoPartyComm.PartyData;
+import edu.biu.scapi.comm.twoPartyComm.SocketPartyData;
+
+public class TestMultipartyExchange {
+
+	private PartyData[] parties;
+	private Channel[][] channels;	//channels[i][j] is the channel of party i to party j.
+	
+	/**
+	 * Creates three parties and connects each pair of them with a loopback channel.
+	 */
+	private MultipartyExchange[] exchanges(int port) throws Exception {
+		parties = new PartyData[3];
+		for (int i = 0; i < parties.length; i++){
+			parties[i] = new SocketPartyData(InetAddress.getByName("127.0.0.1"), port + i);
+		}
+		channels = new Channel[3][3];
+		for (int i = 0; i < parties.length; i++){
+			for (int j = i + 1; j < parties.length; j++){
+				Channel[] pair = connect(parties[i], parties[j]);
+				channels[i][j] = pair[0];
+				channels[j][i] = pair[1];
+			}
+		}
+		
+		MultipartyExchange[] exchanges = new MultipartyExchange[3];
+		for (int i = 0; i < parties.length; i++){
+			Map<PartyData, Channel> others = new HashMap<PartyData, Channel>();
+			for (int j = 0; j < parties.length; j++){
+				if (j != i){
+					others.put(parties[j], channels[i][j]);
+				}
+			}
+			exchanges[i] = new MultipartyExchange(others);
+		}
+		return exchanges;
+	}
+	
+	private static Channel[] connect(final PartyData me, final PartyData other) throws Exception {
+		final List<Map<String, Channel>> result = new ArrayList<Map<String, Channel>>();
+		Thread thread = new Thread(){
+			public void run(){
+				try {
+					result.add(new LoopbackCommunicationSetup(other, me).prepareForCommunication(new String[]{"a"}, 5000));
+				} catch (Exception e) {
+					fail(e.toString());
+				}
+			}
+		};
+		thread.start();
+		Map<String, Channel> mine = new LoopbackCommunicationSetup(me, other).prepareForCommunication(new String[]{"a"}, 5000);
+		thread.join();
+		return new Channel[]{mine.get("a"), result.get(0).get("a")};
+	}
+	
+	@Test
+	public void TestBroadcast() throws Exception {
+		MultipartyExchange[] exchanges = exchanges(10000);
+		
+		exchanges[0].broadcast("message");
+		exchanges[0].broadcastBytes(new byte[]{1, 2, 3});
+		for (int i = 1; i < 3; i++){
+			assertEquals("message", exchanges[i].receiveFrom(parties[0]));
+			assertArrayEquals(new byte[]{1, 2, 3}, channels[i][0].receiveBytes());
+		}
+		
+		for (MultipartyExchange exchange : exchanges){
+			exchange.close();
+		}
+	}
+	
+	@Test
+	public void TestExchangeAll() throws Exception {
+		final MultipartyExchange[] exchanges = exchanges(10010);
+		final List<Map<PartyData, Serializable>> results = new ArrayList<Map<PartyData, Serializable>>();
+		results.add(null);
+		results.add(null);
+		final List<Exception> failures = new ArrayList<Exception>();
+		Thread[] threads = new Thread[2];
+		for (int i = 0; i < threads.length; i++){
+			final int party = i + 1;
+			threads[i] = new Thread(){
+				public void run(){
+					try {
+						Map<PartyData, Serializable> received = exchanges[party].exchangeAll(party);
+						synchronized (results){
+							results.set(party - 1, received);
+						}
+					} catch (Exception e) {
+						synchronized (failures){
+							failures.add(e);
+						}
+					}
+				}
+			};
+			threads[i].start();
+		}
+		
+		Map<PartyData, Serializable> received = exchanges[0].exchangeAll(0);
+		for (Thread thread : threads){
+			thread.join();
+		}
+		assertTrue(failures.toString(), failures.isEmpty());
+		assertEquals(2, received.size());
+		assertEquals(1, received.get(parties[1]));
+		assertEquals(2, received.get(parties[2]));
+		assertEquals(2, results.get(0).size());
+		assertEquals(0, results.get(0).get(parties[0]));
+		assertEquals(2, results.get(0).get(parties[2]));
+		assertEquals(2, results.get(1).size());
+		assertEquals(0, results.get(1).get(parties[0]));
+		assertEquals(1, results.get(1).get(parties[1]));
+		
+		//The messages of all the parties are also received by receiveAll.
+		exchanges[1].broadcast("first");
+		exchanges[2].broadcast("second");
+		Map<PartyData, Serializable> all = exchanges[0].receiveAll();
+		assertEquals("first", all.get(parties[1]));
+		assertEquals("second", all.get(parties[2]));
+		
+		for (MultipartyExchange exchange : exchanges){
+			exchange.close();
+		}
+	}
+	
+	@Test
+	public void TestBroadcastFailure() throws Exception {
+		MultipartyExchange[] exchanges = exchanges(10020);
+		
+		//The third party closed its channel to the first party.
+		channels[2][0].close();
+		try {
+			exchanges[0].broadcast("message");
+			fail("a failed send was not reported");
+		} catch (IOException e) {}
+		
+		//The message was still sent to the other parties.
+		assertEquals("message", exchanges[1].receiveFrom(parties[0]));
+		
+		for (MultipartyExchange exchange : exchanges){
+			exchange.close();
+		}
+	}
+	
+	@Test
+	public void TestExchangeAllFailure() throws Exception {
+		MultipartyExchange[] exchanges = exchanges(10030);
+		
+		//The third party closed its channel to the first party, and the second party sends its message.
+		channels[2][0].close();
+		channels[1][0].sendBytes(new byte[]{1});
+		try {
+			exchanges[0].exchangeAll("message");
+			fail("a failed receive was not reported");
+		} catch (IOException e) {}
+		
+		//The function returned only after the message was sent to the other parties.
+		assertEquals("message", exchanges[1].receiveFrom(parties[0]));
+		
+		for (MultipartyExchange exchange : exchanges){
+			exchange.close();
+		}
+	}
+}
@@ -0,0 +1,230 @@
+package edu.biu.scapi.tests.comm;
+
+import static org.junit.Assert.*;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import edu.biu.scapi.comm.Channel;
+import edu.biu.scapi.comm.PlainChannel;
+import edu.biu.scapi.comm.twoPartyComm.MultiplexedSocketCommunicationSetup;
+import edu.biu.scapi.comm.twoPartyComm.PartyData;
+import edu.biu.scapi.comm.twoPartyComm.SocketPartyData;
+
+public class TestMultiplexedCommunicationSetup {
+
+	private static PartyData party(int port) throws Exception {
+		return new SocketPartyData(InetAddress.getByName("127.0.0.1"), port);
+	}
+	
+	/**
+	 * Prepares the given channels in both setups at the same time.
+	 * @return the channels of the first setup and the channels of the second setup.
+	 */
+	@SuppressWarnings("unchecked")
+	private static Map<String, Channel>[] prepare(MultiplexedSocketCommunicationSetup first, final MultiplexedSocketCommunicationSetup second, final String[] ids) throws Exception {
+		final List<Map<String, Channel>> result = new ArrayList<Map<String, Channel>>();
+		final List<Exception> errors = new ArrayList<Exception>();
+		Thread thread = new Thread(){
+			public void run(){
+				try {
+					result.add(second.prepareForCommunication(ids, 10000));
+				} catch (Exception e) {
+					errors.add(e);
+				}
+			}
+		};
+		thread.start();
+		Map<String, Channel> mine = first.prepareForCommunication(ids, 10000);
+		thread.join();
+		assertTrue(errors.toString(), errors.isEmpty());
+		return new Map[]{mine, result.get(0)};
+	}
+	
+	@Test(timeout = 30000)
+	public void TestFlowControl() throws Exception {
+		MultiplexedSocketCommunicationSetup first = new MultiplexedSocketCommunicationSetup(party(9400), party(9401));
+		MultiplexedSocketCommunicationSetup second = new MultiplexedSocketCommunicationSetup(party(9401), party(9400));
+		Map<String, Channel>[] channels = prepare(first, second, new String[]{"bulk", "control"});
+		final Channel bulk = channels[0].get("bulk");
+		
+		//The bulk sender sends much more than the window of its channel, while nobody receives.
+		final int count = 48;
+		final byte[] chunk = new byte[64 * 1024];
+		final List<Exception> errors = new ArrayList<Exception>();
+		Thread sender = new Thread(){
+			public void run(){
+				try {
+					for (int i=0; i<count; i++){
+						chunk[0] = (byte) i;
+						bulk.sendBytes(chunk.clone());
+					}
+				} catch (Exception e) {
+					errors.add(e);
+				}
+			}
+		};
+		sender.start();
+		
+		//The sender is blocked by the flow control of its channel, but the other channel on the same connection still works.
+		Thread.sleep(300);
+		assertTrue(sender.isAlive());
+		channels[0].get("control").send("ping");
+		assertEquals("ping", channels[1].get("control").receive());
+		channels[1].get("control").send("pong");
+		assertEquals("pong", channels[0].get("control").receive());
+		
+		//Once the receiver consumes the messages, the sender completes.
+		for (int i=0; i<count; i++){
+			byte[] received = channels[1].get("bulk").receiveBytes();
+			assertEquals(chunk.length, received.length);
+			assertEquals((byte) i, received[0]);
+		}
+		sender.join();
+		assertTrue(errors.toString(), errors.isEmpty());
+		
+		first.close();
+		second.close();
+	}
+	
+	@Test(timeout = 30000)
+	public void TestReconnectAfterAllChannelsClosed() throws Exception {
+		MultiplexedSocketCommunicationSetup first = new MultiplexedSocketCommunicationSetup(party(9410), party(9411), 2);
+		MultiplexedSocketCommunicationSetup second = new MultiplexedSocketCommunicationSetup(party(9411), party(9410), 2);
+		String[] ids = {"a", "b", "c"};
+		
+		for (int round = 0; round < 3; round++){
+			Map<String, Channel>[] channels = prepare(first, second, ids);
+			for (String id : ids){
+				channels[0].get(id).send(id + round);
+				assertEquals(id + round, channels[1].get(id).receive());
+				channels[1].get(id).sendBytes(new byte[]{(byte) round});
+				assertArrayEquals(new byte[]{(byte) round}, channels[0].get(id).receiveBytes());
+			}
+			
+			//Closing all the channels shuts the connections down. The next round uses new connections and the same names.
+			for (String id : ids){
+				channels[0].get(id).close();
+				channels[1].get(id).close();
+			}
+		}
+		first.close();
+		second.close();
+	}
+	
+	@Test(timeout = 30000)
+	public void TestReconnectAfterClose() throws Exception {
+		MultiplexedSocketCommunicationSetup first = new MultiplexedSocketCommunicationSetup(party(9420), party(9421));
+		MultiplexedSocketCommunicationSetup second = new MultiplexedSocketCommunicationSetup(party(9421), party(9420));
+		Map<String, Channel>[] old = prepare(first, second, new String[]{"a"});
+		first.close();
+		second.close();
+		
+		Map<String, Channel>[] channels = prepare(first, second, new String[]{"a"});
+		
+		//Closing a channel of the closed connections does not affect the new channels.
+		old[0].get("a").close();
+		old[1].get("a").close();
+		channels[0].get("a").send("new");
+		assertEquals("new", channels[1].get("a").receive());
+		first.close();
+		second.close();
+	}
+	
+	@Test(timeout = 30000)
+	public void TestMaxMessageSize() throws Exception {
+		MultiplexedSocketCommunicationSetup first = new MultiplexedSocketCommunicationSetup(party(9430), party(9431));
+		MultiplexedSocketCommunicationSetup second = new MultiplexedSocketCommunicationSetup(party(9431), party(9430));
+		Map<String, Channel>[] channels = prepare(first, second, new String[]{"a"});
+		PlainChannel receiver = (PlainChannel) channels[1].get("a");
+		receiver.setMaxMessageSize(100 * 1024);
+		
+		//A message of several chunks that is longer than the maximal size is rejected, and the next message is still received.
+		channels[0].get("a").sendBytes(new byte[300 * 1024]);
+		channels[0].get("a").sendBytes(new byte[100 * 1024]);
+		try {
+			receiver.receiveBytes();
+			fail("a message longer than the maximal size was received");
+		} catch (IOException e) {}
+		assertEquals(100 * 1024, receiver.receiveBytes().length);
+		first.close();
+		second.close();
+	}
+	
+	/**
+	 * Plays the other party with a raw socket that opens the channel "a" and then sends the given credit frame payload.
+	 * @return the channel "a" of the setup.
+	 */
+	private static Channel receiveCreditFromRaw(MultiplexedSocketCommunicationSetup setup, int port, byte[] credit) throws Exception {
+		final MultiplexedSocketCommunicationSetup accepting = setup;
+		final List<Map<String, Channel>> result = new ArrayList<Map<String, Channel>>();
+		final List<Exception> errors = new ArrayList<Exception>();
+		Thread thread = new Thread(){
+			public void run(){
+				try {
+					result.add(accepting.prepareForCommunication(new String[]{"a"}, 10000));
+				} catch (Exception e) {
+					errors.add(e);
+				}
+			}
+		};
+		thread.start();
+		
+		Socket raw = null;
+		while (raw == null){
+			try {
+				raw = new Socket(InetAddress.getByName("127.0.0.1"), port);
+			} catch (IOException e) {
+				Thread.sleep(10);
+			}
+		}
+		DataOutputStream out = new DataOutputStream(raw.getOutputStream());
+		out.writeInt(0x53434d58);		//The magic number of the multiplexed connections.
+		out.writeInt(0);				//The index of the connection.
+		//An OPEN frame of stream 0, named "a".
+		out.writeByte(0);
+		out.writeInt(0);
+		out.writeInt(1);
+		out.writeByte('a');
+		out.flush();
+		thread.join();
+		assertTrue(errors.toString(), errors.isEmpty());
+		
+		//A CREDIT frame of stream 0. It is sent after the channel is ready, since a failed channel is never ready.
+		out.writeByte(3);
+		out.writeInt(0);
+		out.writeInt(credit.length);
+		out.write(credit);
+		out.flush();
+		raw.close();
+		return result.get(0).get("a");
+	}
+	
+	@Test(timeout = 30000)
+	public void TestMalformedCreditFailsTheChannels() throws Exception {
+		byte[][] credits = {
+				{0, 1},						//Too short.
+				{0, 0, 0, 1, 0},			//Too long.
+				{(byte) 0x80, 0, 0, 0},		//Negative.
+		};
+		for (int i = 0; i < credits.length; i++){
+			MultiplexedSocketCommunicationSetup setup = new MultiplexedSocketCommunicationSetup(party(9441 + 2 * i), party(9440 + 2 * i));
+			Channel channel = receiveCreditFromRaw(setup, 9441 + 2 * i, credits[i]);
+			//The connection fails because of the frame, and not only because the raw socket was closed after it.
+			try {
+				channel.receiveBytes();
+				fail("a malformed credit frame was accepted");
+			} catch (IOException e) {
+				assertTrue(String.valueOf(e.getCause()), e.getCause().getMessage().startsWith("illegal credit"));
+			}
+			setup.close();
+		}
+	}
+}
@@ -0,0 +1,152 @@
+package edu.biu.scapi.tests.comm;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Test;
+
+import edu.biu.scapi.comm.NetworkConditions;
+import edu.biu.scapi.comm.NetworkConditions.JitterDistribution;
+import edu.biu.scapi.comm.NetworkEmulationChannel;
+import edu.biu.scapi.comm.PlainChannel;
+
+public class TestNetworkEmulationChannel {
+
+	private static final long NANOS_PER_MILLI = 1000000;
+	
+	private static long elapsedMillis(long start){
+		return (System.nanoTime() - start) / NANOS_PER_MILLI;
+	}
+	
+	@Test(timeout = 10000)
+	public void TestLatency() throws Exception {
+		PlainChannel[] plain = ChannelPairs.loopback();
+		NetworkEmulationChannel first = new NetworkEmulationChannel(plain[0], new NetworkConditions(200));
+		NetworkEmulationChannel second = new NetworkEmulationChannel(plain[1], new NetworkConditions(200));
+		
+		//A round trip takes at least the round trip time, and the sender does not wait for the latency.
+		long start = System.nanoTime();
+		first.send("ping");
+		assertTrue(elapsedMillis(start) < 100);
+		assertFalse(plain[1].waitForMessage(0));
+		assertEquals("ping", second.receive());
+		second.send("pong");
+		assertEquals("pong", first.receive());
+		assertTrue(elapsedMillis(start) >= 200);
+		
+		first.close();
+		second.close();
+	}
+	
+	@Test(timeout = 10000)
+	public void TestBandwidth() throws Exception {
+		PlainChannel[] plain = ChannelPairs.loopback();
+		//1 MB per second with a burst of 10 KB.
+		NetworkConditions conditions = new NetworkConditions(0, 1000000, 10000, 0, JitterDistribution.UNIFORM);
+		NetworkEmulationChannel sender = new NetworkEmulationChannel(plain[0], conditions);
+		
+		//The burst is sent without waiting.
+		long start = System.nanoTime();
+		sender.sendBytes(new byte[10000]);
+		assertTrue(elapsedMillis(start) < 50);
+		
+		//The next 200 KB take about 200 milliseconds.
+		start = System.nanoTime();
+		for (int i = 0; i < 20; i++){
+			sender.sendBytes(new byte[10000]);
+		}
+		long elapsed = elapsedMillis(start);
+		assertTrue("sending took " + elapsed + "ms", elapsed >= 180);
+		
+		sender.flush();
+		for (int i = 0; i < 21; i++){
+			assertEquals(10000, plain[1].receiveBytes().length);
+		}
+		sender.close();
+	}
+	
+	@Test(timeout = 10000)
+	public void TestOrderWithJitter() throws Exception {
+		PlainChannel[] plain = ChannelPairs.loopback();
+		//The jitter is larger than the gap between the messages, yet the messages are delivered in order.
+		NetworkConditions conditions = new NetworkConditions(2, NetworkConditions.UNLIMITED_BANDWIDTH, 0, 20, JitterDistribution.EXPONENTIAL);
+		NetworkEmulationChannel sender = new NetworkEmulationChannel(plain[0], conditions, new Random(1));
+		NetworkEmulationChannel receiver = new NetworkEmulationChannel(plain[1], new NetworkConditions(0));
+		
+		for (int i = 0; i < 200; i++){
+			if (i % 2 == 0){
+				sender.send(i);
+			} else {
+				sender.sendByteArrays(new byte[][]{{(byte) i}});
+			}
+		}
+		for (int i = 0; i < 200; i++){
+			if (i % 2 == 0){
+				assertEquals(i, receiver.receive());
+			} else {
+				assertArrayEquals(new byte[][]{{(byte) i}}, receiver.receiveByteArrays());
+			}
+		}
+		sender.close();
+		receiver.close();
+	}
+	
+	@Test(timeout = 10000)
+	public void TestSentBytesAreCopied() throws Exception {
+		PlainChannel[] plain = ChannelPairs.loopback();
+		NetworkEmulationChannel sender = new NetworkEmulationChannel(plain[0], new NetworkConditions(100));
+		
+		//The caller may reuse its buffer as soon as the send function returns.
+		byte[] buffer = {1, 2, 3};
+		sender.sendBytes(buffer);
+		buffer[0] = 9;
+		assertArrayEquals(new byte[]{1, 2, 3}, plain[1].receiveBytes());
+		sender.close();
+	}
+	
+	@Test(timeout = 10000)
+	public void TestFlushAndClose() throws Exception {
+		PlainChannel[] plain = ChannelPairs.loopback();
+		NetworkEmulationChannel sender = new NetworkEmulationChannel(plain[0], new NetworkConditions(200));
+		NetworkEmulationChannel receiver = new NetworkEmulationChannel(plain[1], new NetworkConditions(0));
+		
+		long start = System.nanoTime();
+		sender.send("first");
+		sender.flush();
+		assertTrue(elapsedMillis(start) >= 100);
+		assertTrue(plain[1].waitForMessage(0));
+		
+		//Close delivers the pending messages before closing the underlying channel.
+		sender.send("second");
+		sender.close();
+		assertTrue(plain[0].isClosed());
+		assertEquals("first", receiver.receive());
+		assertEquals("second", receiver.receive());
+		try {
+			sender.send("after close");
+			fail("a message was sent after close");
+		} catch (IOException e) {}
+		receiver.close();
+	}
+	
+	@Test(timeout = 10000)
+	public void TestDeliveryFailure() throws Exception {
+		PlainChannel[] plain = ChannelPairs.loopback();
+		NetworkEmulationChannel sender = new NetworkEmulationChannel(plain[0], new NetworkConditions(10));
+		
+		//The underlying channel fails after the message was accepted, so the failure is reported by flush and the next sends.
+		plain[0].close();
+		sender.send("lost");
+		try {
+			sender.flush();
+			fail("flush succeeded although the delivery failed");
+		} catch (IOException e) {}
+		try {
+			sender.send("after failure");
+			fail("a message was sent after a failure");
+		} catch (IOException e) {}
+		sender.close();
+	}
+}
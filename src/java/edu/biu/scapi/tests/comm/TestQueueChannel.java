@@ -0,0 +1,137 @@
+package edu.biu.scapi.tests.comm;
+
+import static org.junit.Assert.*;
+
+import java.util.Map;
+
+import javax.jms.Connection;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.ObjectMessage;
+import javax.jms.Session;
+
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.junit.After;
+import org.junit.Test;
+
+import edu.biu.scapi.comm.Channel;
+import edu.biu.scapi.comm.PollableChannel;
+import edu.biu.scapi.comm.twoPartyComm.ActiveMQCommunicationSetup;
+import edu.biu.scapi.comm.twoPartyComm.QueueCommunicationSetup;
+import edu.biu.scapi.comm.twoPartyComm.QueuePartyData;
+
+public class TestQueueChannel {
+
+	//An embedded broker that lives while there are connections to it.
+	private ActiveMQConnectionFactory factory = new ActiveMQConnectionFactory("vm://scapi-test?broker.persistent=false&broker.useJmx=false");
+	private QueueCommunicationSetup[] setups = new QueueCommunicationSetup[2];
+	private PollableChannel[] channels = new PollableChannel[2];
+	
+	/**
+	 * Creates the setups of two parties and a channel between them. 
+	 * The first party batches its messages in case the given batch size is positive.
+	 */
+	private void connect(int batchSize, boolean dupsOk) throws Exception {
+		QueuePartyData first = new QueuePartyData(1);
+		QueuePartyData second = new QueuePartyData(2);
+		setups[0] = new QueueCommunicationSetup(factory, new ActiveMQCommunicationSetup.ActiveMQDestroyer(), first, second);
+		setups[1] = new QueueCommunicationSetup(factory, new ActiveMQCommunicationSetup.ActiveMQDestroyer(), second, first);
+		setups[0].setBatchSize(batchSize);
+		if (dupsOk){
+			setups[0].enableDupsOkAcknowledge();
+			setups[1].enableDupsOkAcknowledge();
+		}
+		for (int i = 0; i < 2; i++){
+			Map<String, Channel> connection = setups[i].prepareForCommunication(new String[]{"c"}, 5000);
+			channels[i] = (PollableChannel) connection.get("c");
+		}
+	}
+	
+	@After
+	public void close(){
+		for (int i = 0; i < 2; i++){
+			if (channels[i] != null){
+				channels[i].close();
+			}
+			if (setups[i] != null){
+				setups[i].close();
+			}
+		}
+	}
+	
+	@Test
+	public void TestSendAndReceive() throws Exception {
+		connect(0, false);
+		
+		channels[0].send("message");
+		channels[0].send(new byte[]{1, 2});
+		channels[0].sendBytes(new byte[]{3, 4});
+		channels[0].sendByteArrays(new byte[][]{{5}, {}, {6, 7}});
+		assertEquals("message", channels[1].receive());
+		assertArrayEquals(new byte[]{1, 2}, (byte[]) channels[1].receive());
+		assertArrayEquals(new byte[]{3, 4}, channels[1].receiveBytes());
+		assertArrayEquals(new byte[][]{{5}, {}, {6, 7}}, channels[1].receiveByteArrays());
+		assertNull(channels[1].tryReceive());
+	}
+	
+	@Test
+	public void TestSentArraysAreObjectMessages() throws Exception {
+		connect(0, false);
+		
+		//Read the queue of the second party directly, as a party that uses the former version of the channel.
+		channels[1].close();
+		channels[1] = null;
+		channels[0].send(new byte[]{1, 2});
+		Connection connection = factory.createConnection();
+		try {
+			connection.start();
+			Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+			MessageConsumer consumer = session.createConsumer(session.createQueue("c 1 2"));
+			Message message = consumer.receive(5000);
+			assertTrue(message instanceof ObjectMessage);
+			assertArrayEquals(new byte[]{1, 2}, (byte[]) ((ObjectMessage) message).getObject());
+		} finally {
+			connection.close();
+		}
+	}
+	
+	@Test
+	public void TestBatching() throws Exception {
+		connect(1000, false);
+		
+		channels[0].send("message");
+		channels[0].send(new byte[]{1, 2});
+		channels[0].sendBytes(new byte[]{3, 4});
+		channels[0].sendByteArrays(new byte[][]{{5}, {}, {6, 7}});
+		
+		//The batch is sent only when the first party receives.
+		assertNull(channels[1].receive(500));
+		assertNull(channels[0].tryReceive());
+		assertEquals("message", channels[1].receive());
+		assertArrayEquals(new byte[]{1, 2}, (byte[]) channels[1].receive());
+		assertArrayEquals(new byte[]{3, 4}, channels[1].receiveBytes());
+		assertArrayEquals(new byte[][]{{5}, {}, {6, 7}}, channels[1].receiveByteArrays());
+		
+		//A batch that reaches the maximal size is sent immediately.
+		channels[0].sendBytes(new byte[1000]);
+		assertArrayEquals(new byte[1000], (byte[]) channels[1].receive(5000));
+		
+		//The second party does not batch, and its messages are received as usual.
+		channels[1].sendBytes(new byte[]{8});
+		assertArrayEquals(new byte[]{8}, channels[0].receiveBytes());
+	}
+	
+	@Test
+	public void TestDupsOkAcknowledge() throws Exception {
+		connect(0, true);
+		
+		for (int i = 0; i < 100; i++){
+			channels[0].send(i);
+		}
+		for (int i = 0; i < 100; i++){
+			assertEquals(i, channels[1].receive());
+		}
+		//No message is delivered twice.
+		assertNull(channels[1].receive(500));
+	}
+}
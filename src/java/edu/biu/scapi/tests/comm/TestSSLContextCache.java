@@ -0,0 +1,76 @@
+package edu.biu.scapi.tests.comm;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.KeyStore;
+
+import javax.net.ssl.SSLContext;
+
+import org.junit.Test;
+
+import edu.biu.scapi.comm.twoPartyComm.SSLContextCache;
+
+public class TestSSLContextCache {
+
+	/**
+	 * Writes an empty JKS store protected by the given password.
+	 */
+	private static void writeStore(File file, String password) throws Exception {
+		KeyStore store = KeyStore.getInstance("JKS");
+		store.load(null, null);
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			store.store(out, password.toCharArray());
+		} finally {
+			out.close();
+		}
+	}
+	
+	@Test
+	public void TestContextIsCached() throws Exception {
+		File store = File.createTempFile("store", ".jks");
+		store.deleteOnExit();
+		writeStore(store, "password");
+		
+		SSLContext sc = SSLContextCache.getContext(store.getPath(), store.getPath(), "password");
+		assertSame(sc, SSLContextCache.getContext(store.getPath(), store.getPath(), "password"));
+	}
+	
+	@Test
+	public void TestWrongPassword() throws Exception {
+		File store = File.createTempFile("store", ".jks");
+		store.deleteOnExit();
+		writeStore(store, "password");
+		
+		SSLContext sc = SSLContextCache.getContext(store.getPath(), store.getPath(), "password");
+		try {
+			SSLContextCache.getContext(store.getPath(), store.getPath(), "wrong");
+			fail("the cached context was returned for a wrong password");
+		} catch (IOException e) {}
+		
+		//The failure does not remove the cached context.
+		assertSame(sc, SSLContextCache.getContext(store.getPath(), store.getPath(), "password"));
+	}
+	
+	@Test
+	public void TestModifiedStoreIsLoaded() throws Exception {
+		File store = File.createTempFile("store", ".jks");
+		store.deleteOnExit();
+		writeStore(store, "password");
+		SSLContext sc = SSLContextCache.getContext(store.getPath(), store.getPath(), "password");
+		
+		//Replace the store, protecting it by another password.
+		writeStore(store, "rotated");
+		store.setLastModified(store.lastModified() + 2000);
+		try {
+			SSLContextCache.getContext(store.getPath(), store.getPath(), "password");
+			fail("the context of a replaced store was returned");
+		} catch (IOException e) {}
+		SSLContext rotated = SSLContextCache.getContext(store.getPath(), store.getPath(), "rotated");
+		assertNotSame(sc, rotated);
+		assertSame(rotated, SSLContextCache.getContext(store.getPath(), store.getPath(), "rotated"));
+	}
+}
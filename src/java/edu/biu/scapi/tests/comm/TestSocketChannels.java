@@ -0,0 +1,453 @@
+package edu.biu.scapi.tests.comm;
+
+import static org.junit.Assert.*;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.junit.Test;
+
+import edu.biu.scapi.comm.AuthenticatedChannel;
+import edu.biu.scapi.comm.Channel;
+import edu.biu.scapi.comm.EncryptedChannel;
+import edu.biu.scapi.comm.PlainChannel;
+import edu.biu.scapi.comm.twoPartyComm.NIOSocketChannel;
+import edu.biu.scapi.comm.twoPartyComm.PartyData;
+import edu.biu.scapi.comm.twoPartyComm.PlainTCPSocketChannel;
+import edu.biu.scapi.comm.twoPartyComm.SocketCommunicationSetup;
+import edu.biu.scapi.comm.twoPartyComm.SocketPartyData;
+import edu.biu.scapi.comm.twoPartyComm.TwoPartyCommunicationSetup;
+import edu.biu.scapi.midLayer.symmetricCrypto.encryption.ScCTREncRandomIV;
+import edu.biu.scapi.midLayer.symmetricCrypto.mac.ScCbcMacPrepending;
+import edu.biu.scapi.primitives.prf.bc.BcAES;
+
+public class TestSocketChannels {
+
+	private static final SecretKey KEY = new SecretKeySpec(new byte[16], "AES");
+	
+	/**
+	 * Creates a pair of connected socket channels.
+	 */
+	private static PlainChannel[] channels(final boolean nio) throws Exception {
+		return ChannelPairs.connect(new ChannelPairs.SetupFactory(){
+			public TwoPartyCommunicationSetup create(PartyData me, PartyData other) throws Exception {
+				SocketCommunicationSetup setup = new SocketCommunicationSetup(me, other);
+				if (nio){
+					setup.enableNio();
+				}
+				return setup;
+			}
+		});
+	}
+	
+	/**
+	 * Sends bytes and arrays, including empty ones, in both directions and checks that they arrive as sent.
+	 */
+	private static void roundTrip(Channel first, Channel second) throws Exception {
+		first.sendBytes(new byte[]{1, 2, 3});
+		first.sendBytes(new byte[0]);
+		first.sendByteArrays(new byte[][]{{4}, {}, {5, 6}});
+		first.sendByteArrays(new byte[0][]);
+		first.send("message");
+		assertArrayEquals(new byte[]{1, 2, 3}, second.receiveBytes());
+		assertArrayEquals(new byte[0], second.receiveBytes());
+		assertArrayEquals(new byte[][]{{4}, {}, {5, 6}}, second.receiveByteArrays());
+		assertArrayEquals(new byte[0][], second.receiveByteArrays());
+		assertEquals("message", second.receive());
+		
+		byte[] large = new byte[100000];
+		for (int i=0; i<large.length; i++){
+			large[i] = (byte) i;
+		}
+		second.sendBytes(large);
+		second.sendByteArrays(new byte[][]{large, {7}});
+		assertArrayEquals(large, first.receiveBytes());
+		assertArrayEquals(new byte[][]{large, {7}}, first.receiveByteArrays());
+	}
+	
+	@Test
+	public void TestPlainSocketBytes() throws Exception {
+		PlainChannel[] plain = channels(false);
+		assertTrue(plain[0] instanceof PlainTCPSocketChannel);
+		roundTrip(plain[0], plain[1]);
+		plain[0].close();
+		plain[1].close();
+	}
+	
+	@Test
+	public void TestNioSocketBytes() throws Exception {
+		PlainChannel[] plain = channels(true);
+		assertTrue(plain[0] instanceof NIOSocketChannel);
+		roundTrip(plain[0], plain[1]);
+		plain[0].close();
+		plain[1].close();
+	}
+	
+	private static AuthenticatedChannel authenticated(PlainChannel channel) throws Exception {
+		AuthenticatedChannel authenticated = new AuthenticatedChannel(channel, new ScCbcMacPrepending(new BcAES()));
+		authenticated.setKey(KEY);
+		return authenticated;
+	}
+	
+	@Test
+	public void TestAuthenticatedBytes() throws Exception {
+		PlainChannel[] plain = channels(false);
+		roundTrip(authenticated(plain[0]), authenticated(plain[1]));
+		plain[0].close();
+		plain[1].close();
+	}
+	
+	@Test
+	public void TestAuthenticatedRejectsMalformedMessages() throws Exception {
+		PlainChannel[] plain = channels(false);
+		AuthenticatedChannel receiver = authenticated(plain[1]);
+		
+		//A message without a tag.
+		plain[0].sendByteArrays(new byte[0][]);
+		try {
+			receiver.receiveByteArrays();
+			fail("a message without a tag was received");
+		} catch (IOException e) {}
+		plain[0].sendByteArrays(new byte[0][]);
+		try {
+			receiver.receiveBytes();
+			fail("a message without a tag was received");
+		} catch (IOException e) {}
+		
+		//A modified message does not verify.
+		authenticated(plain[0]).sendBytes(new byte[]{1, 2, 3});
+		byte[][] tagged = plain[1].receiveByteArrays();
+		tagged[0][0] ^= 1;
+		plain[0].sendByteArrays(tagged);
+		assertNull(receiver.receiveBytes());
+		
+		plain[0].close();
+		plain[1].close();
+	}
+	
+	private static EncryptedChannel encrypted(PlainChannel channel) throws Exception {
+		EncryptedChannel encrypted = new EncryptedChannel(channel, new ScCTREncRandomIV(new BcAES()));
+		encrypted.setKey(KEY);
+		return encrypted;
+	}
+	
+	@Test
+	public void TestEncryptedBytes() throws Exception {
+		PlainChannel[] plain = channels(false);
+		roundTrip(encrypted(plain[0]), encrypted(plain[1]));
+		
+		//Plain bytes are not accepted as a ciphertext.
+		plain[0].sendBytes(new byte[]{1, 2, 3});
+		try {
+			encrypted(plain[1]).receiveBytes();
+			fail("plain bytes were received as a ciphertext");
+		} catch (IOException e) {}
+		
+		plain[0].close();
+		plain[1].close();
+	}
+
+	/**
+	 * Creates a NIO channel whose receive socket is connected to the returned raw socket, so that the test can write
+	 * arbitrary frames to it.
+	 */
+	private static Socket receiveFromRaw(NIOSocketChannel channel) throws Exception {
+		ServerSocketChannel server = ServerSocketChannel.open();
+		try {
+			server.socket().bind(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0));
+			Socket raw = new Socket(InetAddress.getByName("127.0.0.1"), server.socket().getLocalPort());
+			channel.setReceiveSocket(server.accept().socket());
+			return raw;
+		} finally {
+			server.close();
+		}
+	}
+	
+	private static NIOSocketChannel nioChannel() throws Exception {
+		InetAddress localhost = InetAddress.getByName("127.0.0.1");
+		return new NIOSocketChannel(localhost, 1, false, new SocketPartyData(localhost, 2));
+	}
+	
+	@Test
+	public void TestNioRejectsIllegalLengths() throws Exception {
+		int[][] frames = {
+				{1, -1},					//Negative length.
+				{1, Integer.MAX_VALUE},		//Too long.
+				{7, 0},						//Unknown type.
+		};
+		for (int[] frame : frames){
+			NIOSocketChannel channel = nioChannel();
+			Socket raw = receiveFromRaw(channel);
+			DataOutputStream out = new DataOutputStream(raw.getOutputStream());
+			out.writeByte(frame[0]);
+			out.writeInt(frame[1]);
+			out.flush();
+			try {
+				channel.receive();
+				fail("an illegal frame was received");
+			} catch (IOException e) {}
+			channel.close();
+			raw.close();
+		}
+	}
+	
+	@Test
+	public void TestNioRejectsIllegalArrays() throws Exception {
+		int[][] frames = {
+				{12, -1, 0},				//Negative number of arrays.
+				{12, 1000, 0},				//The lengths do not fit in the message.
+				{12, 1, -5},				//Negative array length.
+				{12, 1, 100},				//The array does not fit in the message.
+		};
+		for (int[] frame : frames){
+			NIOSocketChannel channel = nioChannel();
+			Socket raw = receiveFromRaw(channel);
+			DataOutputStream out = new DataOutputStream(raw.getOutputStream());
+			out.writeByte(2);
+			for (int value : frame){
+				out.writeInt(value);
+			}
+			out.write(new byte[4]);
+			out.flush();
+			try {
+				channel.receiveByteArrays();
+				fail("an illegal arrays frame was received");
+			} catch (IOException e) {}
+			channel.close();
+			raw.close();
+		}
+	}
+	
+	@Test
+	public void TestNioMaxMessageSize() throws Exception {
+		NIOSocketChannel channel = nioChannel();
+		channel.setMaxMessageSize(4);
+		Socket raw = receiveFromRaw(channel);
+		DataOutputStream out = new DataOutputStream(raw.getOutputStream());
+		out.writeByte(1);
+		out.writeInt(4);
+		out.write(new byte[]{1, 2, 3, 4});
+		out.writeByte(1);
+		out.writeInt(5);
+		out.flush();
+		
+		assertArrayEquals(new byte[]{1, 2, 3, 4}, channel.receiveBytes());
+		try {
+			channel.receiveBytes();
+			fail("a message longer than the maximal size was received");
+		} catch (IOException e) {}
+		channel.close();
+		raw.close();
+	}
+	
+	/**
+	 * Creates a plain channel whose receive socket is connected to the returned raw stream, so that the test can write
+	 * arbitrary messages to it.
+	 */
+	private static ObjectOutputStream plainReceiveFromRaw(PlainTCPSocketChannel channel) throws Exception {
+		ServerSocketChannel server = ServerSocketChannel.open();
+		try {
+			server.socket().bind(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0));
+			Socket raw = new Socket(InetAddress.getByName("127.0.0.1"), server.socket().getLocalPort());
+			//The channel reads the stream header when the receive socket is set.
+			ObjectOutputStream out = new ObjectOutputStream(raw.getOutputStream());
+			out.flush();
+			channel.setReceiveSocket(server.accept().socket());
+			return out;
+		} finally {
+			server.close();
+		}
+	}
+	
+	private static PlainTCPSocketChannel plainChannel() throws Exception {
+		InetAddress localhost = InetAddress.getByName("127.0.0.1");
+		PlainTCPSocketChannel channel = new PlainTCPSocketChannel(localhost, 1, false, new SocketPartyData(localhost, 2));
+		channel.setMaxMessageSize(16);
+		return channel;
+	}
+	
+	@Test
+	public void TestPlainRejectsIllegalLengths() throws Exception {
+		int[] lengths = {-1, 17, Integer.MAX_VALUE};
+		for (int length : lengths){
+			PlainTCPSocketChannel channel = plainChannel();
+			ObjectOutputStream out = plainReceiveFromRaw(channel);
+			out.writeInt(length);
+			out.flush();
+			try {
+				channel.receiveBytes();
+				fail("an illegal length was received");
+			} catch (IOException e) {}
+			channel.close();
+			out.close();
+		}
+	}
+	
+	@Test
+	public void TestPlainRejectsIllegalArrays() throws Exception {
+		int[][] messages = {
+				{-1},						//Negative number of arrays.
+				{5},						//The lengths are longer than the maximal message size.
+				{1, -5},					//Negative array length.
+				{2, 4, 5},					//The arrays are longer than the maximal message size.
+		};
+		for (int[] message : messages){
+			PlainTCPSocketChannel channel = plainChannel();
+			ObjectOutputStream out = plainReceiveFromRaw(channel);
+			for (int value : message){
+				out.writeInt(value);
+			}
+			out.flush();
+			try {
+				channel.receiveByteArrays();
+				fail("illegal arrays were received");
+			} catch (IOException e) {}
+			channel.close();
+			out.close();
+		}
+	}
+	
+	@Test
+	public void TestPlainMaxMessageSize() throws Exception {
+		PlainTCPSocketChannel channel = plainChannel();
+		ObjectOutputStream out = plainReceiveFromRaw(channel);
+		out.writeInt(16);
+		out.write(new byte[16]);
+		out.writeInt(2);
+		out.writeInt(4);
+		out.writeInt(4);
+		out.write(new byte[8]);
+		out.flush();
+		
+		//Messages of exactly the maximal size are received.
+		assertArrayEquals(new byte[16], channel.receiveBytes());
+		assertArrayEquals(new byte[][]{new byte[4], new byte[4]}, channel.receiveByteArrays());
+		channel.close();
+		out.close();
+	}
+	
+	@Test
+	public void TestSilentConnectionDoesNotBlockOtherListeners() throws Exception {
+		SocketPartyData[] parties = ChannelPairs.parties();
+		final SocketPartyData p1 = parties[0];
+		final SocketPartyData p2 = parties[1];
+		final AtomicReference<Map<String, Channel>> result = new AtomicReference<Map<String, Channel>>();
+		final AtomicReference<Exception> error = new AtomicReference<Exception>();
+		Thread thread = new Thread(){
+			public void run(){
+				try {
+					result.set(new SocketCommunicationSetup(p1, p2).prepareForCommunication(new String[]{"a"}, 20000));
+				} catch (Exception e) {
+					error.set(e);
+				}
+			}
+		};
+		thread.start();
+		Thread.sleep(500);
+		
+		//A connection that never sends its index occupies the listener of the first setup until the read timeout.
+		Socket silent = new Socket(p1.getIpAddress(), p1.getPort());
+		Thread.sleep(500);
+		long start = System.currentTimeMillis();
+		PlainChannel[] plain = channels(false);
+		assertTrue("the listeners of the other setups were blocked", System.currentTimeMillis() - start < 3000);
+		roundTrip(plain[0], plain[1]);
+		plain[0].close();
+		plain[1].close();
+		
+		//After the silent connection timed out, the first setup still connects.
+		Map<String, Channel> mine = new SocketCommunicationSetup(p2, p1).prepareForCommunication(new String[]{"a"}, 20000);
+		thread.join();
+		if (error.get() != null){
+			throw error.get();
+		}
+		roundTrip(mine.get("a"), result.get().get("a"));
+		mine.get("a").close();
+		result.get().get("a").close();
+		silent.close();
+	}
+	
+	/**
+	 * Checks the receive functions with a timeout, and that the timeout does not apply to later blocking receives.
+	 */
+	private static void receiveWithTimeout(final PlainChannel sender, PlainChannel receiver) throws Exception {
+		assertNull(receiver.tryReceive());
+		long start = System.currentTimeMillis();
+		assertNull(receiver.receive(200));
+		assertTrue(System.currentTimeMillis() - start >= 150);
+		assertFalse(receiver.waitForMessage(0));
+		
+		sender.send("message");
+		assertEquals("message", receiver.receive(5000));
+		sender.sendBytes(new byte[]{1, 2, 3});
+		assertTrue(receiver.waitForMessage(5000));
+		//Waiting again does not consume the message.
+		assertTrue(receiver.waitForMessage(0));
+		assertArrayEquals(new byte[]{1, 2, 3}, receiver.receiveBytes());
+		
+		//A blocking receive waits longer than the last timeout.
+		assertNull(receiver.receive(10));
+		Thread thread = new Thread(){
+			public void run(){
+				try {
+					Thread.sleep(500);
+					sender.sendBytes(new byte[]{4});
+				} catch (Exception e) {
+					fail(e.toString());
+				}
+			}
+		};
+		thread.start();
+		assertArrayEquals(new byte[]{4}, receiver.receiveBytes());
+		thread.join();
+		
+		//The other party closed the channel.
+		sender.close();
+		try {
+			receiver.waitForMessage(5000);
+			fail("a closed channel was not reported");
+		} catch (IOException e) {}
+		receiver.close();
+	}
+	
+	@Test
+	public void TestPlainReceiveWithTimeout() throws Exception {
+		PlainChannel[] plain = channels(false);
+		receiveWithTimeout(plain[0], plain[1]);
+	}
+	
+	@Test
+	public void TestNioReceiveWithTimeout() throws Exception {
+		PlainChannel[] plain = channels(true);
+		receiveWithTimeout(plain[0], plain[1]);
+	}
+	
+	@Test
+	public void TestWaitBeforeConnecting() throws Exception {
+		InetAddress localhost = InetAddress.getByName("127.0.0.1");
+		PlainChannel[] unconnected = {
+				new PlainTCPSocketChannel(localhost, 1, false, new SocketPartyData(localhost, 2)),
+				nioChannel()
+		};
+		for (PlainChannel channel : unconnected){
+			try {
+				channel.waitForMessage(0);
+				fail("an unconnected channel was polled");
+			} catch (IOException e) {}
+			try {
+				channel.tryReceive();
+				fail("an unconnected channel was polled");
+			} catch (IOException e) {}
+		}
+	}
+}
@@ -0,0 +1,141 @@
+package edu.biu.scapi.tests.comm;
+
+import static org.junit.Assert.*;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import edu.biu.scapi.comm.Channel;
+import edu.biu.scapi.comm.twoPartyComm.SocketCommunicationSetup;
+import edu.biu.scapi.comm.twoPartyComm.SocketPartyData;
+
+public class TestSocketCommunicationSetup {
+
+	private static final String[] IDS = {"a", "b", "c"};
+
+	/**
+	 * Runs the prepareForCommunication function of the given setup in a background thread.
+	 */
+	private static Thread prepareInThread(final SocketCommunicationSetup setup, final AtomicReference<Map<String, Channel>> result,
+			final AtomicReference<Exception> error){
+		Thread thread = new Thread(){
+			public void run(){
+				try {
+					result.set(setup.prepareForCommunication(IDS, 10000));
+				} catch (Exception e) {
+					error.set(e);
+				}
+			}
+		};
+		thread.start();
+		return thread;
+	}
+
+	/**
+	 * Connects a socket to the given party, retrying until the party listens.
+	 */
+	private static Socket connect(SocketPartyData party) throws Exception {
+		long end = System.currentTimeMillis() + 10000;
+		while (true){
+			try {
+				return new Socket(party.getIpAddress(), party.getPort());
+			} catch (IOException e) {
+				if (System.currentTimeMillis() > end){
+					throw e;
+				}
+				Thread.sleep(10);
+			}
+		}
+	}
+
+	@Test(timeout = 20000)
+	public void TestChannelsAreMatchedByIndex() throws Exception {
+		SocketPartyData[] parties = ChannelPairs.parties();
+
+		//The other party is played by raw sockets, so it can connect the channels in any order.
+		ServerSocket listener = new ServerSocket(parties[1].getPort(), IDS.length, parties[1].getIpAddress());
+		AtomicReference<Map<String, Channel>> result = new AtomicReference<Map<String, Channel>>();
+		AtomicReference<Exception> error = new AtomicReference<Exception>();
+		Thread thread = prepareInThread(new SocketCommunicationSetup(parties[0], parties[1]), result, error);
+
+		//Connect the channels in the reverse order, each one sending its index.
+		ObjectOutputStream[] outputs = new ObjectOutputStream[IDS.length];
+		for (int i = IDS.length - 1; i >= 0; i--){
+			Socket socket = connect(parties[0]);
+			DataOutputStream index = new DataOutputStream(socket.getOutputStream());
+			index.writeInt(i);
+			index.flush();
+			outputs[i] = new ObjectOutputStream(socket.getOutputStream());
+			outputs[i].flush();
+		}
+
+		//The channels of the setup connect concurrently, so they are accepted in any order and identified by their index.
+		ObjectInputStream[] inputs = new ObjectInputStream[IDS.length];
+		for (int i = 0; i < IDS.length; i++){
+			Socket socket = listener.accept();
+			int index = new DataInputStream(socket.getInputStream()).readInt();
+			assertNull("index " + index + " was sent twice", inputs[index]);
+			inputs[index] = new ObjectInputStream(socket.getInputStream());
+		}
+		listener.close();
+		thread.join();
+		if (error.get() != null){
+			throw error.get();
+		}
+
+		//The index of a channel is its position in the requested names.
+		for (int i = 0; i < IDS.length; i++){
+			Channel channel = result.get().get(IDS[i]);
+			//Send bytes in the format of the sendBytes function.
+			outputs[i].writeInt(1);
+			outputs[i].writeByte(i);
+			outputs[i].flush();
+			assertArrayEquals(new byte[]{(byte) i}, channel.receiveBytes());
+
+			channel.sendBytes(new byte[]{(byte) i});
+			assertEquals(1, inputs[i].readInt());
+			assertEquals(i, inputs[i].readByte());
+			channel.close();
+		}
+	}
+
+	@Test(timeout = 20000)
+	public void TestConnectRetriesUntilTheOtherPartyListens() throws Exception {
+		SocketPartyData[] parties = ChannelPairs.parties();
+		SocketCommunicationSetup first = new SocketCommunicationSetup(parties[0], parties[1]);
+		AtomicReference<Map<String, Channel>> result = new AtomicReference<Map<String, Channel>>();
+		AtomicReference<Exception> error = new AtomicReference<Exception>();
+		Thread thread = prepareInThread(first, result, error);
+
+		//The other party starts listening only after the first party has been retrying for a while.
+		Thread.sleep(1000);
+		long start = System.currentTimeMillis();
+		Map<String, Channel> mine = new SocketCommunicationSetup(parties[1], parties[0]).prepareForCommunication(IDS, 10000);
+		thread.join();
+		if (error.get() != null){
+			throw error.get();
+		}
+
+		//The backoff between attempts is bounded, so the first party connects soon after the other party listens.
+		assertTrue("the setup took too long after the other party started", System.currentTimeMillis() - start < 2000);
+		Map<String, Long> latencies = first.getConnectLatencies();
+		assertEquals(IDS.length, latencies.size());
+		for (String id : IDS){
+			assertTrue("channel " + id + " connected before the other party listened", latencies.get(id) >= 900);
+
+			mine.get(id).send(id);
+			assertEquals(id, result.get().get(id).receive());
+			mine.get(id).close();
+			result.get().get(id).close();
+		}
+	}
+}
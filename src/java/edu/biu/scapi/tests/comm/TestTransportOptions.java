@@ -0,0 +1,106 @@
+package edu.biu.scapi.tests.comm;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import edu.biu.scapi.comm.PlainChannel;
+import edu.biu.scapi.comm.twoPartyComm.PartyData;
+import edu.biu.scapi.comm.twoPartyComm.PlainTCPSocketChannel;
+import edu.biu.scapi.comm.twoPartyComm.SocketCommunicationSetup;
+import edu.biu.scapi.comm.twoPartyComm.TransportOptions;
+import edu.biu.scapi.comm.twoPartyComm.TwoPartyCommunicationSetup;
+
+public class TestTransportOptions {
+
+	private static final int BUFFER_SIZE = 32 * 1024;
+	private static final int LOW_DELAY = 0x10;			//The IPTOS_LOWDELAY traffic class.
+
+	/**
+	 * Creates a pair of socket channels whose setups use the given options, and keeps the created setups.
+	 */
+	private static PlainChannel[] channels(final TransportOptions options, final boolean nio, final List<SocketCommunicationSetup> setups) throws Exception {
+		return ChannelPairs.connect(new ChannelPairs.SetupFactory(){
+			public TwoPartyCommunicationSetup create(PartyData me, PartyData other) throws Exception {
+				SocketCommunicationSetup setup = new SocketCommunicationSetup(me, other);
+				setup.setTransportOptions(options);
+				if (nio){
+					setup.enableNio();
+				}
+				synchronized (setups){
+					setups.add(setup);
+				}
+				return setup;
+			}
+		});
+	}
+
+	private static TransportOptions nonDefaultOptions(){
+		TransportOptions options = new TransportOptions(BUFFER_SIZE, BUFFER_SIZE);
+		options.setKeepAlive(true);
+		options.setTrafficClass(LOW_DELAY);
+		options.setStreamBufferSize(4096);
+		return options;
+	}
+
+	/**
+	 * Checks that the given effective options are the options of the {@link #nonDefaultOptions()} function.<p>
+	 * The operating system may round the buffer sizes (Linux reports twice the requested size), so they are only
+	 * checked to be close to the requested size.
+	 */
+	private static void assertApplied(TransportOptions effective){
+		assertNotNull(effective);
+		assertTrue(effective.toString(), effective.getSendBufferSize() >= BUFFER_SIZE / 2 && effective.getSendBufferSize() <= 2 * BUFFER_SIZE);
+		assertTrue(effective.toString(), effective.getReceiveBufferSize() >= BUFFER_SIZE / 2 && effective.getReceiveBufferSize() <= 2 * BUFFER_SIZE);
+		assertEquals(Boolean.TRUE, effective.getKeepAlive());
+		assertEquals(LOW_DELAY, effective.getTrafficClass());
+		assertEquals(4096, effective.getStreamBufferSize());
+	}
+
+	private static void checkOptions(boolean nio) throws Exception {
+		List<SocketCommunicationSetup> setups = new ArrayList<SocketCommunicationSetup>();
+		PlainChannel[] plain = channels(nonDefaultOptions(), nio, setups);
+
+		//Both the connected send sockets and the accepted receive sockets of both parties got the options.
+		assertApplied(((PlainTCPSocketChannel) plain[0]).getEffectiveOptions());
+		assertApplied(((PlainTCPSocketChannel) plain[1]).getEffectiveOptions());
+		for (SocketCommunicationSetup setup : setups){
+			Map<String, TransportOptions> effective = setup.getEffectiveOptions();
+			assertEquals(1, effective.size());
+			assertApplied(effective.get("a"));
+		}
+
+		//The channels still work with the small stream buffers.
+		byte[] data = new byte[100000];
+		plain[0].sendBytes(data);
+		assertArrayEquals(data, plain[1].receiveBytes());
+		plain[0].close();
+		plain[1].close();
+	}
+
+	@Test
+	public void TestOptionsReachThePlainSockets() throws Exception {
+		checkOptions(false);
+	}
+
+	@Test
+	public void TestOptionsReachTheNioSockets() throws Exception {
+		checkOptions(true);
+	}
+
+	@Test
+	public void TestDefaultOptionsAreNotSet() throws Exception {
+		PlainChannel[] plain = channels(new TransportOptions(), false, new ArrayList<SocketCommunicationSetup>());
+		TransportOptions effective = ((PlainTCPSocketChannel) plain[0]).getEffectiveOptions();
+
+		//Without options, the system defaults are kept.
+		assertEquals(Boolean.FALSE, effective.getKeepAlive());
+		assertEquals(0, effective.getTrafficClass());
+		plain[0].close();
+		plain[1].close();
+	}
+}
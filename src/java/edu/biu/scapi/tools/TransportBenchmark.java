@@ -0,0 +1,156 @@
+/**
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+* Copyright (c) 2012 - SCAPI (http://crypto.biu.ac.il/scapi)
+* This file is part of the SCAPI project.
+* DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+* 
+* Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files (the "Software"),
+* to deal in the Software without restriction, including without limitation the rights to use, copy, modify, merge, publish, distribute, sublicense, 
+* and/or sell copies of the Software, and to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+* 
+* The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+* 
+* THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+* FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+* WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+* 
+* We request that any publication and/or code referring to and/or based on SCAPI contain an appropriate citation to SCAPI, including a reference to
+* http://crypto.biu.ac.il/SCAPI.
+* 
+* SCAPI uses Crypto++, Miracl, NTL and Bouncy Castle. Please see these projects for any further licensing issues.
+* %%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%%
+* 
+*/
+package edu.biu.scapi.tools;
+
+import java.net.InetAddress;
+import java.util.Map;
+
+import edu.biu.scapi.comm.Channel;
+import edu.biu.scapi.comm.twoPartyComm.SocketCommunicationSetup;
+import edu.biu.scapi.comm.twoPartyComm.SocketPartyData;
+import edu.biu.scapi.comm.twoPartyComm.TransportOptions;
+
+/**
+ * This utility measures the throughput of a socket channel for different sizes of the socket buffers, 
+ * in order to choose the {@link TransportOptions} for a given link.<p>
+ * 
+ * For each buffer size, one party sends the given number of megabytes in chunks of 1MB and the other party receives them. 
+ * The throughput is measured by the sending party, until the receiving party acknowledged the last chunk.<p>
+ * 
+ * Usage:
+ * <ul>
+ * <li>TransportBenchmark local [megabytes] - runs both parties in this JVM over the loopback interface.</li>
+ * <li>TransportBenchmark myIp myPort otherIp otherPort [megabytes] - runs one party. The same command (with the addresses 
+ * swapped) should be run by the other party. The party with the smaller address sends.</li>
+ * </ul>
+ * The loopback interface has a tiny round trip time, so the buffer sizes matter mostly on real links with a high 
+ * bandwidth-delay product.
+ * 
+ * @author Cryptography and Computer Security Research Group Department of Computer Science Bar-Ilan University
+ *
+ */
+public class TransportBenchmark {
+
+	private static final int[] BUFFER_SIZES = {TransportOptions.DEFAULT, 64 * 1024, 256 * 1024, 1024 * 1024, 4 * 1024 * 1024, 16 * 1024 * 1024};
+	private static final int CHUNK_SIZE = 1024 * 1024;
+	private static final long TIMEOUT = 60000;
+	
+	private SocketPartyData me;
+	private SocketPartyData other;
+	private int megabytes;
+	
+	public TransportBenchmark(SocketPartyData me, SocketPartyData other, int megabytes){
+		this.me = me;
+		this.other = other;
+		this.megabytes = megabytes;
+	}
+	
+	/**
+	 * Runs the benchmark for all the buffer sizes and prints the results of the sending party.
+	 */
+	public void run() throws Exception {
+		boolean isSender = me.compareTo(other) < 0;
+		if (isSender){
+			System.out.println("buffer size\teffective send/receive buffers\tMB/s");
+		}
+		
+		for (int size : BUFFER_SIZES){
+			SocketCommunicationSetup setup = new SocketCommunicationSetup(me, other);
+			TransportOptions options = new TransportOptions(size, size);
+			setup.setTransportOptions(options);
+			Map<String, Channel> connections = setup.prepareForCommunication(new String[]{"benchmark"}, TIMEOUT);
+			Channel channel = connections.get("benchmark");
+			
+			if (isSender){
+				double throughput = send(channel);
+				TransportOptions effective = setup.getEffectiveOptions().get("benchmark");
+				System.out.println((size == TransportOptions.DEFAULT ? "default" : size / 1024 + "KB") + "\t\t"
+						+ effective.getSendBufferSize() / 1024 + "KB/" + effective.getReceiveBufferSize() / 1024 + "KB\t\t\t" 
+						+ String.format("%.1f", throughput));
+			} else{
+				receive(channel);
+			}
+			channel.close();
+			setup.close();
+		}
+	}
+	
+	/**
+	 * Sends the chunks and waits for the acknowledgment of the other party.
+	 * @return the throughput, in megabytes per second.
+	 */
+	private double send(Channel channel) throws Exception {
+		byte[] chunk = new byte[CHUNK_SIZE];
+		long start = System.nanoTime();
+		for (int i = 0; i < megabytes; i++){
+			channel.sendBytes(chunk);
+		}
+		channel.receiveBytes();
+		long time = System.nanoTime() - start;
+		return megabytes / (time / 1e9);
+	}
+	
+	/**
+	 * Receives the chunks and acknowledges them.
+	 */
+	private void receive(Channel channel) throws Exception {
+		for (int i = 0; i < megabytes; i++){
+			channel.receiveBytes();
+		}
+		channel.sendBytes(new byte[1]);
+	}
+	
+	public static void main(String[] args) throws Exception {
+		if (args.length >= 1 && args[0].equals("local")){
+			int megabytes = args.length > 1 ? Integer.parseInt(args[1]) : 1024;
+			InetAddress localhost = InetAddress.getByName("127.0.0.1");
+			final SocketPartyData first = new SocketPartyData(localhost, 8000);
+			final SocketPartyData second = new SocketPartyData(localhost, 8001);
+			final TransportBenchmark receiver = new TransportBenchmark(second, first, megabytes);
+			Thread thread = new Thread(){
+				public void run(){
+					try {
+						receiver.run();
+					} catch (Exception e) {
+						//The sending party would wait for this party forever, so the whole benchmark is stopped.
+						System.err.println("the receiving party failed: " + e);
+						System.exit(1);
+					}
+				}
+			};
+			thread.start();
+			new TransportBenchmark(first, second, megabytes).run();
+			thread.join();
+		} else if (args.length >= 4){
+			SocketPartyData me = new SocketPartyData(InetAddress.getByName(args[0]), Integer.parseInt(args[1]));
+			SocketPartyData other = new SocketPartyData(InetAddress.getByName(args[2]), Integer.parseInt(args[3]));
+			int megabytes = args.length > 4 ? Integer.parseInt(args[4]) : 1024;
+			new TransportBenchmark(me, other, megabytes).run();
+		} else{
+			System.out.println("usage: TransportBenchmark local [megabytes]");
+			System.out.println("       TransportBenchmark myIp myPort otherIp otherPort [megabytes]");
+		}
+	}
+}